@@ -1,23 +1,37 @@
 package com.example.textversioncontrol;
 
 import com.example.textversioncontrol.managers.DatabaseManager;
-import com.example.textversioncontrol.managers.VersionManager;
+import com.example.textversioncontrol.managers.RepositoryMaintenance;
+import com.example.textversioncontrol.managers.RetentionPolicy;
+import com.example.textversioncontrol.managers.TrackingDaemon;
+import com.example.textversioncontrol.managers.VersionService;
+import com.example.textversioncontrol.models.ScanResult;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.sql.*;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The <code>TextFileTracker</code> class is the starting point of the application and loads the main view of the application.
  */
 public class TextFileTracker extends Application {
 
+    /** Background tracker committing changes to tracked files as they are saved */
+    public static TrackingDaemon trackingDaemon;
+
+    /** Packs the loose objects of tracked repositories while the application is idle */
+    public static RepositoryMaintenance repositoryMaintenance;
+
+    /** Scan for changes made while the application was closed, runs in the background while the window opens */
+    public static CompletableFuture<ScanResult> startupScan;
+
     /**
      * The <code>start</code> method is the main entry point of the JavaFX application and
      * loads the main view window from the MainView.fxml file.
@@ -35,19 +49,52 @@ public class TextFileTracker extends Application {
         stage.getIcons().add(new Image(String.valueOf(Paths.get("").toAbsolutePath().resolve("src/main/resources/images/control_icon.png"))));
     }
 
+    /**
+     * Stops the tracking daemon and repository maintenance when the application closes.
+     *
+     * @throws IOException if the daemon's watch service couldn't be closed
+     */
+    @Override
+    public void stop() throws IOException {
+        if (repositoryMaintenance != null)
+            repositoryMaintenance.close();
+        if (trackingDaemon != null)
+            trackingDaemon.close();
+    }
+
     /**
      * The <code>main</code> method launches the JavaFX application class,
-     * establishes the connection to the database, and checks for changes in text files.
+     * establishes the connection to the database, starts checking for changes in text files made while the application
+     * was closed in the background, thins out old versions if a retention policy is configured, starts the tracking
+     * daemon to pick up later changes, and schedules repository maintenance.
      *
      * @param args the argument list for the main method
      * @throws SQLException if connection to the database couldn't be made in <code>DatabaseManager.createConnection()</code>.
      * @throws ClassNotFoundException if JDBC driver can't be found in <code>DatabaseManager.createConnection()</code>.
-     * @throws GitAPIException if in <code>VersionManager.updateTextFiles</code> JGit couldn't connect or write to repository.
-     * @throws IOException if an I/O error occurs in <code>VersionManager.updateTextFiles()</code>.
+     * @throws IOException if the tracking daemon couldn't watch the tracked files.
      */
-    public static void main(String[] args) throws SQLException, ClassNotFoundException, GitAPIException, IOException {
+    public static void main(String[] args) throws SQLException, ClassNotFoundException, IOException {
         DatabaseManager.createConnection();
-        VersionManager.updateTextFiles();
+
+        // Catch up on changes made while the application was closed without holding up the window
+        startupScan = VersionService.updateTextFiles(Runtime.getRuntime().availableProcessors(), null);
+
+        // Index the versions saved before the search index existed once the scan committed its changes
+        startupScan.thenRun(VersionService::updateSearchIndex);
+
+        // Thin out old versions once the scan committed the changes it found
+        RetentionPolicy retentionPolicy = RetentionPolicy.fromProperties();
+        if (retentionPolicy != null)
+            startupScan.thenRun(() -> VersionService.applyRetention(retentionPolicy, false));
+
+        // Track changes in the background from now on
+        trackingDaemon = new TrackingDaemon();
+        trackingDaemon.start();
+
+        // Pack the objects left behind by commits once the application is idle
+        repositoryMaintenance = new RepositoryMaintenance();
+        repositoryMaintenance.start(Duration.ofMinutes(10));
+
         launch();
     }
 }
\ No newline at end of file
@@ -1,18 +1,20 @@
 package com.example.textversioncontrol.controllers;
 
+import com.example.textversioncontrol.TextFileTracker;
 import com.example.textversioncontrol.managers.DatabaseManager;
 import com.example.textversioncontrol.managers.VersionManager;
+import com.example.textversioncontrol.managers.VersionService;
+import com.example.textversioncontrol.models.DiffOptions;
 import com.example.textversioncontrol.models.EditData;
+import com.example.textversioncontrol.models.EditHistoryList;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.util.Callback;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
 
 public class EditHistoryController {
 
@@ -28,6 +30,12 @@ public class EditHistoryController {
     /** Name of the tracked file that is being viewed */
     public static String fileName;
 
+    /** Number of history rows read at once */
+    private static final int PAGE_SIZE = 200;
+
+    /** Number of history pages kept in memory while scrolling */
+    private static final int MAX_PAGES = 5;
+
 
     /** Button action to switch to the main screen */
     public void backToMain(ActionEvent e) throws IOException {
@@ -35,14 +43,10 @@ public class EditHistoryController {
     }
 
     /**
-     *
-     *
+     * Set table columns and load the history and pathway of the viewed file in the background.
      */
     @FXML
-    public void initialize() throws Exception {
-
-        // Clear the table of all items
-        historyTable.getItems().clear();
+    public void initialize() {
 
         // Define columns
         TableColumn<EditData, Integer> idColumn = new TableColumn<>("ID");
@@ -51,11 +55,20 @@ public class EditHistoryController {
         TableColumn<EditData, String> datesColumn = new TableColumn<>("Date");
         datesColumn.setCellValueFactory(new PropertyValueFactory<>("date"));
 
+        TableColumn<EditData, Void> changesColumn = new TableColumn<>("Changes");
+        changesColumn.setCellFactory(changesButtonFactory());
+
         TableColumn<EditData, Void> revertColumn = new TableColumn<>("Revert To");
         revertColumn.setCellFactory(revertButtonFactory());
 
+        // Rows are loaded a page at a time, so the table can't sort them
+        idColumn.setSortable(false);
+        datesColumn.setSortable(false);
+        changesColumn.setSortable(false);
+        revertColumn.setSortable(false);
+
         // Add columns to table
-        historyTable.getColumns().addAll(idColumn, datesColumn, revertColumn);
+        historyTable.getColumns().addAll(idColumn, datesColumn, changesColumn, revertColumn);
 
         // Populate table items with file history
         populateTable();
@@ -64,40 +77,84 @@ public class EditHistoryController {
         fileNameLabel.setText("File Name: " + fileName);
 
         // Set the current pathway of the tracked file being viewed
-        currentPathwayField.setText(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.TRACKING_PATHWAY));
+        String viewedFile = fileName;
+        VersionService.submit(() -> DatabaseManager.getEntry(viewedFile, DatabaseManager.Columns.TRACKING_PATHWAY))
+                .thenAcceptAsync(currentPathwayField::setText, Platform::runLater)
+                .exceptionally(MainViewController::printError);
     }
 
     /**
-     * Populates <code>historyTable</code> with ids, commit dates, and revert buttons.
-     *
-     * @throws SQLException if <code>DatabaseManager.getEntry(String, Columns)</code> fails to get the repo_pathway entry.
-     * @throws IOException if <code>VersionManager.getCommitDates(String)</code> fails to open git repository.
-     * @throws GitAPIException if git fails to get commit log in <code>VersionManager.getCommitDates(String)</code>.
+     * Populates <code>historyTable</code> with ids, commit dates, and revert buttons. Only the number of commits is
+     * read up front, the rows are read a page at a time in the background as they are scrolled into view.
      */
-    public void populateTable() throws SQLException, IOException, GitAPIException {
-
-        // Clear table of all items
-        historyTable.getItems().clear();
-
-        ArrayList<String> dates;
-
-        // Get lists
-        dates = VersionManager.getCommitDates(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY));
+    public void populateTable() {
+        String viewedFile = fileName;
+
+        // Count the history once, so later pages line up with the first
+        VersionService.getCommitCount(viewedFile)
+                .thenAcceptAsync(count -> historyTable.setItems(new EditHistoryList(count, PAGE_SIZE, MAX_PAGES,
+                        (offset, limit) -> VersionManager.getHistoryPage(viewedFile, count, offset, limit),
+                        VersionService::execute, Platform::runLater)), Platform::runLater)
+                .exceptionally(MainViewController::printError);
+    }
 
-        // Populate Rows
-        for(int i = 0; i < dates.size(); i++)
-            historyTable.getItems().add(new EditData(i + 1, dates.get(i)));
+    /** Button event to change the pathway of the file being tracked in the background. */
+    @FXML
+    public void changeTrackedPathway(ActionEvent e) {
+        VersionService.updatePathway(fileName, currentPathwayField.getText(), TextFileTracker.trackingDaemon)
+                .exceptionally(exception -> {
+                    MainViewController.printError(exception);
+                    return false;
+                });
     }
 
     /**
-     * Button event to change the pathway of the file being tracked.
+     * Opens a window showing what a commit changed as a unified diff. Hunks are appended as the diff finds them,
+     * so the window fills in while large versions are still being compared.
      *
-     * @throws SQLException if <code>DatabaseManager</code> fails to retrieve and update entries.
-     * @throws IOException if the file at the pathway doesn't exist.
+     * @param data the row of the commit
      */
-    @FXML
-    public void changeTrackedPathway(ActionEvent e) throws SQLException, IOException {
-        VersionManager.updatePathway(fileName, currentPathwayField.getText());
+    private void showChanges(EditData data) {
+        TextArea textArea = new TextArea();
+        textArea.setEditable(false);
+        textArea.setStyle("-fx-font-family: monospace;");
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("Changes in version " + data.getId());
+        dialog.setResizable(true);
+        dialog.getDialogPane().setContent(textArea);
+        dialog.getDialogPane().setPrefSize(800, 600);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.show();
+
+        VersionService.diff(fileName, data.getCommitId(), DiffOptions.DEFAULT,
+                        hunk -> Platform.runLater(() -> textArea.appendText(hunk.toString())))
+                .thenRunAsync(() -> {
+                    if (textArea.getText().isEmpty())
+                        textArea.setText("No changes");
+                }, Platform::runLater)
+                .exceptionally(MainViewController::printError);
+    }
+
+    /** Create Changes button */
+    private Callback<TableColumn<EditData, Void>, TableCell<EditData, Void>> changesButtonFactory() {
+        return param -> new TableCell<>() {
+            private final Button button = new Button("View");
+
+            {
+                button.setOnAction(event -> {
+                    EditData data = getTableView().getItems().get(getIndex());
+                    if (data != null)
+                        showChanges(data);
+                });
+            }
+
+            @Override
+            protected void updateItem(Void item, boolean empty) {
+                super.updateItem(item, empty);
+                setGraphic(empty ? null : button);
+            }
+        };
     }
 
     /** Create Delete button*/
@@ -111,13 +168,11 @@ public class EditHistoryController {
                     {
                         button.setOnAction(event -> {
                             EditData data = getTableView().getItems().get(getIndex());
-                            try {
-                                String gitPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY);
+                            if (data == null)
+                                return;
 
-                                VersionManager.revert(fileName, gitPathway, VersionManager.getCommitId(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY), data.getId()-1));
-                            } catch (IOException | GitAPIException | SQLException e) {
-                                throw new RuntimeException(e);
-                            }
+                            VersionService.revert(fileName, data.getCommitId())
+                                    .exceptionally(MainViewController::printError);
                         });
                     }
 
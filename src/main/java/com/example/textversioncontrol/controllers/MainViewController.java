@@ -1,18 +1,19 @@
 package com.example.textversioncontrol.controllers;
 
-import com.example.textversioncontrol.managers.DatabaseManager;
+import com.example.textversioncontrol.TextFileTracker;
+import com.example.textversioncontrol.managers.VersionService;
 import com.example.textversioncontrol.models.FileData;
-import com.example.textversioncontrol.managers.VersionManager;
+import com.example.textversioncontrol.models.ScanResult;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.util.Callback;
-import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The <code>MainViewController</code> class handles the MainView events and loading data to the screen.
@@ -34,14 +35,20 @@ public class MainViewController     {
     @FXML
     TextField pathwayLineEdit;
 
-    /**
-     * Set table columns and populate the table.
-     *
-     * @throws SQLException if <code>DatabaseManager</code> fails to get records entries from the database.
-     * @throws IOException if <code>VersionManager</code> fails to read commit dates from the git repositories.
-     */
+    /** Starts a scan for changes, or cancels the running scan */
+    @FXML
+    Button checkButton;
+
+    /** Shows the progress of the running scan */
+    @FXML
+    ProgressBar scanProgress;
+
+    /** Latest scan, kept across scene switches so a running scan is still shown when the view is reloaded */
+    private static CompletableFuture<ScanResult> scan;
+
+    /** Set table columns and populate the table in the background. */
     @FXML
-    public void initialize() throws SQLException, IOException {
+    public void initialize() {
 
         // Define column names and cell factories
         TableColumn<FileData, String> nameColumn = new TableColumn<>("File Name");
@@ -64,58 +71,114 @@ public class MainViewController     {
 
         // Update table view
         populateTable();
+
+        // Refresh the table whenever the tracking daemon saves a change, bursts of commits share one refresh
+        if (TextFileTracker.trackingDaemon != null) {
+            TextFileTracker.trackingDaemon.setOnCommit(fileName -> populateTable());
+            TextFileTracker.trackingDaemon.setOnFailure(MainViewController::printFailure);
+        }
+
+        // Keep showing a scan that is still running, such as the scan started with the application
+        if (scan == null)
+            scan = TextFileTracker.startupScan;
+        if (scan != null && !scan.isDone()) {
+            scanProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+            showScan(scan);
+        }
     }
 
     /**
-     * Populates <code>trackedFilesTable</code> with data from the database using the database manager.
-     *
-     * @throws SQLException if records from the database couldn't be retrieved
-     * @throws IOException if a git repository fails to open
+     * Populates <code>trackedFilesTable</code> with data from the database. The rows are read on a background thread
+     * and shown on the application thread once they are loaded; refreshes requested while one is waiting share it.
      */
-    public void populateTable() throws SQLException, IOException{
-
-        // Clear tables items
-        trackedFilesTable.getItems().clear();
+    public void populateTable() {
+        VersionService.getTrackedFiles()
+                .thenAcceptAsync(rows -> trackedFilesTable.getItems().setAll(rows), Platform::runLater)
+                .exceptionally(MainViewController::printError);
+    }
 
-        // Lists of file data to be displayed on table
-        ArrayList<String> fileNames = DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME);
-        ArrayList<String> trackedPathways = DatabaseManager.getEntries(DatabaseManager.Columns.TRACKING_PATHWAY);
-        ArrayList<String> lastEdits = VersionManager.getLastEditDates();
+    /** Button event to start tracking the entered file in the background and update the table view. */
+    public void trackFile() {
+        VersionService.startTracking(pathwayLineEdit.getText(), TextFileTracker.trackingDaemon)
+                .thenRun(this::populateTable)
+                .exceptionally(MainViewController::printError);
+    }
 
-        // Populate Rows
-        for(int i = 0; i < fileNames.size(); i++)
-            trackedFilesTable.getItems().add(new FileData(fileNames.get(i), lastEdits.get(i), trackedPathways.get(i)));
+    /**
+     * Button event to check all files for changes in the background and to update the table view.
+     * Clicking again while the scan runs cancels the files that haven't been scanned yet.
+     */
+    public void checkForChanges() {
+        if (scan != null && !scan.isDone()) {
+            scan.cancel(true);
+            return;
+        }
+
+        scanProgress.setProgress(0);
+        showScan(VersionService.updateTextFiles(Runtime.getRuntime().availableProcessors(), (done, total) -> {
+            // Only hand whole percents to the application thread, so large scans don't flood it
+            if (done * 100L / total != (done - 1) * 100L / total || done.equals(total))
+                Platform.runLater(() -> scanProgress.setProgress((double) done / total));
+        }));
     }
 
     /**
-     * Button event to call startTracking method from VersionManager.
+     * Shows a scan's progress until it finishes, then updates the table view.
      *
-     * @throws GitAPIException if JGit couldn't connect or write to repository.
-     * @throws SQLException if sql exception occurs
-     * @throws IOException I/O error occurs
+     * @param scan the running scan
      */
-    public void trackFile() throws GitAPIException, SQLException, IOException {
-        // Start tracking file and repopulate the table to show changes
-        VersionManager.startTracking(pathwayLineEdit.getText());
-        populateTable();
+    private void showScan(CompletableFuture<ScanResult> scan) {
+        MainViewController.scan = scan;
+        scanProgress.setVisible(true);
+        checkButton.setText("Cancel");
+
+        scan.whenCompleteAsync((result, exception) -> {
+            scanProgress.setVisible(false);
+            checkButton.setText("Check for Changes");
+
+            if (exception != null && !(exception instanceof CancellationException))
+                exception.printStackTrace();
+            if (result != null)
+                result.getFailures().forEach(MainViewController::printFailure);
+
+            populateTable();
+        }, Platform::runLater);
     }
 
-    /** Button event to check for changes and to update the table view. */
-    public void checkForChanges() throws GitAPIException, SQLException, IOException {
-        VersionManager.updateTextFiles();
-        populateTable();
+    /** Button event to resolve file pathways in the background*/
+    public void resolvePathways() {
+        VersionService.resolvePathways()
+                .thenRun(this::populateTable)
+                .exceptionally(MainViewController::printError);
     }
 
-    /** Button event to resolve file pathways*/
-    public void resolvePathways() throws SQLException {
-        DatabaseManager.resolvePathways();
+    /** Button event to clear files, database, and update the table view. */
+    public void clear() {
+        VersionService.clear(TextFileTracker.trackingDaemon)
+                .thenRun(this::populateTable)
+                .exceptionally(MainViewController::printError);
     }
 
-    /** Button event to clear files, database, and update the table view. */
-    public void clear() throws SQLException, IOException {
-        VersionManager.clearTrackedFiles();
-        DatabaseManager.clear();
-        populateTable();
+    /**
+     * Prints the exception that stopped a file from being committed, by a scan or by the tracking daemon.
+     *
+     * @param fileName the name of the file that failed
+     * @param failure the exception that stopped it
+     */
+    static void printFailure(String fileName, Exception failure) {
+        System.err.println("Couldn't commit " + fileName);
+        failure.printStackTrace();
+    }
+
+    /**
+     * Prints the exception that stopped a background task.
+     *
+     * @param exception the exception the task completed with
+     * @return null, so it can be used with <code>exceptionally</code>
+     */
+    static Void printError(Throwable exception) {
+        exception.printStackTrace();
+        return null;
     }
 
     /** Create Open Button*/
@@ -164,12 +227,9 @@ public class MainViewController     {
                     {
                         button.setOnAction(event -> {
                             FileData data = getTableView().getItems().get(getIndex());
-                            try {
-                                VersionManager.stopTracking(data.getFileName());
-                                populateTable();
-                            } catch (SQLException | IOException e) {
-                                throw new RuntimeException(e);
-                            }
+                            VersionService.stopTracking(data.getFileName(), TextFileTracker.trackingDaemon)
+                                    .thenRun(() -> populateTable())
+                                    .exceptionally(MainViewController::printError);
                         });
                     }
                     @Override
@@ -0,0 +1,196 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffOptions;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>Annotation</code> class is an immutable snapshot of which commit introduced every line of a tracked file
+ * at <code>getHead()</code>. Commits are stored as ordinals of the file's <code>CommitHistory</code>.
+ * <p>
+ * The annotation is built by replaying the history from the initial commit: the diff of every commit against the
+ * one before it keeps the origin of unchanged lines and gives added lines the commit. When the head moves,
+ * <code>load</code> replays only the commits made since the previous snapshot's head, so keeping the annotation
+ * of a frequently committed file current costs one diff per commit.
+ */
+public final class Annotation {
+
+    /** Annotation of a file without commits */
+    public static final Annotation EMPTY = new Annotation(null, 0, null, List.of(), new int[0]);
+
+    /** Diff settings of the replay, context isn't needed to carry origins over */
+    private static final DiffOptions REPLAY = new DiffOptions(0, false);
+
+    /** Newest commit of the annotated history */
+    private final ObjectId head;
+
+    /** Number of commits replayed, the ordinal after the head's */
+    private final int size;
+
+    /** Blob of the file at the head, null if it was empty */
+    private final ObjectId blob;
+
+    /** Lines of the file at the head */
+    private final List<String> lines;
+
+    /** Ordinal of the commit that introduced each line */
+    private final int[] origins;
+
+    private Annotation(ObjectId head, int size, ObjectId blob, List<String> lines, int[] origins) {
+        this.head = head;
+        this.size = size;
+        this.blob = blob;
+        this.lines = lines;
+        this.origins = origins;
+    }
+
+    /**
+     * Annotates a file at the head of its history, continuing from a previous annotation if its head is part of it.
+     *
+     * @param repository the repository holding the file's history
+     * @param history the file's history
+     * @param cached a previous annotation of the same file, or null
+     * @throws IOException if a version couldn't be read
+     * @return the annotation at <code>history.getHead()</code>
+     */
+    public static Annotation load(Repository repository, CommitHistory history, Annotation cached) throws IOException {
+
+        Annotation annotation = continued(history, cached);
+        if (annotation.size == history.size())
+            return annotation;
+
+        try (ObjectReader reader = repository.newObjectReader(); RevWalk walk = new RevWalk(reader)) {
+            for (int ordinal = annotation.size; ordinal < history.size(); ordinal++) {
+                ObjectId commitId = history.get(ordinal);
+                ObjectId newBlob;
+                try (TreeWalk treeWalk = new TreeWalk(reader)) {
+                    treeWalk.addTree(walk.parseCommit(commitId).getTree());
+                    treeWalk.setRecursive(true);
+                    newBlob = treeWalk.next() ? treeWalk.getObjectId(0) : null;
+                }
+
+                annotation = annotation.next(commitId, ordinal, newBlob,
+                        () -> reader.open(newBlob, Constants.OBJ_BLOB).getBytes(Integer.MAX_VALUE));
+            }
+        }
+
+        return annotation;
+    }
+
+    /**
+     * Annotates a file kept in a <code>VersionStore</code> at the newest version of its history, continuing from a
+     * previous annotation if its head is part of it. Versions are compared by the hash of their content.
+     *
+     * @param store the store holding the file's versions
+     * @param history the file's history
+     * @param cached a previous annotation of the same file, or null
+     * @throws IOException if a version couldn't be read
+     * @return the annotation at <code>history.getHead()</code>
+     */
+    public static Annotation load(VersionStore store, CommitHistory history, Annotation cached) throws IOException {
+        Annotation annotation = continued(history, cached);
+
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            for (int ordinal = annotation.size; ordinal < history.size(); ordinal++) {
+                ObjectId versionId = history.get(ordinal);
+                byte[] content = store.read(versionId.getName());
+                ObjectId newBlob = content.length == 0 ? null : formatter.idFor(Constants.OBJ_BLOB, content);
+
+                annotation = annotation.next(versionId, ordinal, newBlob, () -> content);
+            }
+        }
+
+        return annotation;
+    }
+
+    /** Returns <code>cached</code> if the history still runs through its head, otherwise an empty annotation. */
+    private static Annotation continued(CommitHistory history, Annotation cached) {
+        return cached != null && cached.size > 0 && cached.size <= history.size()
+                && history.get(cached.size - 1).equals(cached.head) ? cached : EMPTY;
+    }
+
+    /** Reads the content of a version only when it differs from the previous one */
+    private interface ContentReader {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * Replays one commit on top of this annotation.
+     *
+     * @param commitId the commit to replay
+     * @param ordinal the ordinal of the commit
+     * @param newBlob id of the file's content at the commit, null if it's empty
+     * @param content reads the file's content at the commit
+     * @throws IOException if the content couldn't be read
+     * @return the annotation at the commit
+     */
+    private Annotation next(ObjectId commitId, int ordinal, ObjectId newBlob, ContentReader content) throws IOException {
+
+        // Commits that didn't change the content keep every origin
+        if (newBlob == null ? blob == null : newBlob.equals(blob))
+            return new Annotation(commitId.copy(), ordinal + 1, blob, lines, origins);
+
+        List<String> newLines = newBlob == null ? List.of() : LineDiff.splitLines(content.read());
+
+        return new Annotation(commitId.copy(), ordinal + 1, newBlob, newLines, carryOver(newLines, ordinal));
+    }
+
+    /**
+     * Carries the origins of this annotation's lines over to a new version of the file and gives every added line
+     * <code>origin</code>.
+     *
+     * @param newLines lines of the new version
+     * @param origin origin of the lines added in the new version
+     * @return origin of each new line
+     */
+    int[] carryOver(List<String> newLines, int origin) {
+        int[] newOrigins = new int[newLines.size()];
+
+        int[] position = new int[2];
+        LineDiff.diff(lines, newLines, REPLAY, hunk -> {
+            int oldStart = hunk.getOldCount() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1;
+            int newStart = hunk.getNewCount() == 0 ? hunk.getNewStart() : hunk.getNewStart() - 1;
+
+            // Lines between hunks are unchanged
+            int unchanged = oldStart - position[0];
+            System.arraycopy(origins, position[0], newOrigins, position[1], unchanged);
+            for (int i = newStart; i < newStart + hunk.getNewCount(); i++)
+                newOrigins[i] = origin;
+
+            position[0] = oldStart + hunk.getOldCount();
+            position[1] = newStart + hunk.getNewCount();
+        });
+        System.arraycopy(origins, position[0], newOrigins, position[1], origins.length - position[0]);
+
+        return newOrigins;
+    }
+
+    /** Returns the newest commit of the annotated history, null if the file has no commits. */
+    public ObjectId getHead() {
+        return head;
+    }
+
+    /** Returns the lines of the file at the head. */
+    public List<String> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Returns the ordinal of the commit that introduced a line.
+     *
+     * @param line the index of the line, 0 is the first line
+     * @return the ordinal of the commit in the file's <code>CommitHistory</code>
+     */
+    public int getOrigin(int line) {
+        return origins[line];
+    }
+}
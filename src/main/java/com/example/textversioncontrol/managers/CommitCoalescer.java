@@ -0,0 +1,130 @@
+package com.example.textversioncontrol.managers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>CommitCoalescer</code> class folds bursts of saves to the same file into one commit.
+ * A file is due for its commit once it hasn't been saved for the quiet period, or once the maximum delay has
+ * passed since the first save of the burst, so a file that is saved continuously is still committed regularly.
+ */
+public class CommitCoalescer {
+
+    /** Saves of one file that haven't been committed yet */
+    private static class Burst {
+        private final long firstSave;
+        private long lastSave;
+        private int saves;
+
+        private Burst(long firstSave) {
+            this.firstSave = firstSave;
+            this.lastSave = firstSave;
+        }
+    }
+
+    /** Time a file must go without saves before it is committed */
+    private final long quietPeriod;
+
+    /** Longest time a save may wait for its commit */
+    private final long maxDelay;
+
+    /** Clock the save times are read from */
+    private final Clock clock;
+
+    /** Uncommitted bursts by file name */
+    private final Map<String, Burst> bursts = new HashMap<>();
+
+    /**
+     * Creates a coalescer reading the time from the system clock.
+     *
+     * @param quietPeriod time a file must go without saves before it is committed
+     * @param maxDelay longest time a save may wait for its commit
+     */
+    public CommitCoalescer(Duration quietPeriod, Duration maxDelay) {
+        this(quietPeriod, maxDelay, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a coalescer reading the time from <code>clock</code>.
+     *
+     * @param quietPeriod time a file must go without saves before it is committed
+     * @param maxDelay longest time a save may wait for its commit
+     * @param clock the clock the save times are read from
+     */
+    public CommitCoalescer(Duration quietPeriod, Duration maxDelay, Clock clock) {
+        if (maxDelay.compareTo(quietPeriod) < 0)
+            throw new IllegalArgumentException("Maximum delay must not be shorter than the quiet period");
+
+        this.quietPeriod = quietPeriod.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Records a save of a file, starting a new burst if the file has no uncommitted saves.
+     *
+     * @param fileName the name of the saved file
+     */
+    public synchronized void recordSave(String fileName) {
+        long now = clock.millis();
+
+        Burst burst = bursts.computeIfAbsent(fileName, name -> new Burst(now));
+        burst.lastSave = now;
+        burst.saves++;
+    }
+
+    /**
+     * Removes and returns the files whose burst is due for its commit.
+     *
+     * @return due file names mapped to the number of saves merged into the commit
+     */
+    public synchronized LinkedHashMap<String, Integer> flushDue() {
+        LinkedHashMap<String, Integer> due = new LinkedHashMap<>();
+        long now = clock.millis();
+
+        Iterator<Map.Entry<String, Burst>> iterator = bursts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Burst> entry = iterator.next();
+            Burst burst = entry.getValue();
+
+            if (now - burst.lastSave >= quietPeriod || now - burst.firstSave >= maxDelay) {
+                due.put(entry.getKey(), burst.saves);
+                iterator.remove();
+            }
+        }
+
+        return due;
+    }
+
+    /**
+     * Removes and returns every uncommitted burst regardless of its timing, used when tracking stops.
+     *
+     * @return file names mapped to the number of saves merged into the commit
+     */
+    public synchronized LinkedHashMap<String, Integer> flushAll() {
+        LinkedHashMap<String, Integer> all = new LinkedHashMap<>();
+        bursts.forEach((fileName, burst) -> all.put(fileName, burst.saves));
+        bursts.clear();
+
+        return all;
+    }
+
+    /** Returns the number of files with uncommitted saves. */
+    public synchronized int size() {
+        return bursts.size();
+    }
+
+    /**
+     * Returns the commit message recording how many saves were merged into a commit.
+     *
+     * @param saves the number of merged saves
+     * @return the commit message
+     */
+    public static String getCommitMessage(int saves) {
+        return saves <= 1 ? "Auto Save" : "Auto Save (" + saves + " saves)";
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The <code>CommitHistory</code> class is an immutable snapshot of a tracked file's history from the initial commit
+ * to <code>getHead()</code>, held as an ordinal to commit id array. Commits are addressed by ordinal, by position
+ * from the newest commit, or by time, all without walking the log again.
+ * <p>
+ * When the head moves, <code>load</code> walks only the commits made since the previous snapshot's head
+ * and appends them, so keeping a frequently committed file's history current costs one short walk per commit.
+ */
+public final class CommitHistory {
+
+    /** History of a file without commits */
+    public static final CommitHistory EMPTY = new CommitHistory(null, new ObjectId[0], new int[0], new int[0]);
+
+    /** Newest commit of the history */
+    private final ObjectId head;
+
+    /** Commit ids by ordinal, 0 is the initial commit */
+    private final ObjectId[] ids;
+
+    /** Commit times in seconds since the epoch by ordinal */
+    private final int[] times;
+
+    /** Latest commit time up to each ordinal, sorted even if the clock went backwards between commits */
+    private final int[] latestTimes;
+
+    private CommitHistory(ObjectId head, ObjectId[] ids, int[] times, int[] latestTimes) {
+        this.head = head;
+        this.ids = ids;
+        this.times = times;
+        this.latestTimes = latestTimes;
+    }
+
+    /**
+     * Creates the history of a store that isn't a git repository from its versions.
+     *
+     * @param versions the versions oldest first, with 40 character hex ids
+     * @return the history ending at the newest version
+     */
+    public static CommitHistory of(List<StoredVersion> versions) {
+        if (versions.isEmpty())
+            return EMPTY;
+
+        int size = versions.size();
+        ObjectId[] ids = new ObjectId[size];
+        int[] times = new int[size];
+        int[] latestTimes = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            ids[ordinal] = ObjectId.fromString(versions.get(ordinal).getId());
+            times[ordinal] = (int) versions.get(ordinal).getTime();
+            latestTimes[ordinal] = ordinal == 0 ? times[0] : Math.max(latestTimes[ordinal - 1], times[ordinal]);
+        }
+
+        return new CommitHistory(ids[size - 1], ids, times, latestTimes);
+    }
+
+    /**
+     * Loads the first-parent history ending at <code>head</code>. If <code>cached</code> is an older snapshot of the
+     * same history only the newer commits are walked; if its head isn't part of the history anymore the whole
+     * history is walked.
+     *
+     * @param repository the repository holding the history
+     * @param head the newest commit of the history, null if there are no commits
+     * @param cached a previous snapshot of the history, null if there is none
+     * @return the history ending at <code>head</code>
+     * @throws IOException if the commits couldn't be read
+     */
+    public static CommitHistory load(Repository repository, ObjectId head, CommitHistory cached) throws IOException {
+        if (head == null)
+            return EMPTY;
+        if (cached != null && head.equals(cached.head))
+            return cached;
+
+        ArrayList<ObjectId> newIds = new ArrayList<>();
+        ArrayList<Integer> newTimes = new ArrayList<>();
+        boolean extendsCached = false;
+
+        // Walk from the new head back to the cached head, or to the initial commit
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setFirstParent(true);
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(head));
+
+            for (RevCommit commit : walk) {
+                if (cached != null && commit.equals(cached.head)) {
+                    extendsCached = true;
+                    break;
+                }
+                newIds.add(commit.copy());
+                newTimes.add(commit.getCommitTime());
+            }
+        }
+
+        // Keep the cached commits when the walk reached them
+        int start = extendsCached ? cached.size() : 0;
+        int size = start + newIds.size();
+        ObjectId[] ids = extendsCached ? Arrays.copyOf(cached.ids, size) : new ObjectId[size];
+        int[] times = extendsCached ? Arrays.copyOf(cached.times, size) : new int[size];
+        int[] latestTimes = extendsCached ? Arrays.copyOf(cached.latestTimes, size) : new int[size];
+
+        // The walk went newest first, the arrays are oldest first
+        for (int i = 0; i < newIds.size(); i++) {
+            int ordinal = size - 1 - i;
+            ids[ordinal] = newIds.get(i);
+            times[ordinal] = newTimes.get(i);
+        }
+        for (int ordinal = start; ordinal < size; ordinal++)
+            latestTimes[ordinal] = ordinal == 0 ? times[0] : Math.max(latestTimes[ordinal - 1], times[ordinal]);
+
+        return new CommitHistory(head.copy(), ids, times, latestTimes);
+    }
+
+    /** Returns the newest commit of the history, null if there are no commits. */
+    public ObjectId getHead() {
+        return head;
+    }
+
+    /** Returns the number of commits in the history. */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the commit at an ordinal.
+     *
+     * @param ordinal the position from the initial commit, 0 is the initial commit
+     * @return the commit id, null if the history has no commit at the ordinal
+     */
+    public ObjectId get(int ordinal) {
+        return ordinal >= 0 && ordinal < ids.length ? ids[ordinal] : null;
+    }
+
+    /**
+     * Returns the commit at a position counted from the newest commit, the order the history screen lists commits in.
+     *
+     * @param index the position from the newest commit, 0 is the newest commit
+     * @return the commit id, null if the history has no commit at the position
+     */
+    public ObjectId getFromNewest(int index) {
+        return get(ids.length - 1 - index);
+    }
+
+    /**
+     * Finds the ordinal of a commit, searching from the newest commit.
+     *
+     * @param commitId the commit to find
+     * @return the ordinal of the commit, -1 if it isn't part of the history
+     */
+    public int ordinalOf(ObjectId commitId) {
+        for (int ordinal = ids.length - 1; ordinal >= 0; ordinal--)
+            if (ids[ordinal].equals(commitId))
+                return ordinal;
+
+        return -1;
+    }
+
+    /**
+     * Returns the commit time of the commit at an ordinal.
+     *
+     * @param ordinal the position from the initial commit
+     * @return the commit time in seconds since the epoch
+     */
+    public int getCommitTime(int ordinal) {
+        return times[ordinal];
+    }
+
+    /**
+     * Finds the newest commit that was made at or before <code>time</code>, the version the file had at that time.
+     *
+     * @param time the point in time
+     * @return the ordinal of the commit, -1 if the history starts after <code>time</code>
+     */
+    public int ordinalAt(Instant time) {
+        long seconds = time.getEpochSecond();
+
+        // Binary search for the last ordinal whose latest commit time isn't after the point in time
+        int low = 0;
+        int high = latestTimes.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (latestTimes[middle] <= seconds) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds the commit the file had at <code>time</code>.
+     *
+     * @param time the point in time
+     * @return the commit id, null if the history starts after <code>time</code>
+     */
+    public ObjectId getAt(Instant time) {
+        return get(ordinalAt(time));
+    }
+}
@@ -0,0 +1,464 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.EditData;
+import com.example.textversioncontrol.models.StoredVersion;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TimeZone;
+
+/**
+ * The <code>CommitIndex</code> class keeps the commits of every tracked file in the commits table, so the history
+ * screen and commit lookups are indexed queries instead of walks over the git log.
+ * The table has one row per commit with the file name, the ordinal of the commit within the file's history
+ * (0 is the initial commit), the commit id, the commit time in epoch seconds, and the size of the committed content.
+ * The newest commit of every file is also kept in the last_commits table, so the main table loads with one small query.
+ * <p>
+ * <code>VersionManager</code> records every version it saves together with the version before it, and a version
+ * whose parent isn't the newest indexed commit drops the file's rows instead of extending them. If a file's newest
+ * indexed commit doesn't match the newest version in its <code>VersionStore</code>, for example because the file was
+ * tracked before the index existed, its rows are rebuilt from the store the next time they are read.
+ */
+public abstract class CommitIndex {
+
+    /** Format of the dates returned by <code>getCommitDates(String)</code> */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy HH:mm:ss");
+
+    /**
+     * Creates the commits and last_commits tables if they don't exist.
+     *
+     * @throws SQLException if database access error occurs
+     */
+    public static void createTable() throws SQLException {
+
+        // SQL query command to be executed
+        String query = "CREATE TABLE IF NOT EXISTS commits ("
+                + "	file_name text NOT NULL,"
+                + "	ordinal integer NOT NULL,"
+                + "	commit_id text NOT NULL,"
+                + "	commit_time integer NOT NULL,"
+                + "	blob_size integer NOT NULL,"
+                + "	PRIMARY KEY (file_name, ordinal)"
+                + ");";
+
+        // Newest commit of every file
+        String lastQuery = "CREATE TABLE IF NOT EXISTS last_commits ("
+                + "	file_name text PRIMARY KEY,"
+                + "	commit_id text NOT NULL,"
+                + "	commit_time integer NOT NULL"
+                + ");";
+
+        // Execute the query statements to create the tables
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute(query);
+            statement.execute(lastQuery);
+        }
+    }
+
+    /**
+     * Appends a commit to the end of a file's indexed history. If the indexed history doesn't end at the commit's
+     * parent, it missed versions, for example because the file was tracked before the index existed. The file's rows
+     * are then deleted instead, so <code>ensureCurrent</code> rebuilds them from the store on the next read.
+     *
+     * @param fileName the name of the tracked file
+     * @param parentId the id of the version before the saved one, null for the first version
+     * @param version the version that was saved
+     * @throws SQLException if the row couldn't be inserted
+     */
+    public static void record(String fileName, String parentId, StoredVersion version) throws SQLException {
+
+        // Query statement, the ordinal follows the file's newest commit
+        String query = "INSERT INTO commits (file_name, ordinal, commit_id, commit_time, blob_size) "
+                + "SELECT ?, COALESCE(MAX(ordinal) + 1, 0), ?, ?, ? FROM commits WHERE file_name = ?";
+
+        // The commit and the newest commit change together
+        DatabaseManager.transaction(() -> {
+            if (!Objects.equals(getIndexedHead(fileName), parentId)) {
+                delete(fileName);
+                return;
+            }
+
+            try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+                PreparedStatement preparedStatement = lease.prepare(query);
+                preparedStatement.setString(1, fileName);
+                preparedStatement.setString(2, version.getId());
+                preparedStatement.setLong(3, version.getTime());
+                preparedStatement.setLong(4, version.getSize());
+                preparedStatement.setString(5, fileName);
+
+                preparedStatement.executeUpdate();
+            }
+
+            updateLastCommit(fileName, version.getId(), version.getTime());
+        });
+    }
+
+    /**
+     * Stores the newest commit of a file.
+     *
+     * @param fileName the name of the tracked file
+     * @param commitId the id of the newest commit
+     * @param commitTime the commit time in seconds since the epoch
+     * @throws SQLException if the row couldn't be written
+     */
+    private static void updateLastCommit(String fileName, String commitId, long commitTime) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+            PreparedStatement preparedStatement = lease.prepare(
+                    "INSERT OR REPLACE INTO last_commits (file_name, commit_id, commit_time) VALUES (?, ?, ?)");
+            preparedStatement.setString(1, fileName);
+            preparedStatement.setString(2, commitId);
+            preparedStatement.setLong(3, commitTime);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the id of a file's newest indexed commit.
+     *
+     * @param fileName the name of the tracked file
+     * @return the commit id, null if the file has no indexed commit
+     * @throws SQLException if the id couldn't be read from the database
+     */
+    public static String getLastCommitId(String fileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare("SELECT commit_id FROM last_commits WHERE file_name = ?");
+            preparedStatement.setString(1, fileName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("commit_id") : null;
+            }
+        }
+    }
+
+    /**
+     * Returns the date of the newest commit of every tracked file, formatted as MM-dd-yyyy HH:mm:ss.
+     * Files without a stored newest commit, such as files tracked before the index existed, are indexed first.
+     *
+     * @return file names mapped to the dates of their newest commit
+     * @throws SQLException if the dates couldn't be read from the database
+     * @throws IOException if a file had to be indexed and its repository couldn't be read
+     */
+    public static HashMap<String, String> getLastEditDates() throws SQLException, IOException {
+        HashMap<String, String> dates = readLastEditDates();
+
+        // Index the files that are missing, this happens once per file
+        ArrayList<String> missing = new ArrayList<>();
+        for (String fileName : DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME)) {
+            if (!dates.containsKey(fileName))
+                missing.add(fileName);
+        }
+        if (missing.isEmpty())
+            return dates;
+
+        for (String fileName : missing)
+            rebuild(fileName);
+        return readLastEditDates();
+    }
+
+    /**
+     * Reads the date of the newest commit of every file from the last_commits table.
+     *
+     * @return file names mapped to the dates of their newest commit
+     * @throws SQLException if the dates couldn't be read from the database
+     */
+    private static HashMap<String, String> readLastEditDates() throws SQLException {
+        HashMap<String, String> dates = new HashMap<>();
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read();
+             ResultSet resultSet = lease.prepare("SELECT file_name, commit_time FROM last_commits").executeQuery()) {
+            while (resultSet.next())
+                dates.put(resultSet.getString("file_name"), formatDate(resultSet.getLong("commit_time")));
+        }
+
+        return dates;
+    }
+
+    /**
+     * Returns the commit dates of a file newest first, formatted as MM-dd-yyyy HH:mm:ss.
+     *
+     * @param fileName the name of the tracked file
+     * @return list of all commit dates of the file
+     * @throws SQLException if the dates couldn't be read from the database
+     * @throws IOException if the index had to be rebuilt and the repository couldn't be read
+     */
+    public static ArrayList<String> getCommitDates(String fileName) throws SQLException, IOException {
+        ensureCurrent(fileName);
+
+        ArrayList<String> dates = new ArrayList<>();
+        String query = "SELECT commit_time FROM commits WHERE file_name = ? ORDER BY ordinal DESC";
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next())
+                    dates.add(formatDate(resultSet.getLong("commit_time")));
+            }
+        }
+
+        return dates;
+    }
+
+    /**
+     * Returns the id of a file's commit counted from the newest commit.
+     *
+     * @param fileName the name of the tracked file
+     * @param index the position of the commit, 0 is the newest commit
+     * @return the commit id, null if the file has no commit at that position
+     * @throws SQLException if the id couldn't be read from the database
+     * @throws IOException if the index had to be rebuilt and the repository couldn't be read
+     */
+    public static String getCommitId(String fileName, int index) throws SQLException, IOException {
+        ensureCurrent(fileName);
+
+        String query = "SELECT commit_id FROM commits WHERE file_name = ? "
+                + "AND ordinal = (SELECT MAX(ordinal) FROM commits WHERE file_name = ?) - ?";
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+            preparedStatement.setString(2, fileName);
+            preparedStatement.setInt(3, index);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("commit_id") : null;
+            }
+        }
+    }
+
+    /**
+     * Returns a page of a file's commits newest first. Pages are counted from the commit that was newest when the
+     * history had <code>count</code> commits, so pages read while new commits are made still line up.
+     *
+     * @param fileName the name of the tracked file
+     * @param count the number of commits the history had when its first page was read
+     * @param offset the number of commits to skip from the newest
+     * @param limit the maximum number of commits in the page
+     * @return the commits of the page, numbered from 1 for the newest commit
+     * @throws SQLException if the page couldn't be read from the database
+     */
+    public static ArrayList<EditData> getCommitPage(String fileName, int count, int offset, int limit) throws SQLException {
+        ArrayList<EditData> page = new ArrayList<>();
+        if (limit <= 0 || offset >= count)
+            return page;
+
+        // Ordinal range of the page, read through the primary key
+        int newest = count - 1 - offset;
+        int oldest = Math.max(0, newest - limit + 1);
+        String query = "SELECT ordinal, commit_id, commit_time FROM commits "
+                + "WHERE file_name = ? AND ordinal BETWEEN ? AND ? ORDER BY ordinal DESC";
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+            preparedStatement.setInt(2, oldest);
+            preparedStatement.setInt(3, newest);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next())
+                    page.add(new EditData(count - resultSet.getInt("ordinal"),
+                            formatDate(resultSet.getLong("commit_time")), resultSet.getString("commit_id")));
+            }
+        }
+
+        return page;
+    }
+
+    /**
+     * Returns the number of indexed commits of a file.
+     *
+     * @param fileName the name of the tracked file
+     * @return the number of commits in the file's history
+     * @throws SQLException if the count couldn't be read from the database
+     */
+    public static int getCommitCount(String fileName) throws SQLException {
+
+        // Ordinals have no gaps, so the newest ordinal gives the count without scanning the history
+        String query = "SELECT COALESCE(MAX(ordinal) + 1, 0) FROM commits WHERE file_name = ?";
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Moves the indexed history of a file to its new name.
+     *
+     * @param fileName the old name of the file
+     * @param newFileName the new name of the file
+     * @throws SQLException if the rows couldn't be updated
+     */
+    public static void rename(String fileName, String newFileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+            for (String table : new String[] {"commits", "last_commits"}) {
+                PreparedStatement preparedStatement = lease.prepare("UPDATE " + table + " SET file_name = ? WHERE file_name = ?");
+                preparedStatement.setString(1, newFileName);
+                preparedStatement.setString(2, fileName);
+                preparedStatement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the indexed history of a file.
+     *
+     * @param fileName the name of the file
+     * @throws SQLException if the rows couldn't be deleted
+     */
+    public static void delete(String fileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+            for (String table : new String[] {"commits", "last_commits"}) {
+                PreparedStatement preparedStatement = lease.prepare("DELETE FROM " + table + " WHERE file_name = ?");
+                preparedStatement.setString(1, fileName);
+                preparedStatement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the indexed history of all files.
+     *
+     * @throws SQLException if the rows couldn't be deleted
+     */
+    public static void clear() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("DELETE FROM commits");
+            statement.execute("DELETE FROM last_commits");
+        }
+    }
+
+    /**
+     * Rebuilds the indexed history of a file if its newest indexed commit isn't the newest version in its store.
+     *
+     * @param fileName the name of the tracked file
+     * @throws SQLException if the index couldn't be read or written
+     * @throws IOException if the store couldn't be read
+     */
+    public static void ensureCurrent(String fileName) throws SQLException, IOException {
+        String gitPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY);
+        if (gitPathway == null)
+            return;
+
+        // Compare the newest indexed commit with the newest version in the file's store
+        String indexedHead = getIndexedHead(fileName);
+        VersionStore store = VersionManager.getStore(fileName);
+        StoredVersion latest = store.latest();
+        String latestId = latest == null ? null : latest.getId();
+
+        if (!Objects.equals(latestId, indexedHead))
+            rebuild(fileName, store.list());
+    }
+
+    /**
+     * Returns the id of the newest commit in a file's indexed history.
+     *
+     * @param fileName the name of the tracked file
+     * @return the commit id, null if the file has no indexed commits
+     * @throws SQLException if the id couldn't be read from the database
+     */
+    private static String getIndexedHead(String fileName) throws SQLException {
+        String query = "SELECT commit_id FROM commits WHERE file_name = ? ORDER BY ordinal DESC LIMIT 1";
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("commit_id") : null;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the indexed history of a file from its store, used to repair the index.
+     *
+     * @param fileName the name of the tracked file
+     * @throws SQLException if the index couldn't be written
+     * @throws IOException if the repository couldn't be read
+     */
+    public static void rebuild(String fileName) throws SQLException, IOException {
+        String gitPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY);
+        if (gitPathway == null)
+            return;
+
+        rebuild(fileName, VersionManager.getStore(fileName).list());
+    }
+
+    /**
+     * Rebuilds the indexed history of every tracked file from its store.
+     *
+     * @throws SQLException if the index couldn't be written
+     * @throws IOException if a repository couldn't be read
+     */
+    public static void rebuildAll() throws SQLException, IOException {
+        for (String fileName : DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME))
+            rebuild(fileName);
+    }
+
+    /**
+     * Replaces the indexed history of a file with the versions of its store in one transaction.
+     *
+     * @param fileName the name of the tracked file
+     * @param versions the versions of the file oldest first
+     * @throws SQLException if the index couldn't be written
+     */
+    private static void rebuild(String fileName, List<StoredVersion> versions) throws SQLException {
+        DatabaseManager.transaction(() -> {
+            try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+                rebuild(fileName, versions, lease);
+            }
+        });
+    }
+
+    /**
+     * Replaces the indexed history of a file within the transaction of the writer lease.
+     *
+     * @param fileName the name of the tracked file
+     * @param versions the versions of the file oldest first
+     * @param lease the lease of the writer
+     * @throws SQLException if the index couldn't be written
+     */
+    private static void rebuild(String fileName, List<StoredVersion> versions, ConnectionPool.Lease lease) throws SQLException {
+        PreparedStatement insert = lease.prepare(
+                "INSERT INTO commits (file_name, ordinal, commit_id, commit_time, blob_size) VALUES (?, ?, ?, ?, ?)");
+        delete(fileName);
+
+        int ordinal = 0;
+        for (StoredVersion version : versions) {
+            insert.setString(1, fileName);
+            insert.setInt(2, ordinal++);
+            insert.setString(3, version.getId());
+            insert.setLong(4, version.getTime());
+            insert.setLong(5, version.getSize());
+            insert.addBatch();
+        }
+        insert.executeBatch();
+
+        if (!versions.isEmpty()) {
+            StoredVersion last = versions.get(versions.size() - 1);
+            updateLastCommit(fileName, last.getId(), last.getTime());
+        }
+    }
+
+    /**
+     * Formats a commit time as MM-dd-yyyy HH:mm:ss in the default time zone.
+     *
+     * @param commitTime the commit time in seconds since the epoch
+     * @return the formatted date
+     */
+    static String formatDate(long commitTime) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(commitTime), TimeZone.getDefault().toZoneId()).format(DATE_FORMAT);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.textversioncontrol.managers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <code>ConnectionPool</code> class gives threads access to the SQLite database without sharing one connection.
+ * The database runs in WAL mode, so readers don't block the writer and the writer doesn't block readers.
+ * There is one writer connection, borrowed by one thread at a time with <code>write()</code>, and a small pool of
+ * read only connections borrowed with <code>read()</code>. Every connection keeps its prepared statements, so
+ * statements a lease prepares with <code>prepare(String)</code> are compiled once per connection.
+ * <p>
+ * A thread that holds the writer reads through the writer, so it sees its own uncommitted changes, and a thread
+ * that already holds a reader reuses it, so nested reads can't wait on each other for a free connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Milliseconds a statement waits for a lock held by another process before failing with SQLITE_BUSY */
+    private static final int BUSY_TIMEOUT = 5000;
+
+    /** Seconds a thread waits for a free reader before giving up */
+    private static final long BORROW_TIMEOUT = 30;
+
+    /** Connection with the statements prepared on it */
+    private static class Pooled {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private int depth;
+
+        private Pooled(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * The <code>Lease</code> class gives access to a borrowed connection until it is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final Pooled pooled;
+        private final boolean writer;
+        private boolean closed;
+
+        private Lease(Pooled pooled, boolean writer) {
+            this.pooled = pooled;
+            this.writer = writer;
+        }
+
+        /** Returns the borrowed connection. It must not be closed by the caller. */
+        public Connection getConnection() {
+            return pooled.connection;
+        }
+
+        /**
+         * Returns a statement prepared on the borrowed connection, preparing it only the first time the connection
+         * sees the query. The statement must not be closed by the caller, but its result sets must be.
+         *
+         * @param query the SQL of the statement
+         * @return the prepared statement
+         * @throws SQLException if the statement couldn't be prepared
+         */
+        public PreparedStatement prepare(String query) throws SQLException {
+            PreparedStatement statement = pooled.statements.get(query);
+            if (statement == null || statement.isClosed()) {
+                statement = pooled.connection.prepareStatement(query);
+                pooled.statements.put(query, statement);
+            }
+
+            statement.clearParameters();
+            return statement;
+        }
+
+        /** Returns the connection to the pool. */
+        @Override
+        public void close() {
+            if (closed)
+                return;
+
+            closed = true;
+            if (writer)
+                giveBackWriter();
+            else
+                giveBackReader(pooled);
+        }
+    }
+
+    /** The only connection that changes the database */
+    private final Pooled writer;
+
+    /** Lock held by the thread borrowing the writer */
+    private final ReentrantLock writerLock = new ReentrantLock();
+
+    /** Read only connections that aren't borrowed */
+    private final BlockingQueue<Pooled> idleReaders;
+
+    /** Every read only connection of the pool */
+    private final List<Pooled> readers = new ArrayList<>();
+
+    /** Reader borrowed by the current thread */
+    private final ThreadLocal<Pooled> heldReader = new ThreadLocal<>();
+
+    /**
+     * Opens the writer and the readers of a database and switches it to WAL mode.
+     *
+     * @param url the JDBC url of the SQLite database
+     * @param readerCount the number of read only connections
+     * @throws SQLException if a connection couldn't be opened or configured
+     */
+    public ConnectionPool(String url, int readerCount) throws SQLException {
+        if (readerCount < 1)
+            throw new IllegalArgumentException("Pool needs at least one reader: " + readerCount);
+
+        writer = new Pooled(open(url, false));
+        idleReaders = new ArrayBlockingQueue<>(readerCount);
+
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                Pooled reader = new Pooled(open(url, true));
+                readers.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a connection and sets the pragmas of the pool on it.
+     *
+     * @param url the JDBC url of the SQLite database
+     * @param readOnly true to refuse changes on the connection
+     * @return the configured connection
+     * @throws SQLException if the connection couldn't be opened or configured
+     */
+    private static Connection open(String url, boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT);
+
+            // WAL is stored in the database file, the writer sets it before any reader uses the database
+            if (!readOnly)
+                statement.execute("PRAGMA journal_mode = WAL");
+
+            // In WAL mode a commit only syncs at checkpoints, a crash can lose the last commits but not corrupt the file
+            statement.execute("PRAGMA synchronous = NORMAL");
+
+            if (readOnly)
+                statement.execute("PRAGMA query_only = ON");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        return connection;
+    }
+
+    /**
+     * Borrows the writer, waiting while another thread holds it. The lease is reentrant, a thread holding the
+     * writer can borrow it again, for example to group several writes into one transaction.
+     *
+     * @return the lease of the writer
+     */
+    public Lease write() {
+        writerLock.lock();
+        return new Lease(writer, true);
+    }
+
+    /**
+     * Borrows a read only connection, or the writer if the current thread holds it.
+     *
+     * @return the lease of the connection
+     * @throws SQLException if no reader became free in time, or the thread was interrupted while waiting
+     */
+    public Lease read() throws SQLException {
+        if (writerLock.isHeldByCurrentThread())
+            return write();
+
+        Pooled reader = heldReader.get();
+        if (reader == null) {
+            try {
+                reader = idleReaders.poll(BORROW_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (reader == null)
+                throw new SQLException("No database connection became free within " + BORROW_TIMEOUT + " seconds");
+
+            heldReader.set(reader);
+        }
+
+        reader.depth++;
+        return new Lease(reader, false);
+    }
+
+    /** Returns the number of read only connections that aren't borrowed. */
+    public int getIdleReaders() {
+        return idleReaders.size();
+    }
+
+    /** Releases the writer lock of the current thread. */
+    private void giveBackWriter() {
+        writerLock.unlock();
+    }
+
+    /** Returns a reader to the queue once the outermost lease of the current thread is closed. */
+    private void giveBackReader(Pooled reader) {
+        if (--reader.depth > 0)
+            return;
+
+        heldReader.remove();
+        idleReaders.add(reader);
+    }
+
+    /**
+     * Closes every connection of the pool with its prepared statements. Leases must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        List<Pooled> all = new ArrayList<>(readers);
+        if (writer != null)
+            all.add(writer);
+
+        for (Pooled pooled : all) {
+            try {
+                for (PreparedStatement statement : pooled.statements.values())
+                    statement.close();
+                pooled.connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,25 +1,120 @@
 package com.example.textversioncontrol.managers;
 
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * The <code>DatabaseManager</code> class manages connecting, editing, and reading of the FilesPathways database table.
  * The database pathways table consists of five columns: file_name, directory_pathway, copy_pathway, tracking_pathway, git_pathway.
+ * Rows have an integer id, and file_name and tracking_pathway are unique indexes, so lookups by name are index searches.
+ * The fingerprints table stores the last scanned size, modified time, file key, content hash and scan time of each
+ * tracked file.
+ * <p>
+ * Every query borrows a connection from a <code>ConnectionPool</code>: reads use one of the pool's read only
+ * connections and changes the single writer, so scans, commits and the screens can use the database at the same time.
  */
 public class DatabaseManager {
 
     /** Commands for what pathway to extract from the database. */
     public enum Columns {FILE_NAME, DIRECTORY_PATHWAY, COPY_PATHWAY, TRACKING_PATHWAY, REPO_PATHWAY}
 
-    /** Connection to the SQL database */
-    public static Connection connection = null;
+    /** Changes to the database that run together in one transaction */
+    @FunctionalInterface
+    public interface Work {
+        void run() throws SQLException;
+    }
+
+    /**
+     * The <code>Batch</code> class collects row changes from any number of threads and writes them together in one
+     * transaction, so a scan over thousands of files syncs the database once per batch instead of once per file.
+     * The batch writes itself once it holds <code>limit</code> changes, the rest is written by <code>commit()</code>.
+     */
+    public static class Batch {
+
+        /** Changes waiting to be written, in the order they were added */
+        private final ArrayList<Work> changes = new ArrayList<>();
+
+        /** Number of changes that makes the batch write itself */
+        private final int limit;
+
+        /**
+         * Creates an empty batch.
+         *
+         * @param limit the number of changes that makes the batch write itself
+         */
+        public Batch(int limit) {
+            if (limit < 1)
+                throw new IllegalArgumentException("Batch limit must be at least 1: " + limit);
+            this.limit = limit;
+        }
+
+        /**
+         * Adds a change to the batch, writing the batch if it's full.
+         *
+         * @param change the change to write with the others
+         * @throws SQLException if the full batch couldn't be written
+         */
+        public void add(Work change) throws SQLException {
+            ArrayList<Work> full = null;
+            synchronized (this) {
+                changes.add(change);
+                if (changes.size() >= limit)
+                    full = take();
+            }
+
+            if (full != null)
+                write(full);
+        }
+
+        /** Returns the number of changes that weren't written yet. */
+        public synchronized int size() {
+            return changes.size();
+        }
+
+        /**
+         * Writes the changes of the batch in one transaction.
+         *
+         * @throws SQLException if the changes couldn't be written, none of them are kept then
+         */
+        public void commit() throws SQLException {
+            ArrayList<Work> pending;
+            synchronized (this) {
+                pending = take();
+            }
+
+            if (!pending.isEmpty())
+                write(pending);
+        }
+
+        /** Removes the waiting changes from the batch, must be called while holding its lock. */
+        private ArrayList<Work> take() {
+            ArrayList<Work> taken = new ArrayList<>(changes);
+            changes.clear();
+            return taken;
+        }
+
+        /** Writes changes in one transaction. */
+        private static void write(ArrayList<Work> changes) throws SQLException {
+            transaction(() -> {
+                for (Work change : changes)
+                    change.run();
+            });
+        }
+    }
+
+    /** Connections to the SQL database */
+    private static ConnectionPool pool = null;
 
     /**
-     *  Establishes a connection with the SQL database through the <code>connection</code> object.
+     *  Establishes the connections to the SQL database, which are borrowed with <code>read()</code> and <code>write()</code>.
      *  Must be called before using any other method in class.
      *
      * @throws ClassNotFoundException if JDBC driver can't be found
@@ -30,9 +125,66 @@ public class DatabaseManager {
         String url = "jdbc:sqlite:" + Paths.get("").toAbsolutePath().resolve("src/main/resources/FilePathways.db");
         url = url.replace("\\","/");
 
-        // Connect to database
+        // Connect to database, replacing the connections of an earlier call
         Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection(url);
+        if (pool != null)
+            pool.close();
+        pool = new ConnectionPool(url, Integer.getInteger("textversioncontrol.database.readers", 4));
+
+        // Bring the tables and indexes up to the current schema and load the tracked files into memory
+        SchemaMigrations.migrate();
+        FileRegistry.load();
+    }
+
+    /**
+     * Borrows a read only connection of the pool, or the writer if the current thread holds it.
+     *
+     * @return the lease of the connection, which must be closed
+     * @throws SQLException if no connection became free
+     */
+    public static ConnectionPool.Lease read() throws SQLException {
+        return pool.read();
+    }
+
+    /**
+     * Borrows the writer connection of the pool, waiting while another thread holds it.
+     *
+     * @return the lease of the writer, which must be closed
+     */
+    public static ConnectionPool.Lease write() {
+        return pool.write();
+    }
+
+    /**
+     * Runs <code>work</code> as one transaction on the writer, so its changes are synced to disk once and other
+     * threads see all of them or none. Called inside another transaction, the work joins the outer transaction.
+     *
+     * @param work the changes to make
+     * @throws SQLException if a change failed, every change of the transaction is rolled back then
+     */
+    public static void transaction(Work work) throws SQLException {
+        try (ConnectionPool.Lease lease = write()) {
+            Connection writer = lease.getConnection();
+            if (!writer.getAutoCommit()) {
+                work.run();
+                return;
+            }
+
+            // Stage the registry changes of the transaction until it is committed
+            writer.setAutoCommit(false);
+            FileRegistry.begin();
+            try {
+                work.run();
+                writer.commit();
+                FileRegistry.commit();
+            } catch (SQLException | RuntimeException e) {
+                writer.rollback();
+                throw e;
+            } finally {
+                FileRegistry.rollback();
+                writer.setAutoCommit(true);
+            }
+        }
     }
 
     /**
@@ -53,7 +205,30 @@ public class DatabaseManager {
                 + ");";
 
         // Execute the query statement to add table columns
-        try(Statement statement = connection.createStatement();){
+        try(ConnectionPool.Lease lease = write(); Statement statement = lease.getConnection().createStatement()){
+            statement.execute(query);
+        }
+    }
+
+    /**
+     * Creates the fingerprints table used by <code>VersionManager.updateTextFiles()</code> to skip files whose
+     * size, modified time, and file key haven't changed since the last scan.
+     *
+     * @throws SQLException if database access error occurs
+     */
+    public static void createFingerprintTable() throws SQLException {
+
+        // SQL query command to be executed
+        String query = "CREATE TABLE IF NOT EXISTS fingerprints ("
+                + "	file_name text PRIMARY KEY,"
+                + "	size integer NOT NULL,"
+                + "	modified_time integer NOT NULL,"
+                + "	file_key text,"
+                + "	content_hash text NOT NULL"
+                + ");";
+
+        // Execute the query statement to create the table
+        try(ConnectionPool.Lease lease = write(); Statement statement = lease.getConnection().createStatement()){
             statement.execute(query);
         }
     }
@@ -73,8 +248,9 @@ public class DatabaseManager {
         // Query statement
         String query = "INSERT INTO pathways (file_name, directory_pathway, copy_pathway, tracking_pathway, repo_pathway) VALUES (?, ?, ?, ?, ?)";
 
-        // Create the prepared statement
-        try(PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        // Load the cached prepared statement
+        try(ConnectionPool.Lease lease = write()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
 
             // Insert values into statement
             preparedStatement.setString(1, fileName);
@@ -85,6 +261,7 @@ public class DatabaseManager {
 
             // Execute statement
             preparedStatement.executeUpdate();
+            FileRegistry.put(new FileRecord(fileName, directoryPathway, copyPathway, trackingPathway, repoPathway, null));
         }
     }
 
@@ -99,15 +276,23 @@ public class DatabaseManager {
         // Query statement
         String query = "DELETE FROM pathways WHERE file_name = ?";
 
-        // Create the prepared statement
-        try(PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        // Delete the record, its fingerprint and its indexed history in one transaction
+        transaction(() -> {
+            try(ConnectionPool.Lease lease = write()) {
+                PreparedStatement preparedStatement = lease.prepare(query);
 
-            // Insert fileName into statement
-            preparedStatement.setString(1, fileName);
+                // Insert fileName into statement
+                preparedStatement.setString(1, fileName);
 
-            // Execute statement
-            preparedStatement.executeUpdate();
-        }
+                // Execute statement
+                preparedStatement.executeUpdate();
+                FileRegistry.remove(fileName);
+            }
+
+            deleteFingerprint(fileName);
+            CommitIndex.delete(fileName);
+            SearchIndex.delete(fileName);
+        });
     }
 
     /**
@@ -120,11 +305,18 @@ public class DatabaseManager {
         // Query Statement
         String query = "DELETE FROM pathways";
 
-        // Create Statement
-        try(Statement statement = connection.createStatement()){
-            // Execute Query
-            statement.execute(query);
-        }
+        // Clear the records, fingerprints and indexed history in one transaction
+        transaction(() -> {
+            try(ConnectionPool.Lease lease = write(); Statement statement = lease.getConnection().createStatement()){
+                // Execute Query
+                statement.execute(query);
+                statement.execute("DELETE FROM fingerprints");
+                FileRegistry.clear();
+            }
+
+            CommitIndex.clear();
+            SearchIndex.clear();
+        });
     }
 
     /**
@@ -138,84 +330,58 @@ public class DatabaseManager {
         String query = "DELETE FROM pathways WHERE file_name IS NULL;";
 
         // Execute statement
-        try(Statement statement = connection.createStatement()){
+        try(ConnectionPool.Lease lease = write(); Statement statement = lease.getConnection().createStatement()){
             statement.executeUpdate(query);
         }
     }
 
     /**
-     * Returns an entry based on <code>fileName</code> and <code>column</code> arguments.
+     * Returns an entry based on <code>fileName</code> and <code>column</code> arguments. Callers that need more than
+     * one column of a file should read its whole record with <code>FileRegistry.get</code> instead.
      *
      * @param fileName the file to extract pathway from.
      * @param column the pathway to be extracted from SQL table.
      * @throws SQLException if the prepared statement or result set have trouble accessing the database.
      * @throws FileNotFoundException if no entry with fileName was found.
-     * @return the value of the entry
+     * @return the value of the entry, null if no file with the name is tracked
      */
     public static String getEntry(String fileName, Columns column) throws SQLException, FileNotFoundException {
 
-        // Pathway based on what was Columns value was passed
-        String requestedColumn = switch (column) {
-            case FILE_NAME -> "file_name";
-            case DIRECTORY_PATHWAY -> "directory_pathway";
-            case COPY_PATHWAY -> "copy_pathway";
-            case TRACKING_PATHWAY -> "tracking_pathway";
-            case REPO_PATHWAY -> "repo_pathway";
-        };
-
-        // Query statement
-        String query = "SELECT " + requestedColumn +  " FROM pathways WHERE file_name = ?";
-
-        // Initialize result set
-        ResultSet resultSet = null;
-
-        try(PreparedStatement preparedStatement = connection.prepareStatement(query)){
-            // Insert filename into statement
-            preparedStatement.setString(1, fileName);
-
-            // Get the result set of the query
-            resultSet = preparedStatement.executeQuery();
+        // Look the record up in memory and pick the requested column
+        FileRecord record = FileRegistry.get(fileName);
+        return record == null ? null : getColumn(record, column);
+    }
 
-            // Return the first result from the result set
-            return resultSet.getString(requestedColumn);
-        }
-        finally{
-            if(resultSet != null)
-                resultSet.close();
-        }
+    /**
+     * Returns the value of a column of a record.
+     *
+     * @param record the record to read
+     * @param column the column to return
+     * @return the value of the column
+     */
+    private static String getColumn(FileRecord record, Columns column) {
+        return switch (column) {
+            case FILE_NAME -> record.getFileName();
+            case DIRECTORY_PATHWAY -> record.getDirectoryPathway();
+            case COPY_PATHWAY -> record.getCopyPathway();
+            case TRACKING_PATHWAY -> record.getTrackingPathway();
+            case REPO_PATHWAY -> record.getRepoPathway();
+        };
     }
 
     /**
      * Returns all the entries from a column from the table based on the column argument passed.
      *
      * @param column the pathway to be extracted from SQL table.
-     * @throws SQLException if the prepared statement or result set have trouble accessing the database.
-     * @return list of all found entries for that column
+     * @throws SQLException if the tracked files had to be loaded and the database couldn't be read.
+     * @return list of all found entries for that column in database order
      */
     public static ArrayList<String> getEntries(Columns column) throws SQLException {
 
-        // Store retrieved entries from database
+        // Store retrieved entries from the records in memory
         ArrayList<String> entries = new ArrayList<>();
-
-        // Column based on what column value was given
-        String requestedPathway = switch (column) {
-            case FILE_NAME ->  "file_name";
-            case DIRECTORY_PATHWAY -> "directory_pathway";
-            case COPY_PATHWAY -> "copy_pathway";
-            case TRACKING_PATHWAY -> "tracking_pathway";
-            case REPO_PATHWAY -> "repo_pathway";
-        };
-
-        // Query statement
-        String query = "SELECT " + requestedPathway +  " FROM pathways";
-
-        // Create the statement and extract the result set from the execution
-        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(query)) {
-
-            // Extract entries from the result set
-            while (resultSet.next())
-                entries.add(resultSet.getString(requestedPathway));
-        }
+        for (FileRecord record : FileRegistry.getAll())
+            entries.add(getColumn(record, column));
 
         return entries;
     }
@@ -236,14 +402,48 @@ public class DatabaseManager {
         // Create query statement
         String query = "UPDATE pathways SET " + requestedColumn + " = ? " +  "WHERE file_name = ?";
 
-        // Loading and executing the prepared statement
-        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        // Loading and executing the cached prepared statement
+        try (ConnectionPool.Lease lease = write()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+
             // Load values into statement
             preparedStatement.setString(1, value);
             preparedStatement.setString(2, fileName);
 
             // Execute query
             preparedStatement.executeUpdate();
+            FileRegistry.update(fileName, column, value);
+        }
+    }
+
+    /**
+     * Replaces every pathway of a record, including its file name, with a single statement.
+     *
+     * @param fileName the current name of the record to change
+     * @param record the new values of the record, its fingerprint is ignored
+     * @throws SQLException if database access error occurs
+     */
+    public static void updateRecord(String fileName, FileRecord record) throws SQLException {
+
+        // Query statement
+        String query = "UPDATE pathways SET file_name = ?, directory_pathway = ?, copy_pathway = ?, "
+                + "tracking_pathway = ?, repo_pathway = ? WHERE file_name = ?";
+
+        // Load the cached prepared statement
+        try (ConnectionPool.Lease lease = write()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+
+            // Load values into statement
+            preparedStatement.setString(1, record.getFileName());
+            preparedStatement.setString(2, record.getDirectoryPathway());
+            preparedStatement.setString(3, record.getCopyPathway());
+            preparedStatement.setString(4, record.getTrackingPathway());
+            preparedStatement.setString(5, record.getRepoPathway());
+            preparedStatement.setString(6, fileName);
+
+            // Execute query
+            preparedStatement.executeUpdate();
+            FileRegistry.replace(fileName, record);
         }
     }
 
@@ -253,53 +453,136 @@ public class DatabaseManager {
      * @throws SQLException if DatabaseManager encounters error attempting to get column data from the database
      */
     public static void resolvePathways() throws SQLException {
-
-        // List of database columns
-        ArrayList<String> fileNames = DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME);
-        ArrayList<String> directoryPathways = DatabaseManager.getEntries(DatabaseManager.Columns.DIRECTORY_PATHWAY);
-        ArrayList<String> copyPathways = DatabaseManager.getEntries(DatabaseManager.Columns.COPY_PATHWAY);
-        ArrayList<String> repoPathways = DatabaseManager.getEntries(DatabaseManager.Columns.REPO_PATHWAY);
-
-        // Resolve invalid directory pathways
-        for(int i = 0; i < directoryPathways.size(); i++) {
-            String pathway = directoryPathways.get(i);
-            if (!new File(pathway).exists()) {
-                try {
-                    String resolvedPathway = Paths.get("").toAbsolutePath().resolve("src/main/resources/TrackedFiles/" + Paths.get(pathway).getFileName()).toString();
-                    DatabaseManager.updateEntry(fileNames.get(i), DatabaseManager.Columns.DIRECTORY_PATHWAY, resolvedPathway);
-                }
-                catch(Exception e){
-                    e.printStackTrace();
+        Path trackedFiles = Paths.get("").toAbsolutePath().resolve("src/main/resources/TrackedFiles");
+
+        for (FileRecord record : FileRegistry.getAll()) {
+            try {
+                // Resolve invalid directory pathways
+                String directoryPathway = record.getDirectoryPathway();
+                if (!new File(directoryPathway).exists()) {
+                    directoryPathway = trackedFiles.resolve(Paths.get(directoryPathway).getFileName()).toString();
+                    updateEntry(record.getFileName(), Columns.DIRECTORY_PATHWAY, directoryPathway);
                 }
+
+                // Resolve invalid copy pathways
+                if (!new File(record.getCopyPathway()).exists())
+                    updateEntry(record.getFileName(), Columns.COPY_PATHWAY,
+                            Paths.get(directoryPathway).resolve(Paths.get(record.getCopyPathway()).getFileName()).toString());
+
+                // Resolve invalid repo pathways, refs in the shared repository aren't files once they are packed
+                String repoPathway = record.getRepoPathway();
+                if (!SharedRepository.isShared(repoPathway) && !new File(repoPathway).exists())
+                    updateEntry(record.getFileName(), Columns.REPO_PATHWAY,
+                            Paths.get(directoryPathway).resolve(Paths.get(repoPathway).getFileName()).toString());
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
-        // Resolve invalid copy pathways
-        for(int i = 0; i < copyPathways.size(); i++) {
-            String pathway = copyPathways.get(i);
-            if (!new File(pathway).exists()) {
-                try{
-                    String resolvedPathway = Paths.get("").toAbsolutePath().resolve("src/main/resources/TrackedFiles/" + Paths.get(pathway).getFileName()).toString();
-                    DatabaseManager.updateEntry(fileNames.get(i), DatabaseManager.Columns.COPY_PATHWAY, resolvedPathway);
-                }
-                catch(Exception e){
-                    e.printStackTrace();
-                }
-            }
+    }
+
+    /**
+     * Returns the fingerprints of all tracked files keyed by file name in a single query.
+     *
+     * @throws SQLException if the statement or result set have trouble accessing the database.
+     * @return map of file names to their last stored fingerprint
+     */
+    public static HashMap<String, FileFingerprint> getFingerprints() throws SQLException {
+
+        // Store retrieved fingerprints from database
+        HashMap<String, FileFingerprint> fingerprints = new HashMap<>();
+
+        // Query statement
+        String query = "SELECT file_name, size, modified_time, file_key, content_hash, scan_time FROM fingerprints";
+
+        // Create the statement and extract the result set from the execution
+        try (ConnectionPool.Lease lease = read(); ResultSet resultSet = lease.prepare(query).executeQuery()) {
+
+            // Extract fingerprints from the result set
+            while (resultSet.next())
+                fingerprints.put(resultSet.getString("file_name"), new FileFingerprint(resultSet.getLong("size"),
+                        resultSet.getLong("modified_time"), resultSet.getString("file_key"), resultSet.getString("content_hash"),
+                        resultSet.getLong("scan_time")));
         }
 
-        // Resolve invalid repo pathways
-        for(int i = 0; i < repoPathways.size(); i++) {
-            String pathway = repoPathways.get(i);
-            if (!new File(pathway).exists()) {
-                try{
-                    String resolvedPathway = Paths.get("").toAbsolutePath().resolve("src/main/resources/TrackedFiles/" + Paths.get(pathway).getFileName()).toString();
-                    DatabaseManager.updateEntry(fileNames.get(i), DatabaseManager.Columns.COPY_PATHWAY, resolvedPathway);
-                }
-                catch(Exception e){
-                    e.printStackTrace();
-                }
+        return fingerprints;
+    }
+
+    /**
+     * Returns the stored fingerprint of a single tracked file.
+     *
+     * @param fileName the file to get the fingerprint of
+     * @throws SQLException if the prepared statement or result set have trouble accessing the database.
+     * @return the stored fingerprint, null if the file has none
+     */
+    public static FileFingerprint getFingerprint(String fileName) throws SQLException {
+
+        // Query statement
+        String query = "SELECT size, modified_time, file_key, content_hash, scan_time FROM fingerprints WHERE file_name = ?";
+
+        try(ConnectionPool.Lease lease = read()){
+            PreparedStatement preparedStatement = lease.prepare(query);
+
+            // Insert filename into statement
+            preparedStatement.setString(1, fileName);
+
+            try(ResultSet resultSet = preparedStatement.executeQuery()){
+                if(!resultSet.next())
+                    return null;
+
+                return new FileFingerprint(resultSet.getLong("size"), resultSet.getLong("modified_time"),
+                        resultSet.getString("file_key"), resultSet.getString("content_hash"), resultSet.getLong("scan_time"));
             }
         }
+    }
+
+    /**
+     * Inserts or replaces the fingerprint of a tracked file.
+     *
+     * @param fileName the file the fingerprint belongs to
+     * @param fingerprint the stat information and content hash of the file
+     * @throws SQLException if database access error occurs
+     */
+    public static void updateFingerprint(String fileName, FileFingerprint fingerprint) throws SQLException {
 
+        // Query statement
+        String query = "INSERT OR REPLACE INTO fingerprints (file_name, size, modified_time, file_key, content_hash, scan_time) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+
+        // Load the cached prepared statement
+        try(ConnectionPool.Lease lease = write()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+
+            // Insert values into statement
+            preparedStatement.setString(1, fileName);
+            preparedStatement.setLong(2, fingerprint.getSize());
+            preparedStatement.setLong(3, fingerprint.getModifiedTime());
+            preparedStatement.setString(4, fingerprint.getFileKey());
+            preparedStatement.setString(5, fingerprint.getContentHash());
+            preparedStatement.setLong(6, fingerprint.getScanTime());
+
+            // Execute statement
+            preparedStatement.executeUpdate();
+            FileRegistry.putFingerprint(fileName, fingerprint);
+        }
+    }
+
+    /**
+     * Deletes the fingerprint of a file so its next scan compares the content again.
+     *
+     * @param fileName the file to delete the fingerprint of
+     * @throws SQLException if database access error occurs
+     */
+    public static void deleteFingerprint(String fileName) throws SQLException {
+
+        // Query statement
+        String query = "DELETE FROM fingerprints WHERE file_name = ?";
+
+        // Load the cached prepared statement
+        try(ConnectionPool.Lease lease = write()) {
+            PreparedStatement preparedStatement = lease.prepare(query);
+            preparedStatement.setString(1, fileName);
+            preparedStatement.executeUpdate();
+            FileRegistry.removeFingerprint(fileName);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,259 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The <code>DiffCache</code> class keeps the hunks of diffs that were already computed, keyed by the blob ids of both
+ * versions and the diff options, so flipping back to a diff that was viewed before is a lookup instead of a new diff.
+ * Blob ids name the content rather than the commit, so two commits with the same content share one entry.
+ * <p>
+ * Entries are weighed by the bytes of their hunks and the least recently used entries are evicted once the cache
+ * holds more than <code>maxBytes</code>. With a spill directory every entry is also written there as a unified diff,
+ * so entries evicted from memory, or computed in an earlier session, are read back instead of computed again.
+ */
+public class DiffCache {
+
+    /** Blob ids of both versions and the options of a diff */
+    private static final class Key {
+        private final ObjectId oldBlob;
+        private final ObjectId newBlob;
+        private final DiffOptions options;
+
+        private Key(ObjectId oldBlob, ObjectId newBlob, DiffOptions options) {
+            this.oldBlob = oldBlob == null ? ObjectId.zeroId() : oldBlob.copy();
+            this.newBlob = newBlob == null ? ObjectId.zeroId() : newBlob.copy();
+            this.options = options;
+        }
+
+        /** Returns the name of the key's spill file. */
+        private String getFileName() {
+            return oldBlob.getName() + "-" + newBlob.getName() + "-" + options.getContextLines()
+                    + (options.isIgnoreWhitespace() ? "w" : "") + ".diff";
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key key))
+                return false;
+
+            return oldBlob.equals(key.oldBlob) && newBlob.equals(key.newBlob) && options.equals(key.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(oldBlob, newBlob, options);
+        }
+    }
+
+    /** Hunks with the bytes they are weighed at */
+    private static final class Entry {
+        private final List<DiffHunk> hunks;
+        private final long weight;
+
+        private Entry(List<DiffHunk> hunks, long weight) {
+            this.hunks = hunks;
+            this.weight = weight;
+        }
+    }
+
+    /** Cached diffs ordered from least to most recently used */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Bytes of hunks kept in memory before the least recently used diffs are evicted */
+    private final long maxBytes;
+
+    /** Directory diffs are written to, null to keep them in memory only */
+    private final Path spillDirectory;
+
+    /** Bytes of hunks currently kept in memory */
+    private long bytes;
+
+    /**
+     * Creates a diff cache.
+     *
+     * @param maxBytes bytes of hunks kept in memory before the least recently used diffs are evicted
+     * @param spillDirectory directory diffs are also written to and read back from, null to keep them in memory only
+     */
+    public DiffCache(long maxBytes, Path spillDirectory) {
+        this.maxBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns the hunks of a diff computed before, reading them back from the spill directory if they were evicted
+     * from memory.
+     *
+     * @param oldBlob blob id of the old version, null for an empty version
+     * @param newBlob blob id of the new version, null for an empty version
+     * @param options the options the diff is computed with
+     * @return the hunks of the diff, null if it isn't cached
+     */
+    public List<DiffHunk> get(ObjectId oldBlob, ObjectId newBlob, DiffOptions options) {
+        Key key = new Key(oldBlob, newBlob, options);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null)
+                return entry.hunks;
+        }
+
+        if (spillDirectory == null)
+            return null;
+
+        // Read a diff evicted from memory or written by an earlier session
+        Path spillFile = spillDirectory.resolve(key.getFileName());
+        List<DiffHunk> hunks;
+        try {
+            hunks = parse(Files.readAllBytes(spillFile));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            spillFile.toFile().delete();
+            return null;
+        }
+
+        keep(key, hunks);
+        return hunks;
+    }
+
+    /**
+     * Caches the hunks of a diff. Diffs weighing more than the whole cache aren't kept in memory.
+     *
+     * @param oldBlob blob id of the old version, null for an empty version
+     * @param newBlob blob id of the new version, null for an empty version
+     * @param options the options the diff was computed with
+     * @param hunks the hunks of the diff
+     * @throws IOException if the diff couldn't be written to the spill directory
+     */
+    public void put(ObjectId oldBlob, ObjectId newBlob, DiffOptions options, List<DiffHunk> hunks) throws IOException {
+        Key key = new Key(oldBlob, newBlob, options);
+        List<DiffHunk> kept = List.copyOf(hunks);
+        keep(key, kept);
+
+        if (spillDirectory == null)
+            return;
+
+        // Write to a temporary file first, so a reader never sees half a diff
+        Files.createDirectories(spillDirectory);
+        Path spillFile = spillDirectory.resolve(key.getFileName());
+        Path temporary = Files.createTempFile(spillDirectory, "diff", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                for (DiffHunk hunk : kept)
+                    out.write(hunk.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(temporary, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /** Removes every diff from memory. Spilled diffs are kept, they stay valid as long as their blobs exist. */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** Returns the bytes of hunks currently kept in memory. */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** Returns the number of diffs currently kept in memory. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Keeps hunks in memory and evicts the least recently used diffs until the cache fits. */
+    private synchronized void keep(Key key, List<DiffHunk> hunks) {
+        long weight = weigh(hunks);
+        if (weight > maxBytes)
+            return;
+
+        Entry previous = entries.put(key, new Entry(hunks, weight));
+        if (previous != null)
+            bytes -= previous.weight;
+        bytes += weight;
+
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Estimates the heap bytes held by hunks: two bytes per character plus the overhead of every string and hunk.
+     *
+     * @param hunks the hunks to weigh
+     * @return the estimated bytes
+     */
+    static long weigh(List<DiffHunk> hunks) {
+        long weight = 64;
+        for (DiffHunk hunk : hunks) {
+            weight += 64;
+            for (String line : hunk.getLines())
+                weight += 48 + 2L * line.length();
+        }
+
+        return weight;
+    }
+
+    /**
+     * Reads hunks back from unified diff text written by <code>put</code>.
+     *
+     * @param content the text of a spill file
+     * @return the hunks of the text
+     * @throws RuntimeException if the text isn't a unified diff written by <code>put</code>
+     */
+    private static List<DiffHunk> parse(byte[] content) {
+        ArrayList<DiffHunk> hunks = new ArrayList<>();
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\n", -1);
+
+        int i = 0;
+        while (i < lines.length && !lines[i].isEmpty()) {
+            String header = lines[i++];
+            if (!header.startsWith("@@ -") || !header.endsWith(" @@"))
+                throw new IllegalArgumentException("Not a hunk header: " + header);
+
+            String ranges = header.substring(4, header.length() - 3);
+            String[] oldRange = ranges.substring(0, ranges.indexOf(" +")).split(",");
+            String[] newRange = ranges.substring(ranges.indexOf(" +") + 2).split(",");
+            int oldCount = Integer.parseInt(oldRange[1]);
+            int newCount = Integer.parseInt(newRange[1]);
+
+            // A hunk has its context and removed lines from the old side and its added lines from the new side
+            ArrayList<String> hunkLines = new ArrayList<>();
+            int oldSeen = 0, newSeen = 0;
+            while (oldSeen < oldCount || newSeen < newCount) {
+                String line = lines[i++];
+                if (line.isEmpty())
+                    throw new IllegalArgumentException("Hunk line without a kind");
+                if (line.charAt(0) != '+')
+                    oldSeen++;
+                if (line.charAt(0) != '-')
+                    newSeen++;
+                hunkLines.add(line);
+            }
+
+            hunks.add(new DiffHunk(Integer.parseInt(oldRange[0]), oldCount, Integer.parseInt(newRange[0]), newCount, hunkLines));
+        }
+
+        return List.copyOf(hunks);
+    }
+}
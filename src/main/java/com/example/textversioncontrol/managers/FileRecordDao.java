@@ -0,0 +1,93 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * The <code>FileRecordDao</code> class reads complete rows of the pathways table, joined with the file's fingerprint,
+ * instead of one column at a time. A scan reads every record with one query rather than one query per column, and
+ * the columns of a file can't get out of line with each other the way separately read column lists can.
+ * <p>
+ * The lookup by name runs on a statement cached by the connection it reads from, so frequent lookups from the
+ * tracking daemon and the history screens don't prepare it again.
+ */
+public abstract class FileRecordDao {
+
+    /** Columns of a record, in the order <code>read</code> expects them */
+    private static final String SELECT = "SELECT p.file_name, p.directory_pathway, p.copy_pathway, p.tracking_pathway, "
+            + "p.repo_pathway, f.size, f.modified_time, f.file_key, f.content_hash, f.scan_time "
+            + "FROM pathways p LEFT JOIN fingerprints f ON f.file_name = p.file_name";
+
+    /**
+     * Reads the record of a tracked file.
+     *
+     * @param fileName the name of the tracked file
+     * @return the record, null if no file with the name is tracked
+     * @throws SQLException if the database couldn't be read
+     */
+    public static FileRecord get(String fileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement statement = lease.prepare(SELECT + " WHERE p.file_name = ?");
+            statement.setString(1, fileName);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? read(resultSet) : null;
+            }
+        }
+    }
+
+    /**
+     * Reads the records of every tracked file in a single query.
+     *
+     * @return the records in database order
+     * @throws SQLException if the database couldn't be read
+     */
+    public static ArrayList<FileRecord> getAll() throws SQLException {
+        ArrayList<FileRecord> records = new ArrayList<>();
+        forEach(records::add);
+        return records;
+    }
+
+    /** Receives the records of a streamed query. */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(FileRecord record) throws SQLException;
+    }
+
+    /**
+     * Streams the records of every tracked file to <code>visitor</code> as they are read, without holding all of
+     * them in memory. The visitor must not change the pathways table while the records are streamed.
+     *
+     * @param visitor receives every record in database order
+     * @throws SQLException if the database couldn't be read, or the visitor failed
+     */
+    public static void forEach(RecordVisitor visitor) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.read();
+             ResultSet resultSet = lease.prepare(SELECT + " ORDER BY p.id").executeQuery()) {
+            while (resultSet.next())
+                visitor.visit(read(resultSet));
+        }
+    }
+
+    /**
+     * Reads the record at the current row of a result set.
+     *
+     * @param resultSet the result set positioned at a row
+     * @return the record of the row
+     * @throws SQLException if the row couldn't be read
+     */
+    private static FileRecord read(ResultSet resultSet) throws SQLException {
+        String contentHash = resultSet.getString("content_hash");
+        FileFingerprint fingerprint = contentHash == null ? null : new FileFingerprint(resultSet.getLong("size"),
+                resultSet.getLong("modified_time"), resultSet.getString("file_key"), contentHash, resultSet.getLong("scan_time"));
+
+        return new FileRecord(resultSet.getString("file_name"), resultSet.getString("directory_pathway"),
+                resultSet.getString("copy_pathway"), resultSet.getString("tracking_pathway"),
+                resultSet.getString("repo_pathway"), fingerprint);
+    }
+}
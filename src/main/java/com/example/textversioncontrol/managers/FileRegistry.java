@@ -0,0 +1,326 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>FileRegistry</code> class keeps the records of every tracked file in memory, so the screens and the
+ * tracking daemon look files up with a hash lookup instead of a query. The records are loaded once when the database
+ * is connected and kept current by <code>DatabaseManager</code>, which passes every change of the pathways and
+ * fingerprints tables on after writing it.
+ * <p>
+ * Pathways rarely change, so they are kept in an immutable snapshot that is replaced on every change and read
+ * without locking. Fingerprints change on every scan, so they are kept in a concurrent map instead and joined with
+ * the pathways when a record is read, the same way the database joins the two tables.
+ * <p>
+ * Changes made inside a <code>DatabaseManager.transaction</code> are staged for the thread running it and published
+ * at once when it commits, so the snapshot is copied once per transaction instead of once per change, and other
+ * threads never see changes that may still be rolled back. The thread running the transaction reads its own changes.
+ */
+public abstract class FileRegistry {
+
+    /** Records without fingerprints in database order, and the same records by file name */
+    private record Snapshot(List<FileRecord> records, Map<String, FileRecord> byName) {
+    }
+
+    /** Pathways of the tracked files, null until loaded */
+    private static volatile Snapshot snapshot;
+
+    /** Fingerprints by file name, null until loaded */
+    private static volatile Map<String, FileFingerprint> fingerprints;
+
+    /** Changes of the transaction running on a thread, not yet visible to other threads */
+    private static final class Staged {
+
+        /** Records without fingerprints in database order, null until the transaction changes a record */
+        private LinkedHashMap<String, FileRecord> records;
+
+        /** Fingerprints written by file name, null for removed fingerprints */
+        private final Map<String, FileFingerprint> fingerprints = new HashMap<>();
+
+        /** Whether the tables were cleared */
+        private boolean cleared;
+    }
+
+    /** Changes of the transaction running on the current thread, null outside of transactions */
+    private static final ThreadLocal<Staged> staged = new ThreadLocal<>();
+
+    /**
+     * Reads every record and fingerprint from the database, replacing what the registry held.
+     *
+     * @throws SQLException if the database couldn't be read
+     */
+    public static synchronized void load() throws SQLException {
+        List<FileRecord> records = new ArrayList<>();
+        for (FileRecord record : FileRecordDao.getAll())
+            records.add(withFingerprint(record, null));
+
+        fingerprints = new ConcurrentHashMap<>(DatabaseManager.getFingerprints());
+        snapshot = createSnapshot(records);
+    }
+
+    /**
+     * Returns the record of a tracked file.
+     *
+     * @param fileName the name of the tracked file
+     * @return the record with its fingerprint, null if no file with the name is tracked
+     * @throws SQLException if the registry had to be loaded and the database couldn't be read
+     */
+    public static FileRecord get(String fileName) throws SQLException {
+        Staged changes = staged.get();
+        FileRecord record = changes != null && changes.records != null ? changes.records.get(fileName)
+                : getSnapshot().byName.get(fileName);
+        return record == null ? null : withFingerprint(record, getFingerprint(changes, fileName));
+    }
+
+    /**
+     * Returns the records of every tracked file.
+     *
+     * @return the records with their fingerprints in database order
+     * @throws SQLException if the registry had to be loaded and the database couldn't be read
+     */
+    public static ArrayList<FileRecord> getAll() throws SQLException {
+        Staged changes = staged.get();
+        Collection<FileRecord> records = changes != null && changes.records != null ? changes.records.values()
+                : getSnapshot().records;
+
+        ArrayList<FileRecord> all = new ArrayList<>(records.size());
+        for (FileRecord record : records)
+            all.add(withFingerprint(record, getFingerprint(changes, record.getFileName())));
+
+        return all;
+    }
+
+    /** Returns the number of tracked files. */
+    public static int size() throws SQLException {
+        Staged changes = staged.get();
+        return changes != null && changes.records != null ? changes.records.size() : getSnapshot().records.size();
+    }
+
+    /** Starts staging the changes of a transaction on the current thread. */
+    static void begin() {
+        staged.set(new Staged());
+    }
+
+    /** Publishes the changes staged by the transaction on the current thread after it was committed. */
+    static synchronized void commit() {
+        Staged changes = staged.get();
+        staged.remove();
+        if (changes == null || snapshot == null)
+            return;
+
+        if (changes.records != null)
+            snapshot = createSnapshot(new ArrayList<>(changes.records.values()));
+
+        // Replace the fingerprints only when they were cleared, otherwise apply the changed ones
+        Map<String, FileFingerprint> current = changes.cleared ? new ConcurrentHashMap<>() : fingerprints;
+        changes.fingerprints.forEach((fileName, fingerprint) -> {
+            if (fingerprint == null)
+                current.remove(fileName);
+            else
+                current.put(fileName, fingerprint);
+        });
+        fingerprints = current;
+    }
+
+    /** Drops the changes staged by the transaction on the current thread after it was rolled back. */
+    static void rollback() {
+        staged.remove();
+    }
+
+    /** Adds the record of a file that was inserted into the database. */
+    static synchronized void put(FileRecord record) {
+        if (snapshot == null)
+            return;
+
+        Staged changes = staged.get();
+        if (changes != null) {
+            getRecords(changes).put(record.getFileName(), withFingerprint(record, null));
+            return;
+        }
+
+        List<FileRecord> records = new ArrayList<>(snapshot.records);
+        records.add(withFingerprint(record, null));
+        snapshot = createSnapshot(records);
+    }
+
+    /** Replaces the record of a file that was updated in the database, the new record may have a new name. */
+    static synchronized void replace(String fileName, FileRecord record) {
+        if (snapshot == null)
+            return;
+
+        Staged changes = staged.get();
+        if (changes != null) {
+            replace(getRecords(changes), fileName, withFingerprint(record, null));
+            return;
+        }
+
+        List<FileRecord> records = new ArrayList<>(snapshot.records);
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i).getFileName().equals(fileName))
+                records.set(i, withFingerprint(record, null));
+        }
+        snapshot = createSnapshot(records);
+    }
+
+    /** Changes one column of a record that was updated in the database. */
+    static synchronized void update(String fileName, DatabaseManager.Columns column, String value) {
+        if (snapshot == null)
+            return;
+
+        Staged changes = staged.get();
+        FileRecord record = changes != null && changes.records != null ? changes.records.get(fileName)
+                : snapshot.byName.get(fileName);
+        if (record == null)
+            return;
+
+        replace(fileName, new FileRecord(
+                column == DatabaseManager.Columns.FILE_NAME ? value : record.getFileName(),
+                column == DatabaseManager.Columns.DIRECTORY_PATHWAY ? value : record.getDirectoryPathway(),
+                column == DatabaseManager.Columns.COPY_PATHWAY ? value : record.getCopyPathway(),
+                column == DatabaseManager.Columns.TRACKING_PATHWAY ? value : record.getTrackingPathway(),
+                column == DatabaseManager.Columns.REPO_PATHWAY ? value : record.getRepoPathway(), null));
+    }
+
+    /** Removes the record of a file that was deleted from the database. */
+    static synchronized void remove(String fileName) {
+        if (snapshot == null)
+            return;
+
+        Staged changes = staged.get();
+        if (changes != null) {
+            getRecords(changes).remove(fileName);
+            return;
+        }
+
+        List<FileRecord> records = new ArrayList<>(snapshot.records);
+        records.removeIf(record -> record.getFileName().equals(fileName));
+        snapshot = createSnapshot(records);
+    }
+
+    /** Stores the fingerprint written to the database for a file. */
+    static void putFingerprint(String fileName, FileFingerprint fingerprint) {
+        Staged changes = staged.get();
+        if (changes != null) {
+            changes.fingerprints.put(fileName, fingerprint);
+            return;
+        }
+
+        Map<String, FileFingerprint> current = fingerprints;
+        if (current != null)
+            current.put(fileName, fingerprint);
+    }
+
+    /** Removes the fingerprint deleted from the database for a file. */
+    static void removeFingerprint(String fileName) {
+        Staged changes = staged.get();
+        if (changes != null) {
+            changes.fingerprints.put(fileName, null);
+            return;
+        }
+
+        Map<String, FileFingerprint> current = fingerprints;
+        if (current != null)
+            current.remove(fileName);
+    }
+
+    /** Empties the registry after the database tables were cleared. */
+    static synchronized void clear() {
+        if (snapshot == null)
+            return;
+
+        Staged changes = staged.get();
+        if (changes != null) {
+            changes.records = new LinkedHashMap<>();
+            changes.fingerprints.clear();
+            changes.cleared = true;
+            return;
+        }
+
+        fingerprints = new ConcurrentHashMap<>();
+        snapshot = createSnapshot(List.of());
+    }
+
+    /**
+     * Returns the current snapshot, loading the registry first if it wasn't loaded yet.
+     *
+     * @return the snapshot
+     * @throws SQLException if the database couldn't be read
+     */
+    private static Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (FileRegistry.class) {
+                if (snapshot == null)
+                    load();
+                current = snapshot;
+            }
+        }
+
+        return current;
+    }
+
+    /** Returns the records staged by a transaction, copying the snapshot the first time the transaction changes one. */
+    private static LinkedHashMap<String, FileRecord> getRecords(Staged changes) {
+        if (changes.records == null) {
+            changes.records = new LinkedHashMap<>();
+            for (FileRecord record : snapshot.records)
+                changes.records.put(record.getFileName(), record);
+        }
+
+        return changes.records;
+    }
+
+    /** Replaces a staged record, keeping its position when the new record has a new name. */
+    private static void replace(LinkedHashMap<String, FileRecord> records, String fileName, FileRecord record) {
+        if (!records.containsKey(fileName))
+            return;
+
+        if (fileName.equals(record.getFileName())) {
+            records.put(fileName, record);
+            return;
+        }
+
+        List<FileRecord> ordered = new ArrayList<>(records.values());
+        records.clear();
+        for (FileRecord current : ordered) {
+            FileRecord kept = current.getFileName().equals(fileName) ? record : current;
+            records.put(kept.getFileName(), kept);
+        }
+    }
+
+    /** Returns the fingerprint of a file, as staged by a transaction if it changed it. */
+    private static FileFingerprint getFingerprint(Staged changes, String fileName) {
+        if (changes != null && changes.fingerprints.containsKey(fileName))
+            return changes.fingerprints.get(fileName);
+        if (changes != null && changes.cleared)
+            return null;
+
+        return fingerprints.get(fileName);
+    }
+
+    /** Creates an immutable snapshot of records. */
+    private static Snapshot createSnapshot(List<FileRecord> records) {
+        Map<String, FileRecord> byName = new HashMap<>();
+        for (FileRecord record : records)
+            byName.put(record.getFileName(), record);
+
+        return new Snapshot(Collections.unmodifiableList(new ArrayList<>(records)), Collections.unmodifiableMap(byName));
+    }
+
+    /** Returns a record with the same pathways as <code>record</code> and the given fingerprint. */
+    private static FileRecord withFingerprint(FileRecord record, FileFingerprint fingerprint) {
+        return new FileRecord(record.getFileName(), record.getDirectoryPathway(), record.getCopyPathway(),
+                record.getTrackingPathway(), record.getRepoPathway(), fingerprint);
+    }
+}
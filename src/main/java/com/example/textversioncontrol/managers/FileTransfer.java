@@ -0,0 +1,173 @@
+package com.example.textversioncontrol.managers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * The <code>FileTransfer</code> class compares and copies tracked files without pulling their content through
+ * heap buffers. Large files are compared through reusable direct buffers and copied with
+ * <code>FileChannel.transferTo</code>, so scanning multi-gigabyte files doesn't churn the heap.
+ * Copies and restored versions are written to a temporary file and renamed into place, so a file is never left
+ * half written.
+ * <p>
+ * Memory mapping is deliberately avoided: on Windows a mapped file stays locked until the mapping is garbage
+ * collected, which would block both the rename of the copy and editors saving the tracked file.
+ */
+public abstract class FileTransfer {
+
+    /** Size of the direct buffers each file is read into */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** Files smaller than this are compared with <code>Files.mismatch</code>, direct buffers cost more than they save */
+    static final long DIRECT_THRESHOLD = 256L * 1024;
+
+    /** Direct buffers kept per thread, so every comparison doesn't allocate off-heap memory */
+    private static final ThreadLocal<ByteBuffer[]> buffers = ThreadLocal.withInitial(() -> new ByteBuffer[] {
+            ByteBuffer.allocateDirect(BUFFER_SIZE), ByteBuffer.allocateDirect(BUFFER_SIZE)});
+
+    /**
+     * Finds the position of the first byte that differs between two files.
+     *
+     * @param first the first file
+     * @param second the second file
+     * @return the position of the first mismatch, the size of the smaller file if it is a prefix of the other,
+     * or -1 if the files are identical
+     * @throws IOException if either file couldn't be read
+     */
+    public static long mismatch(Path first, Path second) throws IOException {
+        try (FileChannel firstChannel = FileChannel.open(first, StandardOpenOption.READ);
+             FileChannel secondChannel = FileChannel.open(second, StandardOpenOption.READ)) {
+
+            long firstSize = firstChannel.size();
+            long secondSize = secondChannel.size();
+            long size = Math.min(firstSize, secondSize);
+
+            // Small files are faster to compare through a heap buffer
+            if (size < DIRECT_THRESHOLD)
+                return Files.mismatch(first, second);
+
+            ByteBuffer firstBuffer = buffers.get()[0];
+            ByteBuffer secondBuffer = buffers.get()[1];
+
+            // Compare the shared length one buffer at a time
+            for (long position = 0; position < size; ) {
+                int length = (int) Math.min(BUFFER_SIZE, size - position);
+                fill(firstChannel, firstBuffer, position, length);
+                fill(secondChannel, secondBuffer, position, length);
+
+                int mismatch = firstBuffer.mismatch(secondBuffer);
+                if (mismatch != -1)
+                    return position + mismatch;
+
+                position += length;
+            }
+
+            // One file is a prefix of the other
+            return firstSize == secondSize ? -1 : size;
+        }
+    }
+
+    /**
+     * Reads exactly <code>length</code> bytes at <code>position</code> into the buffer and flips it for reading.
+     *
+     * @param channel the channel to read from
+     * @param buffer the buffer to fill
+     * @param position the position in the file to read from
+     * @param length the number of bytes to read
+     * @throws IOException if the bytes couldn't be read, including when the file shrank
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException("File shrank while it was compared");
+        }
+
+        buffer.flip();
+    }
+
+    /**
+     * Copies a file by transferring its content between channels into a temporary file next to <code>target</code>,
+     * then renaming the temporary file over <code>target</code>.
+     *
+     * @param source the file to copy
+     * @param target the file to create or replace
+     * @return the target pathway
+     * @throws IOException if the file couldn't be copied
+     */
+    public static Path copyAtomic(Path source, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            // Let the operating system move the bytes between the files
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+
+                    // The file shrank while it was copied
+                    if (transferred <= 0)
+                        break;
+                    position += transferred;
+                }
+
+                // Make sure the content is on disk before the rename makes it visible
+                out.force(false);
+            }
+
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return target;
+    }
+
+    /**
+     * Writes content into a temporary file next to <code>target</code>, then renames the temporary file over
+     * <code>target</code>.
+     *
+     * @param content the bytes to write
+     * @param target the file to create or replace
+     * @return the target pathway
+     * @throws IOException if the file couldn't be written
+     */
+    public static Path writeAtomic(byte[] content, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+
+                // Make sure the content is on disk before the rename makes it visible
+                out.force(false);
+            }
+
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return target;
+    }
+
+    /** Renames a finished temporary file over the target, atomically where the file system supports it. */
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The <code>GitVersionStore</code> class keeps the versions of a tracked file as commits of a JGit repository:
+ * the file's own repository, whose work tree holds the copy of the file, or its ref in the shared repository.
+ * Version ids are commit ids.
+ */
+public class GitVersionStore implements VersionStore {
+
+    /** Locks by repo_pathway, so a history isn't committed to while it is rewritten */
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /** Locks by repository pathway, shared by the histories written to and exclusive while the repository is packed */
+    private static final Map<String, ReentrantReadWriteLock> repositoryLocks = new ConcurrentHashMap<>();
+
+    /** The repo_pathway of the tracked file */
+    private final String gitPathway;
+
+    /** The copy of the tracked file in the work tree of the file's own repository */
+    private final Path copyPath;
+
+    /** The name the file is stored under in the shared repository's trees */
+    private final String entryName;
+
+    /**
+     * Opens the git history of a tracked file.
+     *
+     * @param gitPathway the repo_pathway of the tracked file
+     * @param copyPath the copy of the tracked file in its directory
+     * @param entryName the name the file is stored under in the shared repository's trees
+     */
+    public GitVersionStore(String gitPathway, Path copyPath, String entryName) {
+        this.gitPathway = gitPathway;
+        this.copyPath = copyPath;
+        this.entryName = entryName;
+    }
+
+    /** Commits the content, copying it into the work tree first if it isn't the copy of the tracked file. */
+    @Override
+    public StoredVersion append(Path content, String message) throws IOException {
+        Lock repositoryLock = getRepositoryLock(getRepositoryPathway()).readLock();
+        repositoryLock.lock();
+        try {
+            synchronized (lock()) {
+                return commit(content, message);
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Commits the content. Must be called while holding the history's lock.
+     *
+     * @param content the file holding the content of the version
+     * @param message the message of the commit
+     * @return the committed version
+     * @throws IOException if the content couldn't be committed
+     */
+    private StoredVersion commit(Path content, String message) throws IOException {
+        RevCommit commit;
+        if (SharedRepository.isShared(gitPathway)) {
+            commit = SharedRepository.commit(gitPathway, entryName, content, message);
+        } else {
+            if (!content.toAbsolutePath().equals(copyPath.toAbsolutePath()))
+                FileTransfer.copyAtomic(content, copyPath);
+
+            try {
+                commit = VersionManager.commitChanges(gitPathway, copyPath.getFileName().toString(), message);
+            } catch (GitAPIException e) {
+                throw new IOException("Failed to commit " + copyPath, e);
+            }
+        }
+
+        String parentId = commit.getParentCount() > 0 ? commit.getParent(0).getName() : null;
+        return new StoredVersion(commit.getName(), commit.getCommitTime(), Files.size(content), parentId);
+    }
+
+    /** Lists the first-parent history of the repository from the initial commit to the head. */
+    @Override
+    public ArrayList<StoredVersion> list() throws IOException {
+        CommitHistory history = VersionManager.getHistory(gitPathway);
+        ArrayList<StoredVersion> versions = new ArrayList<>(history.size());
+
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getRepositoryPathway());
+             ObjectReader reader = lease.getRepository().newObjectReader(); RevWalk walk = new RevWalk(reader)) {
+            for (int ordinal = 0; ordinal < history.size(); ordinal++) {
+                RevCommit commit = walk.parseCommit(history.get(ordinal));
+                versions.add(new StoredVersion(commit.getName(), commit.getCommitTime(), getBlobSize(reader, commit)));
+            }
+        }
+
+        return versions;
+    }
+
+    @Override
+    public byte[] read(String versionId) throws IOException {
+        return VersionManager.readVersion(gitPathway, versionId);
+    }
+
+    /** Resolves the branch, or the file's ref in the shared repository, without walking the history. */
+    @Override
+    public StoredVersion latest() throws IOException {
+        ObjectId head = VersionManager.resolveHead(gitPathway);
+        if (head == null)
+            return null;
+
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getRepositoryPathway());
+             ObjectReader reader = lease.getRepository().newObjectReader(); RevWalk walk = new RevWalk(reader)) {
+            RevCommit commit = walk.parseCommit(head);
+            return new StoredVersion(commit.getName(), commit.getCommitTime(), getBlobSize(reader, commit));
+        }
+    }
+
+    /**
+     * Commits the survivors again on top of each other with their original tree, author, committer and message, and
+     * moves the branch, or the file's ref in the shared repository, to the rewritten head. The file's own repository
+     * is pruned right away, the shared repository drops the removed commits on its next gc.
+     */
+    @Override
+    public Map<String, String> remove(Set<String> versionIds) throws IOException {
+        Lock repositoryLock = getRepositoryLock(getRepositoryPathway()).readLock();
+        repositoryLock.lock();
+        try {
+            return rewrite(versionIds);
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /** Rewrites the history without the removed versions. Must be called while holding the repository's lock. */
+    private Map<String, String> rewrite(Set<String> versionIds) throws IOException {
+        synchronized (lock()) {
+            Map<String, String> rewrittenIds = new HashMap<>();
+            CommitHistory history = VersionManager.getHistory(gitPathway);
+            if (history.getHead() == null)
+                return rewrittenIds;
+            if (versionIds.contains(history.getHead().getName()))
+                throw new IllegalArgumentException("The newest version can't be removed");
+
+            try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getRepositoryPathway());
+                 RevWalk walk = new RevWalk(lease.getRepository());
+                 ObjectInserter inserter = lease.getRepository().newObjectInserter()) {
+                Repository repository = lease.getRepository();
+
+                // The history is unchanged up to the first removed commit
+                int ordinal = 0;
+                while (ordinal < history.size() && !versionIds.contains(history.get(ordinal).getName()))
+                    ordinal++;
+                if (ordinal == history.size())
+                    return rewrittenIds;
+                ObjectId parent = ordinal == 0 ? null : history.get(ordinal - 1);
+
+                for (; ordinal < history.size(); ordinal++) {
+                    RevCommit commit = walk.parseCommit(history.get(ordinal));
+                    if (versionIds.contains(commit.getName()))
+                        continue;
+
+                    CommitBuilder builder = new CommitBuilder();
+                    builder.setTreeId(commit.getTree());
+                    if (parent != null)
+                        builder.setParentId(parent);
+                    builder.setAuthor(commit.getAuthorIdent());
+                    builder.setCommitter(commit.getCommitterIdent());
+                    builder.setMessage(commit.getFullMessage());
+                    parent = inserter.insert(builder);
+                    rewrittenIds.put(commit.getName(), parent.getName());
+                }
+                inserter.flush();
+
+                // Move the history to the rewritten head without leaving the old head in a reflog
+                String refName = SharedRepository.isShared(gitPathway)
+                        ? SharedRepository.getRefNameOfPathway(gitPathway) : repository.getFullBranch();
+                RefUpdate update = repository.updateRef(refName);
+                update.setExpectedOldObjectId(history.getHead());
+                update.setNewObjectId(parent);
+                update.setForceUpdate(true);
+                update.disableRefLog();
+                RefUpdate.Result result = update.update(walk);
+                if (result != RefUpdate.Result.FORCED && result != RefUpdate.Result.FAST_FORWARD)
+                    throw new IOException("Failed to move " + refName + " to the rewritten history: " + result);
+
+                if (!SharedRepository.isShared(gitPathway))
+                    prune(repository, refName);
+            }
+
+            return rewrittenIds;
+        }
+    }
+
+    /**
+     * Deletes the reflogs still naming the removed commits and runs gc without a grace period, so the removed
+     * versions are gone from disk. Only safe while nothing else writes to the repository.
+     *
+     * @param repository the file's own repository
+     * @param refName the branch holding the history
+     * @throws IOException if gc failed
+     */
+    private static void prune(Repository repository, String refName) throws IOException {
+        Path logs = repository.getDirectory().toPath().resolve("logs");
+        Files.deleteIfExists(logs.resolve(Constants.HEAD));
+        Files.deleteIfExists(logs.resolve(refName));
+
+        try (Git git = Git.wrap(repository)) {
+            git.gc().setExpire(new Date()).call();
+        } catch (GitAPIException e) {
+            throw new IOException("Failed to prune " + repository.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Returns the lock that packing a repository takes, so no history in it is committed to or rewritten while it is
+     * packed. Appends and removes hold the same lock shared, so they don't block each other.
+     *
+     * @param repositoryPathway the pathway of a file's own repository or of the shared repository
+     * @return the exclusive lock of the repository
+     */
+    static Lock getPackLock(String repositoryPathway) {
+        return getRepositoryLock(repositoryPathway).writeLock();
+    }
+
+    /** Returns the read write lock of a repository. */
+    private static ReentrantReadWriteLock getRepositoryLock(String repositoryPathway) {
+        return repositoryLocks.computeIfAbsent(Path.of(repositoryPathway).toAbsolutePath().normalize().toString(),
+                key -> new ReentrantReadWriteLock());
+    }
+
+    /** Returns the lock of this store's history. */
+    private Object lock() {
+        return locks.computeIfAbsent(Path.of(gitPathway).toAbsolutePath().normalize().toString(), key -> new Object());
+    }
+
+    /** Returns the pathway of the repository holding the history, the shared repository for shared files. */
+    private String getRepositoryPathway() {
+        return SharedRepository.isShared(gitPathway) ? SharedRepository.getPathway().toString() : gitPathway;
+    }
+
+    /**
+     * Returns the size of the file stored in a commit's tree.
+     *
+     * @param reader reader of the repository holding the commit
+     * @param commit the commit to read the tree of
+     * @return size of the first file in the tree, 0 if the tree is empty
+     * @throws IOException if the tree couldn't be read
+     */
+    static long getBlobSize(ObjectReader reader, RevCommit commit) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+
+            return treeWalk.next() ? reader.getObjectSize(treeWalk.getObjectId(0), Constants.OBJ_BLOB) : 0;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The <code>LineDiff</code> class computes line diffs between two versions of a text file with the linear space
+ * variant of Myers' O(ND) algorithm, which splits the edit graph at its middle snake instead of storing every
+ * furthest reaching path, so memory grows with the number of lines rather than with lines times changes.
+ * <p>
+ * Every distinct line is interned to an int before the comparison, so lines are compared by id instead of by
+ * content. Lines that only occur in one of the versions can't be part of the longest common subsequence and are
+ * set aside before the search, which keeps rewritten regions from driving up the cost.
+ * Once a search passes a cost limit it splits where it got furthest instead, like GNU diff, so two heavily
+ * shuffled versions take a bounded time at the price of a diff that may be slightly longer than minimal.
+ * Matches are found from the start of the files to the end, and every hunk is handed to the consumer as soon
+ * as it is complete, so a large diff never has to be held in memory.
+ */
+public final class LineDiff {
+
+    /** Fewest changes searched for before the search may settle for a split that isn't minimal */
+    private static final int MIN_COST_LIMIT = 256;
+
+    /** Lines of the old version */
+    private final List<String> oldLines;
+
+    /** Lines of the new version */
+    private final List<String> newLines;
+
+    /** Interned ids of the old lines that also occur in the new version */
+    private final int[] a;
+
+    /** Interned ids of the new lines that also occur in the old version */
+    private final int[] b;
+
+    /** Line number in the old version of every entry in <code>a</code> */
+    private final int[] aLines;
+
+    /** Line number in the new version of every entry in <code>b</code> */
+    private final int[] bLines;
+
+    /** Furthest reaching x of the forward and backward searches by diagonal */
+    private final int[] forward;
+    private final int[] backward;
+
+    /** Offset of diagonal 0 in the search arrays */
+    private final int offset;
+
+    /** Number of changes after which the search settles for a split that may not be minimal */
+    private final int costLimit;
+
+    /** Groups the changes into hunks */
+    private final HunkBuilder hunks;
+
+    /** Old and new line after the last match, where the next change starts */
+    private int nextOld;
+    private int nextNew;
+
+    private LineDiff(List<String> oldLines, List<String> newLines, DiffOptions options, Consumer<DiffHunk> consumer) {
+        this.oldLines = oldLines;
+        this.newLines = newLines;
+        this.hunks = new HunkBuilder(oldLines, newLines, options.getContextLines(), consumer);
+
+        // Intern every distinct line and count where it occurs
+        HashMap<String, Integer> ids = new HashMap<>();
+        int[] oldIds = intern(oldLines, ids, options.isIgnoreWhitespace());
+        int[] newIds = intern(newLines, ids, options.isIgnoreWhitespace());
+        boolean[] inOld = new boolean[ids.size()];
+        boolean[] inNew = new boolean[ids.size()];
+        for (int id : oldIds)
+            inOld[id] = true;
+        for (int id : newIds)
+            inNew[id] = true;
+
+        // Set aside the lines that can't match
+        int[][] oldKept = keep(oldIds, inNew);
+        int[][] newKept = keep(newIds, inOld);
+        a = oldKept[0];
+        aLines = oldKept[1];
+        b = newKept[0];
+        bLines = newKept[1];
+
+        // Versions with many changes in shuffled lines would otherwise cost lines times changes
+        costLimit = Math.max(MIN_COST_LIMIT, (int) Math.sqrt(a.length + b.length));
+        offset = a.length + b.length + 1;
+        forward = new int[2 * offset + 1];
+        backward = new int[2 * offset + 1];
+    }
+
+    /**
+     * Computes the diff between two versions and hands every hunk to <code>consumer</code> in order.
+     *
+     * @param oldLines lines of the old version
+     * @param newLines lines of the new version
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     */
+    public static void diff(List<String> oldLines, List<String> newLines, DiffOptions options, Consumer<DiffHunk> consumer) {
+        LineDiff diff = new LineDiff(oldLines, newLines, options, consumer);
+        diff.compare(0, diff.a.length, 0, diff.b.length);
+        diff.finish();
+    }
+
+    /**
+     * Computes the diff between two versions.
+     *
+     * @param oldLines lines of the old version
+     * @param newLines lines of the new version
+     * @param options context lines and whitespace handling
+     * @return the hunks from the start of the file to the end
+     */
+    public static ArrayList<DiffHunk> diff(List<String> oldLines, List<String> newLines, DiffOptions options) {
+        ArrayList<DiffHunk> hunks = new ArrayList<>();
+        diff(oldLines, newLines, options, hunks::add);
+        return hunks;
+    }
+
+    /**
+     * Splits UTF-8 content into lines, dropping the line terminators.
+     *
+     * @param content the content of a version
+     * @return the lines of the content
+     */
+    public static ArrayList<String> splitLines(byte[] content) {
+        ArrayList<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                int end = i > start && content[i - 1] == '\r' ? i - 1 : i;
+                lines.add(new String(content, start, end - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+
+        // Last line without a terminator
+        if (start < content.length)
+            lines.add(new String(content, start, content.length - start, StandardCharsets.UTF_8));
+
+        return lines;
+    }
+
+    /**
+     * Maps every line to the id of its content, giving new content the next free id.
+     *
+     * @param lines the lines to intern
+     * @param ids ids of the content seen so far
+     * @param ignoreWhitespace whether whitespace is removed before the content is looked up
+     * @return the id of every line
+     */
+    private static int[] intern(List<String> lines, HashMap<String, Integer> ids, boolean ignoreWhitespace) {
+        int[] interned = new int[lines.size()];
+        for (int i = 0; i < interned.length; i++) {
+            String key = ignoreWhitespace ? stripWhitespace(lines.get(i)) : lines.get(i);
+            Integer id = ids.putIfAbsent(key, ids.size());
+            interned[i] = id != null ? id : ids.size() - 1;
+        }
+
+        return interned;
+    }
+
+    /**
+     * Removes every whitespace character from a line.
+     *
+     * @param line the line to strip
+     * @return the line without whitespace
+     */
+    private static String stripWhitespace(String line) {
+        StringBuilder builder = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++)
+            if (!Character.isWhitespace(line.charAt(i)))
+                builder.append(line.charAt(i));
+
+        return builder.toString();
+    }
+
+    /**
+     * Keeps the lines whose content also occurs in the other version.
+     *
+     * @param ids the id of every line
+     * @param inOther whether each id occurs in the other version
+     * @return the kept ids and the line number of every kept id
+     */
+    private static int[][] keep(int[] ids, boolean[] inOther) {
+        int count = 0;
+        for (int id : ids)
+            if (inOther[id])
+                count++;
+
+        int[] kept = new int[count];
+        int[] lines = new int[count];
+        for (int i = 0, k = 0; i < ids.length; i++) {
+            if (inOther[ids[i]]) {
+                kept[k] = ids[i];
+                lines[k++] = i;
+            }
+        }
+
+        return new int[][] {kept, lines};
+    }
+
+    /**
+     * Finds the matches between <code>a[aStart, aEnd)</code> and <code>b[bStart, bEnd)</code> in order.
+     */
+    private void compare(int aStart, int aEnd, int bStart, int bEnd) {
+
+        // Common prefix
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart])
+            match(aStart++, bStart++);
+
+        // Common suffix, matched after the middle
+        int suffix = 0;
+        while (aStart < aEnd - suffix && bStart < bEnd - suffix && a[aEnd - 1 - suffix] == b[bEnd - 1 - suffix])
+            suffix++;
+        aEnd -= suffix;
+        bEnd -= suffix;
+
+        // Split at the middle snake and solve both halves, unless one side is only insertions or deletions
+        if (aStart < aEnd && bStart < bEnd) {
+            int[] snake = middleSnake(aStart, aEnd, bStart, bEnd);
+            int x = snake[0], y = snake[1], u = snake[2], v = snake[3];
+
+            // Once the ends differ the snake is at least one change away from both corners, so both halves are smaller
+            compare(aStart, x, bStart, y);
+            for (int i = 0; i < u - x; i++)
+                match(x + i, y + i);
+            compare(u, aEnd, v, bEnd);
+        }
+
+        for (int i = 0; i < suffix; i++)
+            match(aEnd + i, bEnd + i);
+    }
+
+    /**
+     * Searches from both corners of the edit graph at the same time until the paths overlap.
+     *
+     * @return start x, start y, end x and end y of the middle snake
+     */
+    private int[] middleSnake(int aStart, int aEnd, int bStart, int bEnd) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= max; d++) {
+
+            // Extend the forward paths by one change
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x, startY = y;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= n)
+                    return new int[] {aStart + startX, bStart + startY, aStart + x, bStart + y};
+            }
+
+            // Extend the backward paths by one change
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x, startY = y;
+                while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+
+                int c = delta - k;
+                if (!odd && c >= -d && c <= d && x + forward[offset + c] >= n)
+                    return new int[] {aStart + n - x, bStart + m - y, aStart + n - startX, bStart + m - startY};
+            }
+
+            // Past the cost limit split where the forward search got furthest, the halves are still solved exactly
+            if (d >= costLimit) {
+                int bestX = -1, bestY = -1;
+                for (int k = -d; k <= d; k += 2) {
+                    int x = Math.min(forward[offset + k], n);
+                    int y = x - k;
+                    if (y >= 0 && y <= m && x + y > bestX + bestY) {
+                        bestX = x;
+                        bestY = y;
+                    }
+                }
+
+                if (bestX + bestY > 0)
+                    return new int[] {aStart + bestX, bStart + bestY, aStart + bestX, bStart + bestY};
+            }
+        }
+
+        throw new IllegalStateException("No middle snake between the versions");
+    }
+
+    /**
+     * Records a matched line and hands the change before it to the hunk builder.
+     *
+     * @param aIndex position of the match in <code>a</code>
+     * @param bIndex position of the match in <code>b</code>
+     */
+    private void match(int aIndex, int bIndex) {
+        int oldLine = aLines[aIndex];
+        int newLine = bLines[bIndex];
+
+        // Lines set aside and unmatched lines between the matches are the change
+        if (oldLine > nextOld || newLine > nextNew)
+            hunks.change(nextOld, oldLine, nextNew, newLine);
+
+        nextOld = oldLine + 1;
+        nextNew = newLine + 1;
+    }
+
+    /** Hands the change after the last match to the hunk builder and emits the last hunk. */
+    private void finish() {
+        if (nextOld < oldLines.size() || nextNew < newLines.size())
+            hunks.change(nextOld, oldLines.size(), nextNew, newLines.size());
+
+        hunks.flush();
+    }
+
+    /** Groups changes that are close to each other into hunks with context lines around them. */
+    private static final class HunkBuilder {
+        private final List<String> oldLines;
+        private final List<String> newLines;
+        private final int context;
+        private final Consumer<DiffHunk> consumer;
+
+        /** Changes of the hunk that is being built as old start, old end, new start, new end */
+        private final ArrayList<int[]> changes = new ArrayList<>();
+
+        private HunkBuilder(List<String> oldLines, List<String> newLines, int context, Consumer<DiffHunk> consumer) {
+            this.oldLines = oldLines;
+            this.newLines = newLines;
+            this.context = context;
+            this.consumer = consumer;
+        }
+
+        /** Adds a change, emitting the current hunk first if the change is too far away to share its context. */
+        private void change(int oldStart, int oldEnd, int newStart, int newEnd) {
+            if (!changes.isEmpty() && oldStart - changes.get(changes.size() - 1)[1] > 2 * context)
+                flush();
+
+            changes.add(new int[] {oldStart, oldEnd, newStart, newEnd});
+        }
+
+        /** Emits the hunk that is being built. */
+        private void flush() {
+            if (changes.isEmpty())
+                return;
+
+            int[] first = changes.get(0);
+            int[] last = changes.get(changes.size() - 1);
+            int oldStart = Math.max(0, first[0] - context);
+            int oldEnd = Math.min(oldLines.size(), last[1] + context);
+            int newStart = first[2] - (first[0] - oldStart);
+            int newEnd = last[3] + (oldEnd - last[1]);
+
+            ArrayList<String> lines = new ArrayList<>();
+            int position = oldStart;
+            for (int[] change : changes) {
+                for (int i = position; i < change[0]; i++)
+                    lines.add(" " + oldLines.get(i));
+                for (int i = change[0]; i < change[1]; i++)
+                    lines.add("-" + oldLines.get(i));
+                for (int i = change[2]; i < change[3]; i++)
+                    lines.add("+" + newLines.get(i));
+                position = change[1];
+            }
+            for (int i = position; i < oldEnd; i++)
+                lines.add(" " + oldLines.get(i));
+
+            // Empty ranges point at the line before them, as in unified diffs
+            int oldCount = oldEnd - oldStart;
+            int newCount = newEnd - newStart;
+            consumer.accept(new DiffHunk(oldCount == 0 ? oldStart : oldStart + 1, oldCount,
+                    newCount == 0 ? newStart : newStart + 1, newCount, lines));
+            changes.clear();
+        }
+    }
+}
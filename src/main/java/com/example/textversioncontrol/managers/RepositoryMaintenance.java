@@ -0,0 +1,332 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.MaintenanceStats;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * The <code>RepositoryMaintenance</code> class packs the repositories of tracked files in the background.
+ * Every commit writes its objects as loose files, so a frequently saved file leaves thousands of small files behind.
+ * <p>
+ * Repositories are due once their loose objects pass a count or size threshold, or once they hold too many packs,
+ * and are packed most loose bytes first with JGit's gc, which repacks the reachable objects and deletes the loose
+ * copies. Maintenance only runs while no repository has been borrowed from the pool for the idle delay, skips
+ * repositories that are borrowed or being committed to, holds off commits to a repository until its gc finished, and
+ * pauses after every repository for as long as its I/O takes at the budgeted rate. Segment stores aren't git repositories and are never maintained.
+ */
+public class RepositoryMaintenance implements Closeable {
+
+    /** Loose objects, packs, and the bytes they take up in one repository */
+    private static final class Usage {
+        private int looseObjects;
+        private long looseBytes;
+        private int packs;
+        private long packBytes;
+
+        /** Returns the bytes of object storage */
+        private long getBytes() {
+            return looseBytes + packBytes;
+        }
+    }
+
+    /** Repository due for maintenance */
+    private static final class Candidate {
+        private final String gitPathway;
+        private final Usage usage;
+
+        private Candidate(String gitPathway, Usage usage) {
+            this.gitPathway = gitPathway;
+            this.usage = usage;
+        }
+    }
+
+    /** Pool whose borrows mark repositories as in use and the application as busy */
+    private final RepositoryPool pool;
+
+    /** Loose objects that make a repository due */
+    private final int minLooseObjects;
+
+    /** Bytes of loose objects that make a repository due */
+    private final long minLooseBytes;
+
+    /** Packs a repository may hold before it is due */
+    private final int maxPacks;
+
+    /** Bytes read and written per second, 0 for no limit */
+    private final long bytesPerSecond;
+
+    /** Time without borrows before maintenance runs */
+    private final Duration idleDelay;
+
+    /** Outcome of every run since the maintenance was created */
+    private final MaintenanceStats statistics = new MaintenanceStats();
+
+    /** Runs maintenance periodically */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "repository-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates maintenance of the repositories borrowed through <code>VersionManager</code>, configured with the
+     * textversioncontrol.maintenance.looseObjects, .looseBytes, .maxPacks, .bytesPerSecond and .idleSeconds system
+     * properties. Call <code>start(Duration)</code> to run it periodically.
+     */
+    public RepositoryMaintenance() {
+        this(VersionManager.getRepositoryPool(),
+                Integer.getInteger("textversioncontrol.maintenance.looseObjects", 256),
+                Long.getLong("textversioncontrol.maintenance.looseBytes", 4L * 1024 * 1024),
+                Integer.getInteger("textversioncontrol.maintenance.maxPacks", 16),
+                Long.getLong("textversioncontrol.maintenance.bytesPerSecond", 8L * 1024 * 1024),
+                Duration.ofSeconds(Long.getLong("textversioncontrol.maintenance.idleSeconds", 60)));
+    }
+
+    /**
+     * Creates maintenance of the repositories borrowed through <code>pool</code>.
+     * Call <code>start(Duration)</code> to run it periodically.
+     *
+     * @param pool pool whose borrows mark repositories as in use and the application as busy
+     * @param minLooseObjects loose objects that make a repository due
+     * @param minLooseBytes bytes of loose objects that make a repository due
+     * @param maxPacks packs a repository may hold before it is due
+     * @param bytesPerSecond bytes read and written per second, 0 for no limit
+     * @param idleDelay time without borrows before maintenance runs
+     */
+    public RepositoryMaintenance(RepositoryPool pool, int minLooseObjects, long minLooseBytes, int maxPacks,
+                                 long bytesPerSecond, Duration idleDelay) {
+        this.pool = pool;
+        this.minLooseObjects = minLooseObjects;
+        this.minLooseBytes = minLooseBytes;
+        this.maxPacks = maxPacks;
+        this.bytesPerSecond = bytesPerSecond;
+        this.idleDelay = idleDelay;
+    }
+
+    /**
+     * Runs maintenance every <code>interval</code> in the background.
+     *
+     * @param interval the time between the end of one run and the start of the next
+     */
+    public void start(Duration interval) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Packs the due repositories, most loose bytes first, for as long as the application stays idle.
+     *
+     * @return the outcome of this run, also added to <code>getStatistics()</code>
+     * @throws SQLException if the tracked files couldn't be read from the database
+     */
+    public MaintenanceStats run() throws SQLException {
+        MaintenanceStats result = new MaintenanceStats();
+
+        for (Candidate candidate : getDueRepositories()) {
+            if (!isIdle() || Thread.currentThread().isInterrupted())
+                break;
+
+            // Leave repositories alone while they are committed to or read
+            if (pool.isBorrowed(candidate.gitPathway)) {
+                result.addSkipped(candidate.gitPathway);
+                continue;
+            }
+
+            // Keep commits and history rewrites out of the repository for the whole gc, skip it if one is running
+            Lock packLock = GitVersionStore.getPackLock(candidate.gitPathway);
+            if (!packLock.tryLock()) {
+                result.addSkipped(candidate.gitPathway);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            Usage after;
+            try {
+                pack(candidate.gitPathway);
+                after = getUsage(Path.of(candidate.gitPathway));
+            } catch (IOException | GitAPIException e) {
+                result.addFailure(candidate.gitPathway, e);
+                continue;
+            } finally {
+                packLock.unlock();
+            }
+            result.addPacked(candidate.gitPathway, candidate.usage.getBytes() - after.getBytes(), System.nanoTime() - start);
+
+            // Stay within the I/O budget, gc reads the old objects and writes the new pack
+            if (!pause(candidate.usage.getBytes() + after.getBytes()))
+                break;
+        }
+
+        statistics.addAll(result);
+        return result;
+    }
+
+    /**
+     * Returns the git pathways of the repositories due for maintenance, most loose bytes first.
+     *
+     * @return the due git pathways
+     * @throws SQLException if the tracked files couldn't be read from the database
+     */
+    public List<String> getDuePathways() throws SQLException {
+        List<String> gitPathways = new ArrayList<>();
+        for (Candidate candidate : getDueRepositories())
+            gitPathways.add(candidate.gitPathway);
+
+        return gitPathways;
+    }
+
+    /** Returns the outcome of every run since the maintenance was created. */
+    public MaintenanceStats getStatistics() {
+        return statistics;
+    }
+
+    /** Stops running maintenance, a run in progress stops after the repository it's packing. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /** Returns true if no repository has been borrowed for the idle delay. */
+    private boolean isIdle() {
+        return pool.getTimeSinceLastBorrow().compareTo(idleDelay) >= 0;
+    }
+
+    /**
+     * Finds the repositories of all tracked files whose loose objects or packs passed a threshold.
+     *
+     * @return the due repositories, most loose bytes first
+     * @throws SQLException if the tracked files couldn't be read from the database
+     */
+    private List<Candidate> getDueRepositories() throws SQLException {
+
+        // Files in the shared repository share one repository, segment stores have none
+        Set<String> gitPathways = new LinkedHashSet<>();
+        for (String gitPathway : DatabaseManager.getEntries(DatabaseManager.Columns.REPO_PATHWAY)) {
+            if (SharedRepository.isShared(gitPathway))
+                gitPathways.add(SharedRepository.getPathway().toString());
+            else if (!SegmentVersionStore.isSegment(gitPathway))
+                gitPathways.add(gitPathway);
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (String gitPathway : gitPathways) {
+            Path gitPath = Paths.get(gitPathway);
+            if (!Files.isDirectory(gitPath))
+                continue;
+
+            try {
+                Usage usage = getUsage(gitPath);
+                if (usage.looseObjects >= minLooseObjects || usage.looseBytes >= minLooseBytes || usage.packs > maxPacks)
+                    candidates.add(new Candidate(gitPathway, usage));
+            } catch (IOException e) {
+                // Repository changed while it was measured, the next run measures it again
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong((Candidate candidate) -> candidate.usage.looseBytes).reversed());
+        return candidates;
+    }
+
+    /**
+     * Measures the loose objects and packs of a repository.
+     *
+     * @param gitPath the pathway to the .git directory
+     * @return the usage of the repository's object directory
+     * @throws IOException if the object directory couldn't be listed
+     */
+    private static Usage getUsage(Path gitPath) throws IOException {
+        Usage usage = new Usage();
+        Path objects = gitPath.resolve("objects");
+        if (!Files.isDirectory(objects))
+            return usage;
+
+        // Loose objects are stored in fan-out directories named after the first two hex digits of their id
+        try (Stream<Path> fanOuts = Files.list(objects)) {
+            for (Path fanOut : (Iterable<Path>) fanOuts::iterator) {
+                if (fanOut.getFileName().toString().length() != 2 || !Files.isDirectory(fanOut))
+                    continue;
+
+                try (Stream<Path> looseObjects = Files.list(fanOut)) {
+                    for (Path looseObject : (Iterable<Path>) looseObjects::iterator) {
+                        usage.looseObjects++;
+                        usage.looseBytes += Files.size(looseObject);
+                    }
+                }
+            }
+        }
+
+        Path packDirectory = objects.resolve("pack");
+        if (Files.isDirectory(packDirectory)) {
+            try (Stream<Path> packFiles = Files.list(packDirectory)) {
+                for (Path packFile : (Iterable<Path>) packFiles::iterator) {
+                    if (packFile.getFileName().toString().endsWith(".pack"))
+                        usage.packs++;
+                    usage.packBytes += Files.size(packFile);
+                }
+            }
+        }
+
+        return usage;
+    }
+
+    /**
+     * Runs gc on a repository. It is opened outside the pool so packing doesn't count as activity, JGit picks up the
+     * new pack in the pooled instance the next time it looks up an object.
+     *
+     * @param gitPathway the pathway to the .git directory
+     * @throws IOException if the repository couldn't be opened
+     * @throws GitAPIException if gc failed
+     */
+    private static void pack(String gitPathway) throws IOException, GitAPIException {
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(new File(gitPathway)).setMustExist(true).build();
+             Git git = Git.wrap(repository)) {
+            git.gc().setProgressMonitor(NullProgressMonitor.INSTANCE).call();
+        }
+    }
+
+    /**
+     * Waits for as long as <code>bytes</code> of I/O take at the budgeted rate.
+     *
+     * @param bytes the bytes read and written
+     * @return false if the wait was interrupted
+     */
+    private boolean pause(long bytes) {
+        if (bytesPerSecond <= 0)
+            return true;
+
+        try {
+            Thread.sleep(bytes * 1000 / bytesPerSecond);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
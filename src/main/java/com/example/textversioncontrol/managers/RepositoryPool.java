@@ -0,0 +1,282 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>RepositoryPool</code> class keeps JGit repositories open between calls so their config, refs,
+ * and pack files aren't read again every time a tracked file is committed or its history is read.
+ * Repositories are borrowed with <code>borrow(String)</code> and returned by closing the lease. The pool holds
+ * at most <code>maxSize</code> idle repositories, evicting the least recently used first, and closes repositories
+ * that haven't been borrowed for the idle timeout. A borrowed repository is never closed until it is returned.
+ */
+public class RepositoryPool {
+
+    /** Open repository with the number of leases currently borrowing it */
+    private static class Entry {
+        private final Repository repository;
+        private int borrowers;
+        private long lastReturned;
+        private boolean evicted;
+
+        private Entry(Repository repository) {
+            this.repository = repository;
+        }
+    }
+
+    /**
+     * The <code>Lease</code> class gives access to a borrowed repository until it is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /** Returns the borrowed repository. It must not be closed by the caller. */
+        public Repository getRepository() {
+            return entry.repository;
+        }
+
+        /** Returns a <code>Git</code> wrapper of the borrowed repository that doesn't close it when closed. */
+        public Git getGit() {
+            return Git.wrap(entry.repository);
+        }
+
+        /** Returns the repository to the pool. */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                giveBack(entry);
+            }
+        }
+    }
+
+    /** Open repositories by git pathway, ordered from least to most recently borrowed */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Maximum number of repositories kept open while no one borrows them */
+    private final int maxSize;
+
+    /** Time in nanoseconds after which a returned repository is closed */
+    private final long idleTimeout;
+
+    /** Closes idle repositories in the background */
+    private final ScheduledExecutorService evictor;
+
+    /** Number of times a repository had to be opened */
+    private long opens;
+
+    /** Time in nanoseconds a repository was last borrowed */
+    private long lastBorrowed = System.nanoTime();
+
+    /**
+     * Creates a pool holding up to <code>maxSize</code> open repositories.
+     *
+     * @param maxSize the maximum number of repositories to keep open
+     * @param idleTimeout how long a repository may stay open without being borrowed
+     */
+    public RepositoryPool(int maxSize, Duration idleTimeout) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1");
+
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout.toNanos();
+
+        // Sweep for idle repositories twice per timeout
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repository-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeout.toMillis() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows the repository at <code>gitPathway</code>, opening it if it isn't open yet.
+     * The lease must be closed when the caller is done with the repository.
+     *
+     * @param gitPathway the pathway to the .git directory
+     * @return lease of the open repository
+     * @throws IOException if the repository couldn't be opened
+     */
+    public Lease borrow(String gitPathway) throws IOException {
+        String key = new File(gitPathway).getAbsolutePath();
+
+        // Reuse the repository if it's already open
+        synchronized (this) {
+            lastBorrowed = System.nanoTime();
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entry.borrowers++;
+                return new Lease(entry);
+            }
+        }
+
+        // Open the repository without holding the lock so other repositories can still be borrowed
+        File gitDir = new File(key);
+        if (!gitDir.exists())
+            throw new RepositoryNotFoundException(gitDir);
+        Repository repository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+
+        List<Repository> toClose = new ArrayList<>();
+        Lease lease;
+        synchronized (this) {
+            opens++;
+            Entry entry = entries.get(key);
+
+            // Another thread opened the same repository first
+            if (entry != null) {
+                toClose.add(repository);
+            } else {
+                entry = new Entry(repository);
+                entries.put(key, entry);
+            }
+
+            entry.borrowers++;
+            lease = new Lease(entry);
+            evictOverflow(toClose);
+        }
+
+        toClose.forEach(Repository::close);
+        return lease;
+    }
+
+    /**
+     * Returns whether a repository is currently borrowed by anyone.
+     *
+     * @param gitPathway the pathway to the .git directory
+     * @return true if at least one lease of the repository is open
+     */
+    public synchronized boolean isBorrowed(String gitPathway) {
+        Entry entry = entries.get(new File(gitPathway).getAbsolutePath());
+        return entry != null && entry.borrowers > 0;
+    }
+
+    /**
+     * Removes a repository from the pool, closing it once it's no longer borrowed.
+     * Must be called before the repository is moved or deleted.
+     *
+     * @param gitPathway the pathway to the .git directory
+     */
+    public void invalidate(String gitPathway) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(new File(gitPathway).getAbsolutePath());
+            if (entry == null)
+                return;
+
+            entry.evicted = true;
+            if (entry.borrowers > 0)
+                return;
+        }
+
+        entry.repository.close();
+    }
+
+    /** Removes every repository from the pool, closing the ones that aren't borrowed. */
+    public void invalidateAll() {
+        List<Repository> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                if (entry.borrowers == 0)
+                    toClose.add(entry.repository);
+            }
+            entries.clear();
+        }
+
+        toClose.forEach(Repository::close);
+    }
+
+    /** Closes every repository that hasn't been borrowed within the idle timeout. */
+    public void evictIdle() {
+        List<Repository> toClose = new ArrayList<>();
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.borrowers == 0 && now - entry.lastReturned >= idleTimeout) {
+                    entry.evicted = true;
+                    toClose.add(entry.repository);
+                    iterator.remove();
+                }
+            }
+        }
+
+        toClose.forEach(Repository::close);
+    }
+
+    /** Returns the number of repositories currently open in the pool. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Returns how long it has been since any repository was borrowed, or since the pool was created. */
+    public synchronized Duration getTimeSinceLastBorrow() {
+        return Duration.ofNanos(System.nanoTime() - lastBorrowed);
+    }
+
+    /** Returns how many times a repository had to be opened because it wasn't in the pool. */
+    public synchronized long getOpenCount() {
+        return opens;
+    }
+
+    /**
+     * Returns a borrowed repository, closing it if it was evicted while borrowed.
+     *
+     * @param entry the pooled repository
+     */
+    private void giveBack(Entry entry) {
+        List<Repository> toClose = new ArrayList<>();
+        synchronized (this) {
+            entry.borrowers--;
+            entry.lastReturned = System.nanoTime();
+
+            if (entry.evicted && entry.borrowers == 0)
+                toClose.add(entry.repository);
+            else
+                evictOverflow(toClose);
+        }
+
+        toClose.forEach(Repository::close);
+    }
+
+    /**
+     * Removes the least recently used repositories that aren't borrowed until the pool fits <code>maxSize</code>.
+     * Must be called while holding the pool's lock.
+     *
+     * @param toClose list receiving the repositories to close after the lock is released
+     */
+    private void evictOverflow(List<Repository> toClose) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.borrowers == 0) {
+                entry.evicted = true;
+                toClose.add(entry.repository);
+                iterator.remove();
+            }
+        }
+    }
+}
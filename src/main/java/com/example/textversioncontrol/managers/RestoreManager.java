@@ -0,0 +1,149 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileRecord;
+import com.example.textversioncontrol.models.RestoreReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The <code>RestoreManager</code> class rolls every tracked file back to how it looked at a point in time, for
+ * example after a bad bulk edit. The version of each file is found by a binary search over its cached commit times,
+ * read from its store and written over the tracked file atomically, so a restore that stops halfway leaves every
+ * file either as it was or fully restored. Files that already match their version aren't written.
+ * <p>
+ * Restoring doesn't rewrite any history: like <code>VersionManager.revert</code> it only changes the tracked files,
+ * and the next scan saves the restored content as new versions, so a restore can itself be undone.
+ */
+public abstract class RestoreManager {
+
+    /**
+     * Restores every tracked file to its version at a point in time, using one thread per processor.
+     *
+     * @param time the point in time
+     * @param dryRun true to only report which files would be restored
+     * @return the restored, unchanged and failed files
+     * @throws SQLException if the tracked files couldn't be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the restore
+     */
+    public static RestoreReport restore(Instant time, boolean dryRun) throws SQLException, InterruptedException {
+        return restore(time, dryRun, Runtime.getRuntime().availableProcessors(), (done, total) -> {}, () -> false);
+    }
+
+    /**
+     * Restores every tracked file to its version at a point in time, reporting progress after every file and
+     * stopping early once <code>cancelled</code> returns true. Files that are already being restored when the
+     * restore is cancelled finish, files that haven't started are skipped and the report is marked as cancelled.
+     *
+     * @param time the point in time
+     * @param dryRun true to only report which files would be restored
+     * @param parallelism the maximum number of files restored at the same time, 1 restores on the calling thread
+     * @param onProgress called with the number of finished files and the number of tracked files, from the restore threads
+     * @param cancelled checked before every file is started
+     * @return the restored, unchanged and failed files
+     * @throws SQLException if the tracked files couldn't be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the restore
+     */
+    public static RestoreReport restore(Instant time, boolean dryRun, int parallelism, BiConsumer<Integer, Integer> onProgress,
+                                        BooleanSupplier cancelled) throws SQLException, InterruptedException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+
+        ArrayList<FileRecord> records = FileRegistry.getAll();
+        RestoreReport report = new RestoreReport(time, dryRun);
+        int total = records.size();
+        AtomicInteger done = new AtomicInteger();
+
+        // Create one job per tracked file
+        ArrayList<Runnable> jobs = new ArrayList<>();
+        for (FileRecord record : records) {
+            jobs.add(() -> {
+                // Skip the files that haven't started when the restore is cancelled
+                if (cancelled.getAsBoolean()) {
+                    report.markCancelled();
+                    return;
+                }
+
+                try {
+                    restore(record, time, report);
+                } catch (Exception e) {
+                    report.addFailure(record.getFileName(), e);
+                }
+                onProgress.accept(done.incrementAndGet(), total);
+            });
+        }
+
+        // Run on the calling thread when no parallelism was asked for
+        if (parallelism == 1) {
+            jobs.forEach(Runnable::run);
+            return report;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())), runnable -> {
+            Thread thread = new Thread(runnable, "restore-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            jobs.forEach(executor::execute);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Wait for every file to finish, stop the workers if the caller gives up
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting, large files can take a while to write
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+
+        return report;
+    }
+
+    /**
+     * Restores one tracked file to its version at a point in time.
+     *
+     * @param record the record of the tracked file
+     * @param time the point in time
+     * @param report the report receiving the outcome, its dry run flag decides if the file is written
+     * @throws IOException if the version couldn't be read or the tracked file couldn't be written
+     */
+    public static void restore(FileRecord record, Instant time, RestoreReport report) throws IOException {
+        String fileName = record.getFileName();
+        String commitId = VersionManager.getCommitIdAt(record.getRepoPathway(), time);
+        if (commitId == null) {
+            report.addUntracked(fileName);
+            return;
+        }
+
+        byte[] content = VersionManager.getStore(fileName, record.getRepoPathway(), Path.of(record.getCopyPathway()))
+                .read(commitId);
+
+        // Only read the tracked file when its size matches, a changed size already tells it differs
+        Path trackingPath = Path.of(record.getTrackingPathway());
+        if (Files.exists(trackingPath) && Files.size(trackingPath) == content.length
+                && Arrays.equals(Files.readAllBytes(trackingPath), content)) {
+            report.addUnchanged(fileName);
+            return;
+        }
+
+        if (!report.isDryRun())
+            FileTransfer.writeAtomic(content, trackingPath);
+        report.addRestored(fileName, commitId);
+    }
+}
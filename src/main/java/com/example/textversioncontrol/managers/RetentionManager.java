@@ -0,0 +1,97 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.RetentionReport;
+import com.example.textversioncontrol.models.StoredVersion;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>RetentionManager</code> class applies a <code>RetentionPolicy</code> to the histories of tracked files.
+ * Every file is thinned out on its own: its store is rewritten to the surviving versions, and its commit index and
+ * cached history are rebuilt before the next file is touched, so a run that stops halfway leaves every file consistent.
+ * Surviving versions get new ids, which the report maps from the old ones so held revert targets can be translated.
+ */
+public abstract class RetentionManager {
+
+    /**
+     * Applies a policy to every tracked file.
+     *
+     * @param policy the policy deciding which versions are removed
+     * @param dryRun true to only report what would be removed
+     * @return the versions and bytes removed per file, and the files that failed
+     * @throws SQLException if the tracked files couldn't be read from the database
+     */
+    public static RetentionReport apply(RetentionPolicy policy, boolean dryRun) throws SQLException {
+        return apply(DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME), policy, dryRun);
+    }
+
+    /**
+     * Applies a policy to one tracked file.
+     *
+     * @param fileName the name of the tracked file
+     * @param policy the policy deciding which versions are removed
+     * @param now the time the ages of the versions are measured from
+     * @param report the report receiving the removed versions, its dry run flag decides if the history is rewritten
+     * @throws IOException if the history couldn't be read or rewritten
+     * @throws SQLException if the commit index couldn't be rebuilt
+     */
+    public static void apply(String fileName, RetentionPolicy policy, Instant now, RetentionReport report)
+            throws IOException, SQLException {
+        VersionStore store = VersionManager.getStore(fileName);
+        List<StoredVersion> expired = policy.getExpired(store.list(), now);
+        if (expired.isEmpty())
+            return;
+
+        long bytes = 0;
+        Set<String> expiredIds = new HashSet<>();
+        for (StoredVersion version : expired) {
+            bytes += version.getSize();
+            expiredIds.add(version.getId());
+        }
+        report.addRemoved(fileName, expired.size(), bytes);
+        if (report.isDryRun())
+            return;
+
+        // Removed versions map to nothing, survivors to their new id
+        Map<String, String> rewrittenIds = new HashMap<>();
+        for (String versionId : expiredIds)
+            rewrittenIds.put(versionId, null);
+        rewrittenIds.putAll(store.remove(expiredIds));
+        report.addRewrittenIds(rewrittenIds);
+
+        // Numbering and ids of the history changed, so rebuild everything derived from it
+        VersionManager.forgetHistory(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY));
+        CommitIndex.rebuild(fileName);
+        SearchIndex.rebuild(fileName);
+    }
+
+    /**
+     * Applies a policy to some tracked files, for example the files shown in a report of a dry run.
+     *
+     * @param fileNames the names of the tracked files
+     * @param policy the policy deciding which versions are removed
+     * @param dryRun true to only report what would be removed
+     * @return the versions and bytes removed per file, and the files that failed
+     */
+    public static RetentionReport apply(List<String> fileNames, RetentionPolicy policy, boolean dryRun) {
+        RetentionReport report = new RetentionReport(dryRun);
+        Instant now = Instant.now();
+
+        for (String fileName : fileNames) {
+            try {
+                apply(fileName, policy, now, report);
+            } catch (IOException | SQLException | RuntimeException e) {
+                report.addFailure(fileName, e);
+            }
+        }
+
+        return report;
+    }
+}
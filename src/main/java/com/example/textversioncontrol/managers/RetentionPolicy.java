@@ -0,0 +1,107 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The <code>RetentionPolicy</code> class decides which versions of a file's history are thinned out as they age.
+ * The policy is a list of tiers: versions older than a tier's age keep only the newest version of every interval of
+ * the tier, for example one version per hour once they are a day old and one per day once they are thirty days old.
+ * Versions younger than the first tier and the newest version of the history are always kept.
+ */
+public class RetentionPolicy {
+
+    /** Versions older than <code>age</code> keep one version per <code>interval</code> */
+    private record Tier(Duration age, Duration interval) {
+    }
+
+    /** Keeps everything for a day, then hourly versions for thirty days, then daily versions */
+    public static final RetentionPolicy DEFAULT = parse("P1D/PT1H,P30D/P1D");
+
+    /** Tiers ordered from the youngest age to the oldest */
+    private final List<Tier> tiers;
+
+    private RetentionPolicy(List<Tier> tiers) {
+        this.tiers = tiers;
+    }
+
+    /**
+     * Reads a policy from comma separated tiers of an age and an interval in ISO-8601 duration form, for example
+     * <code>P1D/PT1H,P30D/P1D</code> keeps hourly versions once they are a day old and daily versions once they are
+     * thirty days old.
+     *
+     * @param rules the tiers of the policy
+     * @return the policy
+     * @throws IllegalArgumentException if a tier isn't an age and a positive interval, or the ages aren't increasing
+     */
+    public static RetentionPolicy parse(String rules) {
+        List<Tier> tiers = new ArrayList<>();
+        for (String rule : rules.split(",")) {
+            String[] parts = rule.trim().split("/");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Retention tier isn't an age and an interval: " + rule);
+
+            Tier tier = new Tier(Duration.parse(parts[0]), Duration.parse(parts[1]));
+            if (tier.interval.getSeconds() <= 0)
+                throw new IllegalArgumentException("Retention interval must be at least a second: " + rule);
+            if (!tiers.isEmpty() && tier.age.compareTo(tiers.get(tiers.size() - 1).age) <= 0)
+                throw new IllegalArgumentException("Retention ages must be increasing: " + rules);
+            tiers.add(tier);
+        }
+
+        return new RetentionPolicy(List.copyOf(tiers));
+    }
+
+    /**
+     * Returns the policy set with the textversioncontrol.retention system property.
+     *
+     * @return the configured policy, null if retention isn't enabled
+     */
+    public static RetentionPolicy fromProperties() {
+        String rules = System.getProperty("textversioncontrol.retention");
+        return rules == null || rules.isBlank() ? null : parse(rules);
+    }
+
+    /**
+     * Finds the versions the policy removes from a history.
+     *
+     * @param versions the versions of the history, oldest first
+     * @param now the time the ages are measured from
+     * @return the versions to remove, oldest first
+     */
+    public List<StoredVersion> getExpired(List<StoredVersion> versions, Instant now) {
+        List<StoredVersion> expired = new ArrayList<>();
+        Set<String> keptIntervals = new HashSet<>();
+
+        // Newest first, so the first version seen in an interval is the one kept, starting with the newest version
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            StoredVersion version = versions.get(i);
+            int tier = getTier(Duration.between(Instant.ofEpochSecond(version.getTime()), now));
+            if (tier < 0)
+                continue;
+
+            String interval = tier + ":" + Math.floorDiv(version.getTime(), tiers.get(tier).interval.getSeconds());
+            if (!keptIntervals.add(interval))
+                expired.add(version);
+        }
+        Collections.reverse(expired);
+
+        return expired;
+    }
+
+    /** Returns the oldest tier a version of the age belongs to, -1 if it's younger than every tier. */
+    private int getTier(Duration age) {
+        int tier = -1;
+        while (tier + 1 < tiers.size() && age.compareTo(tiers.get(tier + 1).age) >= 0)
+            tier++;
+
+        return tier;
+    }
+}
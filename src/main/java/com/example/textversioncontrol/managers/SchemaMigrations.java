@@ -0,0 +1,155 @@
+package com.example.textversioncontrol.managers;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * The <code>SchemaMigrations</code> class brings the database to the schema this version of the application expects.
+ * The schema_version table holds one row per migration that was applied. <code>migrate()</code> runs every migration
+ * newer than the newest row in order, each in its own transaction together with its row, so a migration that fails
+ * leaves the database at the previous version and is tried again on the next start.
+ * <p>
+ * Migrations are never changed once released, a change to the schema is a new migration at the end of the list.
+ */
+public abstract class SchemaMigrations {
+
+    /** Step from the previous version of the schema to <code>version</code> */
+    private record Migration(int version, String description, DatabaseManager.Work work) {
+    }
+
+    /** Every migration, ordered by version */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create the pathways, fingerprints and commit index tables", SchemaMigrations::createTables),
+            new Migration(2, "Add an id and unique file name and tracking pathway indexes to pathways",
+                    SchemaMigrations::indexPathways),
+            new Migration(3, "Create the full-text search index of versions", SearchIndex::createTables),
+            new Migration(4, "Add the scan time to fingerprints", SchemaMigrations::addScanTime));
+
+    /**
+     * Applies the migrations the database doesn't have yet.
+     *
+     * @return the number of migrations that were applied
+     * @throws SQLException if a migration failed, the migrations before it stay applied
+     */
+    public static int migrate() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "	version integer PRIMARY KEY,"
+                    + "	description text NOT NULL,"
+                    + "	applied_time integer NOT NULL"
+                    + ");");
+        }
+
+        int current = getVersion();
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= current)
+                continue;
+
+            // Record the version in the same transaction, so it's only stored if the migration succeeded
+            DatabaseManager.transaction(() -> {
+                migration.work.run();
+
+                try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+                    PreparedStatement insert = lease.prepare("INSERT INTO schema_version (version, description, applied_time) VALUES (?, ?, ?)");
+                    insert.setInt(1, migration.version);
+                    insert.setString(2, migration.description);
+                    insert.setLong(3, System.currentTimeMillis() / 1000);
+                    insert.executeUpdate();
+                }
+            });
+            applied++;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Returns the version of the schema the database is at.
+     *
+     * @return the newest applied migration, 0 if none was applied
+     * @throws SQLException if the schema_version table couldn't be read
+     */
+    public static int getVersion() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.read();
+             ResultSet resultSet = lease.prepare("SELECT COALESCE(MAX(version), 0) FROM schema_version").executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Returns the version of the newest migration, the version <code>migrate()</code> brings the database to.
+     *
+     * @return the newest known version
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Version 1: the tables that existed before the schema was versioned. Databases from before the versioning
+     * already have them, so they are only created if they don't exist.
+     *
+     * @throws SQLException if a table couldn't be created
+     */
+    private static void createTables() throws SQLException {
+        DatabaseManager.createColumns();
+        DatabaseManager.createFingerprintTable();
+        CommitIndex.createTable();
+    }
+
+    /**
+     * Version 2: rebuilds the pathways table with an integer id and unique indexes on file_name and tracking_pathway,
+     * so lookups by name are index searches instead of table scans. Of rows that share a name or a tracking pathway,
+     * only the oldest one was ever returned by a lookup, so it is the one kept.
+     * <p>
+     * The fingerprints and indexed commits of the dropped rows go with them. Rows under a name that was shared can't
+     * be told apart, so they are dropped too; the next scan hashes the file again and the next read of its history
+     * rebuilds the index from its store.
+     *
+     * @throws SQLException if the table couldn't be rebuilt
+     */
+    private static void indexPathways() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE pathways_indexed ("
+                    + "	id integer PRIMARY KEY,"
+                    + "	file_name text NOT NULL,"
+                    + "	directory_pathway text NOT NULL,"
+                    + "	copy_pathway text NOT NULL,"
+                    + "	tracking_pathway text NOT NULL,"
+                    + "	repo_pathway text NOT NULL"
+                    + ");");
+            statement.execute("CREATE UNIQUE INDEX pathways_file_name ON pathways_indexed (file_name)");
+            statement.execute("CREATE UNIQUE INDEX pathways_tracking_pathway ON pathways_indexed (tracking_pathway)");
+
+            // Copy the rows oldest first, the indexes skip the later duplicates
+            statement.execute("INSERT OR IGNORE INTO pathways_indexed "
+                    + "(file_name, directory_pathway, copy_pathway, tracking_pathway, repo_pathway) "
+                    + "SELECT file_name, directory_pathway, copy_pathway, tracking_pathway, repo_pathway "
+                    + "FROM pathways WHERE file_name IS NOT NULL ORDER BY rowid");
+
+            // Drop what belonged to the dropped rows, by file name
+            for (String table : new String[] {"fingerprints", "commits", "last_commits"})
+                statement.execute("DELETE FROM " + table + " WHERE file_name NOT IN (SELECT file_name FROM pathways_indexed) "
+                        + "OR file_name IN (SELECT file_name FROM pathways GROUP BY file_name HAVING COUNT(*) > 1)");
+
+            statement.execute("DROP TABLE pathways");
+            statement.execute("ALTER TABLE pathways_indexed RENAME TO pathways");
+        }
+    }
+
+    /**
+     * Version 4: adds the time a file was hashed to its fingerprint, so fingerprints taken in the clock tick of the
+     * file's last write are recognized as racy. Existing fingerprints get 0, which makes each file hashed once more.
+     *
+     * @throws SQLException if the column couldn't be added
+     */
+    private static void addScanTime() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("ALTER TABLE fingerprints ADD COLUMN scan_time integer NOT NULL DEFAULT 0");
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.SearchHit;
+import com.example.textversioncontrol.models.StoredVersion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The <code>SearchIndex</code> class finds the versions of tracked files in which a text was written. Every saved
+ * version adds the lines it introduced, the lines that weren't in the version before it, to an SQLite FTS5 table,
+ * so the index grows with what was typed rather than with the size of every version, and a new version is indexed
+ * against the copy it replaces without reading the history. The FTS5 table is contentless, it keeps the inverted
+ * index of terms and their positions for phrase queries but not the text itself.
+ * <p>
+ * The introduced lines of a version form runs of consecutive lines, and the runs are kept apart by
+ * <code>RUN_BREAK</code>, a token nobody types, so a phrase only matches inside one run and not across lines that
+ * were far apart in the file. Unchanged lines aren't indexed, so a phrase that starts on an unchanged line and ends
+ * on an introduced one isn't found; its words are found separately.
+ * <p>
+ * The rowid of an indexed version is its commit time shifted left by <code>TIME_SHIFT</code> bits plus a sequence
+ * number, so the newest matches come first by walking the index backwards and a query stops after
+ * <code>limit</code> matches however many versions are indexed.
+ * <p>
+ * The search_files table remembers the newest indexed version of every file. A new version is only indexed with the
+ * commit that saves it if its file's index is current; files that fell behind, such as files tracked before the
+ * index existed, are caught up from their store with <code>catchUp</code>.
+ * <p>
+ * Only versions up to <code>SIZE_LIMIT</code> bytes are read for their text, so saving a file of any size never
+ * depends on it fitting in memory. Larger versions are recorded in the file's index without text.
+ */
+public abstract class SearchIndex {
+
+    /** Bits of a rowid below the commit time, about a million versions can share a second */
+    private static final int TIME_SHIFT = 20;
+
+    /** Token written between runs of introduced lines, a private use character FTS5 keeps as a token of its own */
+    static final String RUN_BREAK = "\uE000";
+
+    /** Largest version in bytes whose text is indexed */
+    static final long SIZE_LIMIT = Math.min(Long.getLong("textversioncontrol.search.sizeLimit", 8L * 1024 * 1024),
+            Integer.MAX_VALUE - 8);
+
+    /** Versions written to the index per transaction while catching up */
+    private static final int CATCH_UP_CHUNK = 256;
+
+    /** Text a version introduced, waiting to be written to the index */
+    private record PendingVersion(StoredVersion version, String text) {
+    }
+
+    /**
+     * Creates the search_text, search_versions and search_files tables if they don't exist.
+     *
+     * @throws SQLException if database access error occurs
+     */
+    public static void createTables() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("CREATE VIRTUAL TABLE IF NOT EXISTS search_text USING fts5(text, content='', contentless_delete=1)");
+            statement.execute("CREATE TABLE IF NOT EXISTS search_versions ("
+                    + "	id integer PRIMARY KEY,"
+                    + "	file_name text NOT NULL,"
+                    + "	commit_id text NOT NULL,"
+                    + "	commit_time integer NOT NULL"
+                    + ");");
+            statement.execute("CREATE INDEX IF NOT EXISTS search_versions_file_name ON search_versions (file_name)");
+            statement.execute("CREATE TABLE IF NOT EXISTS search_files ("
+                    + "	file_name text PRIMARY KEY,"
+                    + "	commit_id text NOT NULL"
+                    + ");");
+        }
+    }
+
+    /**
+     * Indexes a version that is being saved. Must be called in the transaction that records the version, the
+     * version is only indexed if the file's newest indexed version is the version it follows.
+     *
+     * @param fileName the name of the tracked file
+     * @param parentId the id of the version before it, null for the first version
+     * @param version the version that is being saved
+     * @param previous the content of the version before it as read by <code>readContent</code>, null for the first
+     *                 version or a version too large to index
+     * @param content the content of the version as read by <code>readContent</code>, null if it is too large to index
+     * @throws SQLException if the version couldn't be indexed
+     */
+    public static void add(String fileName, String parentId, StoredVersion version, byte[] previous, byte[] content)
+            throws SQLException {
+        DatabaseManager.transaction(() -> {
+            if (!Objects.equals(getIndexedHead(fileName), parentId))
+                return;
+
+            write(fileName, List.of(new PendingVersion(version, content == null ? "" : getIntroducedText(previous, content))));
+        });
+    }
+
+    /**
+     * Reads the content of a version for indexing, reading at most <code>SIZE_LIMIT</code> bytes.
+     *
+     * @param path the file holding the content
+     * @return the content, null if the file doesn't exist or is larger than <code>SIZE_LIMIT</code>
+     * @throws IOException if the file couldn't be read
+     */
+    public static byte[] readContent(Path path) throws IOException {
+        if (!Files.exists(path))
+            return null;
+
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            byte[] content = inputStream.readNBytes((int) SIZE_LIMIT + 1);
+            return content.length > SIZE_LIMIT ? null : content;
+        }
+    }
+
+    /**
+     * Indexes the versions of a file that were saved after its newest indexed version. A current file costs one
+     * lookup of its newest version, only files that fell behind list their history. If the newest indexed version
+     * isn't in the file's history anymore, the file is indexed again from its first version.
+     *
+     * @param fileName the name of the tracked file
+     * @throws IOException if the file's store couldn't be read
+     * @throws SQLException if the versions couldn't be indexed
+     */
+    public static void catchUp(String fileName) throws IOException, SQLException {
+        if (FileRegistry.get(fileName) == null)
+            return;
+        VersionStore store = VersionManager.getStore(fileName);
+
+        // A file whose index ends at its newest version is current, which is found without listing its history
+        StoredVersion latest = store.latest();
+        if (Objects.equals(getIndexedHead(fileName), latest == null ? null : latest.getId()))
+            return;
+
+        // Start over whenever a commit changed the file's index while its versions were read
+        boolean current = false;
+        while (!current) {
+            List<StoredVersion> versions = store.list();
+            String head = getIndexedHead(fileName);
+
+            int start = 0;
+            if (head != null) {
+                while (start < versions.size() && !versions.get(start).getId().equals(head))
+                    start++;
+
+                if (start == versions.size()) {
+                    delete(fileName);
+                    head = null;
+                    start = 0;
+                } else {
+                    start++;
+                }
+            }
+
+            current = true;
+            byte[] previous = start > 0 ? readContent(store, versions.get(start - 1)) : null;
+            List<PendingVersion> pending = new ArrayList<>();
+            for (int i = start; i < versions.size() && current; i++) {
+                byte[] content = readContent(store, versions.get(i));
+                pending.add(new PendingVersion(versions.get(i), content == null ? "" : getIntroducedText(previous, content)));
+                previous = content;
+
+                if (pending.size() == CATCH_UP_CHUNK || i == versions.size() - 1) {
+                    current = writeIfHead(fileName, head, pending);
+                    head = versions.get(i).getId();
+                    pending.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Catches up the index of every tracked file, reading the histories of the files that fell behind only. A file
+     * that fails doesn't stop the others.
+     *
+     * @throws SQLException if the tracked files couldn't be read
+     */
+    public static void catchUpAll() throws SQLException {
+        for (String fileName : DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME)) {
+            try {
+                catchUp(fileName);
+            } catch (IOException | SQLException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Indexes a file again from its first version, used after its history was rewritten.
+     *
+     * @param fileName the name of the tracked file
+     * @throws IOException if the file's store couldn't be read
+     * @throws SQLException if the versions couldn't be indexed
+     */
+    public static void rebuild(String fileName) throws IOException, SQLException {
+        delete(fileName);
+        catchUp(fileName);
+    }
+
+    /**
+     * Finds the versions in which the words of a query were written, newest first. Words in double quotes must
+     * appear next to each other in that order within one run of introduced lines, other words anywhere in the text
+     * the version introduced.
+     *
+     * @param query the words and quoted phrases to search for
+     * @param limit the maximum number of versions returned
+     * @return the matching versions newest first, empty if the query has no words
+     * @throws SQLException if the index couldn't be read
+     */
+    public static ArrayList<SearchHit> search(String query, int limit) throws SQLException {
+        ArrayList<SearchHit> hits = new ArrayList<>();
+        String expression = toMatchExpression(query);
+        if (expression == null || limit <= 0)
+            return hits;
+
+        // Walk the index from the newest rowid, which is the newest version
+        String select = "SELECT v.file_name, v.commit_id, v.commit_time FROM search_text "
+                + "JOIN search_versions v ON v.id = search_text.rowid "
+                + "WHERE search_text MATCH ? ORDER BY search_text.rowid DESC LIMIT ?";
+
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare(select);
+            preparedStatement.setString(1, expression);
+            preparedStatement.setInt(2, limit);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next())
+                    hits.add(new SearchHit(resultSet.getString("file_name"), resultSet.getString("commit_id"),
+                            resultSet.getLong("commit_time")));
+            }
+        }
+
+        return hits;
+    }
+
+    /**
+     * Moves the indexed versions of a file to its new name.
+     *
+     * @param fileName the old name of the file
+     * @param newFileName the new name of the file
+     * @throws SQLException if the rows couldn't be updated
+     */
+    public static void rename(String fileName, String newFileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+            for (String table : new String[] {"search_versions", "search_files"}) {
+                PreparedStatement preparedStatement = lease.prepare("UPDATE " + table + " SET file_name = ? WHERE file_name = ?");
+                preparedStatement.setString(1, newFileName);
+                preparedStatement.setString(2, fileName);
+                preparedStatement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Deletes the indexed versions of a file.
+     *
+     * @param fileName the name of the file
+     * @throws SQLException if the rows couldn't be deleted
+     */
+    public static void delete(String fileName) throws SQLException {
+        DatabaseManager.transaction(() -> {
+            try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+                PreparedStatement text = lease.prepare(
+                        "DELETE FROM search_text WHERE rowid IN (SELECT id FROM search_versions WHERE file_name = ?)");
+                text.setString(1, fileName);
+                text.executeUpdate();
+
+                for (String table : new String[] {"search_versions", "search_files"}) {
+                    PreparedStatement preparedStatement = lease.prepare("DELETE FROM " + table + " WHERE file_name = ?");
+                    preparedStatement.setString(1, fileName);
+                    preparedStatement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the indexed versions of all files.
+     *
+     * @throws SQLException if the rows couldn't be deleted
+     */
+    public static void clear() throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("INSERT INTO search_text (search_text) VALUES ('delete-all')");
+            statement.execute("DELETE FROM search_versions");
+            statement.execute("DELETE FROM search_files");
+        }
+    }
+
+    /**
+     * Turns a query typed by the user into an FTS5 match expression. Every word and every quoted phrase becomes a
+     * quoted FTS5 phrase, so characters with a meaning in FTS5 syntax are searched for like any other text.
+     *
+     * @param query the words and quoted phrases to search for
+     * @return the match expression, null if the query has no words
+     */
+    static String toMatchExpression(String query) {
+        List<String> phrases = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            boolean end = i == query.length() || c == '"' || (!quoted && Character.isWhitespace(c));
+            if (!end) {
+                current.append(c);
+                continue;
+            }
+
+            // Words without letters or digits have no tokens and would match nothing
+            String phrase = current.toString().trim();
+            if (phrase.codePoints().anyMatch(Character::isLetterOrDigit))
+                phrases.add('"' + phrase + '"');
+            current.setLength(0);
+
+            if (c == '"')
+                quoted = !quoted;
+        }
+
+        return phrases.isEmpty() ? null : String.join(" ", phrases);
+    }
+
+    /**
+     * Returns the lines of a version that don't appear in the version before it, counting repeated lines, so
+     * reordered or deleted lines don't index anything. Runs of consecutive introduced lines are separated by
+     * <code>RUN_BREAK</code>.
+     *
+     * @param previous the content of the version before, null for the first version
+     * @param content the content of the version
+     * @return the introduced lines separated by line breaks
+     */
+    static String getIntroducedText(byte[] previous, byte[] content) {
+        Map<String, Integer> remaining = new HashMap<>();
+        if (previous != null)
+            new String(previous, StandardCharsets.UTF_8).lines().forEach(line -> remaining.merge(line, 1, Integer::sum));
+
+        StringBuilder text = new StringBuilder();
+        AtomicBoolean kept = new AtomicBoolean();
+        new String(content, StandardCharsets.UTF_8).lines().forEach(line -> {
+            Integer count = remaining.get(line);
+            if (count != null && count > 0) {
+                remaining.put(line, count - 1);
+                kept.set(true);
+                return;
+            }
+
+            // Start a new run after a kept line
+            if (kept.getAndSet(false) && !text.isEmpty())
+                text.append(RUN_BREAK).append('\n');
+            text.append(line).append('\n');
+        });
+
+        return text.toString();
+    }
+
+    /** Reads the content of a stored version for indexing, null if it is larger than <code>SIZE_LIMIT</code>. */
+    private static byte[] readContent(VersionStore store, StoredVersion version) throws IOException {
+        return version.getSize() > SIZE_LIMIT ? null : store.read(version.getId());
+    }
+
+    /**
+     * Writes versions to the index if the file's newest indexed version is still <code>head</code>.
+     *
+     * @return false if another thread extended the file's index in the meantime
+     */
+    private static boolean writeIfHead(String fileName, String head, List<PendingVersion> pending) throws SQLException {
+        AtomicBoolean written = new AtomicBoolean();
+        DatabaseManager.transaction(() -> {
+            if (Objects.equals(getIndexedHead(fileName), head)) {
+                write(fileName, pending);
+                written.set(true);
+            }
+        });
+
+        return written.get();
+    }
+
+    /**
+     * Writes the text of versions to the index and makes the last one the file's newest indexed version.
+     * Must be called inside a transaction.
+     */
+    private static void write(String fileName, List<PendingVersion> pending) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.write()) {
+            PreparedStatement version = lease.prepare(
+                    "INSERT INTO search_versions (id, file_name, commit_id, commit_time) VALUES (?, ?, ?, ?)");
+            PreparedStatement text = lease.prepare("INSERT INTO search_text (rowid, text) VALUES (?, ?)");
+
+            for (PendingVersion each : pending) {
+                // Versions that only removed or reordered lines have nothing to find
+                if (each.text.isBlank())
+                    continue;
+
+                long id = nextId(lease, each.version.getTime());
+                version.setLong(1, id);
+                version.setString(2, fileName);
+                version.setString(3, each.version.getId());
+                version.setLong(4, each.version.getTime());
+                version.executeUpdate();
+
+                text.setLong(1, id);
+                text.setString(2, each.text);
+                text.executeUpdate();
+            }
+
+            PreparedStatement head = lease.prepare("INSERT OR REPLACE INTO search_files (file_name, commit_id) VALUES (?, ?)");
+            head.setString(1, fileName);
+            head.setString(2, pending.get(pending.size() - 1).version.getId());
+            head.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the next free rowid among the rowids of a commit time.
+     *
+     * @throws SQLException if every rowid of the second is taken
+     */
+    private static long nextId(ConnectionPool.Lease lease, long commitTime) throws SQLException {
+        long first = commitTime << TIME_SHIFT;
+        long last = first + (1L << TIME_SHIFT) - 1;
+
+        PreparedStatement preparedStatement = lease.prepare("SELECT MAX(id) FROM search_versions WHERE id BETWEEN ? AND ?");
+        preparedStatement.setLong(1, first);
+        preparedStatement.setLong(2, last);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            long taken = resultSet.next() ? resultSet.getLong(1) : 0;
+            if (resultSet.wasNull())
+                return first;
+            if (taken == last)
+                throw new SQLException("Too many versions indexed at " + commitTime);
+            return taken + 1;
+        }
+    }
+
+    /**
+     * Returns the newest indexed version of a file.
+     *
+     * @return the id of the version, null if none of the file's versions are indexed
+     */
+    private static String getIndexedHead(String fileName) throws SQLException {
+        try (ConnectionPool.Lease lease = DatabaseManager.read()) {
+            PreparedStatement preparedStatement = lease.prepare("SELECT commit_id FROM search_files WHERE file_name = ?");
+            preparedStatement.setString(1, fileName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("commit_id") : null;
+            }
+        }
+    }
+}
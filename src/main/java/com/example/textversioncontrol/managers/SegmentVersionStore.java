@@ -0,0 +1,558 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffOptions;
+import com.example.textversioncontrol.models.StoredVersion;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>SegmentVersionStore</code> class keeps the versions of a tracked file in three plain files instead of
+ * a git repository, which costs far less than a repository's objects and metadata for small, often edited files.
+ * <ul>
+ *     <li><code>latest</code> holds the newest version in full behind a header with its id, time and the version count.</li>
+ *     <li><code>segment</code> is append-only and holds every older version as a reverse delta that rebuilds it from the
+ *     version after it. Every <code>KEYFRAME_INTERVAL</code>th version is stored in full instead, so reading an old
+ *     version applies at most that many deltas.</li>
+ *     <li><code>index</code> has one fixed size record per older version with its id, time, size and where its
+ *     record in the segment is.</li>
+ * </ul>
+ * The delta and index record are written first and the <code>latest</code> file is replaced atomically last, so a
+ * crash in between leaves the previous version count in place and the partly written records are ignored and
+ * overwritten by the next append.
+ */
+public class SegmentVersionStore implements VersionStore {
+
+    /** Name of the directory holding a file's versions, the repo_pathway of files kept in this store ends with it */
+    public static final String DIRECTORY_NAME = ".versions";
+
+    /** Every version whose ordinal is a multiple of this is stored in full */
+    static final int KEYFRAME_INTERVAL = 64;
+
+    /** Bytes of the <code>latest</code> header: id, time, version count */
+    private static final int HEADER_BYTES = 20 + 8 + 4;
+
+    /** Bytes of an index record: id, time, segment offset, record length, version size, kind */
+    private static final int RECORD_BYTES = 20 + 8 + 8 + 4 + 8 + 1;
+
+    /** Kinds of segment records */
+    private static final byte DELTA = 0;
+    private static final byte FULL = 1;
+
+    /** Delta operations */
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+
+    /** Diff settings of the deltas, context isn't stored */
+    private static final DiffOptions DELTA_OPTIONS = new DiffOptions(0, false);
+
+    /** Locks by store directory, so appends and reads of one file never interleave */
+    private static final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    /** Directory holding the files of the store */
+    private final Path directory;
+
+    /** Header the cached index records were read with, so replaying many versions reads the index once */
+    private Header indexedHeader;
+    private List<Record> indexedRecords;
+
+    /** Header of the <code>latest</code> file */
+    private static final class Header {
+        private final ObjectId id;
+        private final long time;
+        private final int count;
+
+        private Header(ObjectId id, long time, int count) {
+            this.id = id;
+            this.time = time;
+            this.count = count;
+        }
+    }
+
+    /** Index record of an older version */
+    private static final class Record {
+        private final ObjectId id;
+        private final long time;
+        private final long offset;
+        private final int length;
+        private final long size;
+        private final byte kind;
+
+        private Record(ObjectId id, long time, long offset, int length, long size, byte kind) {
+            this.id = id;
+            this.time = time;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Opens the store in a directory, which is created on the first append.
+     *
+     * @param directory the directory holding the store's files
+     */
+    public SegmentVersionStore(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Checks if a repo_pathway points to a segment store.
+     *
+     * @param gitPathway the repo_pathway of a tracked file
+     * @return true if the file's versions are kept in a segment store
+     */
+    public static boolean isSegment(String gitPathway) {
+        if (gitPathway == null)
+            return false;
+
+        Path fileName = Path.of(gitPathway).getFileName();
+        return fileName != null && fileName.toString().equals(DIRECTORY_NAME);
+    }
+
+    @Override
+    public StoredVersion append(Path content, String message) throws IOException {
+        byte[] data = Files.readAllBytes(content);
+
+        synchronized (lock()) {
+            Files.createDirectories(directory);
+            return write(data, Instant.now().getEpochSecond());
+        }
+    }
+
+    /**
+     * Writes the newest version. Must be called while holding the directory's lock.
+     *
+     * @param data the content of the version
+     * @param time the time of the version in seconds since the epoch
+     * @return the written version
+     * @throws IOException if the version couldn't be written
+     */
+    private StoredVersion write(byte[] data, long time) throws IOException {
+        Header header = readHeader();
+
+        // Turn the current newest version into an older one
+        if (header != null) {
+            int ordinal = header.count - 1;
+            byte[] previous = readLatest();
+            byte kind = FULL;
+            byte[] stored = previous;
+            if (ordinal % KEYFRAME_INTERVAL != 0) {
+                byte[] delta = encodeDelta(data, previous);
+                if (delta.length < previous.length) {
+                    kind = DELTA;
+                    stored = delta;
+                }
+            }
+
+            // Records past the version count were left by an interrupted append
+            List<Record> records = readIndex(ordinal);
+            long offset = records.isEmpty() ? 0 : records.get(ordinal - 1).offset + records.get(ordinal - 1).length;
+            try (FileChannel segment = FileChannel.open(directory.resolve("segment"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                segment.truncate(offset);
+                writeFully(segment, ByteBuffer.wrap(stored), offset);
+                segment.force(false);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            record.put(toRaw(header.id)).putLong(header.time).putLong(offset).putInt(stored.length).putLong(previous.length).put(kind).flip();
+            try (FileChannel index = FileChannel.open(directory.resolve("index"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                index.truncate((long) ordinal * RECORD_BYTES);
+                writeFully(index, record, (long) ordinal * RECORD_BYTES);
+                index.force(false);
+            }
+        }
+
+        // Replacing the latest file makes the new version visible
+        ObjectId id = createId(header == null ? ObjectId.zeroId() : header.id, time, data);
+        ByteBuffer newHeader = ByteBuffer.allocate(HEADER_BYTES);
+        newHeader.put(toRaw(id)).putLong(time).putInt(header == null ? 1 : header.count + 1).flip();
+
+        Path temp = Files.createTempFile(directory, "latest", ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(out, newHeader, 0);
+                writeFully(out, ByteBuffer.wrap(data), HEADER_BYTES);
+                out.force(false);
+            }
+            try {
+                Files.move(temp, directory.resolve("latest"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve("latest"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return new StoredVersion(id.getName(), time, data.length, header == null ? null : header.id.getName());
+    }
+
+    @Override
+    public ArrayList<StoredVersion> list() throws IOException {
+        synchronized (lock()) {
+            ArrayList<StoredVersion> versions = new ArrayList<>();
+            Header header = readHeader();
+            if (header == null)
+                return versions;
+
+            for (Record record : readIndex(header))
+                versions.add(new StoredVersion(record.id.getName(), record.time, record.size));
+            versions.add(new StoredVersion(header.id.getName(), header.time, Files.size(directory.resolve("latest")) - HEADER_BYTES));
+
+            return versions;
+        }
+    }
+
+    @Override
+    public byte[] read(String versionId) throws IOException {
+        synchronized (lock()) {
+            Header header = readHeader();
+            ObjectId id = ObjectId.isId(versionId) ? ObjectId.fromString(versionId) : null;
+            if (header == null || id == null)
+                throw new IllegalArgumentException("Version ID not found");
+            if (id.equals(header.id))
+                return readLatest();
+
+            List<Record> records = readIndex(header);
+            int ordinal = -1;
+            for (int i = records.size() - 1; i >= 0 && ordinal < 0; i--)
+                if (records.get(i).id.equals(id))
+                    ordinal = i;
+            if (ordinal < 0)
+                throw new IllegalArgumentException("Version ID not found");
+
+            // Start from the nearest full version after the wanted one, or the newest version
+            int start = ordinal;
+            while (start < records.size() && records.get(start).kind != FULL)
+                start++;
+
+            try (FileChannel segment = FileChannel.open(directory.resolve("segment"), StandardOpenOption.READ)) {
+                byte[] content = start < records.size() ? readRecord(segment, records.get(start)) : readLatest();
+                for (int i = Math.min(start, records.size()) - 1; i >= ordinal; i--) {
+                    Record record = records.get(i);
+                    content = record.kind == FULL ? readRecord(segment, record) : applyDelta(content, readRecord(segment, record));
+                }
+
+                return content;
+            }
+        }
+    }
+
+    @Override
+    public StoredVersion latest() throws IOException {
+        synchronized (lock()) {
+            Header header = readHeader();
+            return header == null ? null
+                    : new StoredVersion(header.id.getName(), header.time, Files.size(directory.resolve("latest")) - HEADER_BYTES);
+        }
+    }
+
+    /**
+     * Writes the surviving versions into a new store next to this one, oldest first with their original times, and
+     * swaps the directories once it's complete, so an interrupted rewrite leaves the old store untouched.
+     */
+    @Override
+    public Map<String, String> remove(Set<String> versionIds) throws IOException {
+        synchronized (lock()) {
+            Map<String, String> rewrittenIds = new HashMap<>();
+            Header header = readHeader();
+            if (header == null)
+                return rewrittenIds;
+            if (versionIds.contains(header.id.getName()))
+                throw new IllegalArgumentException("The newest version can't be removed");
+
+            // Rebuild every version from the newest back, keeping the content of the survivors
+            List<Record> records = readIndex(header);
+            List<Record> survivors = new ArrayList<>();
+            List<byte[]> contents = new ArrayList<>();
+            byte[] content = readLatest();
+            try (FileChannel segment = records.isEmpty() ? null : FileChannel.open(directory.resolve("segment"), StandardOpenOption.READ)) {
+                for (int i = records.size() - 1; i >= 0; i--) {
+                    Record record = records.get(i);
+                    content = record.kind == FULL ? readRecord(segment, record) : applyDelta(content, readRecord(segment, record));
+                    if (!versionIds.contains(record.id.getName())) {
+                        survivors.add(record);
+                        contents.add(content);
+                    }
+                }
+            }
+            if (survivors.size() == records.size())
+                return rewrittenIds;
+
+            Path compacted = directory.resolveSibling(DIRECTORY_NAME + ".compact");
+            Path replaced = directory.resolveSibling(DIRECTORY_NAME + ".old");
+            deleteRecursively(compacted);
+            deleteRecursively(replaced);
+
+            // Append the survivors to the new store oldest first
+            SegmentVersionStore store = new SegmentVersionStore(compacted);
+            Files.createDirectories(compacted);
+            for (int i = survivors.size() - 1; i >= 0; i--)
+                rewrittenIds.put(survivors.get(i).id.getName(), store.write(contents.get(i), survivors.get(i).time).getId());
+            rewrittenIds.put(header.id.getName(), store.write(readLatest(), header.time).getId());
+
+            Files.move(directory, replaced, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compacted, directory, StandardCopyOption.ATOMIC_MOVE);
+            deleteRecursively(replaced);
+            indexedHeader = null;
+
+            return rewrittenIds;
+        }
+    }
+
+    /** Deletes a directory of store files if it exists. */
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.isDirectory(path))
+            return;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (Path file : files)
+                Files.delete(file);
+        }
+        Files.delete(path);
+    }
+
+    /** Returns the lock of this store's directory. */
+    private Object lock() {
+        return locks.computeIfAbsent(directory, key -> new Object());
+    }
+
+    /**
+     * Reads the header of the <code>latest</code> file.
+     *
+     * @return the header, null if nothing was appended yet
+     * @throws IOException if the file couldn't be read
+     */
+    private Header readHeader() throws IOException {
+        Path latest = directory.resolve("latest");
+        if (!Files.exists(latest))
+            return null;
+
+        try (FileChannel in = FileChannel.open(latest, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(in, header, 0);
+            byte[] id = new byte[20];
+            header.get(id);
+            return new Header(ObjectId.fromRaw(id), header.getLong(), header.getInt());
+        }
+    }
+
+    /** Reads the content of the newest version. */
+    private byte[] readLatest() throws IOException {
+        try (FileChannel in = FileChannel.open(directory.resolve("latest"), StandardOpenOption.READ)) {
+            ByteBuffer content = ByteBuffer.allocate((int) (in.size() - HEADER_BYTES));
+            readFully(in, content, HEADER_BYTES);
+            return content.array();
+        }
+    }
+
+    /**
+     * Returns the index records of the older versions behind <code>header</code>, reading them only if the newest
+     * version changed since they were last read.
+     *
+     * @param header the header of the <code>latest</code> file
+     * @return the records oldest first
+     * @throws IOException if the index couldn't be read
+     */
+    private List<Record> readIndex(Header header) throws IOException {
+        if (indexedHeader == null || !indexedHeader.id.equals(header.id) || indexedHeader.count != header.count) {
+            indexedRecords = readIndex(header.count - 1);
+            indexedHeader = header;
+        }
+
+        return indexedRecords;
+    }
+
+    /**
+     * Reads the first <code>count</code> index records.
+     *
+     * @param count the number of older versions
+     * @return the records oldest first
+     * @throws IOException if the index is shorter than <code>count</code> records
+     */
+    private List<Record> readIndex(int count) throws IOException {
+        ArrayList<Record> records = new ArrayList<>(count);
+        if (count == 0)
+            return records;
+
+        try (FileChannel in = FileChannel.open(directory.resolve("index"), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(count * RECORD_BYTES);
+            readFully(in, buffer, 0);
+
+            byte[] id = new byte[20];
+            for (int i = 0; i < count; i++) {
+                buffer.get(id);
+                records.add(new Record(ObjectId.fromRaw(id), buffer.getLong(), buffer.getLong(), buffer.getInt(),
+                        buffer.getLong(), buffer.get()));
+            }
+        }
+
+        return records;
+    }
+
+    /** Reads the bytes of a record from the segment. */
+    private static byte[] readRecord(FileChannel segment, Record record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        readFully(segment, buffer, record.offset);
+        return buffer.array();
+    }
+
+    /** Fills a buffer from a channel starting at <code>position</code> and flips it for reading. */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new EOFException("Version store is truncated");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /** Writes a whole buffer to a channel starting at <code>position</code>. */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Creates the id of a version from the id before it, its time and its content, so equal contents saved at
+     * different points of the history still get different ids.
+     */
+    private static ObjectId createId(ObjectId parent, long time, byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(toRaw(parent));
+            digest.update(ByteBuffer.allocate(8).putLong(time).array());
+            digest.update(content);
+            return ObjectId.fromRaw(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 isn't available", e);
+        }
+    }
+
+    /** Returns the 20 bytes of an id. */
+    private static byte[] toRaw(ObjectId id) {
+        byte[] raw = new byte[20];
+        id.copyRawTo(raw, 0);
+        return raw;
+    }
+
+    /**
+     * Splits content into lines that keep their terminators, decoded one char per byte so any content round trips.
+     */
+    private static ArrayList<String> splitKeepingTerminators(byte[] content) {
+        ArrayList<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                lines.add(new String(content, start, i + 1 - start, StandardCharsets.ISO_8859_1));
+                start = i + 1;
+            }
+        }
+        if (start < content.length)
+            lines.add(new String(content, start, content.length - start, StandardCharsets.ISO_8859_1));
+
+        return lines;
+    }
+
+    /**
+     * Encodes the operations that rebuild <code>target</code> from <code>base</code>: byte ranges copied from the
+     * base and bytes inserted from the target, found with a line diff.
+     *
+     * @param base the newer version the delta is applied to
+     * @param target the older version the delta rebuilds
+     * @return the encoded delta
+     */
+    static byte[] encodeDelta(byte[] base, byte[] target) {
+        ArrayList<String> baseLines = splitKeepingTerminators(base);
+        long[] lineOffsets = new long[baseLines.size() + 1];
+        for (int i = 0; i < baseLines.size(); i++)
+            lineOffsets[i + 1] = lineOffsets[i] + baseLines.get(i).length();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int[] position = new int[1];
+        LineDiff.diff(baseLines, splitKeepingTerminators(target), DELTA_OPTIONS, hunk -> {
+            try {
+                int start = hunk.getOldCount() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1;
+                writeCopy(out, lineOffsets[position[0]], lineOffsets[start]);
+
+                StringBuilder inserted = new StringBuilder();
+                for (String line : hunk.getLines())
+                    if (line.charAt(0) == '+')
+                        inserted.append(line, 1, line.length());
+                if (inserted.length() > 0) {
+                    out.writeByte(INSERT);
+                    out.writeInt(inserted.length());
+                    out.write(inserted.toString().getBytes(StandardCharsets.ISO_8859_1));
+                }
+
+                position[0] = start + hunk.getOldCount();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            writeCopy(out, lineOffsets[position[0]], lineOffsets[baseLines.size()]);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /** Writes a copy of the base's bytes from <code>start</code> to <code>end</code>, if there are any. */
+    private static void writeCopy(DataOutputStream out, long start, long end) throws IOException {
+        if (end > start) {
+            out.writeByte(COPY);
+            out.writeInt((int) start);
+            out.writeInt((int) (end - start));
+        }
+    }
+
+    /**
+     * Rebuilds a version from the version after it and the delta encoded by <code>encodeDelta</code>.
+     *
+     * @param base the newer version
+     * @param delta the encoded delta
+     * @return the older version
+     * @throws IOException if the delta is damaged
+     */
+    static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(base.length);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta))) {
+            while (in.available() > 0) {
+                int operation = in.readUnsignedByte();
+                if (operation == COPY) {
+                    int start = in.readInt();
+                    int length = in.readInt();
+                    out.write(base, start, length);
+                } else if (operation == INSERT) {
+                    byte[] inserted = new byte[in.readInt()];
+                    in.readFully(inserted);
+                    out.write(inserted);
+                } else {
+                    throw new IOException("Damaged delta");
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * The <code>SharedRepository</code> class stores the history of many tracked files in one bare repository instead of
+ * one repository per file. Every file has its own ref under <code>refs/tracked/</code>, so its history is a plain
+ * walk from that ref, and identical content committed by different files is stored only once.
+ * <p>
+ * The repo_pathway of a file in the shared repository is the pathway of its ref within the repository,
+ * for example <code>TrackedFiles/.shared.git/refs/tracked/notes</code>.
+ */
+public abstract class SharedRepository {
+
+    /** Namespace of the per-file refs */
+    public static final String REF_PREFIX = "refs/tracked/";
+
+    /**
+     * Finds the absolute path to the shared repository inside the TrackedFiles directory.
+     *
+     * @return absolute path to the shared .git directory
+     */
+    public static Path getPathway() {
+        return VersionManager.getTrackedFilesPathway().resolve(".shared.git");
+    }
+
+    /**
+     * Creates the shared bare repository if it doesn't exist yet.
+     *
+     * @throws GitAPIException if the repository couldn't be created
+     */
+    public static synchronized void create() throws GitAPIException {
+        if (!Files.isDirectory(getPathway()))
+            Git.init().setBare(true).setDirectory(getPathway().toFile()).call().close();
+    }
+
+    /**
+     * Returns the repo_pathway stored in the database for a file kept in the shared repository.
+     *
+     * @param fileName the name of the tracked file
+     * @return pathway of the file's ref within the shared repository
+     */
+    public static String getRefPathway(String fileName) {
+        return getPathway().resolve(getRefName(fileName)).toString();
+    }
+
+    /**
+     * Returns the name of the ref holding a file's history, encoding characters that aren't allowed in refs.
+     *
+     * @param fileName the name of the tracked file
+     * @return full ref name of the file
+     */
+    public static String getRefName(String fileName) {
+        return REF_PREFIX + URLEncoder.encode(fileName, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the name of the ref a repo_pathway within the shared repository points to.
+     *
+     * @param gitPathway the repo_pathway of a file in the shared repository
+     * @return full ref name of the file
+     */
+    public static String getRefNameOfPathway(String gitPathway) {
+        String relative = getPathway().relativize(Path.of(gitPathway).toAbsolutePath()).toString();
+        return relative.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Returns the name of the file a ref belongs to.
+     *
+     * @param refName the full ref name
+     * @return the name of the tracked file
+     */
+    public static String getFileName(String refName) {
+        return URLDecoder.decode(refName.substring(REF_PREFIX.length()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if a repo_pathway points into the shared repository.
+     *
+     * @param gitPathway the repo_pathway of a tracked file
+     * @return true if the file's history is kept in the shared repository
+     */
+    public static boolean isShared(String gitPathway) {
+        return gitPathway != null && Path.of(gitPathway).toAbsolutePath().startsWith(getPathway().resolve(REF_PREFIX));
+    }
+
+    /**
+     * Commits the content of a file to the ref of a tracked file without going through a work tree or index.
+     *
+     * @param gitPathway the repo_pathway of the tracked file
+     * @param entryName the name the file is stored under in the commit's tree
+     * @param content the file whose content is committed
+     * @param message the commit message
+     * @return the new commit
+     * @throws IOException if the content couldn't be read or the commit couldn't be written
+     */
+    public static RevCommit commit(String gitPathway, String entryName, Path content, String message) throws IOException {
+        String refName = getRefNameOfPathway(gitPathway);
+
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getPathway().toString());
+             ObjectInserter inserter = lease.getRepository().newObjectInserter()) {
+            Repository repository = lease.getRepository();
+
+            // Insert the content, identical content already in the repository is reused
+            ObjectId blobId;
+            try (InputStream in = Files.newInputStream(content)) {
+                blobId = inserter.insert(Constants.OBJ_BLOB, Files.size(content), in);
+            }
+
+            // Tree with the single tracked file
+            TreeFormatter tree = new TreeFormatter();
+            tree.append(entryName, FileMode.REGULAR_FILE, blobId);
+            ObjectId treeId = inserter.insert(tree);
+
+            // Commit on top of the file's current history
+            Ref ref = repository.exactRef(refName);
+            PersonIdent ident = new PersonIdent(repository);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(treeId);
+            if (ref != null)
+                commit.setParentId(ref.getObjectId());
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            // Move the file's ref to the new commit
+            RefUpdate update = repository.updateRef(refName);
+            update.setNewObjectId(commitId);
+            update.setExpectedOldObjectId(ref != null ? ref.getObjectId() : ObjectId.zeroId());
+            update.setRefLogMessage("commit: " + message, false);
+
+            RefUpdate.Result result = update.update();
+            if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD)
+                throw new IOException("Failed to update " + refName + ": " + result);
+
+            return repository.parseCommit(commitId);
+        }
+    }
+
+    /**
+     * Moves a file's history to the ref of its new name.
+     *
+     * @param gitPathway the current repo_pathway of the file
+     * @param newFileName the new name of the file
+     * @return the new repo_pathway of the file
+     * @throws IOException if the ref couldn't be renamed
+     */
+    public static String rename(String gitPathway, String newFileName) throws IOException {
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getPathway().toString())) {
+            RefRename rename = lease.getRepository().renameRef(getRefNameOfPathway(gitPathway), getRefName(newFileName));
+            RefUpdate.Result result = rename.rename();
+            if (result != RefUpdate.Result.RENAMED)
+                throw new IOException("Failed to rename " + gitPathway + ": " + result);
+        }
+
+        return getRefPathway(newFileName);
+    }
+
+    /**
+     * Deletes the ref of a file. Its content stays in the repository until it is garbage collected.
+     *
+     * @param gitPathway the repo_pathway of the file
+     * @throws IOException if the ref couldn't be deleted
+     */
+    public static void delete(String gitPathway) throws IOException {
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getPathway().toString())) {
+            RefUpdate update = lease.getRepository().updateRef(getRefNameOfPathway(gitPathway));
+            update.setForceUpdate(true);
+            update.delete();
+        }
+    }
+
+    /**
+     * Moves the history of a file from its own repository into the shared repository,
+     * then deletes the file's own .git directory.
+     *
+     * @param fileName the name of the tracked file
+     * @return true if the file was migrated, false if it already was in the shared repository
+     * @throws IOException if the repositories couldn't be read or written
+     * @throws GitAPIException if the history couldn't be fetched into the shared repository
+     * @throws SQLException if the file's record couldn't be read or updated
+     */
+    public static boolean migrate(String fileName) throws IOException, GitAPIException, SQLException {
+        String gitPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY);
+        if (gitPathway == null || isShared(gitPathway))
+            return false;
+
+        create();
+
+        // Copy the history into the file's ref
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(getPathway().toString())) {
+            lease.getGit().fetch()
+                    .setRemote(new File(gitPathway).getAbsolutePath())
+                    .setRefSpecs(new RefSpec("+HEAD:" + getRefName(fileName)))
+                    .call();
+        }
+
+        // Point the record at the shared repository before the old repository is removed
+        DatabaseManager.updateEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY, getRefPathway(fileName));
+        VersionManager.getRepositoryPool().invalidate(gitPathway);
+        VersionManager.deleteDirectory(new File(gitPathway));
+
+        // Drop the histories cached for the old repository and for an earlier file of the same name in the ref
+        VersionManager.forgetHistory(gitPathway);
+        VersionManager.forgetHistory(getRefPathway(fileName));
+
+        return true;
+    }
+
+    /**
+     * Migrates every tracked file that still has its own repository into the shared repository.
+     *
+     * @return names of the files that were migrated
+     * @throws IOException if a repository couldn't be read or written
+     * @throws GitAPIException if a history couldn't be fetched into the shared repository
+     * @throws SQLException if the records couldn't be read or updated
+     */
+    public static ArrayList<String> migrateAll() throws IOException, GitAPIException, SQLException {
+        ArrayList<String> migrated = new ArrayList<>();
+
+        for (String fileName : DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME)) {
+            if (migrate(fileName))
+                migrated.add(fileName);
+        }
+
+        return migrated;
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+import com.example.textversioncontrol.models.ScanResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * The <code>TrackingDaemon</code> class continuously tracks files in the background. It registers the parent directory
+ * of every tracked file with a <code>WatchService</code> and turns create, modify, and rename events into commit jobs.
+ * Tracked files that share a directory share a single watch key, and overflow events rescan only the files in
+ * the directory that overflowed. Saves are passed through a <code>CommitCoalescer</code>, so a file that is
+ * autosaved every few seconds is committed once per burst of saves instead of once per save.
+ * <p>
+ * A tracked file that is deleted or renamed away, as editors do when they save through a temporary file, is
+ * remembered as missing. When a file appears at its pathway again its content is compared with the last saved
+ * version instead of trusting its fingerprint, since a replacement can carry over the size and modified time.
+ * Commits that fail are collected in a <code>ScanResult</code> like the failures of a scan and passed to the
+ * failure listener.
+ */
+public class TrackingDaemon implements Closeable {
+
+    /** Watch service that receives the file system events */
+    private final WatchService watchService;
+
+    /** Watch key of every watched directory */
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+
+    /** Directory of every registered watch key */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /** Tracked file pathways mapped to their file names, replaced on every refresh */
+    private volatile Map<Path, String> trackedFiles = Map.of();
+
+    /** Saves of the files that have a commit job waiting, so a burst of events queues only one job */
+    private final Map<String, Integer> pendingSaves = new ConcurrentHashMap<>();
+
+    /** Files that were deleted or renamed away and haven't appeared again */
+    private final Set<String> missingFiles = ConcurrentHashMap.newKeySet();
+
+    /** Files that appeared again, whose next commit compares the content instead of the fingerprint */
+    private final Set<String> replacedFiles = ConcurrentHashMap.newKeySet();
+
+    /** Files committed by the daemon and the commits that failed */
+    private final ScanResult result = new ScanResult();
+
+    /** Folds saves that follow each other closely into one commit */
+    private final CommitCoalescer coalescer;
+
+    /** Longest time closing waits for the running flush and for the queued commit jobs each */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    /** Commits the files whose saves are due */
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tracking-daemon-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Runs commit jobs one after another */
+    private final ExecutorService commitExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tracking-daemon-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Thread taking events from the watch service */
+    private Thread watchThread;
+
+    /** Called with the file name after a commit was made */
+    private volatile Consumer<String> onCommit;
+
+    /** Called with the file name and the exception after a commit failed */
+    private volatile BiConsumer<String, Exception> onFailure;
+
+    /**
+     * Creates a daemon watching the default file system that commits a file after it hasn't been saved for
+     * two seconds, or at the latest thirty seconds after its first uncommitted save.
+     * Call <code>start()</code> to begin tracking.
+     *
+     * @throws IOException if the watch service couldn't be created
+     */
+    public TrackingDaemon() throws IOException {
+        this(new CommitCoalescer(Duration.ofSeconds(2), Duration.ofSeconds(30)));
+    }
+
+    /**
+     * Creates a daemon watching the default file system that commits saves when <code>coalescer</code>
+     * reports them as due. Call <code>start()</code> to begin tracking.
+     *
+     * @param coalescer decides when a burst of saves is committed
+     * @throws IOException if the watch service couldn't be created
+     */
+    public TrackingDaemon(CommitCoalescer coalescer) throws IOException {
+        this.coalescer = coalescer;
+        watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Registers the directories of all tracked files and starts processing events on a background thread.
+     *
+     * @throws SQLException if the tracked files couldn't be read from the database
+     * @throws IOException if a directory couldn't be registered
+     */
+    public synchronized void start() throws SQLException, IOException {
+        refresh();
+
+        watchThread = new Thread(this::processEvents, "tracking-daemon-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        // Check for due saves a few times per second
+        flushExecutor.scheduleWithFixedDelay(() -> coalescer.flushDue().forEach(this::submit),
+                250, 250, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reloads the tracked files from the registry, registers directories that aren't watched yet
+     * and cancels the watch keys of directories that no longer contain tracked files.
+     * Must be called after a file starts or stops being tracked or its pathway changes.
+     *
+     * @throws SQLException if the tracked files couldn't be read from the database
+     * @throws IOException if a directory couldn't be registered
+     */
+    public synchronized void refresh() throws SQLException, IOException {
+
+        // Group the tracked files by their parent directory
+        Map<Path, String> files = new HashMap<>();
+        Set<Path> watchedDirectories = new HashSet<>();
+        for (FileRecord record : FileRegistry.getAll()) {
+            Path trackingPath = Paths.get(record.getTrackingPathway()).toAbsolutePath().normalize();
+            files.put(trackingPath, record.getFileName());
+            if (trackingPath.getParent() != null)
+                watchedDirectories.add(trackingPath.getParent());
+        }
+
+        // Register directories that aren't watched yet
+        for (Path directory : watchedDirectories) {
+            if (keys.containsKey(directory) || !Files.isDirectory(directory))
+                continue;
+
+            WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            keys.put(directory, key);
+            directories.put(key, directory);
+        }
+
+        // Stop watching directories without tracked files
+        Iterator<Map.Entry<Path, WatchKey>> iterator = keys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, WatchKey> entry = iterator.next();
+            if (!watchedDirectories.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                directories.remove(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        trackedFiles = files;
+    }
+
+    /**
+     * Sets the listener that is called with the file name after the daemon made a commit.
+     * The listener is called on the daemon's commit thread.
+     *
+     * @param onCommit the listener, null to remove it
+     */
+    public void setOnCommit(Consumer<String> onCommit) {
+        this.onCommit = onCommit;
+    }
+
+    /**
+     * Sets the listener that is called with the file name and the exception after a commit failed.
+     * The listener is called on the daemon's commit thread.
+     *
+     * @param onFailure the listener, null to remove it
+     */
+    public void setOnFailure(BiConsumer<String, Exception> onFailure) {
+        this.onFailure = onFailure;
+    }
+
+    /** Returns the files committed by the daemon and the commits that failed since it was created. */
+    public ScanResult getResult() {
+        return result;
+    }
+
+    /** Takes watch keys from the watch service until the daemon is closed. */
+    private void processEvents() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory;
+            synchronized (this) {
+                directory = directories.get(key);
+            }
+
+            // A save can raise several events, so count every file once per batch
+            Set<String> savedFiles = new HashSet<>();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (directory == null)
+                    continue;
+
+                // Events were lost, so rescan the content of every tracked file in this directory
+                if (event.kind() == OVERFLOW) {
+                    savedFiles.addAll(getFilesIn(directory));
+                    replacedFiles.addAll(getFilesIn(directory));
+                    continue;
+                }
+
+                String fileName = trackedFiles.get(directory.resolve((Path) event.context()));
+                if (fileName == null)
+                    continue;
+
+                // Nothing to commit until a file appears at the pathway again
+                if (event.kind() == ENTRY_DELETE) {
+                    missingFiles.add(fileName);
+                    continue;
+                }
+
+                // Created files include files renamed into place by editors that save atomically
+                if (missingFiles.remove(fileName))
+                    replacedFiles.add(fileName);
+                savedFiles.add(fileName);
+            }
+            savedFiles.forEach(coalescer::recordSave);
+
+            // Forget the directory if it can no longer be watched
+            if (!key.reset()) {
+                synchronized (this) {
+                    directories.remove(key);
+                    keys.values().remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the tracked files within a directory.
+     *
+     * @param directory the directory to rescan
+     * @return names of the tracked files in the directory
+     */
+    private List<String> getFilesIn(Path directory) {
+        List<String> fileNames = new ArrayList<>();
+        for (Map.Entry<Path, String> entry : trackedFiles.entrySet()) {
+            if (directory.equals(entry.getKey().getParent()))
+                fileNames.add(entry.getValue());
+        }
+
+        return fileNames;
+    }
+
+    /**
+     * Queues a commit job for a file, or adds the saves to the job that is already waiting.
+     *
+     * @param fileName the name of the tracked file
+     * @param saves the number of saves merged into the commit
+     */
+    private void submit(String fileName, int saves) {
+        if (pendingSaves.merge(fileName, saves, Integer::sum) != saves)
+            return;
+
+        // The daemon was closed, the next scan commits the file instead
+        try {
+            commitExecutor.execute(() -> commit(fileName, pendingSaves.remove(fileName)));
+        } catch (RejectedExecutionException e) {
+            pendingSaves.remove(fileName);
+        }
+    }
+
+    /**
+     * Commits the tracked file if its content changed.
+     *
+     * @param fileName the name of the tracked file
+     * @param saves the number of saves merged into the commit
+     */
+    private void commit(String fileName, int saves) {
+        try {
+            // File stopped being tracked after the event
+            FileRecord record = FileRegistry.get(fileName);
+            if (record == null)
+                return;
+
+            // A replaced file may carry over the stat information of the file it replaced
+            FileFingerprint fingerprint = replacedFiles.remove(fileName) ? null : record.getFingerprint();
+            boolean committed = VersionManager.updateTextFile(fileName, record.getCopyPathway(), record.getTrackingPathway(),
+                    record.getRepoPathway(), fingerprint, CommitCoalescer.getCommitMessage(saves));
+            if (!committed)
+                return;
+
+            result.addCommitted(fileName);
+            Consumer<String> listener = onCommit;
+            if (listener != null)
+                listener.accept(fileName);
+        } catch (NoSuchFileException e) {
+            // File is in the middle of being replaced, the event of the new file picks it up
+            if (!isMissing(fileName))
+                fail(fileName, e);
+        } catch (IOException | GitAPIException | SQLException | RuntimeException e) {
+            fail(fileName, e);
+        }
+    }
+
+    /** Checks if the tracked file of a name doesn't exist at its pathway. */
+    private boolean isMissing(String fileName) {
+        for (Map.Entry<Path, String> entry : trackedFiles.entrySet()) {
+            if (entry.getValue().equals(fileName))
+                return !Files.exists(entry.getKey());
+        }
+
+        return true;
+    }
+
+    /** Records a failed commit and passes it to the failure listener. */
+    private void fail(String fileName, Exception exception) {
+        result.addFailure(fileName, exception);
+
+        BiConsumer<String, Exception> listener = onFailure;
+        if (listener != null)
+            listener.accept(fileName, exception);
+    }
+
+    /**
+     * Stops watching for events, commits the saves that are still waiting for their quiet period,
+     * and waits for the queued commit jobs to finish, at most <code>CLOSE_TIMEOUT</code>.
+     *
+     * @throws IOException if the watch service couldn't be closed, or the commit jobs didn't finish in time
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchThread != null)
+            watchThread.interrupt();
+
+        watchService.close();
+        try {
+            // Let a running flush submit its files before the remaining saves are committed
+            flushExecutor.shutdown();
+            flushExecutor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            coalescer.flushAll().forEach(this::submit);
+
+            commitExecutor.shutdown();
+            if (!commitExecutor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS))
+                throw new IOException("Commit jobs didn't finish within " + CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            commitExecutor.shutdown();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing commit jobs");
+        }
+    }
+}
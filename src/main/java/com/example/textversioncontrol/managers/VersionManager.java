@@ -1,30 +1,102 @@
 package com.example.textversioncontrol.managers;
 
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.nio.file.*;
 import java.io.*;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.io.File;
 
+import com.example.textversioncontrol.models.AnnotatedLine;
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import com.example.textversioncontrol.models.EditData;
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+import com.example.textversioncontrol.models.ScanResult;
+import com.example.textversioncontrol.models.StoredVersion;
 import org.eclipse.jgit.api.*;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 
 /**
  * The <code>VersionManager</code> class is a utility class that manages files.
  */
 public abstract class VersionManager {
 
+    /**
+     * Where the history of newly tracked files is stored: a git repository per file, one shared git repository,
+     * or a <code>SegmentVersionStore</code> per file.
+     */
+    public enum StorageMode {PER_FILE, SHARED, SEGMENT}
+
+    /** Open repositories shared by all methods, so frequently committed files don't reopen their repository */
+    private static final RepositoryPool repositories = new RepositoryPool(64, Duration.ofMinutes(5));
+
+    /** Cached histories by repo_pathway, so commit lookups don't walk the log */
+    private static final Map<String, CommitHistory> histories = new ConcurrentHashMap<>();
+
+    /** Cached annotations by repo_pathway, kept current as files are committed once they were annotated */
+    private static final Map<String, Annotation> annotations = new ConcurrentHashMap<>();
+
+    /** Diffs already computed, spilled under TrackedFiles unless the textversioncontrol.diffSpill system property is false */
+    private static final DiffCache diffs = new DiffCache(Long.getLong("textversioncontrol.diffCacheBytes", 64L * 1024 * 1024),
+            Boolean.parseBoolean(System.getProperty("textversioncontrol.diffSpill", "true")) ? getTrackedFilesPathway().resolve(".diffcache") : null);
+
+    /** Locks by file name, so a scan and the tracking daemon don't update the same file at the same time */
+    private static final Map<String, Object> fileLocks = new ConcurrentHashMap<>();
+
+    /** Fingerprints of unchanged files a scan writes to the database in one transaction */
+    private static final int SCAN_BATCH_SIZE = 500;
+
+    /** Storage mode of newly tracked files, set with the textversioncontrol.storage system property */
+    private static StorageMode storageMode = StorageMode.valueOf(System.getProperty("textversioncontrol.storage", "PER_FILE"));
+
+    /**
+     * Returns the storage mode used for newly tracked files.
+     *
+     * @return the current storage mode
+     */
+    public static StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Sets where the history of newly tracked files is stored. Files that are already tracked keep their storage
+     * until they are moved with <code>SharedRepository.migrate(String)</code>.
+     *
+     * @param mode the storage mode for newly tracked files
+     */
+    public static void setStorageMode(StorageMode mode) {
+        storageMode = mode;
+    }
+
     /**
      * Starts tracking the text file. Creates a new directory and database record to save the file's information.
      *
@@ -72,7 +144,11 @@ public abstract class VersionManager {
 
         // Set pathways
         copyPathway = directoryPathway + "\\" + trackingFile.getName();
-        repoPathway = directoryPathway + "\\.git";
+        repoPathway = switch (storageMode) {
+            case SHARED -> SharedRepository.getRefPathway(fileName);
+            case SEGMENT -> directoryPathway + "\\" + SegmentVersionStore.DIRECTORY_NAME;
+            default -> directoryPathway + "\\.git";
+        };
 
         // Create directory file
         if (!directory.mkdir())
@@ -80,32 +156,35 @@ public abstract class VersionManager {
 
 
         // Create copy of text file
-        File copiedFile = new File(String.valueOf(Files.copy(trackingFile.toPath(), Path.of(copyPathway))));
-
-        // Save file info to database
-        try {
-            DatabaseManager.insert(fileName, directoryPathway, copyPathway, trackingPathway, repoPathway);
-        } catch (SQLException e) {
-            directory.delete();
-            copiedFile.delete();
-            throw e;
-        }
+        File copiedFile = FileTransfer.copyAtomic(trackingFile.toPath(), Path.of(copyPathway)).toFile();
 
         Git git = null;
 
         try {
-            // Initialize repository
-            git = Git.init().setDirectory(directory).call();
-
-            // Add the text file to the staging area
-            AddCommand add = git.add();
-            add.addFilepattern(fileName+".txt").call();
-
-            // Commit changes
-            CommitCommand commit = git.commit();
-            commit.setMessage("initial commit").call();
+            // Create the repository, segment stores are created by their first append
+            if (SharedRepository.isShared(repoPathway)) {
+                SharedRepository.create();
+            } else if (!SegmentVersionStore.isSegment(repoPathway)) {
+                git = Git.init().setDirectory(directory).call();
+                git.close();
+            }
 
-            git.close();
+            // Save the initial version and remember the tracked file's state so the next scan can skip it
+            StoredVersion initialVersion = getStore(fileName, repoPathway, copiedFile.toPath()).append(copiedFile.toPath(), "initial commit");
+            FileFingerprint fingerprint = FileFingerprint.of(Files.readAttributes(trackingFile.toPath(),
+                    BasicFileAttributes.class)).withContentHash(hashFile(trackingFile.toPath()));
+            byte[] content = SearchIndex.readContent(copiedFile.toPath());
+
+            // Save file info, the start of its indexed history and its fingerprint together, a failure leaves no row
+            String savedFileName = fileName;
+            String savedDirectoryPathway = directoryPathway;
+            String savedRepoPathway = repoPathway;
+            DatabaseManager.transaction(() -> {
+                DatabaseManager.insert(savedFileName, savedDirectoryPathway, copyPathway, trackingPathway, savedRepoPathway);
+                SearchIndex.add(savedFileName, null, initialVersion, null, content);
+                CommitIndex.record(savedFileName, null, initialVersion);
+                DatabaseManager.updateFingerprint(savedFileName, fingerprint);
+            });
         }
         catch(Exception e){
             // Delete resources if fail
@@ -113,7 +192,6 @@ public abstract class VersionManager {
                 git.close();
             directory.delete();
             copiedFile.delete();
-            DatabaseManager.deleteRecord(fileName);
             throw e;
         }
     }
@@ -130,6 +208,7 @@ public abstract class VersionManager {
 
     /**
      * Loops through tracked files in the database to update the copied files and to save the changes if there are any.
+     * Files whose size, modified time, and file key match their stored fingerprint are skipped without being read.
      *
      * @throws IOException if a file couldn't be found, read, or written to
      * @throws GitAPIException if JGit couldn't connect or write to repository
@@ -137,30 +216,281 @@ public abstract class VersionManager {
      */
     public static void updateTextFiles() throws IOException, GitAPIException, SQLException {
 
-        // Pathways to currently tracked files
-        ArrayList<String> copyPathways = DatabaseManager.getEntries(DatabaseManager.Columns.COPY_PATHWAY);
-        ArrayList<String> trackingPathways = DatabaseManager.getEntries(DatabaseManager.Columns.TRACKING_PATHWAY);
-        ArrayList<String> gitPathways = DatabaseManager.getEntries(DatabaseManager.Columns.REPO_PATHWAY);
+        // Pathways and fingerprints of the currently tracked files, read from memory
+        DatabaseManager.Batch fingerprints = new DatabaseManager.Batch(SCAN_BATCH_SIZE);
+        for (FileRecord record : FileRegistry.getAll())
+            updateTextFile(record.getFileName(), record.getCopyPathway(), record.getTrackingPathway(),
+                    record.getRepoPathway(), record.getFingerprint(), "Auto Save", fingerprints);
+        fingerprints.commit();
+    }
 
-        // Loop through entries in database
-        for (int i = 0; i < copyPathways.size() && i < trackingPathways.size(); i++) {
-            Path copyPath = Paths.get(copyPathways.get(i));
-            Path trackingPath = Paths.get(trackingPathways.get(i));
+    /**
+     * Scans all tracked files like <code>updateTextFiles()</code>, but spreads the per-file compare, copy, and commit
+     * work over up to <code>parallelism</code> threads. Files with their own repository or segment store don't block
+     * each other, files in the shared repository serialize on its one pooled repository and its ref updates, so only
+     * their compare and copy run in parallel. A failing file doesn't stop the scan, its exception is collected in the
+     * result instead.
+     *
+     * @param parallelism the maximum number of files processed at the same time, 1 scans on the calling thread
+     * @return the committed files and the failures of the scan
+     * @throws SQLException if entries couldn't be retrieved from the database
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the scan
+     */
+    public static ScanResult updateTextFiles(int parallelism) throws SQLException, InterruptedException {
+        return updateTextFiles(parallelism, (done, total) -> {}, () -> false);
+    }
 
-            // Check if there are changes between the two text files
-            long mismatch = Files.mismatch(copyPath, trackingPath);
+    /**
+     * Scans all tracked files like <code>updateTextFiles(int)</code>, reporting progress after every file and
+     * stopping early once <code>cancelled</code> returns true. Files that are already being processed when the scan
+     * is cancelled finish, files that haven't started are skipped and the result is marked as cancelled.
+     *
+     * @param parallelism the maximum number of files processed at the same time, 1 scans on the calling thread
+     * @param onProgress called with the number of finished files and the number of tracked files, from the scan threads
+     * @param cancelled checked before every file is started
+     * @return the committed files and the failures of the scan
+     * @throws SQLException if entries couldn't be retrieved from the database
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the scan
+     */
+    public static ScanResult updateTextFiles(int parallelism, BiConsumer<Integer, Integer> onProgress,
+                                             BooleanSupplier cancelled) throws SQLException, InterruptedException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+
+        // Pathways and fingerprints of the currently tracked files, read from memory
+        ArrayList<FileRecord> records = FileRegistry.getAll();
+
+        ScanResult result = new ScanResult();
+        DatabaseManager.Batch fingerprints = new DatabaseManager.Batch(SCAN_BATCH_SIZE);
+        int total = records.size();
+        AtomicInteger done = new AtomicInteger();
+
+        // Create one job per tracked file
+        ArrayList<Runnable> jobs = new ArrayList<>();
+        for (FileRecord record : records) {
+            String fileName = record.getFileName();
+
+            jobs.add(() -> {
+                // Skip the files that haven't started when the scan is cancelled
+                if (cancelled.getAsBoolean()) {
+                    result.markCancelled();
+                    return;
+                }
 
-            // If there are no changes, then skip to next
-            if (mismatch == -1) {
-                continue;
+                try {
+                    if (updateTextFile(fileName, record.getCopyPathway(), record.getTrackingPathway(),
+                            record.getRepoPathway(), record.getFingerprint(), "Auto Save", fingerprints))
+                        result.addCommitted(fileName);
+                } catch (Exception e) {
+                    result.addFailure(fileName, e);
+                }
+                onProgress.accept(done.incrementAndGet(), total);
+            });
+        }
+
+        // Run on the calling thread when no parallelism was asked for
+        if (parallelism == 1) {
+            jobs.forEach(Runnable::run);
+            fingerprints.commit();
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())), runnable -> {
+            Thread thread = new Thread(runnable, "scan-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            jobs.forEach(executor::execute);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Wait for every file to finish, stop the workers if the caller gives up
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting, large files can take a while to commit
             }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
 
-            // Copy file content over
-            Files.copy(trackingPath, copyPath, StandardCopyOption.REPLACE_EXISTING);
+        fingerprints.commit();
+        return result;
+    }
+
+    /**
+     * Updates the copy of a single tracked file and commits it if the content changed since the last scan.
+     * Only the file's attributes are read when they match <code>fingerprint</code>; the content is hashed
+     * only when the attributes changed, and copied and committed only when the hash changed.
+     *
+     * @param fileName the name of the tracked file
+     * @param copyPathway the pathway to the copied text file
+     * @param trackingPathway the pathway to the file that is being tracked for changes
+     * @param gitPathway the pathway to the file's git repository
+     * @param fingerprint the fingerprint stored by the last scan, null if the file has none
+     * @return true if a new commit was made
+     * @throws IOException if a file couldn't be found, read, or written to
+     * @throws GitAPIException if JGit couldn't connect or write to repository
+     * @throws SQLException if the fingerprint couldn't be saved to the database
+     */
+    public static boolean updateTextFile(String fileName, String copyPathway, String trackingPathway, String gitPathway,
+                                         FileFingerprint fingerprint) throws IOException, GitAPIException, SQLException {
+        return updateTextFile(fileName, copyPathway, trackingPathway, gitPathway, fingerprint, "Auto Save");
+    }
+
+    /**
+     * Updates the copy of a single tracked file and commits it with <code>message</code> if the content changed
+     * since the last scan.
+     *
+     * @param fileName the name of the tracked file
+     * @param copyPathway the pathway to the copied text file
+     * @param trackingPathway the pathway to the file that is being tracked for changes
+     * @param gitPathway the pathway to the file's git repository
+     * @param fingerprint the fingerprint stored by the last scan, null if the file has none
+     * @param message the message of the commit
+     * @return true if a new commit was made
+     * @throws IOException if a file couldn't be found, read, or written to
+     * @throws GitAPIException if JGit couldn't connect or write to repository
+     * @throws SQLException if the fingerprint couldn't be saved to the database
+     */
+    public static boolean updateTextFile(String fileName, String copyPathway, String trackingPathway, String gitPathway,
+                                         FileFingerprint fingerprint, String message) throws IOException, GitAPIException, SQLException {
+        return updateTextFile(fileName, copyPathway, trackingPathway, gitPathway, fingerprint, message, null);
+    }
 
-            // Save changes to git
-            commitChanges(gitPathways.get(i), copyPath.getFileName().toString());
+    /**
+     * Updates the copy of a single tracked file like <code>updateTextFile(String, String, String, String,
+     * FileFingerprint, String)</code>, but adds the new fingerprint of a file whose content didn't change to
+     * <code>fingerprints</code> instead of writing it right away. A scan writes those fingerprints together, a
+     * fingerprint lost before its batch is written only makes the next scan hash the file again, and a fingerprint
+     * that was replaced by a commit before its batch is written is dropped.
+     * <p>
+     * Updates of the same file are serialized, from reading its attributes until its new fingerprint is written. A
+     * file that was committed while the caller waited is compared to the fingerprint of that commit instead of
+     * <code>fingerprint</code>.
+     *
+     * @param fileName the name of the tracked file
+     * @param copyPathway the pathway to the copied text file
+     * @param trackingPathway the pathway to the file that is being tracked for changes
+     * @param gitPathway the pathway to the file's git repository
+     * @param fingerprint the fingerprint stored by the last scan, null if the file has none
+     * @param message the message of the commit
+     * @param fingerprints the batch receiving the fingerprints of unchanged files, null to write them right away
+     * @return true if a new commit was made
+     * @throws IOException if a file couldn't be found, read, or written to
+     * @throws GitAPIException if JGit couldn't connect or write to repository
+     * @throws SQLException if the fingerprint couldn't be saved to the database
+     */
+    public static boolean updateTextFile(String fileName, String copyPathway, String trackingPathway, String gitPathway,
+                                         FileFingerprint fingerprint, String message, DatabaseManager.Batch fingerprints)
+            throws IOException, GitAPIException, SQLException {
+        synchronized (fileLocks.computeIfAbsent(fileName, key -> new Object())) {
+            // Another thread may have committed the file while this one waited for the lock
+            if (fingerprint != null) {
+                FileRecord record = FileRegistry.get(fileName);
+                if (record != null)
+                    fingerprint = record.getFingerprint();
+            }
+
+            return update(fileName, copyPathway, trackingPathway, gitPathway, fingerprint, message, fingerprints);
+        }
+    }
+
+    /**
+     * Updates the copy of a single tracked file. Must be called while holding the file's lock.
+     *
+     * @return true if a new commit was made
+     */
+    private static boolean update(String fileName, String copyPathway, String trackingPathway, String gitPathway,
+                                  FileFingerprint fingerprint, String message, DatabaseManager.Batch fingerprints)
+            throws IOException, GitAPIException, SQLException {
+        Path copyPath = Paths.get(copyPathway);
+        Path trackingPath = Paths.get(trackingPathway);
+
+        // Stat the tracked file and skip it if nothing about it changed
+        FileFingerprint current = FileFingerprint.of(Files.readAttributes(trackingPath, BasicFileAttributes.class));
+        if (current.matchesStat(fingerprint))
+            return false;
+
+        // Hash the content and compare it to the last saved version
+        current = current.withContentHash(hashFile(trackingPath));
+        boolean unchanged = fingerprint != null
+                ? current.getContentHash().equals(fingerprint.getContentHash())
+                : FileTransfer.mismatch(copyPath, trackingPath) == -1;
+
+        // If there are no changes, then only remember the new attributes
+        if (unchanged) {
+            FileFingerprint unchangedFingerprint = current;
+            FileFingerprint comparedFingerprint = fingerprint;
+            if (fingerprints != null)
+                fingerprints.add(() -> {
+                    // A commit made since the file was compared holds a newer fingerprint
+                    FileRecord record = FileRegistry.get(fileName);
+                    if (record != null && isSameFingerprint(record.getFingerprint(), comparedFingerprint))
+                        DatabaseManager.updateFingerprint(fileName, unchangedFingerprint);
+                });
+            else
+                DatabaseManager.updateFingerprint(fileName, current);
+            return false;
+        }
+
+        // Copy file content over, keeping the replaced content to find the lines the new version introduced
+        byte[] previous = SearchIndex.readContent(copyPath);
+        FileTransfer.copyAtomic(trackingPath, copyPath);
+
+        // Save the new version, remembering the version it follows for the commit index
+        StoredVersion version = getStore(fileName, gitPathway, copyPath).append(copyPath, message);
+        String parentId = version.getParentId();
+        byte[] content = SearchIndex.readContent(copyPath);
+        FileFingerprint committedFingerprint = current;
+        DatabaseManager.transaction(() -> {
+            SearchIndex.add(fileName, parentId, version, previous, content);
+            CommitIndex.record(fileName, parentId, version);
+            DatabaseManager.updateFingerprint(fileName, committedFingerprint);
+        });
+
+        // Replay the commit on an annotation that is being kept, so the next annotate is a lookup
+        if (annotations.containsKey(gitPathway))
+            getAnnotation(gitPathway);
+
+        return true;
+    }
+
+    /** Checks if two fingerprints were written by the same scan or commit. */
+    private static boolean isSameFingerprint(FileFingerprint first, FileFingerprint second) {
+        if (first == null || second == null)
+            return first == second;
+
+        return first.getScanTime() == second.getScanTime() && Objects.equals(first.getContentHash(), second.getContentHash());
+    }
+
+    /**
+     * Hashes the content of a file with SHA-256.
+     *
+     * @param path the file to hash
+     * @return hex encoded hash of the file content
+     * @throws IOException if the file couldn't be read
+     */
+    public static String hashFile(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Stream the file through the digest
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
         }
+
+        return HexFormat.of().formatHex(digest.digest());
     }
 
     /**
@@ -168,19 +498,68 @@ public abstract class VersionManager {
      *
      * @param gitPathway the string pathway to the git folder
      * @param fileName the name of the file to commit changes of
+     * @return the new commit
+     * @throws IOException if <code>gitPathway</code> isn't a valid pathway
+     * @throws GitAPIException if connection to git folder couldn't be made or writing to it fails
+     */
+    public static RevCommit commitChanges(String gitPathway, String fileName) throws IOException, GitAPIException {
+        return commitChanges(gitPathway, fileName, "Auto Save");
+    }
+
+    /**
+     * Connects to repository from provided <code>gitPathway</code> and commits changes made to the <code>fileName</code>
+     * file with the passed commit message.
+     *
+     * @param gitPathway the string pathway to the git folder
+     * @param fileName the name of the file to commit changes of
+     * @param message the message of the commit
+     * @return the new commit
      * @throws IOException if <code>gitPathway</code> isn't a valid pathway
      * @throws GitAPIException if connection to git folder couldn't be made or writing to it fails
      */
-    public static void commitChanges(String gitPathway, String fileName) throws IOException, GitAPIException {
-        try (Git git = Git.open(new File(gitPathway))) {
+    public static RevCommit commitChanges(String gitPathway, String fileName, String message) throws IOException, GitAPIException {
+        try (RepositoryPool.Lease lease = repositories.borrow(gitPathway)) {
+            Git git = lease.getGit();
+
             // Add file to staging area
             git.add().addFilepattern(fileName).call();
 
             // Commit added file
-            git.commit().setMessage("Auto Save").call();
+            return git.commit().setMessage(message).call();
         }
     }
 
+    /**
+     * Opens the store holding the versions of a tracked file.
+     *
+     * @param fileName the name of the tracked file
+     * @param gitPathway the repo_pathway of the tracked file
+     * @param copyPath the copy of the tracked file in its directory
+     * @return the segment store or git history of the file
+     */
+    public static VersionStore getStore(String fileName, String gitPathway, Path copyPath) {
+        if (SegmentVersionStore.isSegment(gitPathway))
+            return new SegmentVersionStore(Path.of(gitPathway));
+
+        return new GitVersionStore(gitPathway, copyPath, fileName + ".txt");
+    }
+
+    /**
+     * Opens the store holding the versions of a tracked file, reading its pathways from the database.
+     *
+     * @param fileName the name of the tracked file
+     * @throws SQLException if the file's pathways couldn't be read from the database
+     * @throws IOException if the file isn't tracked
+     * @return the segment store or git history of the file
+     */
+    public static VersionStore getStore(String fileName) throws SQLException, IOException {
+        FileRecord record = FileRegistry.get(fileName);
+        if (record == null)
+            throw new FileNotFoundException(fileName + " isn't tracked");
+
+        return getStore(fileName, record.getRepoPathway(), Paths.get(record.getCopyPathway()));
+    }
+
     /**
      * Finds the absolute path to the TrackedFiles directory.
      *
@@ -191,57 +570,89 @@ public abstract class VersionManager {
     }
 
     /**
-     * Extracts the edit dates from all repositories last commit
-     * and returns them as a String arraylist with the dates formatted as MM-dd-yyyy HH:mm:ss.
+     * Borrows the repository holding a file's history from the pool. Files in the shared repository
+     * borrow the shared repository.
      *
-     * @throws IOException if git fails to open repository file
-     * @return string list of all the last edit dates
+     * @param gitPathway the repo_pathway of the tracked file
+     * @return lease of the open repository
+     * @throws IOException if the repository couldn't be opened
      */
-    public static ArrayList<String> getLastEditDates() throws IOException {
-
-        // List to store most recent edits
-        ArrayList<String> lastEditDates = new ArrayList<>();
-
-        // Grab directory containing text repos
-        File textReposDir = getTrackedFilesPathway().toFile();
-        File[] fileArray = textReposDir.listFiles();
-
-        // Throw exception if TrackedFiles directory is empty
-        if(fileArray == null)
-            throw new FileNotFoundException("TrackedFiles Directory empty");
+    private static RepositoryPool.Lease borrow(String gitPathway) throws IOException {
+        return repositories.borrow(SharedRepository.isShared(gitPathway) ? SharedRepository.getPathway().toString() : gitPathway);
+    }
 
-        // Loop through folders in TrackedFiles
-        for(File directory : fileArray){
-            if(directory.isDirectory() && directory.listFiles() != null){
+    /**
+     * Resolves the newest commit of a file's history from its ref, without walking or caching the history.
+     *
+     * @param gitPathway the repo_pathway of the tracked file
+     * @return id of the newest commit, null if the file has no commits
+     * @throws IOException if the repository or the ref couldn't be read
+     */
+    static ObjectId resolveHead(String gitPathway) throws IOException {
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            return getHead(lease.getRepository(), gitPathway);
+        }
+    }
 
-                // Find .git file in the current directory
-                File dir = null;
-                for(File subFile : directory.listFiles()){
-                    if(subFile.getName().equals(".git"))
-                        dir = subFile;
-                }
+    /**
+     * Resolves the newest commit of a file's history.
+     *
+     * @param repository the repository borrowed for <code>gitPathway</code>
+     * @param gitPathway the repo_pathway of the tracked file
+     * @return id of the newest commit, null if the file has no commits
+     * @throws IOException if the ref couldn't be read
+     */
+    private static ObjectId getHead(Repository repository, String gitPathway) throws IOException {
+        if (SharedRepository.isShared(gitPathway)) {
+            Ref ref = repository.exactRef(SharedRepository.getRefNameOfPathway(gitPathway));
+            return ref == null ? null : ref.getObjectId();
+        }
 
-                //Open Repository
-                try(Git git = Git.open(dir); RevWalk walk = new RevWalk(git.getRepository())){
+        return repository.resolve(Constants.HEAD);
+    }
 
-                    // Get the most recent commit
-                    org.eclipse.jgit.lib.ObjectId commitId = git.getRepository().findRef("master").getObjectId();
-                    RevCommit commit = walk.parseCommit(commitId);
+    /**
+     * Drops the cached history and annotation of a file, must be called after its history was rewritten.
+     *
+     * @param gitPathway the repo_pathway of the tracked file
+     */
+    public static void forgetHistory(String gitPathway) {
+        if (gitPathway == null)
+            return;
 
-                    // Convert commit time to localdatetime
-                    LocalDateTime date =
-                            LocalDateTime.ofInstant(Instant.ofEpochSecond(commit.getCommitTime()),
-                                    TimeZone.getDefault().toZoneId());
+        histories.remove(gitPathway);
+        annotations.remove(gitPathway);
+    }
 
-                    // Format date and add to list
-                    DateTimeFormatter format = DateTimeFormatter.ofPattern("MM-dd-yyyy HH:mm:ss");
-                    lastEditDates.add(date.format(format));
-                }
-            }
+    /**
+     * Checks if a history or an annotation of a repo_pathway is cached.
+     *
+     * @param gitPathway the repo_pathway of the tracked file
+     * @return true if either is cached
+     */
+    static boolean isHistoryCached(String gitPathway) {
+        return histories.containsKey(gitPathway) || annotations.containsKey(gitPathway);
+    }
 
-        }
+    /**
+     * Returns the pool of open repositories used by <code>VersionManager</code>.
+     *
+     * @return the shared repository pool
+     */
+    public static RepositoryPool getRepositoryPool() {
+        return repositories;
+    }
 
-        return lastEditDates;
+    /**
+     * Returns the date of the last commit of every tracked file keyed by file name, with the dates formatted as
+     * MM-dd-yyyy HH:mm:ss. The dates are read from the commit index with one query instead of opening every repository.
+     *
+     * @throws IOException if a file had to be indexed first and its repository couldn't be read
+     * @throws SQLException if the dates couldn't be retrieved from the database
+     * @return file names mapped to their last edit dates
+     */
+    public static HashMap<String, String> getLastEditDates() throws IOException, SQLException {
+        return CommitIndex.getLastEditDates();
     }
 
     /**
@@ -257,14 +668,25 @@ public abstract class VersionManager {
         // Dates list
         ArrayList<String> dates = new ArrayList<>();
 
-        // Get directory of repo folder
-        File gitFile = new File(gitPathway);
+        // Segment stores list their versions oldest first
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            ArrayList<StoredVersion> versions = new SegmentVersionStore(Path.of(gitPathway)).list();
+            for (int i = versions.size() - 1; i >= 0; i--)
+                dates.add(CommitIndex.formatDate(versions.get(i).getTime()));
+            return dates;
+        }
 
         // Establish connection to local git
-        try(Git git = Git.open(gitFile)) {
+        try(RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Git git = lease.getGit();
+
+            // Files without commits have no history
+            ObjectId head = getHead(lease.getRepository(), gitPathway);
+            if (head == null)
+                return dates;
 
             // Create iterator for commits history
-            Iterable<RevCommit> commits = git.log().call();
+            Iterable<RevCommit> commits = git.log().add(head).call();
 
             // Loop through commit history
             for (RevCommit commit : commits) {
@@ -285,45 +707,179 @@ public abstract class VersionManager {
     }
 
     /**
-     * Finds all the commit dates in a git repository and returns it as a String array list.
+     * Returns the history of a file as an ordinal to commit id array. The history is cached per repository and only
+     * the commits made since the last call are walked.
      *
-     * @param gitPathway the pathway to the repository to extract commit dates from.
-     * @param index the index of the commit to get the commit id from.
-     * @throws IOException if git file doesn't exist.
-     * @throws GitAPIException if git has trouble accessing the commit history.
-     * @return the commit id of the commit found
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @throws IOException if the repository couldn't be read
+     * @return the history ending at the file's newest commit
      */
-    public static String getCommitId(String gitPathway, int index) throws IOException, GitAPIException {
+    public static CommitHistory getHistory(String gitPathway) throws IOException {
+
+        // Segment stores are listed again only when their newest version changed
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            SegmentVersionStore store = new SegmentVersionStore(Path.of(gitPathway));
+            StoredVersion latest = store.latest();
+            CommitHistory cached = histories.get(gitPathway);
+            if (latest == null)
+                return CommitHistory.EMPTY;
+            if (cached != null && cached.getHead() != null && cached.getHead().getName().equals(latest.getId()))
+                return cached;
+
+            CommitHistory history = CommitHistory.of(store.list());
+            histories.put(gitPathway, history);
+            return history;
+        }
+
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Repository repository = lease.getRepository();
 
-        try (Git git = Git.open(new File(gitPathway))) {
-            // Checkout to master branch
-            git.checkout().setName("master").call();
+            CommitHistory history = CommitHistory.load(repository, getHead(repository, gitPathway), histories.get(gitPathway));
+            histories.put(gitPathway, history);
+            return history;
+        }
+    }
 
-            // Get commits
-            Iterable<RevCommit> commits = git.log().setMaxCount(100).call();
+    /**
+     * Returns which commit introduced every line of a file at its newest commit. The annotation is cached per
+     * repository and only the commits made since the last call are replayed.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @throws IOException if the repository couldn't be read
+     * @return the annotation at the file's newest commit
+     */
+    public static Annotation getAnnotation(String gitPathway) throws IOException {
+        return getAnnotation(gitPathway, getHistory(gitPathway));
+    }
 
-            int i = 0;
-            for (RevCommit commit : commits) {
-                RevTree tree = commit.getTree();
+    /**
+     * Returns which commit introduced every line of a file at the head of <code>history</code>.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param history the history the annotation's ordinals refer to
+     * @throws IOException if the repository couldn't be read
+     * @return the annotation at the head of <code>history</code>
+     */
+    private static Annotation getAnnotation(String gitPathway, CommitHistory history) throws IOException {
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            Annotation annotation = Annotation.load(new SegmentVersionStore(Path.of(gitPathway)), history, annotations.get(gitPathway));
+            annotations.put(gitPathway, annotation);
+            return annotation;
+        }
 
-                try (TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
-                    treeWalk.addTree(tree);
-                    treeWalk.setRecursive(true);
-                }
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Annotation annotation = Annotation.load(lease.getRepository(), history, annotations.get(gitPathway));
+            annotations.put(gitPathway, annotation);
+            return annotation;
+        }
+    }
 
-                // Return commit hash if index matches
-                if (i == index) {
-                    String commitHash = commit.getName();
-                    return commitHash;
-                }
-                i++;
+    /**
+     * Maps every line of a tracked file as it is now to the commit and time that introduced it.
+     * Lines changed since the last commit are returned without a commit.
+     *
+     * @param fileName the name of the tracked file
+     * @throws IOException if the repository or the tracked file couldn't be read
+     * @throws SQLException if the file's pathways couldn't be read from the database
+     * @return the lines of the tracked file in order
+     */
+    public static ArrayList<AnnotatedLine> annotate(String fileName) throws IOException, SQLException {
+        FileRecord record = FileRegistry.get(fileName);
+        String gitPathway = record.getRepoPathway();
+        Path trackingPath = Paths.get(record.getTrackingPathway());
+
+        // Read the history first, the annotation's ordinals refer to it
+        CommitHistory history = getHistory(gitPathway);
+        Annotation annotation = getAnnotation(gitPathway, history);
+
+        // Lines of the committed version keep their origin, lines changed since are uncommitted
+        List<String> lines = LineDiff.splitLines(Files.readAllBytes(trackingPath));
+        int[] lineOrigins = annotation.carryOver(lines, -1);
+
+        ArrayList<AnnotatedLine> annotated = new ArrayList<>(lines.size());
+        String[] dates = new String[history.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            int origin = lineOrigins[i];
+            if (origin < 0) {
+                annotated.add(new AnnotatedLine(i + 1, lines.get(i), null, null));
+                continue;
             }
-        } catch (IOException | GitAPIException e) {
-            e.printStackTrace();
+
+            if (dates[origin] == null)
+                dates[origin] = CommitIndex.formatDate(history.getCommitTime(origin));
+            annotated.add(new AnnotatedLine(i + 1, lines.get(i), history.get(origin).getName(), dates[origin]));
         }
 
-        return null;
+        return annotated;
+    }
+
+    /**
+     * Finds the id of a commit by its position from the newest commit, at any depth and without checking out.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param index the position of the commit, 0 is the newest commit
+     * @throws IOException if the repository couldn't be read
+     * @return the commit id of the commit found, null if the history has no commit at <code>index</code>
+     */
+    public static String getCommitId(String gitPathway, int index) throws IOException {
+        ObjectId commitId = getHistory(gitPathway).getFromNewest(index);
+        return commitId == null ? null : commitId.getName();
+    }
+
+    /**
+     * Finds the id of the newest commit that was made at or before <code>time</code>.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param time the point in time
+     * @throws IOException if the repository couldn't be read
+     * @return the commit id of the commit found, null if the history starts after <code>time</code>
+     */
+    public static String getCommitIdAt(String gitPathway, Instant time) throws IOException {
+        ObjectId commitId = getHistory(gitPathway).getAt(time);
+        return commitId == null ? null : commitId.getName();
+    }
+
+    /**
+     * Returns the number of commits in a file's history, read from the commit index.
+     *
+     * @param fileName the name of the tracked file
+     * @throws SQLException if the count couldn't be read from the database
+     * @throws IOException if the index had to be rebuilt and the repository couldn't be read
+     * @return the number of commits
+     */
+    public static int getCommitCount(String fileName) throws SQLException, IOException {
+        CommitIndex.ensureCurrent(fileName);
+        return CommitIndex.getCommitCount(fileName);
+    }
+
+    /**
+     * Returns a page of a file's commits newest first, read from the commit index. Only the rows of the page are read,
+     * so any page of a long history costs the same.
+     *
+     * @param fileName the name of the tracked file
+     * @param offset the number of commits to skip from the newest
+     * @param limit the maximum number of commits in the page
+     * @throws SQLException if the page couldn't be read from the database
+     * @throws IOException if the index had to be rebuilt and the repository couldn't be read
+     * @return the commits of the page, numbered from 1 for the newest commit
+     */
+    public static ArrayList<EditData> getHistoryPage(String fileName, int offset, int limit) throws SQLException, IOException {
+        return getHistoryPage(fileName, getCommitCount(fileName), offset, limit);
+    }
 
+    /**
+     * Returns a page of a file's commits newest first, counted from the newest commit at the time the history had
+     * <code>count</code> commits. Used to read further pages of a history that may have grown since its first page.
+     *
+     * @param fileName the name of the tracked file
+     * @param count the number of commits the history had when its first page was read
+     * @param offset the number of commits to skip from the newest
+     * @param limit the maximum number of commits in the page
+     * @throws SQLException if the page couldn't be read from the database
+     * @return the commits of the page, numbered from 1 for the newest commit
+     */
+    public static ArrayList<EditData> getHistoryPage(String fileName, int count, int offset, int limit) throws SQLException {
+        return CommitIndex.getCommitPage(fileName, count, offset, limit);
     }
 
     /**
@@ -336,9 +892,21 @@ public abstract class VersionManager {
     public static void stopTracking(String fileName) throws SQLException, IOException {
 
         // Get the directory to be deleted
-        String directoryPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.DIRECTORY_PATHWAY);
+        FileRecord record = FileRegistry.get(fileName);
+        String directoryPathway = record.getDirectoryPathway();
         File directory = new File(directoryPathway);
 
+        // Close the repository before its files are deleted
+        String gitPathway = record.getRepoPathway();
+        if (SharedRepository.isShared(gitPathway))
+            SharedRepository.delete(gitPathway);
+        else if (gitPathway != null)
+            repositories.invalidate(gitPathway);
+        if (gitPathway != null) {
+            histories.remove(gitPathway);
+            annotations.remove(gitPathway);
+        }
+
         // Delete directory
         deleteDirectory(directory);
 
@@ -389,7 +957,8 @@ public abstract class VersionManager {
             return false;
 
         // Throw new IOException if the new pathway is the same as the old one
-        if(newTrackingPathway.equals(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.TRACKING_PATHWAY)))
+        FileRecord record = FileRegistry.get(fileName);
+        if(newTrackingPathway.equals(record.getTrackingPathway()))
             return false;
 
         // Set directory pathway
@@ -413,76 +982,272 @@ public abstract class VersionManager {
         directory.mkdir();
 
         // Get old pathways from database
-        String oldDirectoryPath = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.DIRECTORY_PATHWAY);
-        String oldCopyPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.COPY_PATHWAY);
-        String oldGitPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY);
+        String oldDirectoryPath = record.getDirectoryPathway();
+        String oldCopyPathway = record.getCopyPathway();
+        String oldGitPathway = record.getRepoPathway();
 
-        // Move text and git files to new directory
+        // Move text file to new directory
         new File(oldCopyPathway).renameTo(new File(newDirectoryPathway + "\\" + newTextFile.getName()));
-        new File(oldGitPathway).renameTo(new File(newDirectoryPathway + "\\" + new File(oldGitPathway).getName()));
+
+        // Move the history to the new name
+        histories.remove(oldGitPathway);
+        annotations.remove(oldGitPathway);
+        String newGitPathway;
+        if (SharedRepository.isShared(oldGitPathway)) {
+            newGitPathway = SharedRepository.rename(oldGitPathway, newFileName);
+        } else {
+            // Close the repository before it is moved
+            repositories.invalidate(oldGitPathway);
+
+            newGitPathway = newDirectoryPathway + "\\" + new File(oldGitPathway).getName();
+            new File(oldGitPathway).renameTo(new File(newGitPathway));
+        }
 
         // Delete old directory
         new File(oldDirectoryPath).delete();
 
-        // Update file information record
-        DatabaseManager.updateEntry(fileName, DatabaseManager.Columns.TRACKING_PATHWAY, newTrackingPathway);
-        DatabaseManager.updateEntry(fileName, DatabaseManager.Columns.FILE_NAME, newFileName);
-        DatabaseManager.updateEntry(newFileName, DatabaseManager.Columns.COPY_PATHWAY, newDirectoryPathway + "\\" + newTextFile.getName());
-        DatabaseManager.updateEntry(newFileName, DatabaseManager.Columns.REPO_PATHWAY, newDirectoryPathway + "\\" + new File(oldGitPathway).getName());
-        DatabaseManager.updateEntry(newFileName, DatabaseManager.Columns.DIRECTORY_PATHWAY, newDirectoryPathway);
+        // Update the record, forget the old file's fingerprint so the new file is compared by content on the next
+        // scan, and keep the indexed history under the new name, all in one transaction
+        FileRecord updated = new FileRecord(newFileName, newDirectoryPathway,
+                newDirectoryPathway + "\\" + newTextFile.getName(), newTrackingPathway, newGitPathway, null);
+        String renamedFileName = newFileName;
+        DatabaseManager.transaction(() -> {
+            DatabaseManager.updateRecord(fileName, updated);
+            DatabaseManager.deleteFingerprint(fileName);
+            CommitIndex.rename(fileName, renamedFileName);
+            SearchIndex.rename(fileName, renamedFileName);
+        });
 
         return true;
     }
 
     /**
-     * Reverts the tracked files text back to previous commit.
+     * Reads the content of a file as it was in a commit.
      *
-     * @param fileName the name of the file to revert
-     * @param gitPathway the pathway to the git to get commits from
-     * @param commitID the id of the commit to revert to
-     * @throws IOException if I/O error occurs
-     * @throws GitAPIException if JGit fails to check out to master branch
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param commitId the id of the commit to read, null for the empty version before the first commit
+     * @throws IOException if the commit couldn't be read
+     * @return the content of the file in the commit
      */
-    public static void revert(String fileName, String gitPathway, String commitID) throws IOException, GitAPIException {
+    public static byte[] readVersion(String gitPathway, String commitId) throws IOException {
+        if (SegmentVersionStore.isSegment(gitPathway))
+            return commitId == null ? new byte[0] : new SegmentVersionStore(Path.of(gitPathway)).read(commitId);
+
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Repository repository = lease.getRepository();
+            return readBlob(repository, getBlobId(repository, commitId));
+        }
+    }
+
+    /**
+     * Finds the blob of the file stored in a commit.
+     *
+     * @param repository the repository holding the commit
+     * @param commitId the id of the commit, null for the empty version before the first commit
+     * @throws IOException if the commit couldn't be read
+     * @return id of the blob, null if there is no content
+     */
+    private static ObjectId getBlobId(Repository repository, String commitId) throws IOException {
+        if (commitId == null)
+            return null;
+
+        // A full id resolves without a lookup, so check that the commit exists
+        ObjectId commitObjectId = repository.resolve(commitId);
+        if (commitObjectId == null || !repository.getObjectDatabase().has(commitObjectId))
+            throw new IllegalArgumentException("Commit ID not found");
+
+        // Every commit holds the one tracked file
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(repository.parseCommit(commitObjectId).getTree());
+            treeWalk.setRecursive(true);
+
+            return treeWalk.next() ? treeWalk.getObjectId(0) : null;
+        }
+    }
+
+    /**
+     * Reads the content of a blob.
+     *
+     * @param repository the repository holding the blob
+     * @param blobId id of the blob, null for no content
+     * @throws IOException if the blob couldn't be read
+     * @return the content of the blob
+     */
+    private static byte[] readBlob(Repository repository, ObjectId blobId) throws IOException {
+        return blobId == null ? new byte[0] : repository.open(blobId, Constants.OBJ_BLOB).getBytes(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the cache holding the diffs computed by <code>diff</code> and <code>diffWorkingFile</code>.
+     *
+     * @return the diff cache
+     */
+    public static DiffCache getDiffCache() {
+        return diffs;
+    }
+
+    /**
+     * Computes the line diff between two versions of a file and hands every hunk to <code>consumer</code> as soon as
+     * it is found. Diffs between contents that were compared before are read from the diff cache.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param oldCommitId the id of the old version, null to compare against an empty file
+     * @param newCommitId the id of the new version
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     * @throws IOException if a version couldn't be read
+     */
+    public static void diff(String gitPathway, String oldCommitId, String newCommitId, DiffOptions options,
+                            Consumer<DiffHunk> consumer) throws IOException {
+
+        // Segment stores have no blob ids, their versions are keyed by the ids their content would have as blobs
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            byte[] oldContent = readVersion(gitPathway, oldCommitId);
+            byte[] newContent = readVersion(gitPathway, newCommitId);
+            diff(getContentId(oldContent), getContentId(newContent), () -> oldContent, () -> newContent, options, consumer);
+            return;
+        }
+
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Repository repository = lease.getRepository();
+            ObjectId oldBlob = getBlobId(repository, oldCommitId);
+            ObjectId newBlob = getBlobId(repository, newCommitId);
 
-        try (Git git = Git.open(new File(gitPathway))) {
-            Repository repository = git.getRepository();
+            diff(oldBlob, newBlob, () -> readBlob(repository, oldBlob), () -> readBlob(repository, newBlob), options, consumer);
+        }
+    }
 
-            // Ensure you are on the branch where you want to restore the file
-            git.checkout().setName("master").call(); // Replace "master" with your branch name if necessary
+    /**
+     * Computes the line diff between a commit and the version before it, which is what the commit changed.
+     *
+     * @param gitPathway the pathway to the repository holding the file's history
+     * @param commitId the id of the commit
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     * @throws IOException if a version couldn't be read
+     */
+    public static void diff(String gitPathway, String commitId, DiffOptions options, Consumer<DiffHunk> consumer) throws IOException {
+        String parentId;
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            CommitHistory history = getHistory(gitPathway);
+            int ordinal = ObjectId.isId(commitId) ? history.ordinalOf(ObjectId.fromString(commitId)) : -1;
+            if (ordinal < 0)
+                throw new IllegalArgumentException("Commit ID not found");
+
+            ObjectId parent = history.get(ordinal - 1);
+            diff(gitPathway, parent == null ? null : parent.getName(), commitId, options, consumer);
+            return;
+        }
 
-            // Resolve the commit ID
-            ObjectId commitObjectId = repository.resolve(commitID);
-            if (commitObjectId == null) {
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Repository repository = lease.getRepository();
+            ObjectId commitObjectId = repository.resolve(commitId);
+            if (commitObjectId == null)
                 throw new IllegalArgumentException("Commit ID not found");
-            }
 
-            // Parse the commit and get the tree
             RevCommit commit = repository.parseCommit(commitObjectId);
-            RevTree tree = commit.getTree();
+            parentId = commit.getParentCount() == 0 ? null : commit.getParent(0).getName();
+        }
 
-            // Read file content from the specific commit
-            try (TreeWalk treeWalk = new TreeWalk(repository)) {
-                treeWalk.addTree(tree);
-                treeWalk.setRecursive(true);
-                treeWalk.setFilter(PathFilter.create(fileName + ".txt")); // Ensure this path is correct
+        diff(gitPathway, parentId, commitId, options, consumer);
+    }
 
-                if (treeWalk.next()) {
-                    ObjectId objectId = treeWalk.getObjectId(0);
-                    byte[] data = repository.open(objectId).getBytes();
+    /**
+     * Computes the line diff between a commit and the tracked file as it is now.
+     *
+     * @param fileName the name of the tracked file
+     * @param commitId the id of the old version
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     * @throws IOException if the commit or the tracked file couldn't be read
+     * @throws SQLException if the file's pathways couldn't be read from the database
+     */
+    public static void diffWorkingFile(String fileName, String commitId, DiffOptions options, Consumer<DiffHunk> consumer)
+            throws IOException, SQLException {
+        FileRecord record = FileRegistry.get(fileName);
+        String gitPathway = record.getRepoPathway();
+        byte[] working = Files.readAllBytes(Paths.get(record.getTrackingPathway()));
+
+        if (SegmentVersionStore.isSegment(gitPathway)) {
+            byte[] oldContent = readVersion(gitPathway, commitId);
+            diff(getContentId(oldContent), getContentId(working), () -> oldContent, () -> working, options, consumer);
+            return;
+        }
 
-                    // Construct the correct file path
-                    Path realOutput = Paths.get(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.TRACKING_PATHWAY));
+        try (RepositoryPool.Lease lease = borrow(gitPathway)) {
+            Repository repository = lease.getRepository();
+            ObjectId oldBlob = getBlobId(repository, commitId);
 
-                    // Write the file to the specified path
-                    Files.write(realOutput, data);
-                }
+            // The working file is keyed by the id it would have as a blob
+            ObjectId newBlob = getContentId(working);
+
+            diff(oldBlob, newBlob, () -> readBlob(repository, oldBlob), () -> working, options, consumer);
+        }
+    }
 
-                repository.close();
+    /**
+     * Returns the id content would have as a git blob.
+     *
+     * @param content the content
+     * @return the blob id, null for empty content like a missing blob
+     */
+    private static ObjectId getContentId(byte[] content) {
+        return content.length == 0 ? null : new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content);
+    }
 
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
+    /** Reads the content of one side of a diff */
+    private interface ContentReader {
+        byte[] read() throws IOException;
+    }
+
+    /**
+     * Hands the hunks of a cached diff to <code>consumer</code>, or computes the diff and caches it.
+     *
+     * @param oldBlob blob id of the old version, null for an empty version
+     * @param newBlob blob id of the new version, null for an empty version
+     * @param oldContent reads the old version if the diff isn't cached
+     * @param newContent reads the new version if the diff isn't cached
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     * @throws IOException if a version couldn't be read or the diff couldn't be cached
+     */
+    private static void diff(ObjectId oldBlob, ObjectId newBlob, ContentReader oldContent, ContentReader newContent,
+                             DiffOptions options, Consumer<DiffHunk> consumer) throws IOException {
+        List<DiffHunk> cached = diffs.get(oldBlob, newBlob, options);
+        if (cached != null) {
+            cached.forEach(consumer);
+            return;
+        }
+
+        // Stream the hunks while collecting them for the cache
+        ArrayList<DiffHunk> hunks = new ArrayList<>();
+        LineDiff.diff(LineDiff.splitLines(oldContent.read()), LineDiff.splitLines(newContent.read()), options, hunk -> {
+            hunks.add(hunk);
+            consumer.accept(hunk);
+        });
+        diffs.put(oldBlob, newBlob, options, hunks);
+    }
+
+    /**
+     * Reverts the tracked files text back to previous commit. The version is read from the file's store, which
+     * finds the one file of the commit whatever name the file had when it was committed.
+     *
+     * @param fileName the name of the file to revert
+     * @param gitPathway the pathway to the git to get commits from
+     * @param commitID the id of the commit to revert to
+     * @throws IOException if I/O error occurs
+     * @throws GitAPIException if JGit fails to read the repository
+     * @throws IllegalArgumentException if the file's history has no commit with the id
+     */
+    public static void revert(String fileName, String gitPathway, String commitID) throws IOException, GitAPIException {
+        byte[] data = readVersion(gitPathway, commitID);
+
+        try {
+            // Write the content over the tracked file, the next scan saves it as a new version
+            Path realOutput = Paths.get(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.TRACKING_PATHWAY));
+            FileTransfer.writeAtomic(data, realOutput);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -492,6 +1257,12 @@ public abstract class VersionManager {
         File directory = new File(String.valueOf(getTrackedFilesPathway()));
         File[] files = directory.listFiles();
 
+        // Close all repositories before their files are deleted
+        repositories.invalidateAll();
+        histories.clear();
+        annotations.clear();
+        diffs.clear();
+
         // Loop through all files in TrackedFiles directory and delete them
         while(files != null && files.length != 0){
             deleteDirectory(files[0]);
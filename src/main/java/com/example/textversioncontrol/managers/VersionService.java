@@ -0,0 +1,363 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import com.example.textversioncontrol.models.FileData;
+import com.example.textversioncontrol.models.FileRecord;
+import com.example.textversioncontrol.models.RestoreReport;
+import com.example.textversioncontrol.models.RetentionReport;
+import com.example.textversioncontrol.models.ScanResult;
+import com.example.textversioncontrol.models.SearchHit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The <code>VersionService</code> class runs <code>VersionManager</code> and <code>DatabaseManager</code> work on
+ * background threads and hands back <code>CompletableFuture</code>s, so the JavaFX application thread never waits on
+ * git or the database. Controllers continue on the application thread with
+ * <code>future.thenAcceptAsync(result -> ..., Platform::runLater)</code>.
+ * <p>
+ * Refreshes are coalesced by key: a request made while an identical one is still waiting to start
+ * gets the waiting request's future instead of queueing another run. A request made while an identical one
+ * is already running queues one more run, so the result never misses changes made before the request.
+ * Scans are shared instead: a scan requested while one is waiting or running gets that scan's future,
+ * so two scans never commit the same files at the same time.
+ */
+public abstract class VersionService {
+
+    /** Threads running the background work */
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "version-service");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Requests that are waiting to start by coalescing key */
+    private static final Map<String, CompletableFuture<?>> waiting = new HashMap<>();
+
+    /** Shared requests that are waiting or running by key */
+    private static final Map<String, CompletableFuture<?>> shared = new HashMap<>();
+
+    /** Work that returns a result and may throw the checked exceptions of the managers. */
+    @FunctionalInterface
+    public interface Job<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Runs a task on a background thread, used as the <code>Executor</code> of background reads.
+     *
+     * @param task the work to run
+     */
+    public static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Runs a job on a background thread.
+     *
+     * @param job the work to run
+     * @return future completed with the job's result or the exception it threw
+     */
+    public static <T> CompletableFuture<T> submit(Job<T> job) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> run(job, future));
+        return future;
+    }
+
+    /**
+     * Runs a job on a background thread unless a job with the same key is still waiting to start,
+     * in which case the waiting job's future is returned.
+     *
+     * @param key identifies requests that produce the same result
+     * @param job the work to run
+     * @return future completed with the job's result or the exception it threw
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> coalesce(String key, Job<T> job) {
+        synchronized (waiting) {
+            CompletableFuture<T> queued = (CompletableFuture<T>) waiting.get(key);
+            if (queued != null)
+                return queued;
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            waiting.put(key, future);
+            executor.execute(() -> {
+                // Requests made from now on need a new run
+                synchronized (waiting) {
+                    waiting.remove(key, future);
+                }
+                run(job, future);
+            });
+
+            return future;
+        }
+    }
+
+    /**
+     * Runs a job on a background thread unless a job with the same key is waiting or running,
+     * in which case that job's future is returned.
+     *
+     * @param key identifies requests that must not run at the same time
+     * @param job the work to run
+     * @return future completed with the job's result or the exception it threw
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> share(String key, Job<T> job) {
+        synchronized (shared) {
+            CompletableFuture<T> inFlight = (CompletableFuture<T>) shared.get(key);
+            if (inFlight != null)
+                return inFlight;
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            shared.put(key, future);
+            future.whenComplete((result, exception) -> {
+                synchronized (shared) {
+                    shared.remove(key, future);
+                }
+            });
+            executor.execute(() -> run(job, future));
+
+            return future;
+        }
+    }
+
+    /**
+     * Completes a future with the result of a job, unless the future was cancelled before the job started.
+     *
+     * @param job the work to run
+     * @param future the future to complete
+     */
+    private static <T> void run(Job<T> job, CompletableFuture<T> future) {
+        if (future.isDone())
+            return;
+
+        try {
+            future.complete(job.call());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Applies a retention policy to every tracked file on a background thread. A request made while retention is
+     * already waiting or running gets that run's future.
+     *
+     * @param policy the policy deciding which versions are removed
+     * @param dryRun true to only report what would be removed
+     * @return future completed with the report of the run
+     */
+    public static CompletableFuture<RetentionReport> applyRetention(RetentionPolicy policy, boolean dryRun) {
+        return share("retention", () -> RetentionManager.apply(policy, dryRun));
+    }
+
+    /**
+     * Indexes the versions the search index is missing, such as the versions of files tracked before the index
+     * existed. A request made while the index is already being updated gets that run's future.
+     *
+     * @return future completed once every tracked file was caught up
+     */
+    public static CompletableFuture<Void> updateSearchIndex() {
+        return share("search-index", () -> {
+            SearchIndex.catchUpAll();
+            return null;
+        });
+    }
+
+    /**
+     * Finds the versions of tracked files in which the words of a query were written.
+     *
+     * @param query the words and quoted phrases to search for
+     * @param limit the maximum number of versions returned
+     * @return future completed with the matching versions newest first
+     */
+    public static CompletableFuture<ArrayList<SearchHit>> search(String query, int limit) {
+        return coalesce("search:" + limit + ":" + query, () -> SearchIndex.search(query, limit));
+    }
+
+    /**
+     * Scans all tracked files for changes on background threads. Cancelling the returned future skips the files
+     * that haven't been started.
+     *
+     * @param parallelism the maximum number of files processed at the same time
+     * @param onProgress called with the number of finished files and the number of tracked files from the scan
+     *                   threads, null to ignore progress
+     * @return future completed with the result of the scan
+     */
+    public static CompletableFuture<ScanResult> updateTextFiles(int parallelism, BiConsumer<Integer, Integer> onProgress) {
+
+        // The scan checks its own future for cancellation, which exists only once share returns
+        AtomicReference<CompletableFuture<ScanResult>> scan = new AtomicReference<>();
+        BooleanSupplier cancelled = () -> scan.get() != null && scan.get().isCancelled();
+
+        CompletableFuture<ScanResult> future = share("scan", () -> VersionManager.updateTextFiles(parallelism,
+                onProgress != null ? onProgress : (done, total) -> {}, cancelled));
+        scan.compareAndSet(null, future);
+        return future;
+    }
+
+    /**
+     * Restores every tracked file to how it looked at a point in time on background threads. A request for the same
+     * point in time made while such a restore is already waiting or running gets that restore's future, and
+     * cancelling the returned future skips the files that haven't been started.
+     *
+     * @param time the point in time
+     * @param dryRun true to only list the files that would be restored
+     * @param onProgress called with the number of finished files and the number of tracked files from the restore
+     *                   threads, null to ignore progress
+     * @return future completed with the report of the restore
+     */
+    public static CompletableFuture<RestoreReport> restore(Instant time, boolean dryRun, BiConsumer<Integer, Integer> onProgress) {
+
+        // The restore checks its own future for cancellation, which exists only once share returns
+        AtomicReference<CompletableFuture<RestoreReport>> restore = new AtomicReference<>();
+        BooleanSupplier cancelled = () -> restore.get() != null && restore.get().isCancelled();
+
+        CompletableFuture<RestoreReport> future = share("restore:" + time + ":" + dryRun, () -> RestoreManager.restore(time, dryRun,
+                Runtime.getRuntime().availableProcessors(), onProgress != null ? onProgress : (done, total) -> {}, cancelled));
+        restore.compareAndSet(null, future);
+        return future;
+    }
+
+    /**
+     * Loads the rows of the main table: every tracked file with its last edit date and tracked pathway.
+     *
+     * @return future completed with the rows in database order
+     */
+    public static CompletableFuture<ArrayList<FileData>> getTrackedFiles() {
+        return coalesce("tracked-files", () -> {
+            HashMap<String, String> lastEdits = VersionManager.getLastEditDates();
+
+            ArrayList<FileData> rows = new ArrayList<>();
+            for (FileRecord record : FileRegistry.getAll())
+                rows.add(new FileData(record.getFileName(), lastEdits.get(record.getFileName()), record.getTrackingPathway()));
+            return rows;
+        });
+    }
+
+    /**
+     * Counts the commits of a file for its history screen.
+     *
+     * @param fileName the name of the tracked file
+     * @return future completed with the number of commits
+     */
+    public static CompletableFuture<Integer> getCommitCount(String fileName) {
+        return coalesce("commit-count:" + fileName, () -> VersionManager.getCommitCount(fileName));
+    }
+
+    /**
+     * Starts tracking a file and lets the tracking daemon watch it.
+     *
+     * @param trackingPathway the pathway of the file to be tracked
+     * @param daemon the running tracking daemon, null if there is none
+     * @return future completed once the file is tracked
+     */
+    public static CompletableFuture<Void> startTracking(String trackingPathway, TrackingDaemon daemon) {
+        return submit(() -> {
+            VersionManager.startTracking(trackingPathway);
+            if (daemon != null)
+                daemon.refresh();
+            return null;
+        });
+    }
+
+    /**
+     * Stops tracking a file and lets the tracking daemon stop watching it.
+     *
+     * @param fileName the name of the file to stop tracking
+     * @param daemon the running tracking daemon, null if there is none
+     * @return future completed once the file is no longer tracked
+     */
+    public static CompletableFuture<Void> stopTracking(String fileName, TrackingDaemon daemon) {
+        return submit(() -> {
+            VersionManager.stopTracking(fileName);
+            if (daemon != null)
+                daemon.refresh();
+            return null;
+        });
+    }
+
+    /**
+     * Changes the pathway of a tracked file and lets the tracking daemon watch the new pathway.
+     *
+     * @param fileName the name of the tracked file
+     * @param newTrackingPathway the new pathway of the file
+     * @param daemon the running tracking daemon, null if there is none
+     * @return future completed with whether the pathway was changed
+     */
+    public static CompletableFuture<Boolean> updatePathway(String fileName, String newTrackingPathway, TrackingDaemon daemon) {
+        return submit(() -> {
+            boolean updated = VersionManager.updatePathway(fileName, newTrackingPathway);
+            if (daemon != null)
+                daemon.refresh();
+            return updated;
+        });
+    }
+
+    /**
+     * Reverts a tracked file to the content of a commit.
+     *
+     * @param fileName the name of the tracked file
+     * @param commitId the id of the commit to revert to
+     * @return future completed once the file is reverted
+     */
+    public static CompletableFuture<Void> revert(String fileName, String commitId) {
+        return submit(() -> {
+            VersionManager.revert(fileName, DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY), commitId);
+            return null;
+        });
+    }
+
+    /**
+     * Computes what a commit changed in a tracked file, handing every hunk to <code>consumer</code> on a background
+     * thread as soon as it is found.
+     *
+     * @param fileName the name of the tracked file
+     * @param commitId the id of the commit
+     * @param options context lines and whitespace handling
+     * @param consumer receives the hunks from the start of the file to the end
+     * @return future completed once every hunk was handed over
+     */
+    public static CompletableFuture<Void> diff(String fileName, String commitId, DiffOptions options, Consumer<DiffHunk> consumer) {
+        return submit(() -> {
+            VersionManager.diff(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY), commitId, options, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * Resolves the pathways of all tracked files.
+     *
+     * @return future completed once the pathways are resolved
+     */
+    public static CompletableFuture<Void> resolvePathways() {
+        return coalesce("resolve-pathways", () -> {
+            DatabaseManager.resolvePathways();
+            return null;
+        });
+    }
+
+    /**
+     * Deletes all tracked files and their records and lets the tracking daemon stop watching them.
+     *
+     * @param daemon the running tracking daemon, null if there is none
+     * @return future completed once everything is deleted
+     */
+    public static CompletableFuture<Void> clear(TrackingDaemon daemon) {
+        return submit(() -> {
+            VersionManager.clearTrackedFiles();
+            DatabaseManager.clear();
+            if (daemon != null)
+                daemon.refresh();
+            return null;
+        });
+    }
+}
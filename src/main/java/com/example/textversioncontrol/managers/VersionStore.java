@@ -0,0 +1,70 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>VersionStore</code> interface is the storage engine holding the versions of one tracked file.
+ * Versions are appended, read back by the id <code>append</code> returned, and only removed by rewriting the history
+ * with <code>remove</code>.
+ * <p>
+ * <code>GitVersionStore</code> keeps the versions as commits of a JGit repository, either the file's own or the shared
+ * one. <code>SegmentVersionStore</code> keeps the newest version in full and older versions as reverse deltas in an
+ * append-only segment file. Which one new files use is chosen per installation with <code>VersionManager.StorageMode</code>.
+ */
+public interface VersionStore {
+
+    /**
+     * Saves the content of a file as the newest version. The version it follows is read under the same lock as the
+     * append, so it is the parent even if other threads append to or rewrite the store at the same time.
+     *
+     * @param content the file holding the content of the version
+     * @param message a description of the version, stores may drop it
+     * @return the saved version with the id of the version before it, null for the first version
+     * @throws IOException if the content couldn't be read or the version couldn't be written
+     */
+    StoredVersion append(Path content, String message) throws IOException;
+
+    /**
+     * Lists every version from the oldest to the newest.
+     *
+     * @return the versions in the order they were appended
+     * @throws IOException if the versions couldn't be read
+     */
+    ArrayList<StoredVersion> list() throws IOException;
+
+    /**
+     * Reads the content of a version.
+     *
+     * @param versionId the id of the version
+     * @return the content of the version
+     * @throws IOException if the version couldn't be read
+     * @throws IllegalArgumentException if the store has no version with the id
+     */
+    byte[] read(String versionId) throws IOException;
+
+    /**
+     * Returns the newest version without listing the history, so it costs the same however many versions there are.
+     *
+     * @return the newest version, null if nothing was appended yet
+     * @throws IOException if the version couldn't be read
+     */
+    StoredVersion latest() throws IOException;
+
+    /**
+     * Rewrites the history without some of its versions. The surviving versions keep their content, time and order,
+     * but get new ids because the versions before them changed. Versions appended while the history is rewritten
+     * survive. The newest version must not be removed.
+     *
+     * @param versionIds the ids of the versions to remove
+     * @return the old id of every surviving version mapped to its new id
+     * @throws IOException if the history couldn't be rewritten
+     * @throws IllegalArgumentException if the newest version is one of the removed versions
+     */
+    Map<String, String> remove(Set<String> versionIds) throws IOException;
+}
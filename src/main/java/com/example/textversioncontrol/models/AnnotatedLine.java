@@ -0,0 +1,43 @@
+package com.example.textversioncontrol.models;
+
+/**
+ * The <code>AnnotatedLine</code> class is one line of a tracked file together with the commit that introduced it.
+ * Lines changed since the last commit have no commit.
+ */
+public class AnnotatedLine {
+
+    /** Line number in the file, starting at 1 */
+    private final int lineNumber;
+
+    /** Content of the line */
+    private final String text;
+
+    /** Id of the commit that introduced the line, null if the line isn't committed yet */
+    private final String commitId;
+
+    /** Date of the commit formatted as MM-dd-yyyy HH:mm:ss, null if the line isn't committed yet */
+    private final String date;
+
+    /** */
+    public AnnotatedLine(int lineNumber, String text, String commitId, String date) {
+        this.lineNumber = lineNumber;
+        this.text = text;
+        this.commitId = commitId;
+        this.date = date;
+    }
+
+    /** */
+    public int getLineNumber() {return lineNumber;}
+
+    /** */
+    public String getText() {return text;}
+
+    /** */
+    public String getCommitId() {return commitId;}
+
+    /** */
+    public String getDate() {return date;}
+
+    /** Returns true if the line changed since the last commit. */
+    public boolean isUncommitted() {return commitId == null;}
+}
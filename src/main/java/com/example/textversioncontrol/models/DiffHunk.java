@@ -0,0 +1,84 @@
+package com.example.textversioncontrol.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>DiffHunk</code> class is one region of changes between two versions of a file, in unified diff form.
+ * Every line starts with <code>' '</code> for an unchanged line, <code>'-'</code> for a line only in the old version,
+ * or <code>'+'</code> for a line only in the new version. Line numbers start at 1.
+ */
+public final class DiffHunk {
+
+    /** First line of the hunk in the old version */
+    private final int oldStart;
+
+    /** Number of old version lines in the hunk */
+    private final int oldCount;
+
+    /** First line of the hunk in the new version */
+    private final int newStart;
+
+    /** Number of new version lines in the hunk */
+    private final int newCount;
+
+    /** Lines of the hunk prefixed with their kind */
+    private final List<String> lines;
+
+    /**
+     * Creates a hunk.
+     *
+     * @param oldStart first line of the hunk in the old version
+     * @param oldCount number of old version lines in the hunk
+     * @param newStart first line of the hunk in the new version
+     * @param newCount number of new version lines in the hunk
+     * @param lines lines of the hunk prefixed with <code>' '</code>, <code>'-'</code> or <code>'+'</code>
+     */
+    public DiffHunk(int oldStart, int oldCount, int newStart, int newCount, List<String> lines) {
+        this.oldStart = oldStart;
+        this.oldCount = oldCount;
+        this.newStart = newStart;
+        this.newCount = newCount;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    /** Returns the first line of the hunk in the old version. */
+    public int getOldStart() {
+        return oldStart;
+    }
+
+    /** Returns the number of old version lines in the hunk. */
+    public int getOldCount() {
+        return oldCount;
+    }
+
+    /** Returns the first line of the hunk in the new version. */
+    public int getNewStart() {
+        return newStart;
+    }
+
+    /** Returns the number of new version lines in the hunk. */
+    public int getNewCount() {
+        return newCount;
+    }
+
+    /** Returns the lines of the hunk prefixed with their kind. */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /** Returns the hunk header, for example <code>@@ -4,7 +4,8 @@</code>. */
+    public String getHeader() {
+        return "@@ -" + oldStart + "," + oldCount + " +" + newStart + "," + newCount + " @@";
+    }
+
+    /** Returns the hunk as unified diff text. */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(getHeader()).append('\n');
+        for (String line : lines)
+            builder.append(line).append('\n');
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.textversioncontrol.models;
+
+import java.util.Objects;
+
+/**
+ * The <code>DiffOptions</code> class holds the settings a diff is computed with:
+ * the number of unchanged lines shown around every change and whether whitespace is ignored when lines are compared.
+ */
+public final class DiffOptions {
+
+    /** Three lines of context with whitespace compared, the settings of a unified diff */
+    public static final DiffOptions DEFAULT = new DiffOptions(3, false);
+
+    /** Unchanged lines shown before and after every change */
+    private final int contextLines;
+
+    /** Whether lines that differ only in whitespace are treated as equal */
+    private final boolean ignoreWhitespace;
+
+    /**
+     * Creates diff settings.
+     *
+     * @param contextLines unchanged lines shown before and after every change
+     * @param ignoreWhitespace whether lines that differ only in whitespace are treated as equal
+     */
+    public DiffOptions(int contextLines, boolean ignoreWhitespace) {
+        if (contextLines < 0)
+            throw new IllegalArgumentException("Context lines must not be negative");
+
+        this.contextLines = contextLines;
+        this.ignoreWhitespace = ignoreWhitespace;
+    }
+
+    /** Returns the number of unchanged lines shown before and after every change. */
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    /** Returns true if lines that differ only in whitespace are treated as equal. */
+    public boolean isIgnoreWhitespace() {
+        return ignoreWhitespace;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof DiffOptions options))
+            return false;
+
+        return contextLines == options.contextLines && ignoreWhitespace == options.ignoreWhitespace;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contextLines, ignoreWhitespace);
+    }
+
+    @Override
+    public String toString() {
+        return "context=" + contextLines + ",ignoreWhitespace=" + ignoreWhitespace;
+    }
+}
@@ -8,10 +8,19 @@ public class EditData {
     /** */
     private final String date;
 
+    /** Id of the commit the row shows, null if the row wasn't read from the commit index */
+    private final String commitId;
+
     /** */
     public EditData(int id, String date){
+        this(id, date, null);
+    }
+
+    /** */
+    public EditData(int id, String date, String commitId){
         this.id = id;
         this.date = date;
+        this.commitId = commitId;
     }
 
     /** */
@@ -20,4 +29,7 @@ public class EditData {
     /** */
     public int getId() {return id;}
 
+    /** */
+    public String getCommitId() {return commitId;}
+
 }
@@ -0,0 +1,172 @@
+package com.example.textversioncontrol.models;
+
+import javafx.collections.ObservableListBase;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * The <code>EditHistoryList</code> class is a read-only list of a file's commits that loads its rows a page at a time.
+ * A <code>TableView</code> only asks for the rows it shows, so opening the history of a file with hundreds of
+ * thousands of commits reads one page, and scrolling reads the pages that come into view.
+ * Only the most recently used pages are kept, so memory stays proportional to the visible rows.
+ * <p>
+ * Given a load executor, pages are read in the background: a row whose page isn't loaded yet is null until the page
+ * arrives, then the list reports the page's rows as replaced on the notify executor so the table redraws them.
+ */
+public class EditHistoryList extends ObservableListBase<EditData> {
+
+    /** Reads the rows of a page of the history. */
+    @FunctionalInterface
+    public interface PageLoader {
+
+        /**
+         * Reads a page of commits newest first.
+         *
+         * @param offset the number of commits to skip from the newest
+         * @param limit the maximum number of commits in the page
+         * @return the commits of the page
+         * @throws SQLException if the page couldn't be read from the database
+         * @throws IOException if the page couldn't be read from the repository
+         */
+        List<EditData> load(int offset, int limit) throws SQLException, IOException;
+    }
+
+    /** Number of rows in the list */
+    private final int size;
+
+    /** Number of rows read at once */
+    private final int pageSize;
+
+    /** Reads the pages */
+    private final PageLoader loader;
+
+    /** Most recently used pages by page number */
+    private final LinkedHashMap<Integer, List<EditData>> pages;
+
+    /** Reads pages in the background, null to read them in <code>get</code> */
+    private final Executor loadExecutor;
+
+    /** Runs the updates of the list after a page was read in the background, the JavaFX application thread */
+    private final Executor notifyExecutor;
+
+    /** Pages that are being read in the background */
+    private final Set<Integer> loading = new HashSet<>();
+
+    /**
+     * Creates a list of <code>size</code> rows that reads rows with <code>loader</code> when they are first shown.
+     *
+     * @param size the number of commits in the history
+     * @param pageSize the number of rows read at once
+     * @param maxPages the number of pages kept in memory
+     * @param loader reads the rows of a page
+     */
+    public EditHistoryList(int size, int pageSize, int maxPages, PageLoader loader) {
+        this(size, pageSize, maxPages, loader, null, null);
+    }
+
+    /**
+     * Creates a list of <code>size</code> rows that reads rows with <code>loader</code> on <code>loadExecutor</code>
+     * when they are first shown and publishes them on <code>notifyExecutor</code>.
+     *
+     * @param size the number of commits in the history
+     * @param pageSize the number of rows read at once
+     * @param maxPages the number of pages kept in memory
+     * @param loader reads the rows of a page
+     * @param loadExecutor runs the loader, null to read pages in <code>get</code>
+     * @param notifyExecutor thread the list is used on, such as <code>Platform::runLater</code>
+     */
+    public EditHistoryList(int size, int pageSize, int maxPages, PageLoader loader, Executor loadExecutor, Executor notifyExecutor) {
+        if (pageSize < 1 || maxPages < 1)
+            throw new IllegalArgumentException("Page size and page count must be at least 1");
+
+        this.size = size;
+        this.pageSize = pageSize;
+        this.loader = loader;
+        this.loadExecutor = loadExecutor;
+        this.notifyExecutor = notifyExecutor;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<EditData>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Returns the row at <code>index</code>, reading its page if it isn't loaded.
+     *
+     * @param index the position of the row, 0 is the newest commit
+     * @return the row, null while its page is read in the background
+     * @throws IllegalStateException if the page couldn't be read
+     */
+    @Override
+    public EditData get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+
+        int page = index / pageSize;
+        List<EditData> rows = pages.get(page);
+        if (rows == null && loadExecutor != null) {
+            loadInBackground(page);
+            return null;
+        }
+        if (rows == null) {
+            try {
+                rows = loader.load(page * pageSize, pageSize);
+            } catch (SQLException | IOException e) {
+                throw new IllegalStateException("Failed to load history page " + page, e);
+            }
+            pages.put(page, rows);
+        }
+
+        // The history may have lost commits since it was counted
+        int row = index - page * pageSize;
+        return row < rows.size() ? rows.get(row) : null;
+    }
+
+    /**
+     * Reads a page on the load executor unless it is already being read, then stores it and reports its rows
+     * as replaced on the notify executor.
+     *
+     * @param page the number of the page
+     */
+    private void loadInBackground(int page) {
+        if (!loading.add(page))
+            return;
+
+        loadExecutor.execute(() -> {
+            List<EditData> rows;
+            try {
+                rows = loader.load(page * pageSize, pageSize);
+            } catch (SQLException | IOException e) {
+                e.printStackTrace();
+                notifyExecutor.execute(() -> loading.remove(page));
+                return;
+            }
+
+            notifyExecutor.execute(() -> {
+                loading.remove(page);
+                pages.put(page, rows);
+
+                // Let the table redraw the rows that were shown empty
+                beginChange();
+                for (int index = page * pageSize; index < Math.min(size, (page + 1) * pageSize); index++)
+                    nextSet(index, null);
+                endChange();
+            });
+        });
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Returns the number of pages currently held in memory. */
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.textversioncontrol.models;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>FileFingerprint</code> class stores the stat information and content hash of a tracked file
+ * from the last time it was scanned, so unchanged files can be skipped without reading them.
+ * <p>
+ * Like git's racy clean entries, a fingerprint whose modified time isn't clearly before the time the file was hashed
+ * can't prove the file is unchanged: a write of the same size in the same clock tick leaves the stat information
+ * as it was. Such fingerprints never match, so the file is hashed again until a scan stores a fingerprint taken
+ * after the tick passed.
+ */
+public class FileFingerprint {
+
+    /** Modified times this close to the scan time are racy, covers file systems with two second timestamps */
+    static final long RACY_WINDOW = TimeUnit.SECONDS.toNanos(2);
+
+    /** Size of the file in bytes */
+    private final long size;
+
+    /** Last modified time of the file in nanoseconds since the epoch */
+    private final long modifiedTime;
+
+    /** Unique file key (inode) reported by the file system, null if not supported */
+    private final String fileKey;
+
+    /** Hex encoded SHA-256 hash of the file content, null if not hashed yet */
+    private final String contentHash;
+
+    /** Time the content was hashed in nanoseconds since the epoch, 0 if unknown */
+    private final long scanTime;
+
+    public FileFingerprint(long size, long modifiedTime, String fileKey, String contentHash) {
+        this(size, modifiedTime, fileKey, contentHash, 0);
+    }
+
+    public FileFingerprint(long size, long modifiedTime, String fileKey, String contentHash, long scanTime) {
+        this.size = size;
+        this.modifiedTime = modifiedTime;
+        this.fileKey = fileKey;
+        this.contentHash = contentHash;
+        this.scanTime = scanTime;
+    }
+
+    /**
+     * Creates a fingerprint from the attributes of a file without a content hash.
+     *
+     * @param attributes the attributes read from the file
+     * @return fingerprint containing only the stat information
+     */
+    public static FileFingerprint of(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return new FileFingerprint(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                key == null ? null : key.toString(), null);
+    }
+
+    /**
+     * Returns a copy of this fingerprint with the passed content hash, stamped with the current time as its scan
+     * time. Must be called after the content was hashed.
+     *
+     * @param contentHash the hash of the file content
+     * @return fingerprint with the same stat information and the new hash
+     */
+    public FileFingerprint withContentHash(String contentHash) {
+        Instant now = Instant.now();
+        return new FileFingerprint(size, modifiedTime, fileKey, contentHash,
+                TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano());
+    }
+
+    /**
+     * Checks if the file may have been written again in the clock tick it was hashed in, without changing its
+     * modified time.
+     *
+     * @return true if the stat information can't be trusted to detect changes
+     */
+    public boolean isRacy() {
+        return modifiedTime >= scanTime - RACY_WINDOW;
+    }
+
+    /**
+     * Checks if the size, modified time and file key of both fingerprints are the same, and <code>other</code>
+     * isn't racy.
+     *
+     * @param other the stored fingerprint to compare with
+     * @return true if the stat information matches and proves the content unchanged
+     */
+    public boolean matchesStat(FileFingerprint other) {
+        return other != null && !other.isRacy() && size == other.size && modifiedTime == other.modifiedTime
+                && Objects.equals(fileKey, other.fileKey);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public long getScanTime() {
+        return scanTime;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.textversioncontrol.models;
+
+/**
+ * The <code>FileRecord</code> class is one complete row of the pathways table together with the file's fingerprint
+ * from the last scan, so everything known about a tracked file is read with a single query.
+ */
+public class FileRecord {
+
+    /** Name of the tracked file and its directory */
+    private final String fileName;
+
+    /** Pathway to the directory holding the copy and the repository */
+    private final String directoryPathway;
+
+    /** Pathway to the copy of the tracked file */
+    private final String copyPathway;
+
+    /** Pathway to the file that is being tracked for changes */
+    private final String trackingPathway;
+
+    /** Pathway to the repository, shared ref or segment store holding the history */
+    private final String repoPathway;
+
+    /** Stat information and content hash from the last scan, null if the file wasn't scanned yet */
+    private final FileFingerprint fingerprint;
+
+    public FileRecord(String fileName, String directoryPathway, String copyPathway, String trackingPathway,
+                      String repoPathway, FileFingerprint fingerprint) {
+        this.fileName = fileName;
+        this.directoryPathway = directoryPathway;
+        this.copyPathway = copyPathway;
+        this.trackingPathway = trackingPathway;
+        this.repoPathway = repoPathway;
+        this.fingerprint = fingerprint;
+    }
+
+    /** Returns the name of the tracked file. */
+    public String getFileName() {return fileName;}
+
+    /** Returns the pathway to the directory holding the copy and the repository. */
+    public String getDirectoryPathway() {return directoryPathway;}
+
+    /** Returns the pathway to the copy of the tracked file. */
+    public String getCopyPathway() {return copyPathway;}
+
+    /** Returns the pathway to the file that is being tracked for changes. */
+    public String getTrackingPathway() {return trackingPathway;}
+
+    /** Returns the pathway to the repository, shared ref or segment store holding the history. */
+    public String getRepoPathway() {return repoPathway;}
+
+    /** Returns the fingerprint from the last scan, null if the file wasn't scanned yet. */
+    public FileFingerprint getFingerprint() {return fingerprint;}
+
+    @Override
+    public String toString() {
+        return fileName + " -> " + trackingPathway;
+    }
+}
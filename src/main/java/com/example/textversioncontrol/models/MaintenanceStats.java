@@ -0,0 +1,86 @@
+package com.example.textversioncontrol.models;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * The <code>MaintenanceStats</code> class collects the outcome of repository maintenance: which repositories were
+ * packed, which were skipped because they were in use, which failed, and how many bytes and how much time it took.
+ */
+public class MaintenanceStats {
+
+    /** Git pathways of the repositories that were packed */
+    private final List<String> packedRepositories = new ArrayList<>();
+
+    /** Git pathways of the repositories that were skipped because they were borrowed */
+    private final List<String> skippedRepositories = new ArrayList<>();
+
+    /** Git pathways of the repositories that failed mapped to the exception that stopped them */
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+    /** Bytes of object storage freed, negative if packing grew the repositories */
+    private long bytesReclaimed;
+
+    /** Time in nanoseconds spent packing, not counting the pauses of the I/O budget */
+    private long nanosSpent;
+
+    /** Records that a repository was packed. */
+    public synchronized void addPacked(String gitPathway, long bytesReclaimed, long nanosSpent) {
+        packedRepositories.add(gitPathway);
+        this.bytesReclaimed += bytesReclaimed;
+        this.nanosSpent += nanosSpent;
+    }
+
+    /** Records that a repository was skipped because it was in use. */
+    public synchronized void addSkipped(String gitPathway) {
+        skippedRepositories.add(gitPathway);
+    }
+
+    /** Records that a repository failed to be packed. */
+    public synchronized void addFailure(String gitPathway, Exception exception) {
+        failures.put(gitPathway, exception);
+    }
+
+    /** Adds the outcome of another run to this one. */
+    public synchronized void addAll(MaintenanceStats other) {
+        synchronized (other) {
+            packedRepositories.addAll(other.packedRepositories);
+            skippedRepositories.addAll(other.skippedRepositories);
+            failures.putAll(other.failures);
+            bytesReclaimed += other.bytesReclaimed;
+            nanosSpent += other.nanosSpent;
+        }
+    }
+
+    /** Returns the git pathways of the packed repositories in the order they were packed. */
+    public synchronized List<String> getPackedRepositories() {
+        return new ArrayList<>(packedRepositories);
+    }
+
+    /** Returns the git pathways of the repositories skipped because they were in use. */
+    public synchronized List<String> getSkippedRepositories() {
+        return new ArrayList<>(skippedRepositories);
+    }
+
+    /** Returns the failed git pathways mapped to the exception that stopped them. */
+    public synchronized Map<String, Exception> getFailures() {
+        return new LinkedHashMap<>(failures);
+    }
+
+    /** Returns the bytes of object storage freed, negative if packing grew the repositories. */
+    public synchronized long getBytesReclaimed() {
+        return bytesReclaimed;
+    }
+
+    /** Returns the time spent packing, not counting the pauses of the I/O budget. */
+    public synchronized Duration getTimeSpent() {
+        return Duration.ofNanos(nanosSpent);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Packed " + packedRepositories.size() + " repositories, skipped " + skippedRepositories.size()
+                + ", failed " + failures.size() + ", reclaimed " + bytesReclaimed + " bytes in "
+                + getTimeSpent().toMillis() + " ms";
+    }
+}
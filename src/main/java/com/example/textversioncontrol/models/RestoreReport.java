@@ -0,0 +1,114 @@
+package com.example.textversioncontrol.models;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * The <code>RestoreReport</code> class collects the outcome of restoring every tracked file to how it looked at a
+ * point in time: which files were restored, or would be restored on a dry run, to which version, which files already
+ * matched their version, which files had no version yet at that time, and which files failed.
+ */
+public class RestoreReport {
+
+    /** The point in time the files were restored to */
+    private final Instant time;
+
+    /** Whether the tracked files were left untouched */
+    private final boolean dryRun;
+
+    /** Ids of the versions the restored files were written from by file name */
+    private final Map<String, String> restoredFiles = new TreeMap<>();
+
+    /** Names of the files whose content already matched their version */
+    private final List<String> unchangedFiles = new ArrayList<>();
+
+    /** Names of the files that were first saved after the point in time */
+    private final List<String> untrackedFiles = new ArrayList<>();
+
+    /** Names of the files that failed mapped to the exception that stopped them */
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+    /** Whether the restore was cancelled before every file was restored */
+    private boolean cancelled;
+
+    /**
+     * Creates an empty report.
+     *
+     * @param time the point in time the files are restored to
+     * @param dryRun true if the tracked files are only inspected
+     */
+    public RestoreReport(Instant time, boolean dryRun) {
+        this.time = time;
+        this.dryRun = dryRun;
+    }
+
+    /** Records that a file was restored from a version, or would be restored on a dry run. */
+    public synchronized void addRestored(String fileName, String commitId) {
+        restoredFiles.put(fileName, commitId);
+    }
+
+    /** Records that a file already matched its version at the point in time. */
+    public synchronized void addUnchanged(String fileName) {
+        unchangedFiles.add(fileName);
+    }
+
+    /** Records that a file had no version yet at the point in time. */
+    public synchronized void addUntracked(String fileName) {
+        untrackedFiles.add(fileName);
+    }
+
+    /** Records that a file failed to be restored. */
+    public synchronized void addFailure(String fileName, Exception exception) {
+        failures.put(fileName, exception);
+    }
+
+    /** Records that the restore was cancelled and skipped files. */
+    public synchronized void markCancelled() {
+        cancelled = true;
+    }
+
+    /** Returns the point in time the files were restored to. */
+    public Instant getTime() {
+        return time;
+    }
+
+    /** Returns true if the tracked files were left untouched. */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /** Returns the restored file names mapped to the id of their version, sorted by file name. */
+    public synchronized Map<String, String> getRestoredFiles() {
+        return new TreeMap<>(restoredFiles);
+    }
+
+    /** Returns the names of the files that already matched their version, sorted by name. */
+    public synchronized List<String> getUnchangedFiles() {
+        List<String> sorted = new ArrayList<>(unchangedFiles);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /** Returns the names of the files that had no version yet at the point in time, sorted by name. */
+    public synchronized List<String> getUntrackedFiles() {
+        List<String> sorted = new ArrayList<>(untrackedFiles);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /** Returns the failed file names mapped to the exception that stopped them. */
+    public synchronized Map<String, Exception> getFailures() {
+        return new LinkedHashMap<>(failures);
+    }
+
+    /** Returns true if the restore was cancelled before every file was restored. */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return (dryRun ? "Would restore " : "Restored ") + restoredFiles.size() + " files to " + time + ", "
+                + unchangedFiles.size() + " unchanged, " + failures.size() + " failed";
+    }
+}
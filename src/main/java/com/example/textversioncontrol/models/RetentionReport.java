@@ -0,0 +1,93 @@
+package com.example.textversioncontrol.models;
+
+import java.util.*;
+
+/**
+ * The <code>RetentionReport</code> class collects the outcome of applying a retention policy: how many versions and
+ * bytes each file lost, or would lose on a dry run, the new ids of the versions that survived a rewrite, and which
+ * files failed.
+ */
+public class RetentionReport {
+
+    /** Whether the histories were left untouched */
+    private final boolean dryRun;
+
+    /** Removed versions by file name */
+    private final Map<String, Integer> removedVersions = new TreeMap<>();
+
+    /** Content bytes of the removed versions by file name */
+    private final Map<String, Long> removedBytes = new TreeMap<>();
+
+    /** Old ids of the surviving versions mapped to their new ids */
+    private final Map<String, String> rewrittenIds = new HashMap<>();
+
+    /** Names of the files that failed mapped to the exception that stopped them */
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty report.
+     *
+     * @param dryRun true if the histories are only inspected
+     */
+    public RetentionReport(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /** Records the versions removed from a file, or that would be removed on a dry run. */
+    public synchronized void addRemoved(String fileName, int versions, long bytes) {
+        removedVersions.merge(fileName, versions, Integer::sum);
+        removedBytes.merge(fileName, bytes, Long::sum);
+    }
+
+    /** Records the new ids of the versions that survived a rewrite. */
+    public synchronized void addRewrittenIds(Map<String, String> ids) {
+        rewrittenIds.putAll(ids);
+    }
+
+    /** Records that a file failed to be thinned out. */
+    public synchronized void addFailure(String fileName, Exception exception) {
+        failures.put(fileName, exception);
+    }
+
+    /** Returns true if the histories were left untouched. */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /** Returns the removed versions of every file that lost versions, sorted by file name. */
+    public synchronized Map<String, Integer> getRemovedVersions() {
+        return new TreeMap<>(removedVersions);
+    }
+
+    /** Returns the total number of removed versions. */
+    public synchronized int getTotalRemovedVersions() {
+        return removedVersions.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /** Returns the total content bytes of the removed versions. */
+    public synchronized long getTotalRemovedBytes() {
+        return removedBytes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Returns the id a version has after the rewrite, so a version id held from before the rewrite still finds
+     * its version.
+     *
+     * @param versionId the id from before the rewrite
+     * @return the new id, the same id if the version wasn't rewritten, or null if the version was removed
+     */
+    public synchronized String getRewrittenId(String versionId) {
+        return rewrittenIds.getOrDefault(versionId, versionId);
+    }
+
+    /** Returns the failed file names mapped to the exception that stopped them. */
+    public synchronized Map<String, Exception> getFailures() {
+        return new LinkedHashMap<>(failures);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return (dryRun ? "Would remove " : "Removed ") + getTotalRemovedVersions() + " versions and "
+                + getTotalRemovedBytes() + " bytes from " + removedVersions.size() + " files";
+    }
+}
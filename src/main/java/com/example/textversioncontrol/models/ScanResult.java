@@ -0,0 +1,56 @@
+package com.example.textversioncontrol.models;
+
+import java.util.*;
+
+/**
+ * The <code>ScanResult</code> class collects the outcome of a scan over all tracked files:
+ * which files were committed and which files failed and why.
+ */
+public class ScanResult {
+
+    /** Names of the files that had changes committed */
+    private final List<String> committedFiles = new ArrayList<>();
+
+    /** Names of the files that failed mapped to the exception that stopped them */
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+    /** Whether the scan was cancelled before every file was scanned */
+    private boolean cancelled;
+
+    /** Records that a file had its changes committed. */
+    public synchronized void addCommitted(String fileName) {
+        committedFiles.add(fileName);
+    }
+
+    /** Records that a file failed to be scanned or committed. */
+    public synchronized void addFailure(String fileName, Exception exception) {
+        failures.put(fileName, exception);
+    }
+
+    /** Returns the committed file names sorted by name. */
+    public synchronized List<String> getCommittedFiles() {
+        List<String> sorted = new ArrayList<>(committedFiles);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /** Returns the failed file names mapped to the exception that stopped them. */
+    public synchronized Map<String, Exception> getFailures() {
+        return new LinkedHashMap<>(failures);
+    }
+
+    /** Records that the scan was cancelled and skipped files. */
+    public synchronized void markCancelled() {
+        cancelled = true;
+    }
+
+    /** Returns true if the scan was cancelled before every file was scanned. */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Returns true if no file failed. */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.textversioncontrol.models;
+
+/**
+ * The <code>SearchHit</code> class is one result of a full-text search: the version of a tracked file in which the
+ * searched text was written.
+ */
+public class SearchHit {
+
+    /** Name of the tracked file */
+    private final String fileName;
+
+    /** Id of the version that introduced the text */
+    private final String commitId;
+
+    /** Time the version was saved in seconds since the epoch */
+    private final long commitTime;
+
+    public SearchHit(String fileName, String commitId, long commitTime) {
+        this.fileName = fileName;
+        this.commitId = commitId;
+        this.commitTime = commitTime;
+    }
+
+    /** Returns the name of the tracked file. */
+    public String getFileName() {return fileName;}
+
+    /** Returns the id of the version that introduced the text. */
+    public String getCommitId() {return commitId;}
+
+    /** Returns the time the version was saved in seconds since the epoch. */
+    public long getCommitTime() {return commitTime;}
+
+    @Override
+    public String toString() {
+        return fileName + "@" + commitId;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.textversioncontrol.models;
+
+/**
+ * The <code>StoredVersion</code> class describes one saved version of a tracked file in a <code>VersionStore</code>.
+ */
+public class StoredVersion {
+
+    /** Id of the version, a 40 character hex string in every store */
+    private final String id;
+
+    /** Time the version was saved in seconds since the epoch */
+    private final long time;
+
+    /** Size of the version's content in bytes */
+    private final long size;
+
+    /** Id of the version it was appended after, only known for versions returned by <code>append</code> */
+    private final String parentId;
+
+    /** */
+    public StoredVersion(String id, long time, long size) {
+        this(id, time, size, null);
+    }
+
+    /** */
+    public StoredVersion(String id, long time, long size, String parentId) {
+        this.id = id;
+        this.time = time;
+        this.size = size;
+        this.parentId = parentId;
+    }
+
+    /** */
+    public String getId() {return id;}
+
+    /** */
+    public long getTime() {return time;}
+
+    /** */
+    public long getSize() {return size;}
+
+    /** Returns the id of the version this one was appended after, null for the first version or a listed version. */
+    public String getParentId() {return parentId;}
+
+    @Override
+    public String toString() {
+        return id + "@" + time;
+    }
+}
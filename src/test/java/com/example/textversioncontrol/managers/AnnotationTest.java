@@ -0,0 +1,151 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.AnnotatedLine;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackInserter;
+import org.eclipse.jgit.lib.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationTest {
+
+    /** Lines of the file in the deep history, every commit rewrites one of them */
+    private static final int LINES = 200;
+
+    @TempDir
+    Path tempDirectory;
+
+    private String gitPathway;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (gitPathway != null)
+            VersionManager.getRepositoryPool().invalidate(gitPathway);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Returns the content of the deep history's file after commit <code>ordinal</code> */
+    private static String contentAt(int ordinal) {
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < LINES; line++) {
+            int last = ordinal - Math.floorMod(ordinal - line, LINES);
+            content.append("line ").append(last < 0 ? "initial " + line : last).append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Creates a repository with <code>count</code> commits, where commit <code>i</code> rewrites line
+     * <code>i % LINES</code>, written into a single pack so a deep history is quick to build.
+     */
+    private void createHistory(int count) throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDirectory.resolve("deep").toFile()).call()) {
+            Repository repository = git.getRepository();
+            gitPathway = repository.getDirectory().getPath();
+
+            ObjectId parent = null;
+            try (PackInserter inserter = ((ObjectDirectory) repository.getObjectDatabase()).newPackInserter()) {
+                for (int i = 0; i < count; i++) {
+                    ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, contentAt(i).getBytes(StandardCharsets.UTF_8));
+                    TreeFormatter tree = new TreeFormatter();
+                    tree.append("deep.txt", FileMode.REGULAR_FILE, blobId);
+
+                    PersonIdent ident = new PersonIdent("test", "test@example.com",
+                            (1_700_000_000L + i * 60L) * 1000, TimeZone.getTimeZone("UTC").getRawOffset());
+                    CommitBuilder commit = new CommitBuilder();
+                    commit.setTreeId(inserter.insert(tree));
+                    if (parent != null)
+                        commit.setParentId(parent);
+                    commit.setAuthor(ident);
+                    commit.setCommitter(ident);
+                    commit.setMessage("commit " + i);
+                    parent = inserter.insert(commit);
+                }
+                inserter.flush();
+            }
+
+            RefUpdate update = repository.updateRef(Constants.R_HEADS + Constants.MASTER);
+            update.setNewObjectId(parent);
+            update.forceUpdate();
+        }
+    }
+
+    @Test
+    void linesKeepTheCommitThatIntroducedThem() throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("annotated.txt");
+        Files.writeString(file, "first\nsecond\n");
+        VersionManager.startTracking(file.toString());
+        String gitPathway = DatabaseManager.getEntry("annotated", DatabaseManager.Columns.REPO_PATHWAY);
+        String initial = VersionManager.getCommitId(gitPathway, 0);
+
+        Files.writeString(file, "first\ninserted\nsecond\n");
+        VersionManager.updateTextFiles();
+        String insert = VersionManager.getCommitId(gitPathway, 0);
+
+        // Uncommitted lines have no commit
+        Files.writeString(file, "first\ninserted\nsecond\nunsaved\n");
+        ArrayList<AnnotatedLine> lines = VersionManager.annotate("annotated");
+
+        assertEquals(4, lines.size());
+        assertEquals(initial, lines.get(0).getCommitId());
+        assertEquals(insert, lines.get(1).getCommitId());
+        assertEquals("inserted", lines.get(1).getText());
+        assertEquals(initial, lines.get(2).getCommitId());
+        assertTrue(lines.get(3).isUncommitted());
+        assertEquals(4, lines.get(3).getLineNumber());
+        assertNotNull(lines.get(0).getDate());
+
+        // Committing replays the new commit on the kept annotation
+        VersionManager.updateTextFiles();
+        Annotation annotation = VersionManager.getAnnotation(gitPathway);
+        assertEquals(VersionManager.getCommitId(gitPathway, 0), annotation.getHead().getName());
+        assertEquals(VersionManager.annotate("annotated").get(3).getCommitId(), annotation.getHead().getName());
+    }
+
+    @Test
+    void deepHistoriesAreAnnotatedIncrementally() throws IOException, GitAPIException {
+        createHistory(10_000);
+
+        Annotation annotation = VersionManager.getAnnotation(gitPathway);
+        for (int line = 0; line < LINES; line++)
+            assertEquals(10_000 - LINES + line, annotation.getOrigin(line));
+
+        // One more commit rewrites line 0
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(gitPathway)) {
+            Files.writeString(tempDirectory.resolve("deep").resolve("deep.txt"), contentAt(10_000));
+            lease.getGit().add().addFilepattern("deep.txt").call();
+            lease.getGit().commit().setMessage("newer").call();
+        }
+
+        long start = System.nanoTime();
+        annotation = VersionManager.getAnnotation(gitPathway);
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(10_000, annotation.getOrigin(0));
+        assertEquals(10_000 - LINES + 1, annotation.getOrigin(1));
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(100), "Incremental annotate took " + elapsed / 1_000_000 + " ms");
+    }
+}
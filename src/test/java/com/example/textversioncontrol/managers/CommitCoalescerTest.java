@@ -0,0 +1,109 @@
+package com.example.textversioncontrol.managers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitCoalescerTest {
+
+    /** Clock that only moves when the test advances it */
+    private static class TestClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private TestClock clock;
+    private CommitCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock();
+        coalescer = new CommitCoalescer(Duration.ofSeconds(2), Duration.ofSeconds(10), clock);
+    }
+
+    @Test
+    void burstIsCommittedOnceAfterQuietPeriod() {
+        for (int i = 0; i < 5; i++) {
+            coalescer.recordSave("notes");
+            clock.advance(Duration.ofSeconds(1));
+            assertTrue(coalescer.flushDue().isEmpty());
+        }
+
+        // Two quiet seconds after the last save
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(Map.of("notes", 5), coalescer.flushDue());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    void continuousSavesAreCommittedAfterMaxDelay() {
+        for (int i = 0; i < 10; i++) {
+            coalescer.recordSave("log");
+            assertTrue(coalescer.flushDue().isEmpty());
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        // The file never went quiet, but the first save is now ten seconds old
+        coalescer.recordSave("log");
+        assertEquals(Map.of("log", 11), coalescer.flushDue());
+
+        // The next save starts a new burst
+        coalescer.recordSave("log");
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals(Map.of("log", 1), coalescer.flushDue());
+    }
+
+    @Test
+    void filesAreCoalescedIndependently() {
+        coalescer.recordSave("first");
+        clock.advance(Duration.ofSeconds(1));
+        coalescer.recordSave("second");
+        clock.advance(Duration.ofSeconds(1));
+
+        assertEquals(Map.of("first", 1), coalescer.flushDue());
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(Map.of("second", 1), coalescer.flushDue());
+    }
+
+    @Test
+    void flushAllIgnoresTiming() {
+        coalescer.recordSave("first");
+        coalescer.recordSave("first");
+        coalescer.recordSave("second");
+
+        assertEquals(Map.of("first", 2, "second", 1), coalescer.flushAll());
+        assertTrue(coalescer.flushDue().isEmpty());
+    }
+
+    @Test
+    void commitMessageRecordsMergedSaves() {
+        assertEquals("Auto Save", CommitCoalescer.getCommitMessage(1));
+        assertEquals("Auto Save (4 saves)", CommitCoalescer.getCommitMessage(4));
+    }
+}
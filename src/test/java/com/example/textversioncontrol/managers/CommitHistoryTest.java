@@ -0,0 +1,121 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackInserter;
+import org.eclipse.jgit.lib.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitHistoryTest {
+
+    /** Commit time of the initial commit, later commits are one minute apart */
+    private static final long START = 1_700_000_000L;
+
+    @TempDir
+    Path tempDirectory;
+
+    private String gitPathway;
+
+    @AfterEach
+    void tearDown() {
+        if (gitPathway != null)
+            VersionManager.getRepositoryPool().invalidate(gitPathway);
+    }
+
+    /**
+     * Creates a repository whose master branch has <code>count</code> commits, written into a single pack
+     * so a deep history is quick to build.
+     *
+     * @return ids of the commits oldest first
+     */
+    private ObjectId[] createHistory(int count) throws IOException, GitAPIException {
+        ObjectId[] ids = new ObjectId[count];
+
+        try (Git git = Git.init().setDirectory(tempDirectory.toFile()).call()) {
+            Repository repository = git.getRepository();
+            gitPathway = repository.getDirectory().getPath();
+
+            try (PackInserter inserter = ((ObjectDirectory) repository.getObjectDatabase()).newPackInserter()) {
+                ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, "content".getBytes(StandardCharsets.UTF_8));
+                TreeFormatter tree = new TreeFormatter();
+                tree.append("history.txt", FileMode.REGULAR_FILE, blobId);
+                ObjectId treeId = inserter.insert(tree);
+
+                for (int i = 0; i < count; i++) {
+                    PersonIdent ident = new PersonIdent("test", "test@example.com",
+                            (START + i * 60L) * 1000, TimeZone.getTimeZone("UTC").getRawOffset());
+                    CommitBuilder commit = new CommitBuilder();
+                    commit.setTreeId(treeId);
+                    if (i > 0)
+                        commit.setParentId(ids[i - 1]);
+                    commit.setAuthor(ident);
+                    commit.setCommitter(ident);
+                    commit.setMessage("commit " + i);
+                    ids[i] = inserter.insert(commit);
+                }
+                inserter.flush();
+            }
+
+            RefUpdate update = repository.updateRef(Constants.R_HEADS + Constants.MASTER);
+            update.setNewObjectId(ids[count - 1]);
+            update.forceUpdate();
+        }
+
+        return ids;
+    }
+
+    @Test
+    void commitsAreFoundAtAnyDepth() throws IOException, GitAPIException {
+        ObjectId[] ids = createHistory(100_000);
+
+        CommitHistory history = VersionManager.getHistory(gitPathway);
+        assertEquals(100_000, history.size());
+
+        // Newest, past the old ceiling of 100 commits, and the initial commit
+        assertEquals(ids[99_999].getName(), VersionManager.getCommitId(gitPathway, 0));
+        assertEquals(ids[99_899].getName(), VersionManager.getCommitId(gitPathway, 100));
+        assertEquals(ids[0].getName(), VersionManager.getCommitId(gitPathway, 99_999));
+        assertNull(VersionManager.getCommitId(gitPathway, 100_000));
+
+        // Lookups reuse the cached history
+        assertSame(history, VersionManager.getHistory(gitPathway));
+    }
+
+    @Test
+    void commitsAreFoundByTime() throws IOException, GitAPIException {
+        ObjectId[] ids = createHistory(100_000);
+
+        assertEquals(ids[0].getName(), VersionManager.getCommitIdAt(gitPathway, Instant.ofEpochSecond(START)));
+        assertEquals(ids[500].getName(), VersionManager.getCommitIdAt(gitPathway, Instant.ofEpochSecond(START + 500 * 60 + 59)));
+        assertEquals(ids[99_999].getName(), VersionManager.getCommitIdAt(gitPathway, Instant.ofEpochSecond(START + 10_000_000)));
+        assertNull(VersionManager.getCommitIdAt(gitPathway, Instant.ofEpochSecond(START - 1)));
+    }
+
+    @Test
+    void newCommitsExtendTheCachedHistory() throws IOException, GitAPIException {
+        createHistory(10);
+        CommitHistory cached = VersionManager.getHistory(gitPathway);
+
+        // Commit through the pooled repository, as the tracker does
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(gitPathway)) {
+            lease.getGit().commit().setAllowEmpty(true).setMessage("newer").call();
+        }
+
+        CommitHistory history = VersionManager.getHistory(gitPathway);
+        assertEquals(11, history.size());
+        assertEquals(cached.get(0), history.get(0));
+        assertEquals(cached.getHead(), history.get(9));
+        assertEquals(history.getHead(), history.getFromNewest(0));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.EditData;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitIndexTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.PER_FILE);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Tracks a file and saves two more versions of it */
+    private String trackWithHistory(String name) throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve(name + ".txt");
+        Files.writeString(file, "first");
+        VersionManager.startTracking(file.toString());
+
+        Files.writeString(file, "second version");
+        VersionManager.updateTextFiles();
+        Files.writeString(file, "third");
+        VersionManager.updateTextFiles();
+
+        return DatabaseManager.getEntry(name, DatabaseManager.Columns.REPO_PATHWAY);
+    }
+
+    /** Asserts the index lists the same commits as the git log */
+    private void assertMatchesGit(String fileName, String gitPathway) throws IOException, GitAPIException, SQLException {
+        assertEquals(VersionManager.getCommitDates(gitPathway), CommitIndex.getCommitDates(fileName));
+        for (int i = 0; i < CommitIndex.getCommitCount(fileName); i++)
+            assertEquals(VersionManager.getCommitId(gitPathway, i), CommitIndex.getCommitId(fileName, i));
+    }
+
+    @Test
+    void commitsAreRecordedAsTheyAreMade() throws IOException, GitAPIException, SQLException {
+        String gitPathway = trackWithHistory("indexed");
+
+        assertEquals(3, CommitIndex.getCommitCount("indexed"));
+        assertMatchesGit("indexed", gitPathway);
+        assertNull(CommitIndex.getCommitId("indexed", 3));
+    }
+
+    @Test
+    void sharedCommitsAreRecorded() throws IOException, GitAPIException, SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.SHARED);
+        String gitPathway = trackWithHistory("shared");
+
+        assertEquals(3, CommitIndex.getCommitCount("shared"));
+        assertMatchesGit("shared", gitPathway);
+    }
+
+    @Test
+    void staleIndexIsRebuiltFromGit() throws IOException, GitAPIException, SQLException {
+        String gitPathway = trackWithHistory("stale");
+
+        // Lose the index, as for files tracked before it existed
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("DELETE FROM commits");
+        }
+        assertEquals(0, CommitIndex.getCommitCount("stale"));
+
+        // Reading the history repairs it
+        assertEquals(3, CommitIndex.getCommitDates("stale").size());
+        assertMatchesGit("stale", gitPathway);
+
+        // A commit made behind the index's back is picked up as well
+        Path copy = Path.of(DatabaseManager.getEntry("stale", DatabaseManager.Columns.COPY_PATHWAY));
+        Files.writeString(copy, "committed directly");
+        VersionManager.commitChanges(gitPathway, copy.getFileName().toString());
+        assertEquals(4, CommitIndex.getCommitDates("stale").size());
+        assertMatchesGit("stale", gitPathway);
+    }
+
+    @Test
+    void commitToStaleIndexRebuildsHistory() throws IOException, GitAPIException, SQLException {
+        String gitPathway = trackWithHistory("upgraded");
+
+        // Lose the file's rows, then commit as the first scan after an upgrade would
+        CommitIndex.delete("upgraded");
+        Files.writeString(tempDirectory.resolve("upgraded.txt"), "fourth");
+        VersionManager.updateTextFiles();
+
+        assertEquals(4, VersionManager.getCommitCount("upgraded"));
+        assertMatchesGit("upgraded", gitPathway);
+        assertEquals(VersionManager.getCommitId(gitPathway, 3), CommitIndex.getCommitId("upgraded", 3));
+    }
+
+    @Test
+    void currentIndexIsCheckedWithoutWalkingHistory() throws IOException, GitAPIException, SQLException {
+        String gitPathway = trackWithHistory("cold");
+        VersionManager.setStorageMode(VersionManager.StorageMode.SHARED);
+        String sharedGitPathway = trackWithHistory("coldShared");
+
+        // Opening a history in a new session only resolves the head
+        for (String fileName : new String[] {"cold", "coldShared"}) {
+            String pathway = fileName.equals("cold") ? gitPathway : sharedGitPathway;
+            VersionManager.forgetHistory(pathway);
+            assertEquals(3, VersionManager.getCommitCount(fileName));
+            assertFalse(VersionManager.isHistoryCached(pathway));
+        }
+    }
+
+    @Test
+    void historyFollowsRenameAndDelete() throws IOException, GitAPIException, SQLException {
+        trackWithHistory("before");
+
+        Path renamed = tempDirectory.resolve("after.txt");
+        Files.writeString(renamed, "third");
+        assertTrue(VersionManager.updatePathway("before", renamed.toString()));
+
+        assertEquals(0, CommitIndex.getCommitCount("before"));
+        assertEquals(3, CommitIndex.getCommitCount("after"));
+
+        VersionManager.stopTracking("after");
+        assertEquals(0, CommitIndex.getCommitCount("after"));
+    }
+
+    @Test
+    void lastEditDatesAreKeyedByFile() throws IOException, GitAPIException, SQLException {
+        String firstGitPathway = trackWithHistory("first");
+        String secondGitPathway = trackWithHistory("second");
+
+        HashMap<String, String> dates = VersionManager.getLastEditDates();
+        assertEquals(2, dates.size());
+        assertEquals(VersionManager.getCommitDates(firstGitPathway).get(0), dates.get("first"));
+        assertEquals(VersionManager.getCommitDates(secondGitPathway).get(0), dates.get("second"));
+
+        // Files without a stored last commit are indexed on the next load
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("DELETE FROM last_commits WHERE file_name = 'first'");
+        }
+        assertEquals(dates, VersionManager.getLastEditDates());
+    }
+
+    @Test
+    void historyIsReadInPages() throws IOException, GitAPIException, SQLException {
+        String gitPathway = trackWithHistory("paged");
+        ArrayList<String> dates = VersionManager.getCommitDates(gitPathway);
+
+        // Newest first, numbered like the history screen
+        ArrayList<EditData> first = VersionManager.getHistoryPage("paged", 0, 2);
+        assertEquals(2, first.size());
+        assertEquals(1, first.get(0).getId());
+        assertEquals(dates.get(0), first.get(0).getDate());
+        assertEquals(VersionManager.getCommitId(gitPathway, 1), first.get(1).getCommitId());
+
+        ArrayList<EditData> last = VersionManager.getHistoryPage("paged", 2, 2);
+        assertEquals(1, last.size());
+        assertEquals(3, last.get(0).getId());
+        assertTrue(VersionManager.getHistoryPage("paged", 3, 2).isEmpty());
+
+        // Pages counted from an earlier count stay aligned after a new commit
+        Path file = Path.of(DatabaseManager.getEntry("paged", DatabaseManager.Columns.TRACKING_PATHWAY));
+        Files.writeString(file, "fourth");
+        VersionManager.updateTextFiles();
+        assertEquals(last.get(0).getCommitId(), VersionManager.getHistoryPage("paged", 3, 2, 2).get(0).getCommitId());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.textversioncontrol.managers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void loadDriver() throws ClassNotFoundException {
+        Class.forName("org.sqlite.JDBC");
+    }
+
+    /** Opens a pool on a new database with an items table */
+    private ConnectionPool createPool(int readers) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + tempDirectory.resolve("test.db"), readers);
+        try (ConnectionPool.Lease lease = pool.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE items (id integer PRIMARY KEY, value text NOT NULL)");
+        }
+        return pool;
+    }
+
+    /** Counts the rows of the items table */
+    private static int count(ConnectionPool.Lease lease) throws SQLException {
+        try (ResultSet resultSet = lease.prepare("SELECT COUNT(*) FROM items").executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    @Test
+    void connectionsUseWalAndCacheStatements() throws SQLException {
+        try (ConnectionPool pool = createPool(2)) {
+            try (ConnectionPool.Lease lease = pool.read()) {
+                try (ResultSet resultSet = lease.prepare("PRAGMA journal_mode").executeQuery()) {
+                    assertTrue(resultSet.next());
+                    assertEquals("wal", resultSet.getString(1));
+                }
+
+                // The same query is prepared once per connection
+                PreparedStatement statement = lease.prepare("SELECT COUNT(*) FROM items");
+                assertSame(statement, lease.prepare("SELECT COUNT(*) FROM items"));
+
+                // Readers refuse changes
+                assertThrows(SQLException.class, () -> lease.prepare("INSERT INTO items (value) VALUES ('x')").executeUpdate());
+            }
+        }
+    }
+
+    @Test
+    void nestedLeasesShareConnection() throws SQLException {
+        try (ConnectionPool pool = createPool(1)) {
+
+            // A thread borrowing again reuses its reader instead of waiting for a second one
+            try (ConnectionPool.Lease outer = pool.read(); ConnectionPool.Lease inner = pool.read()) {
+                assertSame(outer.getConnection(), inner.getConnection());
+                assertEquals(0, pool.getIdleReaders());
+            }
+            assertEquals(1, pool.getIdleReaders());
+
+            // A thread holding the writer reads its own uncommitted changes
+            try (ConnectionPool.Lease writer = pool.write()) {
+                writer.getConnection().setAutoCommit(false);
+                try (Statement statement = writer.getConnection().createStatement()) {
+                    statement.execute("INSERT INTO items (value) VALUES ('uncommitted')");
+                }
+
+                try (ConnectionPool.Lease reader = pool.read()) {
+                    assertSame(writer.getConnection(), reader.getConnection());
+                    assertEquals(1, count(reader));
+                }
+
+                writer.getConnection().rollback();
+                writer.getConnection().setAutoCommit(true);
+            }
+        }
+    }
+
+    @Test
+    void readersRunAlongsideWriter() throws Exception {
+        int rows = 500;
+        int readerThreads = 8;
+
+        try (ConnectionPool pool = createPool(4)) {
+            ExecutorService executor = Executors.newFixedThreadPool(readerThreads + 1);
+            List<Future<Integer>> readers = new ArrayList<>();
+
+            // One writer inserts rows one commit at a time
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < rows; i++) {
+                    try (ConnectionPool.Lease lease = pool.write()) {
+                        PreparedStatement statement = lease.prepare("INSERT INTO items (value) VALUES (?)");
+                        statement.setString(1, "value" + i);
+                        statement.executeUpdate();
+                    }
+                }
+                return null;
+            });
+
+            // Many readers count the rows while they are written, more threads than there are connections
+            for (int t = 0; t < readerThreads; t++) {
+                readers.add(executor.submit(() -> {
+                    int last = 0;
+                    int reads = 0;
+                    while (last < rows) {
+                        try (ConnectionPool.Lease lease = pool.read()) {
+                            int current = count(lease);
+
+                            // Committed rows never disappear from a later read
+                            if (current < last)
+                                throw new AssertionError("Count went back from " + last + " to " + current);
+                            last = current;
+                        }
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<Integer> reader : readers)
+                assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+            executor.shutdown();
+
+            try (ConnectionPool.Lease lease = pool.read()) {
+                assertEquals(rows, count(lease));
+            }
+            assertEquals(4, pool.getIdleReaders());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.textversioncontrol.managers;
 
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -54,8 +56,8 @@ class DatabaseManagerTest {
     @Test
     void clear() throws SQLException {
 
-        DatabaseManager.insert("test1","test", "test", "test", "test");
-        DatabaseManager.insert("test2","test", "test", "test", "test");
+        DatabaseManager.insert("test1","test", "test", "test1", "test");
+        DatabaseManager.insert("test2","test", "test", "test2", "test");
 
         DatabaseManager.clear();
 
@@ -84,13 +86,23 @@ class DatabaseManagerTest {
     @Test
     void getEntries() throws SQLException {
 
-        DatabaseManager.insert("test","test", "test", "test", "test");
-        DatabaseManager.insert("test","test", "test", "test", "test");
-        DatabaseManager.insert("test","test", "test", "test", "test");
+        DatabaseManager.insert("test1","test", "test", "test1", "test");
+        DatabaseManager.insert("test2","test", "test", "test2", "test");
+        DatabaseManager.insert("test3","test", "test", "test3", "test");
 
         assertEquals(3, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
     }
 
+    @Test
+    void insertRejectsDuplicates() throws SQLException {
+        DatabaseManager.insert("test","test", "test", "tracking", "test");
+
+        // Names and tracked files are unique
+        assertThrows(SQLException.class, () -> DatabaseManager.insert("test","test", "test", "other", "test"));
+        assertThrows(SQLException.class, () -> DatabaseManager.insert("other","test", "test", "tracking", "test"));
+        assertEquals(1, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
+    }
+
     @Test
     void updateEntry() throws SQLException, FileNotFoundException {
 
@@ -106,4 +118,56 @@ class DatabaseManagerTest {
 
         assertEquals(copyPathTest, DatabaseManager.getEntry(fileNameTest, DatabaseManager.Columns.COPY_PATHWAY));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateRecord() throws SQLException, FileNotFoundException {
+        DatabaseManager.insert("old", "directory", "copy", "tracking", "repo");
+
+        DatabaseManager.updateRecord("old", new FileRecord("new", "directory1", "copy1", "tracking1", "repo1", null));
+
+        assertNull(DatabaseManager.getEntry("old", DatabaseManager.Columns.FILE_NAME));
+        FileRecord record = FileRecordDao.get("new");
+        assertEquals("directory1", record.getDirectoryPathway());
+        assertEquals("copy1", record.getCopyPathway());
+        assertEquals("tracking1", record.getTrackingPathway());
+        assertEquals("repo1", record.getRepoPathway());
+    }
+
+    @Test
+    void transactionRollsBackEveryChange() throws SQLException {
+        DatabaseManager.insert("kept", "test", "test", "test", "test");
+
+        // A failure in a nested transaction undoes the changes of the outer one too
+        assertThrows(SQLException.class, () -> DatabaseManager.transaction(() -> {
+            DatabaseManager.insert("inserted", "test", "test", "inserted", "test");
+            DatabaseManager.transaction(() -> {
+                DatabaseManager.updateFingerprint("kept", new FileFingerprint(1, 2, null, "hash"));
+                throw new SQLException("failed");
+            });
+        }));
+
+        assertEquals(1, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
+        assertNull(DatabaseManager.getFingerprint("kept"));
+
+        // The writer is usable again afterwards
+        DatabaseManager.transaction(() -> DatabaseManager.insert("inserted", "test", "test", "inserted", "test"));
+        assertEquals(2, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
+    }
+
+    @Test
+    void batchWritesWhenFullAndOnCommit() throws SQLException {
+        DatabaseManager.Batch batch = new DatabaseManager.Batch(3);
+        for (int i = 0; i < 4; i++) {
+            String fileName = "file" + i;
+            batch.add(() -> DatabaseManager.insert(fileName, "test", "test", fileName, "test"));
+        }
+
+        // The first three were written once the batch was full
+        assertEquals(3, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
+        assertEquals(1, batch.size());
+
+        batch.commit();
+        assertEquals(4, DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME).size());
+        assertEquals(0, batch.size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffCacheTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private static ObjectId blob(String content) {
+        return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<DiffHunk> diff(String oldContent, String newContent) {
+        return LineDiff.diff(LineDiff.splitLines(oldContent.getBytes(StandardCharsets.UTF_8)),
+                LineDiff.splitLines(newContent.getBytes(StandardCharsets.UTF_8)), DiffOptions.DEFAULT);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByWeight() throws IOException {
+        List<DiffHunk> hunks = diff("a\nb\n", "a\nc\n");
+        long weight = DiffCache.weigh(hunks);
+        DiffCache cache = new DiffCache(2 * weight, null);
+
+        cache.put(blob("1"), blob("2"), DiffOptions.DEFAULT, hunks);
+        cache.put(blob("2"), blob("3"), DiffOptions.DEFAULT, hunks);
+        assertNotNull(cache.get(blob("1"), blob("2"), DiffOptions.DEFAULT));
+
+        // The diff of 2 and 3 was used least recently
+        cache.put(blob("3"), blob("4"), DiffOptions.DEFAULT, hunks);
+        assertEquals(2, cache.size());
+        assertEquals(2 * weight, cache.getBytes());
+        assertNull(cache.get(blob("2"), blob("3"), DiffOptions.DEFAULT));
+        assertNotNull(cache.get(blob("1"), blob("2"), DiffOptions.DEFAULT));
+
+        // Options are part of the key
+        assertNull(cache.get(blob("1"), blob("2"), new DiffOptions(3, true)));
+    }
+
+    @Test
+    void spilledDiffsOutliveTheCache() throws IOException {
+        List<DiffHunk> hunks = diff("one\ntwo\r\nthree\n", "one\n2\r\nthree\nfour");
+        new DiffCache(1024 * 1024, tempDirectory).put(null, blob("new"), DiffOptions.DEFAULT, hunks);
+
+        DiffCache reopened = new DiffCache(1024 * 1024, tempDirectory);
+        List<DiffHunk> read = reopened.get(null, blob("new"), DiffOptions.DEFAULT);
+
+        assertNotNull(read);
+        assertEquals(hunks.size(), read.size());
+        for (int i = 0; i < hunks.size(); i++) {
+            assertEquals(hunks.get(i).getHeader(), read.get(i).getHeader());
+            assertEquals(hunks.get(i).getLines(), read.get(i).getLines());
+        }
+        assertEquals(1, reopened.size());
+    }
+
+    @Test
+    void damagedSpillFilesAreIgnored() throws IOException {
+        new DiffCache(1024 * 1024, tempDirectory).put(blob("old"), blob("new"), DiffOptions.DEFAULT, diff("a\nb\nc\n", "a\nc\n"));
+        Path spillFile;
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            spillFile = files.findFirst().orElseThrow();
+        }
+        Files.writeString(spillFile, "@@ -1,3 +1,2 @@\n a\n");
+
+        assertNull(new DiffCache(1024 * 1024, tempDirectory).get(blob("old"), blob("new"), DiffOptions.DEFAULT));
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void emptyDiffsAreCached() throws IOException {
+        DiffCache cache = new DiffCache(1024 * 1024, tempDirectory);
+        cache.put(blob("same"), blob("same"), DiffOptions.DEFAULT, new ArrayList<>());
+
+        assertEquals(List.of(), new DiffCache(1024 * 1024, tempDirectory).get(blob("same"), blob("same"), DiffOptions.DEFAULT));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRecordDaoTest {
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @Test
+    void getReadsWholeRow() throws SQLException {
+        DatabaseManager.insert("first", "directory", "copy", "tracking", "repo");
+        DatabaseManager.updateFingerprint("first", new FileFingerprint(12, 34, "key", "hash"));
+
+        FileRecord record = FileRecordDao.get("first");
+        assertEquals("first", record.getFileName());
+        assertEquals("directory", record.getDirectoryPathway());
+        assertEquals("copy", record.getCopyPathway());
+        assertEquals("tracking", record.getTrackingPathway());
+        assertEquals("repo", record.getRepoPathway());
+        assertEquals(12, record.getFingerprint().getSize());
+        assertEquals(34, record.getFingerprint().getModifiedTime());
+        assertEquals("key", record.getFingerprint().getFileKey());
+        assertEquals("hash", record.getFingerprint().getContentHash());
+
+        assertNull(FileRecordDao.get("missing"));
+    }
+
+    @Test
+    void getSeesUpdatesThroughCachedStatement() throws SQLException {
+        DatabaseManager.insert("file", "directory", "copy", "tracking", "repo");
+        assertNull(FileRecordDao.get("file").getFingerprint());
+
+        DatabaseManager.updateEntry("file", DatabaseManager.Columns.TRACKING_PATHWAY, "moved");
+        assertEquals("moved", FileRecordDao.get("file").getTrackingPathway());
+
+        // A new connection prepares the lookup again
+        try {
+            DatabaseManager.createConnection();
+        } catch (ClassNotFoundException e) {
+            fail(e);
+        }
+        assertEquals("moved", FileRecordDao.get("file").getTrackingPathway());
+    }
+
+    @Test
+    void recordsStayInDatabaseOrder() throws SQLException {
+        for (int i = 0; i < 50; i++)
+            DatabaseManager.insert("file" + i, "directory" + i, "copy" + i, "tracking" + i, "repo" + i);
+        DatabaseManager.updateFingerprint("file7", new FileFingerprint(1, 2, null, "hash"));
+
+        // Every column of a record belongs to the same file
+        ArrayList<FileRecord> records = FileRecordDao.getAll();
+        assertEquals(50, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            FileRecord record = records.get(i);
+            assertEquals("file" + i, record.getFileName());
+            assertEquals("tracking" + i, record.getTrackingPathway());
+            assertEquals("repo" + i, record.getRepoPathway());
+            assertEquals(i == 7, record.getFingerprint() != null);
+        }
+
+        List<String> streamed = new ArrayList<>();
+        FileRecordDao.forEach(record -> streamed.add(record.getFileName()));
+        assertEquals(DatabaseManager.getEntries(DatabaseManager.Columns.FILE_NAME), streamed);
+    }
+}
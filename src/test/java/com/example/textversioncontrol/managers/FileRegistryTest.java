@@ -0,0 +1,140 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileFingerprint;
+import com.example.textversioncontrol.models.FileRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRegistryTest {
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        DatabaseManager.clear();
+    }
+
+    /** Checks that the registry holds the same records as the database */
+    private static void assertMatchesDatabase() throws SQLException {
+        ArrayList<FileRecord> stored = FileRecordDao.getAll();
+        ArrayList<FileRecord> registered = FileRegistry.getAll();
+        assertEquals(stored.size(), registered.size());
+
+        for (int i = 0; i < stored.size(); i++) {
+            FileRecord expected = stored.get(i);
+            FileRecord actual = registered.get(i);
+            assertEquals(expected.getFileName(), actual.getFileName());
+            assertEquals(expected.getDirectoryPathway(), actual.getDirectoryPathway());
+            assertEquals(expected.getCopyPathway(), actual.getCopyPathway());
+            assertEquals(expected.getTrackingPathway(), actual.getTrackingPathway());
+            assertEquals(expected.getRepoPathway(), actual.getRepoPathway());
+            assertEquals(expected.getFingerprint() == null, actual.getFingerprint() == null);
+            if (expected.getFingerprint() != null)
+                assertEquals(expected.getFingerprint().getContentHash(), actual.getFingerprint().getContentHash());
+        }
+    }
+
+    @Test
+    void changesWriteThrough() throws SQLException {
+        DatabaseManager.insert("first", "directory", "copy", "tracking", "repo");
+        DatabaseManager.insert("second", "directory2", "copy2", "tracking2", "repo2");
+        assertMatchesDatabase();
+
+        DatabaseManager.updateFingerprint("first", new FileFingerprint(1, 2, null, "hash"));
+        assertEquals("hash", FileRegistry.get("first").getFingerprint().getContentHash());
+        assertMatchesDatabase();
+
+        // A renamed record loses the fingerprint stored under its old name, like the joined tables
+        DatabaseManager.updateEntry("first", DatabaseManager.Columns.FILE_NAME, "renamed");
+        assertNull(FileRegistry.get("first"));
+        assertNull(FileRegistry.get("renamed").getFingerprint());
+        assertMatchesDatabase();
+
+        DatabaseManager.updateRecord("second", new FileRecord("moved", "directory3", "copy3", "tracking3", "repo3", null));
+        assertEquals("tracking3", FileRegistry.get("moved").getTrackingPathway());
+        assertMatchesDatabase();
+
+        DatabaseManager.deleteRecord("renamed");
+        assertNull(FileRegistry.get("renamed"));
+        assertMatchesDatabase();
+    }
+
+    @Test
+    void snapshotsDontChange() throws SQLException {
+        DatabaseManager.insert("first", "directory", "copy", "tracking", "repo");
+        ArrayList<FileRecord> before = FileRegistry.getAll();
+
+        DatabaseManager.insert("second", "directory", "copy", "tracking2", "repo");
+        DatabaseManager.deleteRecord("first");
+
+        assertEquals(1, before.size());
+        assertEquals("first", before.get(0).getFileName());
+        assertEquals("second", FileRegistry.getAll().get(0).getFileName());
+    }
+
+    @Test
+    void rollbackRestoresRegistry() throws SQLException {
+        DatabaseManager.insert("kept", "directory", "copy", "tracking", "repo");
+
+        assertThrows(SQLException.class, () -> DatabaseManager.transaction(() -> {
+            DatabaseManager.insert("inserted", "directory", "copy", "inserted", "repo");
+            DatabaseManager.updateEntry("kept", DatabaseManager.Columns.TRACKING_PATHWAY, "moved");
+            throw new SQLException("failed");
+        }));
+
+        assertNull(FileRegistry.get("inserted"));
+        assertEquals("tracking", FileRegistry.get("kept").getTrackingPathway());
+        assertMatchesDatabase();
+    }
+
+    @Test
+    void transactionsPublishOnCommit() throws Exception {
+        DatabaseManager.insert("kept", "directory", "copy", "tracking", "repo");
+
+        AtomicReference<FileRecord> seenByOthers = new AtomicReference<>();
+        DatabaseManager.transaction(() -> {
+            for (int i = 0; i < 100; i++)
+                DatabaseManager.insert("file" + i, "directory", "copy", "tracking" + i, "repo");
+            DatabaseManager.updateEntry("kept", DatabaseManager.Columns.FILE_NAME, "renamed");
+            DatabaseManager.updateFingerprint("file0", new FileFingerprint(1, 2, null, "hash"));
+
+            // The transaction reads its own changes, other threads still see the committed registry
+            assertEquals(101, FileRegistry.size());
+            assertEquals("hash", FileRegistry.get("file0").getFingerprint().getContentHash());
+            assertEquals("renamed", FileRegistry.getAll().get(0).getFileName());
+
+            Thread reader = new Thread(() -> {
+                try {
+                    seenByOthers.set(FileRegistry.get("kept"));
+                    assertNull(FileRegistry.get("file0"));
+                    assertEquals(1, FileRegistry.size());
+                } catch (SQLException | AssertionError e) {
+                    seenByOthers.set(null);
+                }
+            });
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertNotNull(seenByOthers.get());
+        assertNull(FileRegistry.get("kept"));
+        assertEquals("hash", FileRegistry.get("file0").getFingerprint().getContentHash());
+        assertMatchesDatabase();
+    }
+}
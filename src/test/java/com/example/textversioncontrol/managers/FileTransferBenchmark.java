@@ -0,0 +1,84 @@
+package com.example.textversioncontrol.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Compares the heap buffered <code>Files.mismatch</code> and <code>Files.copy</code> scan path with
+ * <code>FileTransfer</code>. Run with <code>mvn test -Dbenchmark=true -Dtest=FileTransferBenchmark</code>.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FileTransferBenchmark {
+
+    @TempDir
+    Path tempDirectory;
+
+    /** Writes a file of <code>size</code> random bytes and an identical copy with its last byte changed */
+    private Path[] createFiles(long size) throws IOException {
+        Path tracked = tempDirectory.resolve("tracked" + size + ".txt");
+        Path copy = tempDirectory.resolve("copy" + size + ".txt");
+
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(size).nextBytes(chunk);
+        try (OutputStream trackedOut = Files.newOutputStream(tracked); OutputStream copyOut = Files.newOutputStream(copy)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                int length = (int) Math.min(chunk.length, size - written);
+                trackedOut.write(chunk, 0, length);
+                if (written + length == size)
+                    chunk[length - 1]++;
+                copyOut.write(chunk, 0, length);
+            }
+        }
+
+        return new Path[] {tracked, copy};
+    }
+
+    /** Runs the compare and copy of one scan with the old and the new path */
+    private void compare(String label, long size) throws IOException {
+        Path[] files = createFiles(size);
+        Path tracked = files[0];
+        Path copy = files[1];
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            Files.mismatch(copy, tracked);
+            Files.copy(tracked, copy, StandardCopyOption.REPLACE_EXISTING);
+            long buffered = System.nanoTime() - start;
+
+            // Change the copy again so both paths do the same work
+            createFiles(size);
+
+            start = System.nanoTime();
+            FileTransfer.mismatch(copy, tracked);
+            FileTransfer.copyAtomic(tracked, copy);
+            long transferred = System.nanoTime() - start;
+
+            createFiles(size);
+            System.out.printf("%s run %d: Files.mismatch + Files.copy %d ms, FileTransfer %d ms%n",
+                    label, run, buffered / 1_000_000, transferred / 1_000_000);
+        }
+    }
+
+    @Test
+    void oneMegabyte() throws IOException {
+        compare("1 MB", 1024L * 1024);
+    }
+
+    @Test
+    void hundredMegabytes() throws IOException {
+        compare("100 MB", 100L * 1024 * 1024);
+    }
+
+    @Test
+    void twoGigabytes() throws IOException {
+        compare("2 GB", 2L * 1024 * 1024 * 1024);
+    }
+}
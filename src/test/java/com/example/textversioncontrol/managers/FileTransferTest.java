@@ -0,0 +1,85 @@
+package com.example.textversioncontrol.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileTransferTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    /** Writes random bytes that span several of <code>FileTransfer</code>'s buffers */
+    private byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    void mismatch() throws IOException {
+        byte[] content = createContent(FileTransfer.BUFFER_SIZE * 3 + 17);
+        Path first = Files.write(tempDirectory.resolve("first.txt"), content);
+        Path second = Files.write(tempDirectory.resolve("second.txt"), content);
+
+        // Identical files
+        assertEquals(-1, FileTransfer.mismatch(first, second));
+
+        // Difference in the last buffer
+        int position = FileTransfer.BUFFER_SIZE * 2 + 5;
+        byte[] changed = content.clone();
+        changed[position]++;
+        Files.write(second, changed);
+        assertEquals(position, FileTransfer.mismatch(first, second));
+        assertEquals(Files.mismatch(first, second), FileTransfer.mismatch(first, second));
+
+        // One file is a prefix of the other
+        Files.write(second, Arrays.copyOf(content, FileTransfer.BUFFER_SIZE * 2));
+        assertEquals(FileTransfer.BUFFER_SIZE * 2, FileTransfer.mismatch(first, second));
+    }
+
+    @Test
+    void mismatchSmallFiles() throws IOException {
+        Path first = Files.writeString(tempDirectory.resolve("first.txt"), "small file");
+        Path second = Files.writeString(tempDirectory.resolve("second.txt"), "small fill");
+
+        assertEquals(9, FileTransfer.mismatch(first, second));
+    }
+
+    @Test
+    void copyAtomic() throws IOException {
+        byte[] content = createContent(FileTransfer.BUFFER_SIZE + 3);
+        Path source = Files.write(tempDirectory.resolve("source.txt"), content);
+        Path target = Files.writeString(tempDirectory.resolve("target.txt"), "old content");
+
+        FileTransfer.copyAtomic(source, target);
+
+        // The target was replaced and no temporary file was left behind
+        assertArrayEquals(content, Files.readAllBytes(target));
+        try (var files = Files.list(tempDirectory)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void writeAtomic() throws IOException {
+        byte[] content = createContent(FileTransfer.BUFFER_SIZE + 3);
+        Path target = Files.writeString(tempDirectory.resolve("target.txt"), "old content");
+
+        FileTransfer.writeAtomic(content, target);
+        FileTransfer.writeAtomic(content, tempDirectory.resolve("created.txt"));
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertArrayEquals(content, Files.readAllBytes(tempDirectory.resolve("created.txt")));
+        try (var files = Files.list(tempDirectory)) {
+            assertEquals(2, files.count());
+        }
+    }
+}
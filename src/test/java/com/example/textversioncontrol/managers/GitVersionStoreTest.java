@@ -0,0 +1,19 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.Git;
+
+import java.nio.file.Path;
+
+class GitVersionStoreTest extends VersionStoreConformanceTest {
+
+    @Override
+    VersionStore createStore() throws Exception {
+        Git.init().setDirectory(tempDirectory.toFile()).call().close();
+        return new GitVersionStore(tempDirectory.resolve(".git").toString(), getContentPath(), "file.txt");
+    }
+
+    @Override
+    Path getContentPath() {
+        return tempDirectory.resolve("file.txt");
+    }
+}
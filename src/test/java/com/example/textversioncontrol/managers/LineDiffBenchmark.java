@@ -0,0 +1,80 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures <code>LineDiff</code> on 100,000 line versions with scattered and clustered edits.
+ * Run with <code>mvn test -Dbenchmark=true -Dtest=LineDiffBenchmark</code>.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LineDiffBenchmark {
+
+    private static final int LINES = 100_000;
+
+    /** Creates a version where every line is one of <code>distinct</code> contents */
+    private static ArrayList<String> createVersion(Random random, int distinct) {
+        ArrayList<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++)
+            lines.add("line " + random.nextInt(distinct) + " of the benchmark version");
+        return lines;
+    }
+
+    /** Replaces, inserts and removes <code>edits</code> lines at random positions */
+    private static ArrayList<String> edit(Random random, List<String> lines, int edits) {
+        ArrayList<String> edited = new ArrayList<>(lines);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(edited.size());
+            switch (random.nextInt(3)) {
+                case 0 -> edited.set(position, "changed " + i);
+                case 1 -> edited.add(position, "inserted " + i);
+                default -> edited.remove(position);
+            }
+        }
+        return edited;
+    }
+
+    private static void measure(String label, List<String> oldLines, List<String> newLines) {
+        for (int run = 0; run < 3; run++) {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            AtomicInteger hunks = new AtomicInteger();
+
+            long start = System.nanoTime();
+            LineDiff.diff(oldLines, newLines, DiffOptions.DEFAULT, hunk -> hunks.incrementAndGet());
+            long elapsed = System.nanoTime() - start;
+
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+            System.out.printf("%s run %d: %d hunks in %d ms, heap grew %d KB%n", label, run, hunks.get(),
+                    elapsed / 1_000_000, Math.max(0, heapAfter - heapBefore) / 1024);
+        }
+    }
+
+    @Test
+    void scatteredEdits() {
+        Random random = new Random(1);
+        ArrayList<String> version = createVersion(random, LINES);
+        measure("100 scattered edits", version, edit(random, version, 100));
+        measure("5,000 scattered edits", version, edit(random, version, 5_000));
+    }
+
+    @Test
+    void repetitiveLines() {
+        Random random = new Random(2);
+        ArrayList<String> version = createVersion(random, 50);
+        measure("1,000 edits of repetitive lines", version, edit(random, version, 1_000));
+    }
+
+    @Test
+    void rewrittenFile() {
+        Random random = new Random(3);
+        measure("rewritten file", createVersion(random, LINES), createVersion(random, LINES));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineDiffTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Rebuilds the new version from the old version and the hunks of a diff without context */
+    private static List<String> apply(List<String> oldLines, List<DiffHunk> hunks) {
+        ArrayList<String> result = new ArrayList<>();
+        int position = 0;
+        for (DiffHunk hunk : hunks) {
+            int start = hunk.getOldCount() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1;
+            result.addAll(oldLines.subList(position, start));
+            for (String line : hunk.getLines()) {
+                if (line.charAt(0) == '+')
+                    result.add(line.substring(1));
+            }
+            position = start + hunk.getOldCount();
+        }
+        result.addAll(oldLines.subList(position, oldLines.size()));
+        return result;
+    }
+
+    /** Counts the added and removed lines of the hunks */
+    private static int countChanges(List<DiffHunk> hunks) {
+        int changes = 0;
+        for (DiffHunk hunk : hunks)
+            for (String line : hunk.getLines())
+                if (line.charAt(0) != ' ')
+                    changes++;
+        return changes;
+    }
+
+    /** Length of the longest common subsequence by dynamic programming */
+    private static int lcs(List<String> a, List<String> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i--)
+            for (int j = b.size() - 1; j >= 0; j--)
+                lengths[i][j] = a.get(i).equals(b.get(j)) ? lengths[i + 1][j + 1] + 1 : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+        return lengths[0][0];
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            lines.add(String.valueOf((char) ('a' + random.nextInt(5))));
+        return lines;
+    }
+
+    @Test
+    void hunksHaveContextAndHeaders() {
+        List<String> oldLines = List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12");
+        List<String> newLines = List.of("1", "2", "3", "4", "five", "6", "7", "8", "9", "10", "11", "12", "13");
+
+        ArrayList<DiffHunk> hunks = LineDiff.diff(oldLines, newLines, DiffOptions.DEFAULT);
+
+        assertEquals(2, hunks.size());
+        assertEquals("@@ -2,7 +2,7 @@", hunks.get(0).getHeader());
+        assertEquals(List.of(" 2", " 3", " 4", "-5", "+five", " 6", " 7", " 8"), hunks.get(0).getLines());
+        assertEquals("@@ -10,3 +10,4 @@", hunks.get(1).getHeader());
+        assertEquals(List.of(" 10", " 11", " 12", "+13"), hunks.get(1).getLines());
+
+        // Changes with overlapping context share a hunk
+        assertEquals(1, LineDiff.diff(oldLines, newLines, new DiffOptions(5, false)).size());
+    }
+
+    @Test
+    void identicalVersionsHaveNoHunks() {
+        List<String> lines = List.of("a", "b", "c");
+        assertTrue(LineDiff.diff(lines, lines, DiffOptions.DEFAULT).isEmpty());
+        assertTrue(LineDiff.diff(List.of(), List.of(), DiffOptions.DEFAULT).isEmpty());
+    }
+
+    @Test
+    void emptyVersionsPointAtLineZero() {
+        ArrayList<DiffHunk> hunks = LineDiff.diff(List.of(), List.of("a", "b"), DiffOptions.DEFAULT);
+        assertEquals("@@ -0,0 +1,2 @@", hunks.get(0).getHeader());
+
+        hunks = LineDiff.diff(List.of("a", "b"), List.of(), DiffOptions.DEFAULT);
+        assertEquals("@@ -1,2 +0,0 @@", hunks.get(0).getHeader());
+    }
+
+    @Test
+    void whitespaceCanBeIgnored() {
+        List<String> oldLines = List.of("int x = 1;", "return x;");
+        List<String> newLines = List.of("int x  =  1;", "\treturn x;");
+
+        assertEquals(1, LineDiff.diff(oldLines, newLines, DiffOptions.DEFAULT).size());
+        assertTrue(LineDiff.diff(oldLines, newLines, new DiffOptions(3, true)).isEmpty());
+    }
+
+    @Test
+    void splitLinesHandlesLineEndings() {
+        assertEquals(List.of("a", "b", "", "c"), LineDiff.splitLines("a\r\nb\n\nc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("a"), LineDiff.splitLines("a\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(LineDiff.splitLines(new byte[0]).isEmpty());
+    }
+
+    @Test
+    void randomDiffsRebuildTheNewVersionWithTheFewestChanges() {
+        Random random = new Random(13);
+        for (int run = 0; run < 500; run++) {
+            List<String> oldLines = randomLines(random, random.nextInt(40));
+            List<String> newLines = randomLines(random, random.nextInt(40));
+
+            ArrayList<DiffHunk> hunks = LineDiff.diff(oldLines, newLines, new DiffOptions(0, false));
+
+            assertEquals(newLines, apply(oldLines, hunks));
+            assertEquals(oldLines.size() + newLines.size() - 2 * lcs(oldLines, newLines), countChanges(hunks));
+        }
+    }
+
+    @Test
+    void diffsVersionsOfTrackedFile() throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("diffed.txt");
+        Files.writeString(file, "one\ntwo\nthree\n");
+        VersionManager.startTracking(file.toString());
+        String gitPathway = DatabaseManager.getEntry("diffed", DatabaseManager.Columns.REPO_PATHWAY);
+        String first = VersionManager.getCommitId(gitPathway, 0);
+
+        Files.writeString(file, "one\n2\nthree\n");
+        VersionManager.updateTextFiles();
+        String second = VersionManager.getCommitId(gitPathway, 0);
+
+        ArrayList<DiffHunk> hunks = new ArrayList<>();
+        VersionManager.diff(gitPathway, first, second, DiffOptions.DEFAULT, hunks::add);
+        assertEquals(List.of(" one", "-two", "+2", " three"), hunks.get(0).getLines());
+
+        // Viewing the same diff again reads it from the cache
+        int cached = VersionManager.getDiffCache().size();
+        ArrayList<DiffHunk> again = new ArrayList<>();
+        VersionManager.diff(gitPathway, first, second, DiffOptions.DEFAULT, again::add);
+        assertEquals(hunks.get(0).getLines(), again.get(0).getLines());
+        assertEquals(cached, VersionManager.getDiffCache().size());
+
+        // The first commit changed everything from the empty file
+        hunks.clear();
+        VersionManager.diff(gitPathway, first, DiffOptions.DEFAULT, hunks::add);
+        assertEquals(List.of("+one", "+two", "+three"), hunks.get(0).getLines());
+
+        Files.writeString(file, "one\n2\nthree\nfour\n");
+        hunks.clear();
+        VersionManager.diffWorkingFile("diffed", second, DiffOptions.DEFAULT, hunks::add);
+        assertEquals(List.of(" one", " 2", " three", "+four"), hunks.get(0).getLines());
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.MaintenanceStats;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryMaintenanceTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    /** Git pathway of the tracked file */
+    private String gitPathway;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("maintained.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            content.append("line ").append(i).append(" of a file that is saved often\n");
+        Files.writeString(file, content);
+        VersionManager.startTracking(file.toString());
+
+        // Every version leaves a loose blob, tree, and commit behind
+        for (int i = 0; i < 20; i++) {
+            content.append("save ").append(i).append('\n');
+            Files.writeString(file, content);
+            VersionManager.updateTextFiles();
+        }
+
+        gitPathway = DatabaseManager.getEntry("maintained", DatabaseManager.Columns.REPO_PATHWAY);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Counts the loose objects of a repository */
+    private long countLooseObjects() throws IOException {
+        long count = 0;
+        try (Stream<Path> fanOuts = Files.list(Path.of(gitPathway, "objects"))) {
+            for (Path fanOut : fanOuts.filter(path -> path.getFileName().toString().length() == 2).toList()) {
+                try (Stream<Path> looseObjects = Files.list(fanOut)) {
+                    count += looseObjects.count();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    void packsDueRepositories() throws IOException, GitAPIException, SQLException {
+        RepositoryMaintenance maintenance = new RepositoryMaintenance(VersionManager.getRepositoryPool(),
+                10, Long.MAX_VALUE, 16, 0, Duration.ZERO);
+        assertEquals(List.of(gitPathway), maintenance.getDuePathways());
+        assertTrue(countLooseObjects() >= 60);
+
+        MaintenanceStats stats = maintenance.run();
+
+        // The loose objects were packed and their deltas take less space than the whole blobs
+        assertEquals(List.of(gitPathway), stats.getPackedRepositories());
+        assertEquals(0, countLooseObjects());
+        assertTrue(stats.getBytesReclaimed() > 0);
+        assertFalse(stats.getTimeSpent().isZero());
+        assertTrue(maintenance.getDuePathways().isEmpty());
+
+        // History is still readable and new commits still work
+        assertEquals(21, VersionManager.getCommitCount("maintained"));
+        Files.writeString(tempDirectory.resolve("maintained.txt"), "after maintenance");
+        VersionManager.updateTextFiles();
+        assertEquals(22, VersionManager.getCommitCount("maintained"));
+        assertEquals(1, maintenance.getStatistics().getPackedRepositories().size());
+    }
+
+    @Test
+    void skipsBorrowedRepositories() throws IOException, SQLException {
+        RepositoryMaintenance maintenance = new RepositoryMaintenance(VersionManager.getRepositoryPool(),
+                10, Long.MAX_VALUE, 16, 0, Duration.ZERO);
+        long looseObjects = countLooseObjects();
+
+        try (RepositoryPool.Lease lease = VersionManager.getRepositoryPool().borrow(gitPathway)) {
+            MaintenanceStats stats = maintenance.run();
+            assertEquals(List.of(gitPathway), stats.getSkippedRepositories());
+            assertTrue(stats.getPackedRepositories().isEmpty());
+
+            // The borrower keeps working with the repository it holds
+            assertNotNull(lease.getRepository().resolve(Constants.HEAD));
+        }
+
+        assertEquals(looseObjects, countLooseObjects());
+    }
+
+    @Test
+    void skipsRepositoriesBeingWritten() throws Exception {
+        RepositoryMaintenance maintenance = new RepositoryMaintenance(VersionManager.getRepositoryPool(),
+                10, Long.MAX_VALUE, 16, 0, Duration.ZERO);
+        long looseObjects = countLooseObjects();
+
+        // Another thread holds the repository, like a commit or a pack that is running
+        Lock packLock = GitVersionStore.getPackLock(gitPathway);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            packLock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                packLock.unlock();
+            }
+        });
+        holder.start();
+        locked.await();
+
+        try {
+            assertEquals(List.of(gitPathway), maintenance.run().getSkippedRepositories());
+            assertEquals(looseObjects, countLooseObjects());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void commitsWaitWhileRepositoryIsPacked() throws Exception {
+        Files.writeString(tempDirectory.resolve("maintained.txt"), "during maintenance");
+        Lock packLock = GitVersionStore.getPackLock(gitPathway);
+        packLock.lock();
+
+        Thread committer = new Thread(() -> {
+            try {
+                VersionManager.updateTextFiles();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            committer.start();
+            committer.join(500);
+            assertTrue(committer.isAlive());
+            assertEquals(21, VersionManager.getCommitCount("maintained"));
+        } finally {
+            packLock.unlock();
+        }
+
+        committer.join();
+        assertEquals(22, VersionManager.getCommitCount("maintained"));
+    }
+
+    @Test
+    void waitsUntilIdle() throws IOException, SQLException {
+        RepositoryMaintenance maintenance = new RepositoryMaintenance(VersionManager.getRepositoryPool(),
+                10, Long.MAX_VALUE, 16, 0, Duration.ofHours(1));
+        long looseObjects = countLooseObjects();
+
+        assertTrue(maintenance.run().getPackedRepositories().isEmpty());
+        assertEquals(looseObjects, countLooseObjects());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryPoolTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    /** Creates an empty repository and returns the pathway to its .git directory */
+    private String createRepository(String name) throws GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDirectory.resolve(name).toFile()).call()) {
+            return git.getRepository().getDirectory().getPath();
+        }
+    }
+
+    @Test
+    void borrowReusesOpenRepository() throws GitAPIException, IOException {
+        RepositoryPool pool = new RepositoryPool(4, Duration.ofMinutes(5));
+        String gitPathway = createRepository("repo");
+
+        Repository first;
+        try (RepositoryPool.Lease lease = pool.borrow(gitPathway)) {
+            first = lease.getRepository();
+        }
+        try (RepositoryPool.Lease lease = pool.borrow(gitPathway)) {
+            assertSame(first, lease.getRepository());
+        }
+
+        assertEquals(1, pool.getOpenCount());
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws GitAPIException, IOException {
+        RepositoryPool pool = new RepositoryPool(2, Duration.ofMinutes(5));
+        String first = createRepository("first");
+        String second = createRepository("second");
+        String third = createRepository("third");
+
+        pool.borrow(first).close();
+        pool.borrow(second).close();
+        pool.borrow(first).close();
+        pool.borrow(third).close();
+
+        // Second was used least recently, so it had to be opened again
+        assertEquals(2, pool.size());
+        pool.borrow(first).close();
+        assertEquals(3, pool.getOpenCount());
+        pool.borrow(second).close();
+        assertEquals(4, pool.getOpenCount());
+    }
+
+    @Test
+    void borrowedRepositoryIsNotEvicted() throws GitAPIException, IOException {
+        RepositoryPool pool = new RepositoryPool(1, Duration.ofMinutes(5));
+        String first = createRepository("first");
+        String second = createRepository("second");
+
+        try (RepositoryPool.Lease lease = pool.borrow(first)) {
+            pool.borrow(second).close();
+            assertTrue(pool.isBorrowed(first));
+            assertFalse(pool.isBorrowed(second));
+
+            // The borrowed repository is still usable
+            assertNotNull(lease.getRepository().getConfig());
+        }
+
+        assertFalse(pool.isBorrowed(first));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void evictIdle() throws GitAPIException, IOException {
+        RepositoryPool pool = new RepositoryPool(4, Duration.ZERO);
+        String gitPathway = createRepository("repo");
+
+        pool.borrow(gitPathway).close();
+        pool.evictIdle();
+
+        assertEquals(0, pool.size());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.RestoreReport;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RestoreManagerTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.PER_FILE);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Tracks a file with its first content */
+    private Path track(String name, String content) throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve(name + ".txt");
+        Files.writeString(file, content);
+        VersionManager.startTracking(file.toString());
+        return file;
+    }
+
+    /** Returns a point in time after every saved version, waiting until versions saved later get a later second */
+    private static Instant markTime() throws InterruptedException {
+        Instant time = Instant.now();
+        Thread.sleep(1000);
+        return time;
+    }
+
+    @Test
+    void perFileFilesAreRestored() throws Exception {
+        assertFilesAreRestored(VersionManager.StorageMode.PER_FILE);
+    }
+
+    @Test
+    void sharedFilesAreRestored() throws Exception {
+        assertFilesAreRestored(VersionManager.StorageMode.SHARED);
+    }
+
+    @Test
+    void segmentFilesAreRestored() throws Exception {
+        assertFilesAreRestored(VersionManager.StorageMode.SEGMENT);
+    }
+
+    /** Restores files kept in <code>mode</code> after a bulk edit and checks every file ends up as it was */
+    private void assertFilesAreRestored(VersionManager.StorageMode mode) throws Exception {
+        VersionManager.setStorageMode(mode);
+        Path first = track("first", "first before\n");
+        Path second = track("second", "second before\n");
+        Path kept = track("kept", "kept\n");
+        Instant time = markTime();
+
+        // A bulk edit of two files and a file tracked afterwards
+        Files.writeString(first, "first after\n");
+        Files.writeString(second, "second after\n");
+        VersionManager.updateTextFiles();
+        track("later", "later\n");
+        String firstVersion = VersionManager.getCommitId(DatabaseManager.getEntry("first", DatabaseManager.Columns.REPO_PATHWAY), 1);
+
+        // A dry run lists the files without touching them
+        RestoreReport preview = RestoreManager.restore(time, true);
+        assertTrue(preview.getFailures().isEmpty());
+        assertEquals(List.of("first", "second"), List.copyOf(preview.getRestoredFiles().keySet()));
+        assertEquals(firstVersion, preview.getRestoredFiles().get("first"));
+        assertEquals(List.of("kept"), preview.getUnchangedFiles());
+        assertEquals(List.of("later"), preview.getUntrackedFiles());
+        assertEquals("first after\n", Files.readString(first));
+
+        RestoreReport report = RestoreManager.restore(time, false);
+        assertEquals(preview.getRestoredFiles(), report.getRestoredFiles());
+        assertEquals("first before\n", Files.readString(first));
+        assertEquals("second before\n", Files.readString(second));
+        assertEquals("kept\n", Files.readString(kept));
+        assertEquals("later\n", Files.readString(tempDirectory.resolve("later.txt")));
+
+        // Restoring is idempotent and the next scan saves the restored content as new versions
+        assertTrue(RestoreManager.restore(time, false).getRestoredFiles().isEmpty());
+        VersionManager.updateTextFiles();
+        assertEquals(3, VersionManager.getCommitCount("first"));
+        assertTrue(RestoreManager.restore(Instant.now(), true).getRestoredFiles().isEmpty());
+    }
+
+    @Test
+    void reportsProgressAndStopsWhenCancelled() throws Exception {
+        for (int i = 0; i < 8; i++)
+            track("file" + i, "before\n");
+        Instant time = markTime();
+        for (int i = 0; i < 8; i++)
+            Files.writeString(tempDirectory.resolve("file" + i + ".txt"), "after\n");
+        VersionManager.updateTextFiles();
+
+        AtomicInteger progress = new AtomicInteger();
+        RestoreReport report = RestoreManager.restore(time, false, 4, (done, total) -> {
+            assertEquals(8, total);
+            progress.accumulateAndGet(done, Math::max);
+        }, () -> false);
+        assertEquals(8, progress.get());
+        assertEquals(8, report.getRestoredFiles().size());
+        assertEquals("before\n", Files.readString(tempDirectory.resolve("file7.txt")));
+
+        RestoreReport cancelled = RestoreManager.restore(Instant.now(), false, 1, (done, total) -> {}, () -> true);
+        assertTrue(cancelled.isCancelled());
+        assertEquals(Map.of(), cancelled.getRestoredFiles());
+        assertEquals("before\n", Files.readString(tempDirectory.resolve("file7.txt")));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.EditData;
+import com.example.textversioncontrol.models.RetentionReport;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionManagerTest {
+
+    /** Keeps one version per century of versions older than nothing, so every version but the newest expires */
+    private static final RetentionPolicy KEEP_NEWEST = RetentionPolicy.parse("PT0S/P36500D");
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.PER_FILE);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Tracks a file and saves four more versions of it */
+    private Path trackWithVersions() throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("retained.txt");
+        Files.writeString(file, "version 0\n");
+        VersionManager.startTracking(file.toString());
+
+        for (int i = 1; i < 5; i++) {
+            Files.writeString(file, "version " + i + "\n");
+            VersionManager.updateTextFiles();
+        }
+
+        return file;
+    }
+
+    @Test
+    void dryRunOnlyReports() throws IOException, GitAPIException, SQLException {
+        trackWithVersions();
+        String gitPathway = DatabaseManager.getEntry("retained", DatabaseManager.Columns.REPO_PATHWAY);
+        String oldest = VersionManager.getCommitId(gitPathway, 4);
+
+        RetentionReport report = RetentionManager.apply(KEEP_NEWEST, true);
+
+        assertTrue(report.getFailures().isEmpty());
+        assertEquals(4, report.getTotalRemovedVersions());
+        assertEquals(40, report.getTotalRemovedBytes());
+        assertEquals(5, VersionManager.getCommitCount("retained"));
+        assertEquals(oldest, VersionManager.getCommitId(gitPathway, 4));
+    }
+
+    @Test
+    void perFileHistoryStaysConsistent() throws IOException, GitAPIException, SQLException {
+        assertHistoryStaysConsistent(VersionManager.StorageMode.PER_FILE);
+    }
+
+    @Test
+    void sharedHistoryStaysConsistent() throws IOException, GitAPIException, SQLException {
+        assertHistoryStaysConsistent(VersionManager.StorageMode.SHARED);
+    }
+
+    @Test
+    void segmentHistoryStaysConsistent() throws IOException, GitAPIException, SQLException {
+        assertHistoryStaysConsistent(VersionManager.StorageMode.SEGMENT);
+    }
+
+    /** Thins out a history kept in <code>mode</code> and checks everything derived from it */
+    private void assertHistoryStaysConsistent(VersionManager.StorageMode mode) throws IOException, GitAPIException, SQLException {
+        VersionManager.setStorageMode(mode);
+        Path file = trackWithVersions();
+        String gitPathway = DatabaseManager.getEntry("retained", DatabaseManager.Columns.REPO_PATHWAY);
+        String newest = VersionManager.getCommitId(gitPathway, 0);
+        String removed = VersionManager.getCommitId(gitPathway, 2);
+        VersionManager.annotate("retained");
+
+        RetentionReport report = RetentionManager.apply(KEEP_NEWEST, false);
+        assertTrue(report.getFailures().isEmpty());
+        assertEquals(List.of("retained"), new ArrayList<>(report.getRemovedVersions().keySet()));
+        assertNull(report.getRewrittenId(removed));
+
+        // The index, the numbering of the edit history and the annotation only know the surviving version
+        String rewritten = report.getRewrittenId(newest);
+        assertEquals(1, VersionManager.getCommitCount("retained"));
+        ArrayList<EditData> page = VersionManager.getHistoryPage("retained", 0, 10);
+        assertEquals(1, page.size());
+        assertEquals(rewritten, VersionManager.getCommitId(gitPathway, 0));
+        assertEquals(rewritten, VersionManager.annotate("retained").get(0).getCommitId());
+
+        // Reverting to the rewritten id restores its content and later saves extend the rewritten history
+        Files.writeString(file, "edited\n");
+        VersionManager.revert("retained", gitPathway, rewritten);
+        assertEquals("version 4\n", Files.readString(file));
+
+        Files.writeString(file, "version 5\n");
+        VersionManager.updateTextFiles();
+        assertEquals(2, VersionManager.getCommitCount("retained"));
+        assertEquals(rewritten, VersionManager.getCommitId(gitPathway, 1));
+        assertTrue(RetentionManager.apply(RetentionPolicy.DEFAULT, false).getRemovedVersions().isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionPolicyTest {
+
+    /** Time the ages are measured from, at the start of a day so intervals line up with the offsets */
+    private static final Instant NOW = Instant.parse("2026-03-01T00:00:00Z");
+
+    /** Creates versions saved at the given ages, oldest first */
+    private static List<StoredVersion> versionsAt(Duration... ages) {
+        List<StoredVersion> versions = new ArrayList<>();
+        for (Duration age : ages)
+            versions.add(new StoredVersion(String.format("%040d", versions.size()), NOW.minus(age).getEpochSecond(), 10));
+
+        return versions;
+    }
+
+    @Test
+    void keepsRecentVersions() {
+        List<StoredVersion> versions = versionsAt(Duration.ofHours(23), Duration.ofHours(22).plusMinutes(30),
+                Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+        assertTrue(RetentionPolicy.DEFAULT.getExpired(versions, NOW).isEmpty());
+    }
+
+    @Test
+    void thinsOutByTier() {
+        List<StoredVersion> versions = versionsAt(
+                Duration.ofDays(40).plusHours(10), Duration.ofDays(40).plusHours(2),  // same day, newest kept
+                Duration.ofDays(35).plusHours(5),                                     // alone in its day
+                Duration.ofDays(2).plusMinutes(50), Duration.ofDays(2).plusMinutes(10), // same hour, newest kept
+                Duration.ofDays(2).plusHours(3),                                       // out of order time, its own hour
+                Duration.ofHours(1), Duration.ofMinutes(30));                          // younger than a day
+
+        List<StoredVersion> expired = RetentionPolicy.DEFAULT.getExpired(versions, NOW);
+        assertEquals(List.of(versions.get(0), versions.get(3)), expired);
+    }
+
+    @Test
+    void neverRemovesNewestVersion() {
+        List<StoredVersion> versions = versionsAt(Duration.ofDays(100).plusMinutes(30), Duration.ofDays(100).plusMinutes(20));
+
+        assertEquals(List.of(versions.get(0)), RetentionPolicy.DEFAULT.getExpired(versions, NOW));
+    }
+
+    @Test
+    void parseRejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> RetentionPolicy.parse("P1D"));
+        assertThrows(IllegalArgumentException.class, () -> RetentionPolicy.parse("P1D/PT0S"));
+        assertThrows(IllegalArgumentException.class, () -> RetentionPolicy.parse("P30D/P1D,P1D/PT1H"));
+        assertNotNull(RetentionPolicy.parse("PT12H/PT10M, P7D/PT6H"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationsTest {
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        DatabaseManager.clear();
+    }
+
+    @Test
+    void upgradesUnversionedDatabase() throws SQLException {
+
+        // A database from before the schema was versioned, with rows sharing a name or a tracked file
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("DROP TABLE schema_version");
+            statement.execute("DROP TABLE pathways");
+            statement.execute("DROP TABLE fingerprints");
+            DatabaseManager.createColumns();
+            DatabaseManager.createFingerprintTable();
+            statement.execute("INSERT INTO pathways VALUES ('a', 'directory', 'copy', 't1', 'repo')");
+            statement.execute("INSERT INTO pathways VALUES ('a', 'directory', 'copy', 't2', 'repo')");
+            statement.execute("INSERT INTO pathways VALUES ('b', 'directory', 'copy', 't1', 'repo')");
+            statement.execute("INSERT INTO pathways VALUES ('c', 'directory', 'copy', 't3', 'repo')");
+
+            // Every name has a fingerprint and an indexed commit
+            for (String name : new String[] {"a", "b", "c"}) {
+                statement.execute("INSERT INTO fingerprints (file_name, size, modified_time, content_hash) VALUES ('" + name + "', 1, 2, 'hash')");
+                statement.execute("INSERT INTO commits VALUES ('" + name + "', 0, 'id', 3, 4)");
+                statement.execute("INSERT INTO last_commits VALUES ('" + name + "', 'id', 3)");
+            }
+        }
+
+        assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.migrate());
+        assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.getVersion());
+
+        // The oldest row of every name and tracked file is kept
+        ArrayList<FileRecord> records = FileRecordDao.getAll();
+        assertEquals(2, records.size());
+        assertEquals("a", records.get(0).getFileName());
+        assertEquals("t1", records.get(0).getTrackingPathway());
+        assertEquals("c", records.get(1).getFileName());
+
+        // Only the unambiguous row keeps its fingerprint and indexed commits
+        assertEquals(List.of("c"), getFileNames("fingerprints"));
+        assertEquals(List.of("c"), getFileNames("commits"));
+        assertEquals(List.of("c"), getFileNames("last_commits"));
+
+        // A migrated database has nothing left to apply
+        assertEquals(0, SchemaMigrations.migrate());
+    }
+
+    @Test
+    void lookupsUseIndexes() throws SQLException {
+        assertTrue(getQueryPlan("SELECT * FROM pathways WHERE file_name = 'a'").contains("pathways_file_name"));
+        assertTrue(getQueryPlan("SELECT * FROM pathways WHERE tracking_pathway = 'a'").contains("pathways_tracking_pathway"));
+    }
+
+    /** Returns the file names of the rows of a table in order */
+    private static List<String> getFileNames(String table) throws SQLException {
+        List<String> fileNames = new ArrayList<>();
+        try (ConnectionPool.Lease lease = DatabaseManager.read(); Statement statement = lease.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT file_name FROM " + table + " ORDER BY file_name")) {
+            while (resultSet.next())
+                fileNames.add(resultSet.getString("file_name"));
+        }
+
+        return fileNames;
+    }
+
+    /** Returns the details of the query plan SQLite picks for a query, on the writer that created the indexes */
+    private static String getQueryPlan(String query) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+
+        // EXPLAIN doesn't reload a schema a reader cached before the migration
+        try (ConnectionPool.Lease lease = DatabaseManager.write(); Statement statement = lease.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN " + query)) {
+            while (resultSet.next())
+                plan.append(resultSet.getString("detail")).append('\n');
+        }
+
+        return plan.toString();
+    }
+}
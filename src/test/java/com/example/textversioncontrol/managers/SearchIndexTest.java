@@ -0,0 +1,171 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.SearchHit;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Tracks a file and saves every further content as a new version */
+    private void trackWithVersions(String name, String... contents) throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve(name + ".txt");
+        Files.writeString(file, contents[0]);
+        VersionManager.startTracking(file.toString());
+
+        for (int i = 1; i < contents.length; i++) {
+            Files.writeString(file, contents[i]);
+            VersionManager.updateTextFiles();
+        }
+    }
+
+    @Test
+    void findsVersionThatIntroducedText() throws IOException, GitAPIException, SQLException {
+        trackWithVersions("notes", "shopping list\n", "shopping list\nbuy green apples\n", "buy green apples\napples green\n");
+        String gitPathway = DatabaseManager.getEntry("notes", DatabaseManager.Columns.REPO_PATHWAY);
+
+        // The phrase was typed in the second version, the same words in another order in the third
+        ArrayList<SearchHit> phrase = SearchIndex.search("\"green apples\"", 10);
+        assertEquals(1, phrase.size());
+        assertEquals("notes", phrase.get(0).getFileName());
+        assertEquals(VersionManager.getCommitId(gitPathway, 1), phrase.get(0).getCommitId());
+
+        ArrayList<SearchHit> words = SearchIndex.search("apples green", 10);
+        assertEquals(2, words.size());
+        assertEquals(VersionManager.getCommitId(gitPathway, 0), words.get(0).getCommitId());
+        assertEquals(VersionManager.getCommitId(gitPathway, 1), words.get(1).getCommitId());
+
+        // Lines kept from the version before aren't indexed again
+        assertEquals(1, SearchIndex.search("shopping", 10).size());
+        assertEquals(1, SearchIndex.search("apples", 1).size());
+        assertTrue(SearchIndex.search("bananas", 10).isEmpty());
+    }
+
+    @Test
+    void followsRenamesAndStops() throws IOException, GitAPIException, SQLException {
+        trackWithVersions("first", "alpha beta\n");
+        trackWithVersions("second", "alpha gamma\n");
+        assertEquals(2, SearchIndex.search("alpha", 10).size());
+
+        Path moved = tempDirectory.resolve("moved.txt");
+        Files.writeString(moved, "alpha gamma\n");
+        assertTrue(VersionManager.updatePathway("second", moved.toString()));
+        assertEquals("moved", SearchIndex.search("gamma", 10).get(0).getFileName());
+
+        VersionManager.stopTracking("first");
+        ArrayList<SearchHit> hits = SearchIndex.search("alpha", 10);
+        assertEquals(1, hits.size());
+        assertEquals("moved", hits.get(0).getFileName());
+    }
+
+    @Test
+    void catchesUpMissingVersions() throws IOException, GitAPIException, SQLException {
+        trackWithVersions("caught", "one\n", "one\ntwo\n");
+
+        // A file tracked before the index existed only gets new versions once it was caught up
+        SearchIndex.clear();
+        Files.writeString(tempDirectory.resolve("caught.txt"), "one\ntwo\nthree\n");
+        VersionManager.updateTextFiles();
+        assertTrue(SearchIndex.search("two", 10).isEmpty());
+        assertTrue(SearchIndex.search("three", 10).isEmpty());
+
+        SearchIndex.catchUpAll();
+        assertEquals(1, SearchIndex.search("one", 10).size());
+        assertEquals(1, SearchIndex.search("two", 10).size());
+        assertEquals(1, SearchIndex.search("three", 10).size());
+
+        // Caught up files are extended by every new version
+        Files.writeString(tempDirectory.resolve("caught.txt"), "four\n");
+        VersionManager.updateTextFiles();
+        assertEquals(1, SearchIndex.search("four", 10).size());
+        SearchIndex.catchUpAll();
+        assertEquals(1, SearchIndex.search("four", 10).size());
+
+        // Current files are checked without reading their history
+        String gitPathway = DatabaseManager.getEntry("caught", DatabaseManager.Columns.REPO_PATHWAY);
+        VersionManager.forgetHistory(gitPathway);
+        SearchIndex.catchUpAll();
+        assertFalse(VersionManager.isHistoryCached(gitPathway));
+    }
+
+    @Test
+    void phrasesStayInsideRunsOfIntroducedLines() throws IOException, GitAPIException, SQLException {
+        trackWithVersions("runs", "kept\n", "green\nkept\napples\nbuy\n");
+
+        // Lines far apart don't form a phrase, their words are still found together
+        assertTrue(SearchIndex.search("\"green apples\"", 10).isEmpty());
+        assertEquals(1, SearchIndex.search("green apples", 10).size());
+        assertEquals(1, SearchIndex.search("\"apples buy\"", 10).size());
+
+        // Unchanged lines aren't indexed, so a phrase starting on one isn't found
+        assertTrue(SearchIndex.search("\"kept apples\"", 10).isEmpty());
+    }
+
+    @Test
+    void savesVersionsTooLargeToIndex() throws IOException, GitAPIException, SQLException {
+        String large = "filler\n".repeat((int) (SearchIndex.SIZE_LIMIT / 7) + 1);
+        trackWithVersions("large", "small start\n", "large start\n" + large);
+        assertNull(SearchIndex.readContent(tempDirectory.resolve("large.txt")));
+        assertEquals(2, VersionManager.getCommitCount("large"));
+
+        // The large version adds no text but keeps the index current for the versions after it
+        assertTrue(SearchIndex.search("filler", 10).isEmpty());
+        Files.writeString(tempDirectory.resolve("large.txt"), "small end\n");
+        VersionManager.updateTextFiles();
+        assertEquals(1, SearchIndex.search("end", 10).size());
+        assertEquals(2, SearchIndex.search("small", 10).size());
+
+        // Catching up skips the large version the same way
+        SearchIndex.rebuild("large");
+        assertTrue(SearchIndex.search("filler", 10).isEmpty());
+        assertEquals(1, SearchIndex.search("end", 10).size());
+    }
+
+    @Test
+    void buildsMatchExpressions() {
+        assertEquals("\"green\" \"apples\"", SearchIndex.toMatchExpression("green  apples"));
+        assertEquals("\"green apples\" \"pie\"", SearchIndex.toMatchExpression("\"green apples\" pie"));
+        assertEquals("\"a*b\" \"OR\" \"c:d\"", SearchIndex.toMatchExpression("a*b OR c:d -- ()"));
+        assertNull(SearchIndex.toMatchExpression(" \"\" ** "));
+    }
+
+    @Test
+    void introducedTextCountsRepeatedLinesAndSeparatesRuns() {
+        byte[] previous = "a\nb\na\n".getBytes(StandardCharsets.UTF_8);
+        byte[] content = "a\na\na\nc\nb\n".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("a\nc\n", SearchIndex.getIntroducedText(previous, content));
+        assertEquals("a\nb\na\n", SearchIndex.getIntroducedText(null, previous));
+
+        // Runs of introduced lines are kept apart
+        byte[] edited = "x\na\nb\ny\nz\na\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals("x\n" + SearchIndex.RUN_BREAK + "\ny\nz\n", SearchIndex.getIntroducedText(previous, edited));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.AnnotatedLine;
+import com.example.textversioncontrol.models.DiffHunk;
+import com.example.textversioncontrol.models.DiffOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentVersionStoreTest extends VersionStoreConformanceTest {
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.PER_FILE);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @Override
+    VersionStore createStore() {
+        return new SegmentVersionStore(tempDirectory.resolve(SegmentVersionStore.DIRECTORY_NAME));
+    }
+
+    @Override
+    Path getContentPath() {
+        return tempDirectory.resolve("file.txt");
+    }
+
+    @Test
+    void segmentModeTracksFiles() throws IOException, GitAPIException, SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.SEGMENT);
+
+        Path file = tempDirectory.resolve("segmented.txt");
+        Files.writeString(file, "first\n");
+        VersionManager.startTracking(file.toString());
+
+        Files.writeString(file, "first\nsecond\n");
+        VersionManager.updateTextFiles();
+
+        // No repository was created and both versions are in the index
+        String gitPathway = DatabaseManager.getEntry("segmented", DatabaseManager.Columns.REPO_PATHWAY);
+        assertTrue(SegmentVersionStore.isSegment(gitPathway));
+        assertFalse(Files.exists(Path.of(gitPathway).resolveSibling(".git")));
+        assertEquals(2, VersionManager.getCommitCount("segmented"));
+        assertEquals(2, VersionManager.getHistoryPage("segmented", 0, 10).size());
+
+        // The second version added one line
+        ArrayList<DiffHunk> hunks = new ArrayList<>();
+        VersionManager.diff(gitPathway, VersionManager.getCommitId(gitPathway, 0), DiffOptions.DEFAULT, hunks::add);
+        assertEquals(1, hunks.size());
+        assertEquals("+second", hunks.get(0).getLines().get(1));
+
+        ArrayList<AnnotatedLine> lines = VersionManager.annotate("segmented");
+        assertNotEquals(lines.get(0).getCommitId(), lines.get(1).getCommitId());
+
+        // Revert to the initial version
+        VersionManager.revert("segmented", gitPathway, VersionManager.getCommitId(gitPathway, 1));
+        assertEquals("first\n", Files.readString(file));
+    }
+}
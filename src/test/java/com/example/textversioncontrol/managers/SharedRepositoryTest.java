@@ -0,0 +1,136 @@
+package com.example.textversioncontrol.managers;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedRepositoryTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.PER_FILE);
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Reads the blob id of the only file in a commit's tree */
+    private ObjectId getBlobId(String gitPathway) throws IOException {
+        try (Repository repository = new FileRepositoryBuilder()
+                .setGitDir(SharedRepository.getPathway().toFile()).build();
+             RevWalk walk = new RevWalk(repository)) {
+            RevCommit commit = walk.parseCommit(repository.resolve(SharedRepository.getRefNameOfPathway(gitPathway)));
+
+            try (TreeWalk treeWalk = new TreeWalk(repository)) {
+                treeWalk.addTree(commit.getTree());
+                assertTrue(treeWalk.next());
+                return treeWalk.getObjectId(0);
+            }
+        }
+    }
+
+    @Test
+    void sharedModeKeepsHistoryPerFile() throws IOException, GitAPIException, SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.SHARED);
+
+        Path first = tempDirectory.resolve("first.txt");
+        Path second = tempDirectory.resolve("second.txt");
+        Files.writeString(first, "same content");
+        Files.writeString(second, "same content");
+
+        VersionManager.startTracking(first.toString());
+        VersionManager.startTracking(second.toString());
+
+        String firstGitPathway = DatabaseManager.getEntry("first", DatabaseManager.Columns.REPO_PATHWAY);
+        String secondGitPathway = DatabaseManager.getEntry("second", DatabaseManager.Columns.REPO_PATHWAY);
+
+        // No repository was created per file and identical content is stored once
+        assertTrue(SharedRepository.isShared(firstGitPathway));
+        assertFalse(new File(DatabaseManager.getEntry("first", DatabaseManager.Columns.DIRECTORY_PATHWAY), ".git").exists());
+        assertEquals(getBlobId(firstGitPathway), getBlobId(secondGitPathway));
+
+        // Only the changed file gets a new commit
+        Files.writeString(first, "changed content");
+        VersionManager.updateTextFiles();
+        assertEquals(2, VersionManager.getCommitDates(firstGitPathway).size());
+        assertEquals(1, VersionManager.getCommitDates(secondGitPathway).size());
+
+        // Revert to the initial commit
+        VersionManager.revert("first", firstGitPathway, VersionManager.getCommitId(firstGitPathway, 1));
+        assertEquals("same content", Files.readString(first));
+    }
+
+    @Test
+    void revertsVersionsFromBeforeRename() throws IOException, GitAPIException, SQLException {
+        VersionManager.setStorageMode(VersionManager.StorageMode.SHARED);
+        Path file = tempDirectory.resolve("before.txt");
+        Files.writeString(file, "before rename");
+        VersionManager.startTracking(file.toString());
+        String firstVersion = VersionManager.getCommitId(DatabaseManager.getEntry("before", DatabaseManager.Columns.REPO_PATHWAY), 0);
+
+        // The older commit stores the file under its old name
+        Path renamed = tempDirectory.resolve("after.txt");
+        Files.writeString(renamed, "after rename");
+        assertTrue(VersionManager.updatePathway("before", renamed.toString()));
+        VersionManager.updateTextFiles();
+
+        String gitPathway = DatabaseManager.getEntry("after", DatabaseManager.Columns.REPO_PATHWAY);
+        VersionManager.revert("after", gitPathway, firstVersion);
+        assertEquals("before rename", Files.readString(renamed));
+
+        assertThrows(IllegalArgumentException.class, () -> VersionManager.revert("after", gitPathway, "0".repeat(40)));
+    }
+
+    @Test
+    void migrate() throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("migrated.txt");
+        Files.writeString(file, "first version");
+        VersionManager.startTracking(file.toString());
+
+        Files.writeString(file, "second version");
+        VersionManager.updateTextFiles();
+
+        String oldGitPathway = DatabaseManager.getEntry("migrated", DatabaseManager.Columns.REPO_PATHWAY);
+        VersionManager.annotate("migrated");
+        assertTrue(VersionManager.isHistoryCached(oldGitPathway));
+        assertEquals(1, SharedRepository.migrateAll().size());
+        assertFalse(VersionManager.isHistoryCached(oldGitPathway));
+
+        // The history moved into the shared repository and the old repository is gone
+        String gitPathway = DatabaseManager.getEntry("migrated", DatabaseManager.Columns.REPO_PATHWAY);
+        assertTrue(SharedRepository.isShared(gitPathway));
+        assertFalse(new File(oldGitPathway).exists());
+        assertEquals(2, VersionManager.getCommitDates(gitPathway).size());
+
+        // Later changes are committed to the shared repository
+        Files.writeString(file, "third version");
+        VersionManager.updateTextFiles();
+        assertEquals(3, VersionManager.getCommitDates(gitPathway).size());
+        assertFalse(SharedRepository.migrate("migrated"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.FileRecord;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackingDaemonTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    private TrackingDaemon daemon;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException, SQLException {
+        if (daemon != null)
+            daemon.close();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Tracks a file and starts a daemon that commits after a short quiet period */
+    private Path trackAndWatch(String content) throws IOException, GitAPIException, SQLException {
+        return trackAndWatch(content, new CommitCoalescer(Duration.ofMillis(100), Duration.ofSeconds(1)));
+    }
+
+    /** Tracks a file and starts a daemon that commits when <code>coalescer</code> reports saves as due */
+    private Path trackAndWatch(String content, CommitCoalescer coalescer) throws IOException, GitAPIException, SQLException {
+        Path file = tempDirectory.resolve("watched.txt");
+        Files.writeString(file, content);
+        VersionManager.startTracking(file.toString());
+
+        daemon = new TrackingDaemon(coalescer);
+        daemon.start();
+        return file;
+    }
+
+    /** Waits up to ten seconds for a condition */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++)
+            Thread.sleep(50);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void commitsFilesReplacedByRename() throws Exception {
+        Path file = trackAndWatch("first\n");
+
+        // Save like an editor that moves the original away and renames a temporary file into its place
+        Path temporary = tempDirectory.resolve("watched.txt.tmp");
+        Files.writeString(temporary, "second\n");
+        Files.move(file, tempDirectory.resolve("watched.txt.bak"));
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+
+        await(() -> daemon.getResult().getCommittedFiles().contains("watched"));
+        assertEquals(2, VersionManager.getCommitCount("watched"));
+        assertTrue(daemon.getResult().isSuccessful());
+    }
+
+    @Test
+    void reportsFailedCommits() throws Exception {
+        Path file = trackAndWatch("first\n");
+        Map<String, Exception> failures = new ConcurrentHashMap<>();
+        daemon.setOnFailure(failures::put);
+
+        // The copy can't be written once its directory is gone
+        VersionManager.deleteDirectory(new File(DatabaseManager.getEntry("watched", DatabaseManager.Columns.DIRECTORY_PATHWAY)));
+        Files.writeString(file, "second\n");
+
+        await(() -> failures.containsKey("watched"));
+        assertEquals(failures.keySet(), daemon.getResult().getFailures().keySet());
+        assertTrue(daemon.getResult().getCommittedFiles().isEmpty());
+    }
+
+    @Test
+    void closeCommitsWaitingSaves() throws Exception {
+        CommitCoalescer coalescer = new CommitCoalescer(Duration.ofMinutes(1), Duration.ofMinutes(1));
+        Path file = trackAndWatch("first\n", coalescer);
+
+        // The save waits for its quiet period until the daemon is closed
+        Files.writeString(file, "second\n");
+        await(() -> coalescer.size() == 1);
+        TrackingDaemon closed = daemon;
+        daemon = null;
+        closed.close();
+
+        assertEquals(2, VersionManager.getCommitCount("watched"));
+        assertTrue(closed.getResult().getCommittedFiles().contains("watched"));
+    }
+
+    @Test
+    void concurrentUpdatesCommitOnce() throws Exception {
+        Path file = tempDirectory.resolve("watched.txt");
+        Files.writeString(file, "first\n");
+        VersionManager.startTracking(file.toString());
+        FileRecord record = FileRegistry.get("watched");
+        Files.writeString(file, "second\n");
+
+        // The daemon and the scan workers all saw the fingerprint from before the save
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> updates = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            updates.add(executor.submit(() -> {
+                start.await();
+                return VersionManager.updateTextFile("watched", record.getCopyPathway(), record.getTrackingPathway(),
+                        record.getRepoPathway(), record.getFingerprint(), "Auto Save");
+            }));
+        start.countDown();
+
+        int committed = 0;
+        for (Future<Boolean> update : updates)
+            committed += update.get() ? 1 : 0;
+        executor.shutdown();
+
+        assertEquals(1, committed);
+        assertEquals(2, VersionManager.getCommitCount("watched"));
+        assertEquals(2, CommitIndex.getCommitCount("watched"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.ScanResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionServiceTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @BeforeAll
+    public static void setUpBeforeClass() throws SQLException, ClassNotFoundException {
+        DatabaseManager.createConnection();
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        VersionManager.clearTrackedFiles();
+        DatabaseManager.clear();
+    }
+
+    /** Occupies every service thread until the returned latch is released */
+    private CountDownLatch blockService() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++)
+            VersionService.submit(() -> {
+                started.countDown();
+                return release.await(10, TimeUnit.SECONDS);
+            });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    void waitingRefreshesAreCoalesced() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = blockService();
+
+        CompletableFuture<Integer> first = VersionService.coalesce("refresh", runs::incrementAndGet);
+        CompletableFuture<Integer> second = VersionService.coalesce("refresh", runs::incrementAndGet);
+        assertSame(first, second);
+
+        release.countDown();
+        assertEquals(1, first.get(10, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+
+        // Once the refresh ran, a new request runs again
+        assertEquals(2, VersionService.coalesce("refresh", runs::incrementAndGet).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void runningScanIsShared() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> first = VersionService.share("job", () -> {
+            running.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertSame(first, VersionService.share("job", () -> false));
+
+        release.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void scanReportsProgress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Path file = tempDirectory.resolve("progress" + i + ".txt");
+            Files.writeString(file, "first");
+            VersionManager.startTracking(file.toString());
+            Files.writeString(file, "changed");
+        }
+
+        List<Integer> progress = new CopyOnWriteArrayList<>();
+        ScanResult result = VersionService.updateTextFiles(2, (done, total) -> {
+            assertEquals(3, total);
+            progress.add(done);
+        }).get(1, TimeUnit.MINUTES);
+
+        assertEquals(3, result.getCommittedFiles().size());
+        assertEquals(3, progress.size());
+        assertTrue(progress.contains(3));
+    }
+
+    @Test
+    void cancelledScanSkipsFiles() throws IOException, GitAPIException, SQLException, InterruptedException {
+        Path file = tempDirectory.resolve("cancelled.txt");
+        Files.writeString(file, "first");
+        VersionManager.startTracking(file.toString());
+        Files.writeString(file, "changed");
+
+        ScanResult result = VersionManager.updateTextFiles(1, (done, total) -> fail("No file should be scanned"), () -> true);
+
+        assertTrue(result.isCancelled());
+        assertTrue(result.getCommittedFiles().isEmpty());
+        assertEquals(1, CommitIndex.getCommitCount("cancelled"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.textversioncontrol.managers;
+
+import com.example.textversioncontrol.models.StoredVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the behaviour every <code>VersionStore</code> shares, each implementation runs it through a subclass.
+ */
+abstract class VersionStoreConformanceTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    /** Creates an empty store inside <code>tempDirectory</code> */
+    abstract VersionStore createStore() throws Exception;
+
+    /** Returns the file whose content is appended to the store */
+    abstract Path getContentPath();
+
+    /** Writes content to the appended file and appends it */
+    private StoredVersion append(VersionStore store, byte[] content) throws IOException {
+        Files.write(getContentPath(), content);
+        return store.append(getContentPath(), "Auto Save");
+    }
+
+    private StoredVersion append(VersionStore store, String content) throws IOException {
+        return append(store, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void emptyStoreHasNoVersions() throws Exception {
+        VersionStore store = createStore();
+
+        assertNull(store.latest());
+        assertTrue(store.list().isEmpty());
+    }
+
+    @Test
+    void appendedVersionsAreListedOldestFirst() throws Exception {
+        VersionStore store = createStore();
+        StoredVersion first = append(store, "first\n");
+        StoredVersion second = append(store, "first\nsecond\n");
+
+        assertEquals(40, first.getId().length());
+        assertNull(first.getParentId());
+        assertEquals(first.getId(), second.getParentId());
+        assertEquals(second.getId(), store.latest().getId());
+        assertEquals(13, store.latest().getSize());
+
+        ArrayList<StoredVersion> versions = store.list();
+        assertEquals(2, versions.size());
+        assertEquals(first.getId(), versions.get(0).getId());
+        assertEquals(6, versions.get(0).getSize());
+        assertEquals(second.getId(), versions.get(1).getId());
+        assertTrue(versions.get(0).getTime() <= versions.get(1).getTime());
+
+        assertEquals("first\n", new String(store.read(first.getId()), StandardCharsets.UTF_8));
+        assertEquals("first\nsecond\n", new String(store.read(second.getId()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void equalContentGetsNewVersions() throws Exception {
+        VersionStore store = createStore();
+
+        HashSet<String> ids = new HashSet<>();
+        for (int i = 0; i < 3; i++)
+            assertTrue(ids.add(append(store, "same").getId()));
+
+        assertEquals(3, store.list().size());
+    }
+
+    @Test
+    void oldVersionsReadBackAcrossKeyframes() throws Exception {
+        VersionStore store = createStore();
+        int count = SegmentVersionStore.KEYFRAME_INTERVAL * 2 + 5;
+
+        // Every version edits, adds and sometimes removes lines
+        ArrayList<String> contents = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append("line ").append(i).append('\n');
+            if (i % 7 == 0)
+                builder.delete(0, builder.indexOf("\n") + 1);
+            String content = builder.toString().replace("line " + (i / 2) + "\n", "edited " + i + "\n");
+            contents.add(content);
+            append(store, content);
+        }
+
+        ArrayList<StoredVersion> versions = store.list();
+        assertEquals(count, versions.size());
+        for (int i = 0; i < count; i++)
+            assertEquals(contents.get(i), new String(store.read(versions.get(i).getId()), StandardCharsets.UTF_8), "version " + i);
+    }
+
+    @Test
+    void contentIsKeptByteForByte() throws Exception {
+        VersionStore store = createStore();
+
+        byte[] crlf = "windows\r\nline endings\r\nno final newline".getBytes(StandardCharsets.UTF_8);
+        byte[] binary = new byte[512];
+        for (int i = 0; i < binary.length; i++)
+            binary[i] = (byte) (i * 31);
+        byte[] empty = new byte[0];
+
+        StoredVersion crlfVersion = append(store, crlf);
+        StoredVersion binaryVersion = append(store, binary);
+        StoredVersion emptyVersion = append(store, empty);
+        append(store, "newest\n");
+
+        assertArrayEquals(crlf, store.read(crlfVersion.getId()));
+        assertArrayEquals(binary, store.read(binaryVersion.getId()));
+        assertArrayEquals(empty, store.read(emptyVersion.getId()));
+    }
+
+    @Test
+    void unknownVersionThrows() throws Exception {
+        VersionStore store = createStore();
+        append(store, "content");
+
+        assertThrows(IllegalArgumentException.class, () -> store.read("0123456789012345678901234567890123456789"));
+    }
+
+    @Test
+    void removeRewritesSurvivors() throws Exception {
+        VersionStore store = createStore();
+        ArrayList<StoredVersion> appended = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            appended.add(append(store, "version " + i + "\n"));
+
+        Map<String, String> rewrittenIds = store.remove(Set.of(appended.get(1).getId(), appended.get(3).getId()));
+
+        // The survivors keep their content, time and order under their new ids
+        ArrayList<StoredVersion> versions = store.list();
+        assertEquals(3, versions.size());
+        int[] survivors = {0, 2, 4};
+        for (int i = 0; i < survivors.length; i++) {
+            StoredVersion old = appended.get(survivors[i]);
+            assertEquals(rewrittenIds.getOrDefault(old.getId(), old.getId()), versions.get(i).getId());
+            assertEquals(old.getTime(), versions.get(i).getTime());
+            assertEquals("version " + survivors[i] + "\n", new String(store.read(versions.get(i).getId()), StandardCharsets.UTF_8));
+        }
+        assertEquals(versions.get(2).getId(), store.latest().getId());
+        assertThrows(IllegalArgumentException.class, () -> store.read(appended.get(1).getId()));
+
+        // New versions are appended to the rewritten history
+        append(store, "after\n");
+        assertEquals(4, store.list().size());
+        assertThrows(IllegalArgumentException.class, () -> store.remove(Set.of(store.latest().getId())));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.textversioncontrol.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditHistoryListTest {
+
+    /** Loader numbering rows like the history screen that records the pages it was asked for */
+    private static class RecordingLoader implements EditHistoryList.PageLoader {
+        private final int size;
+        private final List<Integer> offsets = new ArrayList<>();
+
+        private RecordingLoader(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public List<EditData> load(int offset, int limit) {
+            offsets.add(offset);
+
+            List<EditData> page = new ArrayList<>();
+            for (int i = offset; i < Math.min(size, offset + limit); i++)
+                page.add(new EditData(i + 1, "date " + i, "commit " + i));
+            return page;
+        }
+    }
+
+    @Test
+    void onlyShownPagesAreLoaded() {
+        RecordingLoader loader = new RecordingLoader(500_000);
+        EditHistoryList list = new EditHistoryList(500_000, 100, 3, loader);
+
+        // Opening the list reads nothing
+        assertEquals(500_000, list.size());
+        assertTrue(loader.offsets.isEmpty());
+
+        // Rows of the same page are read once
+        assertEquals(1, list.get(0).getId());
+        assertEquals(100, list.get(99).getId());
+        assertEquals(List.of(0), loader.offsets);
+
+        // A row deep in the history reads only its own page
+        assertEquals("commit 499999", list.get(499_999).getCommitId());
+        assertEquals(List.of(0, 499_900), loader.offsets);
+    }
+
+    @Test
+    void leastRecentlyUsedPagesAreDropped() {
+        RecordingLoader loader = new RecordingLoader(1_000);
+        EditHistoryList list = new EditHistoryList(1_000, 10, 2, loader);
+
+        list.get(0);
+        list.get(10);
+        list.get(0);
+        list.get(20);
+        assertEquals(2, list.getLoadedPageCount());
+
+        // The page of row 10 was dropped, row 0 was used more recently
+        list.get(0);
+        list.get(10);
+        assertEquals(List.of(0, 10, 20, 10), loader.offsets);
+    }
+
+    @Test
+    void rowsOutsideTheListAreRejected() {
+        EditHistoryList list = new EditHistoryList(5, 10, 1, new RecordingLoader(5));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.textversioncontrol.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileFingerprintTest {
+
+    private static final long MODIFIED = TimeUnit.SECONDS.toNanos(1_700_000_000L);
+
+    @Test
+    void racyFingerprintsNeverMatch() {
+        FileFingerprint current = new FileFingerprint(10, MODIFIED, "key", null);
+
+        // Hashed in the tick of the last write, a same sized write could have followed unnoticed
+        FileFingerprint racy = new FileFingerprint(10, MODIFIED, "key", "hash", MODIFIED + 1);
+        assertTrue(racy.isRacy());
+        assertFalse(current.matchesStat(racy));
+
+        // Hashed long after the last write, the stat information proves the content unchanged
+        FileFingerprint clean = new FileFingerprint(10, MODIFIED, "key", "hash", MODIFIED + TimeUnit.SECONDS.toNanos(3));
+        assertFalse(clean.isRacy());
+        assertTrue(current.matchesStat(clean));
+        assertFalse(new FileFingerprint(11, MODIFIED, "key", null).matchesStat(clean));
+    }
+
+    @Test
+    void hashingStampsScanTime() {
+        FileFingerprint hashed = new FileFingerprint(10, MODIFIED, "key", null).withContentHash("hash");
+
+        assertTrue(hashed.getScanTime() > MODIFIED);
+        assertFalse(hashed.isRacy());
+        assertTrue(new FileFingerprint(10, MODIFIED, "key", "hash").isRacy());
+    }
+}
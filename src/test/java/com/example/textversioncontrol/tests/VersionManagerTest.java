@@ -2,15 +2,22 @@ package com.example.textversioncontrol.tests;
 
 import com.example.textversioncontrol.managers.DatabaseManager;
 import com.example.textversioncontrol.managers.VersionManager;
+import com.example.textversioncontrol.models.ScanResult;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -101,6 +108,96 @@ class VersionManagerTest {
         assertEquals(2, count);
     }
 
+    @Test
+    void updateTextFilesSkipsUnchangedFiles() throws GitAPIException, SQLException, IOException {
+
+        String filePath = String.valueOf(Paths.get("").toAbsolutePath().resolve("src/test/java/com/example/textversioncontrol/tests/test.txt"));
+        String testText = "test" + Math.random();
+        VersionManager.startTracking(filePath);
+
+        // Overwrites test.txt
+        try(FileWriter writer = new FileWriter(filePath)){
+            writer.write(testText);
+        }
+
+        // Scan twice, only the first scan should find a change
+        VersionManager.updateTextFiles();
+        VersionManager.updateTextFiles();
+
+        // Rewriting the same content changes the modified time but not the hash
+        try(FileWriter writer = new FileWriter(filePath)){
+            writer.write(testText);
+        }
+        VersionManager.updateTextFiles();
+
+        String gitPathway = DatabaseManager.getEntry("test", DatabaseManager.Columns.REPO_PATHWAY);
+        try(Git git = Git.open(new File(gitPathway))) {
+            int count = 0;
+            for (RevCommit commit : git.log().call())
+                count++;
+
+            assertEquals(2, count);
+        }
+    }
+
+    @Test
+    void updateTextFilesHashesRacyFiles(@TempDir Path tempDirectory) throws GitAPIException, SQLException, IOException {
+        Path file = tempDirectory.resolve("racy.txt");
+        Files.writeString(file, "first");
+        VersionManager.startTracking(file.toString());
+
+        // Rewrite the file with the same size and put back its modified time, like a write in the same clock tick
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.writeString(file, "other");
+        Files.setLastModifiedTime(file, modified);
+        VersionManager.updateTextFiles();
+
+        assertEquals(2, VersionManager.getCommitCount("racy"));
+    }
+
+    @Test
+    void parallelUpdateTextFilesMatchesSequential(@TempDir Path tempDirectory) throws Exception {
+
+        // Track several files in their own directory
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Path file = tempDirectory.resolve("parallel" + i + ".txt");
+            Files.writeString(file, "initial " + i);
+            VersionManager.startTracking(file.toString());
+            files.add(file);
+        }
+
+        // Change every other file and scan sequentially
+        for (int i = 0; i < files.size(); i += 2)
+            Files.writeString(files.get(i), "sequential " + i);
+        ScanResult sequential = VersionManager.updateTextFiles(1);
+
+        // Change the same files again and scan in parallel
+        for (int i = 0; i < files.size(); i += 2)
+            Files.writeString(files.get(i), "parallel " + i);
+        ScanResult parallel = VersionManager.updateTextFiles(4);
+
+        assertTrue(sequential.isSuccessful());
+        assertTrue(parallel.isSuccessful());
+        assertEquals(List.of("parallel0", "parallel2", "parallel4"), sequential.getCommittedFiles());
+        assertEquals(sequential.getCommittedFiles(), parallel.getCommittedFiles());
+
+        // Every copy matches its tracked file and changed files have one commit per scan
+        for (int i = 0; i < files.size(); i++) {
+            String fileName = "parallel" + i;
+            String copyPathway = DatabaseManager.getEntry(fileName, DatabaseManager.Columns.COPY_PATHWAY);
+            assertEquals(Files.readString(files.get(i)), Files.readString(Paths.get(copyPathway)));
+
+            try (Git git = Git.open(new File(DatabaseManager.getEntry(fileName, DatabaseManager.Columns.REPO_PATHWAY)))) {
+                int count = 0;
+                for (RevCommit commit : git.log().call())
+                    count++;
+
+                assertEquals(i % 2 == 0 ? 3 : 1, count);
+            }
+        }
+    }
+
     @Test
     void getTrackedFilesPathway() {
         assertTrue(new File(String.valueOf(VersionManager.getTrackedFilesPathway())).exists());